@@ -0,0 +1,137 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Compares the JSON results of a JMH run with those of a baseline run, and reports every
+ * benchmark whose score is worse than the baseline's by more than a threshold.  Throughput
+ * scores are worse when lower; the scores of every other mode are times, and are worse when
+ * higher.  Benchmarks missing from either run are ignored.
+ */
+public class BaselineComparator {
+
+	private final double threshold;
+
+	/**
+	 * @param threshold The tolerated fraction by which a score may be worse than the
+	 * baseline's, e.g. 0.1 for 10%
+	 */
+	public BaselineComparator(double threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @param baseline The JSON results of the baseline run
+	 * @param results The JSON results of the run to check
+	 * @return A description of each regression, empty if there are none
+	 * @throws IOException If either file cannot be read
+	 * @throws ParseException If either file is not JSON
+	 */
+	public List<String> compare(File baseline, File results) throws IOException, ParseException {
+		return compare(readScores(baseline), readScores(results));
+	}
+
+	/**
+	 * @param baseline The scores of the baseline run, by benchmark
+	 * @param results The scores of the run to check, by benchmark
+	 * @return A description of each regression, empty if there are none
+	 */
+	public List<String> compare(Map<String, Score> baseline, Map<String, Score> results) {
+		List<String> regressions = new ArrayList<String>();
+		for (Map.Entry<String, Score> entry : new TreeMap<String, Score>(results).entrySet()) {
+			Score expected = baseline.get(entry.getKey());
+			Score actual = entry.getValue();
+			if (expected == null || !expected.mode.equals(actual.mode) || expected.score <= 0) {
+				continue;
+			}
+			double change = actual.isThroughput() ? (expected.score - actual.score) / expected.score
+					: (actual.score - expected.score) / expected.score;
+			if (change > threshold) {
+				regressions.add(String.format("%s: %.3f %s against a baseline of %.3f %s (%.1f%% worse)",
+						entry.getKey(), actual.score, actual.unit, expected.score, expected.unit, change * 100));
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * @param file The JSON results of a JMH run
+	 * @return The primary score of each benchmark, keyed by its name and parameters
+	 * @throws IOException If the file cannot be read
+	 * @throws ParseException If the file is not JSON
+	 */
+	public static Map<String, Score> readScores(File file) throws IOException, ParseException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			Map<String, Score> scores = new LinkedHashMap<String, Score>();
+			for (Object item : (JSONArray) new JSONParser().parse(reader)) {
+				JSONObject run = (JSONObject) item;
+				JSONObject metric = (JSONObject) run.get("primaryMetric");
+				String key = (String) run.get("benchmark");
+				JSONObject params = (JSONObject) run.get("params");
+				if (params != null && !params.isEmpty()) {
+					key += new TreeMap<Object, Object>(params).toString();
+				}
+				scores.put(key, new Score((String) run.get("mode"), ((Number) metric.get("score")).doubleValue(),
+						(String) metric.get("scoreUnit")));
+			}
+			return scores;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * The primary score of a benchmark.
+	 */
+	public static class Score {
+		private final String mode;
+		private final double score;
+		private final String unit;
+
+		public Score(String mode, double score, String unit) {
+			this.mode = mode;
+			this.score = score;
+			this.unit = unit;
+		}
+
+		public boolean isThroughput() {
+			return "thrpt".equals(mode);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the Candybean benchmarks, writes their results as JSON and compares them with a
+ * baseline, exiting with status 1 when any benchmark has regressed.
+ * 
+ * Arguments are passed to JMH.  The following system properties are read:
+ * <ul>
+ * <li><b>benchmark.include</b>: a regular expression selecting the benchmarks to run</li>
+ * <li><b>benchmark.result</b>: the file the JSON results are written to</li>
+ * <li><b>benchmark.baseline</b>: the JSON results to compare with; skipped if missing</li>
+ * <li><b>benchmark.threshold</b>: the tolerated fraction by which a score may be worse</li>
+ * <li><b>benchmark.updateBaseline</b>: if true, the results replace the baseline</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+
+	private static final Logger logger = Logger.getLogger(BenchmarkRunner.class.getSimpleName());
+
+	public static void main(String[] args) throws Exception {
+		String include = System.getProperty("benchmark.include", "com\\.sugarcrm\\.candybean\\.benchmark\\..*");
+		File result = new File(System.getProperty("benchmark.result", "target/benchmarks/jmh-result.json"));
+		File baseline = new File(System.getProperty("benchmark.baseline", "src/benchmark/resources/baseline.json"));
+		double threshold = Double.parseDouble(System.getProperty("benchmark.threshold", "0.1"));
+		boolean updateBaseline = Boolean.parseBoolean(System.getProperty("benchmark.updateBaseline", "false"));
+
+		File resultDir = result.getAbsoluteFile().getParentFile();
+		if (!resultDir.isDirectory() && !resultDir.mkdirs()) {
+			throw new IllegalStateException("Unable to create " + resultDir);
+		}
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(include)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result.getPath())
+				.build();
+		new Runner(options).run();
+
+		if (updateBaseline) {
+			File baselineDir = baseline.getAbsoluteFile().getParentFile();
+			if (!baselineDir.isDirectory() && !baselineDir.mkdirs()) {
+				throw new IllegalStateException("Unable to create " + baselineDir);
+			}
+			Files.copy(result.toPath(), baseline.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			logger.info("Updated the baseline " + baseline);
+		} else if (!baseline.isFile()) {
+			logger.warning("No baseline at " + baseline + "; skipping the comparison.");
+		} else {
+			List<String> regressions = new BaselineComparator(threshold).compare(baseline, result);
+			for (String regression : regressions) {
+				logger.severe("Regression: " + regression);
+			}
+			if (!regressions.isEmpty()) {
+				System.exit(1);
+			}
+			logger.info("No benchmark regressed by more than " + (threshold * 100) + "% against " + baseline);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+import com.sugarcrm.candybean.configuration.ConfigurationSnapshot;
+
+/**
+ * Reads the timeouts a wait reads from a shared {@link Configuration} with as many threads
+ * as parallel.threads=32 runs tests on, once through the synchronized properties and once
+ * through a {@link ConfigurationSnapshot}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(32)
+public class ConfigurationContentionBenchmark {
+
+	private Configuration config;
+
+	@Setup
+	public void setUp() {
+		config = new Configuration();
+		for (int i = 0; i < 200; i++) {
+			config.setValue("benchmark.key." + i, "value" + i);
+		}
+		config.setValue("perf.explicit.wait.seconds", "15");
+		config.setValue("perf.wait.poll.max.ms", "500");
+		config.setValue("perf.wait.poll.factor", "1.5");
+	}
+
+	@Benchmark
+	public double readProperties() {
+		long timeoutS = Long.parseLong(config.getValue("perf.explicit.wait.seconds", "15"));
+		long maxPollMs = Long.parseLong(config.getValue("perf.wait.poll.max.ms", "500"));
+		double pollFactor = Double.parseDouble(config.getValue("perf.wait.poll.factor", "1.5"));
+		return timeoutS + maxPollMs * pollFactor;
+	}
+
+	@Benchmark
+	public double readSnapshot() {
+		ConfigurationSnapshot snapshot = config.snapshot();
+		long timeoutS = snapshot.getDuration("perf.explicit.wait.seconds", TimeUnit.SECONDS, 15);
+		long maxPollMs = snapshot.getLong("perf.wait.poll.max.ms", 500);
+		double pollFactor = snapshot.getDouble("perf.wait.poll.factor", 1.5);
+		return timeoutS + maxPollMs * pollFactor;
+	}
+}
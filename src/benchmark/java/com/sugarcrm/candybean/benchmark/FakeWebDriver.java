@@ -0,0 +1,474 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.benchmark;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openqa.selenium.Alert;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchFrameException;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.logging.Logs;
+
+/**
+ * An in-memory {@link WebDriver} for benchmarking the element and wait layers without a
+ * browser.  Elements are registered against the {@link By} that finds them; every call made
+ * through the driver or its elements counts as one round trip, and may be slowed down by a
+ * simulated latency so that the cost of round trips shows in the results.
+ */
+public class FakeWebDriver implements WebDriver, JavascriptExecutor {
+
+	/**
+	 * Runs a script in place of the page, within the script's single round trip.
+	 */
+	public interface Script {
+		/**
+		 * @param args The arguments the script was executed with
+		 * @return The script's result
+		 */
+		Object execute(Object... args);
+	}
+
+	private final Map<String, List<WebElement>> elements = new HashMap<String, List<WebElement>>();
+	private final Map<String, Script> scripts = new HashMap<String, Script>();
+	private final AtomicLong roundTrips = new AtomicLong();
+	private final long latencyNanos;
+	private Object scriptResult;
+	private String url = "about:blank";
+
+	public FakeWebDriver() {
+		this(0);
+	}
+
+	/**
+	 * @param latencyMicros The simulated latency of each round trip, in microseconds
+	 */
+	public FakeWebDriver(long latencyMicros) {
+		this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+	}
+
+	/**
+	 * Registers an element found by the given locator.
+	 * 
+	 * @param by The locator that finds the element
+	 * @param tagName The tag name of the element
+	 * @param text The visible text of the element
+	 * @return The registered element, whose attributes may be set
+	 */
+	public FakeWebElement addElement(By by, String tagName, String text) {
+		FakeWebElement element = new FakeWebElement(tagName, text);
+		List<WebElement> found = elements.get(by.toString());
+		if (found == null) {
+			found = new ArrayList<WebElement>();
+			elements.put(by.toString(), found);
+		}
+		found.add(element);
+		return element;
+	}
+
+	/**
+	 * Registers what a script does when executed.
+	 * 
+	 * @param script The source of the script
+	 * @param handler What the script does
+	 */
+	public void addScript(String script, Script handler) {
+		scripts.put(script, handler);
+	}
+
+	/**
+	 * @param scriptResult The value every script without a registered handler returns
+	 */
+	public void setScriptResult(Object scriptResult) {
+		this.scriptResult = scriptResult;
+	}
+
+	/**
+	 * @return The number of round trips made so far
+	 */
+	public long getRoundTrips() {
+		return roundTrips.get();
+	}
+
+	private void roundTrip() {
+		roundTrips.incrementAndGet();
+		if (latencyNanos > 0) {
+			LockSupport.parkNanos(latencyNanos);
+		}
+	}
+
+	@Override
+	public List<WebElement> findElements(By by) {
+		roundTrip();
+		List<WebElement> found = elements.get(by.toString());
+		return found == null ? new ArrayList<WebElement>() : new ArrayList<WebElement>(found);
+	}
+
+	@Override
+	public WebElement findElement(By by) {
+		List<WebElement> found = findElements(by);
+		if (found.isEmpty()) {
+			throw new NoSuchElementException("No element found by " + by);
+		}
+		return found.get(0);
+	}
+
+	@Override
+	public Object executeScript(String script, Object... args) {
+		roundTrip();
+		Script handler = scripts.get(script);
+		return handler == null ? scriptResult : handler.execute(args);
+	}
+
+	@Override
+	public Object executeAsyncScript(String script, Object... args) {
+		roundTrip();
+		return scriptResult;
+	}
+
+	@Override
+	public void get(String url) {
+		roundTrip();
+		this.url = url;
+	}
+
+	@Override
+	public String getCurrentUrl() {
+		roundTrip();
+		return url;
+	}
+
+	@Override
+	public String getTitle() {
+		roundTrip();
+		return "";
+	}
+
+	@Override
+	public String getPageSource() {
+		roundTrip();
+		return "<html></html>";
+	}
+
+	@Override
+	public void close() {
+		roundTrip();
+	}
+
+	@Override
+	public void quit() {
+		roundTrip();
+	}
+
+	@Override
+	public Set<String> getWindowHandles() {
+		roundTrip();
+		return Collections.singleton("fake");
+	}
+
+	@Override
+	public String getWindowHandle() {
+		roundTrip();
+		return "fake";
+	}
+
+	@Override
+	public TargetLocator switchTo() {
+		return new TargetLocator() {
+			@Override
+			public WebDriver frame(int index) {
+				throw new NoSuchFrameException("No frames in a fake page");
+			}
+
+			@Override
+			public WebDriver frame(String nameOrId) {
+				throw new NoSuchFrameException("No frames in a fake page");
+			}
+
+			@Override
+			public WebDriver frame(WebElement frameElement) {
+				throw new NoSuchFrameException("No frames in a fake page");
+			}
+
+			@Override
+			public WebDriver parentFrame() {
+				roundTrip();
+				return FakeWebDriver.this;
+			}
+
+			@Override
+			public WebDriver window(String nameOrHandle) {
+				roundTrip();
+				return FakeWebDriver.this;
+			}
+
+			@Override
+			public WebDriver defaultContent() {
+				roundTrip();
+				return FakeWebDriver.this;
+			}
+
+			@Override
+			public WebElement activeElement() {
+				roundTrip();
+				return new FakeWebElement("body", "");
+			}
+
+			@Override
+			public Alert alert() {
+				throw new UnsupportedOperationException("No alerts in a fake page");
+			}
+		};
+	}
+
+	@Override
+	public Navigation navigate() {
+		return new Navigation() {
+			@Override
+			public void back() {
+				roundTrip();
+			}
+
+			@Override
+			public void forward() {
+				roundTrip();
+			}
+
+			@Override
+			public void to(String url) {
+				get(url);
+			}
+
+			@Override
+			public void to(URL url) {
+				get(url.toString());
+			}
+
+			@Override
+			public void refresh() {
+				roundTrip();
+			}
+		};
+	}
+
+	@Override
+	public Options manage() {
+		return new Options() {
+			@Override
+			public void addCookie(Cookie cookie) {
+				roundTrip();
+			}
+
+			@Override
+			public void deleteCookieNamed(String name) {
+				roundTrip();
+			}
+
+			@Override
+			public void deleteCookie(Cookie cookie) {
+				roundTrip();
+			}
+
+			@Override
+			public void deleteAllCookies() {
+				roundTrip();
+			}
+
+			@Override
+			public Set<Cookie> getCookies() {
+				roundTrip();
+				return Collections.emptySet();
+			}
+
+			@Override
+			public Cookie getCookieNamed(String name) {
+				roundTrip();
+				return null;
+			}
+
+			@Override
+			public Timeouts timeouts() {
+				return new Timeouts() {
+					@Override
+					public Timeouts implicitlyWait(long time, TimeUnit unit) {
+						roundTrip();
+						return this;
+					}
+
+					@Override
+					public Timeouts setScriptTimeout(long time, TimeUnit unit) {
+						roundTrip();
+						return this;
+					}
+
+					@Override
+					public Timeouts pageLoadTimeout(long time, TimeUnit unit) {
+						roundTrip();
+						return this;
+					}
+				};
+			}
+
+			@Override
+			public ImeHandler ime() {
+				throw new UnsupportedOperationException("No input methods in a fake page");
+			}
+
+			@Override
+			public Window window() {
+				throw new UnsupportedOperationException("No windows in a fake page");
+			}
+
+			@Override
+			public Logs logs() {
+				throw new UnsupportedOperationException("No logs in a fake page");
+			}
+		};
+	}
+
+	/**
+	 * An element of a {@link FakeWebDriver}, which is always displayed and enabled.
+	 */
+	public class FakeWebElement implements WebElement {
+		private final String tagName;
+		private final Map<String, String> attributes = new HashMap<String, String>();
+		private final StringBuilder text;
+
+		private FakeWebElement(String tagName, String text) {
+			this.tagName = tagName;
+			this.text = new StringBuilder(text);
+		}
+
+		/**
+		 * @param name The name of the attribute
+		 * @param value Its value
+		 * @return This element
+		 */
+		public FakeWebElement setAttribute(String name, String value) {
+			attributes.put(name, value);
+			return this;
+		}
+
+		@Override
+		public void click() {
+			roundTrip();
+		}
+
+		@Override
+		public void submit() {
+			roundTrip();
+		}
+
+		@Override
+		public void sendKeys(CharSequence... keysToSend) {
+			roundTrip();
+			for (CharSequence keys : keysToSend) {
+				text.append(keys);
+			}
+		}
+
+		@Override
+		public void clear() {
+			roundTrip();
+			text.setLength(0);
+		}
+
+		@Override
+		public String getTagName() {
+			roundTrip();
+			return tagName;
+		}
+
+		@Override
+		public String getAttribute(String name) {
+			roundTrip();
+			return attributes.get(name);
+		}
+
+		@Override
+		public boolean isSelected() {
+			roundTrip();
+			return false;
+		}
+
+		@Override
+		public boolean isEnabled() {
+			roundTrip();
+			return true;
+		}
+
+		@Override
+		public String getText() {
+			roundTrip();
+			return text.toString();
+		}
+
+		@Override
+		public List<WebElement> findElements(By by) {
+			return FakeWebDriver.this.findElements(by);
+		}
+
+		@Override
+		public WebElement findElement(By by) {
+			return FakeWebDriver.this.findElement(by);
+		}
+
+		@Override
+		public boolean isDisplayed() {
+			roundTrip();
+			return true;
+		}
+
+		@Override
+		public Point getLocation() {
+			roundTrip();
+			return new Point(0, 0);
+		}
+
+		@Override
+		public Dimension getSize() {
+			roundTrip();
+			return new Dimension(100, 20);
+		}
+
+		@Override
+		public String getCssValue(String propertyName) {
+			roundTrip();
+			return "";
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.benchmark;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+
+import com.sugarcrm.candybean.automation.element.Hook;
+import com.sugarcrm.candybean.automation.element.Hook.Strategy;
+import com.sugarcrm.candybean.exceptions.CandybeanException;
+
+/**
+ * Converts hooks to locators and parses hooks files, with plain hooks and with hooks
+ * given per platform.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HookBenchmark {
+
+	@Param({ "CSS", "ID", "XPATH" })
+	public Strategy strategy;
+
+	private Hook hook;
+	private Properties hooks;
+	private Properties platformHooks;
+
+	@Setup
+	public void setUp() {
+		hook = new Hook(strategy, "account_name");
+		hooks = new Properties();
+		for (int i = 0; i < 500; i++) {
+			hooks.setProperty("hook" + i, "ID" + Hook.HOOK_DELIMITER + "element" + i);
+		}
+		platformHooks = new Properties();
+		for (int i = 0; i < 5000; i++) {
+			platformHooks.setProperty("hook" + i, "{\"linux\": \"ID" + Hook.HOOK_DELIMITER + "linux" + i
+					+ "\", \"mac\": \"ID" + Hook.HOOK_DELIMITER + "mac" + i
+					+ "\", \"windows\": \"ID" + Hook.HOOK_DELIMITER + "windows" + i + "\"}");
+		}
+	}
+
+	@Benchmark
+	public By getBy() throws CandybeanException {
+		return Hook.getBy(hook);
+	}
+
+	@Benchmark
+	public Map<String, Hook> getHooks() throws CandybeanException {
+		return Hook.getHooks(hooks);
+	}
+
+	@Benchmark
+	public Map<String, Hook> getPlatformHooks() throws CandybeanException {
+		return Hook.getHooks(platformHooks);
+	}
+}
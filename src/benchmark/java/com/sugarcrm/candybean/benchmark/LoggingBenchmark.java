@@ -0,0 +1,113 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sugarcrm.candybean.automation.element.Hook;
+import com.sugarcrm.candybean.automation.element.Hook.Strategy;
+import com.sugarcrm.candybean.utilities.AsyncHandler;
+
+/**
+ * Logs an element action from several threads to a file formatted by SimpleFormatter, as
+ * the configured handlers do, once synchronously and once through an {@link AsyncHandler}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class LoggingBenchmark {
+
+	@Param({ "BLOCK", "DROP" })
+	public AsyncHandler.Overflow overflow;
+
+	private File syncFile;
+	private File asyncFile;
+	private FileHandler syncHandler;
+	private AsyncHandler asyncHandler;
+	private Logger syncLogger;
+	private Logger asyncLogger;
+	private Hook hook;
+
+	@Setup
+	public void setUp() throws IOException {
+		syncFile = File.createTempFile("cbsync", ".log");
+		asyncFile = File.createTempFile("cbasync", ".log");
+		syncHandler = new FileHandler(syncFile.getAbsolutePath());
+		syncHandler.setFormatter(new SimpleFormatter());
+		FileHandler asyncTarget = new FileHandler(asyncFile.getAbsolutePath());
+		asyncTarget.setFormatter(new SimpleFormatter());
+		asyncHandler = new AsyncHandler(8192, overflow, asyncTarget);
+		syncLogger = createLogger("benchmark.sync", syncHandler);
+		asyncLogger = createLogger("benchmark.async", asyncHandler);
+		hook = new Hook(Strategy.ID, "account_name");
+	}
+
+	@TearDown
+	public void tearDown() {
+		syncHandler.close();
+		asyncHandler.close();
+		syncFile.delete();
+		asyncFile.delete();
+	}
+
+	@Benchmark
+	public void logSynchronously() {
+		syncLogger.info("Clicking on element: " + hook.toString());
+	}
+
+	@Benchmark
+	public void logAsynchronously() {
+		asyncLogger.log(Level.INFO, "Clicking on element: {0}", hook);
+	}
+
+	private static Logger createLogger(String name, Handler handler) {
+		Logger logger = Logger.getLogger(name);
+		logger.setUseParentHandlers(false);
+		logger.addHandler(handler);
+		return logger;
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sugarcrm.candybean.runner.TestRecorder;
+
+/**
+ * Generates the Candybean test results report from generated surefire reports, through
+ * {@link TestRecorder#testRunFinished(Result)}.  Run from the project directory, where the
+ * report templates are.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBenchmark {
+
+	@Param({ "10", "100" })
+	public int suites;
+
+	private File reportsDirectory;
+	private TestRecorder recorder;
+
+	@Setup
+	public void setUp() throws Exception {
+		reportsDirectory = new File("target/benchmarks/surefire-reports");
+		reportsDirectory.mkdirs();
+		for (int i = 0; i < suites; i++) {
+			writeSuite(new File(reportsDirectory, "TEST-com.sugarcrm.benchmark" + (i % 5) + ".Suite" + i + ".xml"), i);
+		}
+		System.setProperty("surefireResultsDirectory", reportsDirectory.getPath());
+		System.setProperty("testResultsReport.testsPerPage", "25");
+		recorder = TestRecorder.getInstance();
+	}
+
+	private static void writeSuite(File file, int index) throws IOException {
+		String className = "com.sugarcrm.benchmark" + (index % 5) + ".Suite" + index;
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<testsuite name=\"" + className + "\" time=\"2.5\" tests=\"10\" errors=\"0\" skipped=\"0\" failures=\"1\">\n");
+			for (int t = 0; t < 10; t++) {
+				writer.write("  <testcase name=\"test" + t + "\" classname=\"" + className + "\" time=\"0.25\"");
+				if (t == 0) {
+					writer.write(">\n    <failure message=\"expected\" type=\"java.lang.AssertionError\">trace</failure>\n  </testcase>\n");
+				} else {
+					writer.write("/>\n");
+				}
+			}
+			writer.write("</testsuite>\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (File file : reportsDirectory.listFiles()) {
+			file.delete();
+		}
+	}
+
+	@Benchmark
+	public void generateTestResultsReport() throws Exception {
+		recorder.testRunFinished(new Result());
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+
+import com.sugarcrm.candybean.automation.webdriver.TextSearch;
+
+/**
+ * Searches the text of a large synthetic page in a {@link FakeWebDriver}, once with the
+ * single script of {@link TextSearch#contains} and once element by element, as
+ * {@link TextSearch#scan} does when scripts cannot be executed.  The text searched for is
+ * in the last element, so both searches read the whole page; the script reads it in one
+ * round trip, the scan in one per element.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextSearchBenchmark {
+
+	private static final String NEEDLE = "Account Name";
+
+	@Param({ "0", "200" })
+	public long latencyMicros;
+
+	@Param({ "1000", "5000" })
+	public int pageSize;
+
+	private FakeWebDriver driver;
+
+	@Setup
+	public void setUp() {
+		driver = new FakeWebDriver(latencyMicros);
+		final List<String> texts = new ArrayList<String>(pageSize);
+		By visible = By.xpath("//*[not(@visible='false')]");
+		for (int i = 0; i < pageSize; i++) {
+			String text = i == pageSize - 1 ? NEEDLE : "Account " + i;
+			driver.addElement(visible, "td", text);
+			texts.add(text);
+		}
+		driver.addScript(TextSearch.CONTAINS_SCRIPT, new FakeWebDriver.Script() {
+			@Override
+			public Object execute(Object... args) {
+				boolean caseSensitive = (Boolean) args[2];
+				String target = caseSensitive ? (String) args[1] : ((String) args[1]).toLowerCase();
+				for (String text : texts) {
+					if ((caseSensitive ? text : text.toLowerCase()).contains(target)) {
+						return Boolean.TRUE;
+					}
+				}
+				return Boolean.FALSE;
+			}
+		});
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return TextSearch.contains(driver, null, NEEDLE, false);
+	}
+
+	@Benchmark
+	public boolean containsByElementScan() {
+		return TextSearch.scan(driver, "//*[not(@visible='false')]", null, NEEDLE, false);
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+
+import com.sugarcrm.candybean.automation.Candybean;
+import com.sugarcrm.candybean.automation.element.Hook;
+import com.sugarcrm.candybean.automation.element.Hook.Strategy;
+import com.sugarcrm.candybean.automation.webdriver.WaitConditions;
+import com.sugarcrm.candybean.automation.webdriver.WebDriverElement;
+import com.sugarcrm.candybean.automation.webdriver.WebDriverPause;
+import com.sugarcrm.candybean.exceptions.CandybeanException;
+
+/**
+ * Exercises the element and wait layers against a {@link FakeWebDriver}, with and without a
+ * simulated round trip latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebDriverBenchmark {
+
+	@Param({ "0", "200" })
+	public long latencyMicros;
+
+	private FakeWebDriver driver;
+	private Hook hook;
+	private WebDriverElement element;
+	private WebDriverPause pause;
+	private WebDriverPause observingPause;
+
+	@Setup
+	public void setUp() throws CandybeanException {
+		// Elements log every action at INFO, which would be measured instead of the actions
+		Logger.getLogger(Candybean.class.getSimpleName()).setLevel(Level.WARNING);
+		driver = new FakeWebDriver(latencyMicros);
+		driver.addElement(By.id("account_name"), "div", "Account Name");
+		driver.setScriptResult(Boolean.TRUE);
+		hook = new Hook(Strategy.ID, "account_name");
+		element = new WebDriverElement(hook, 0, driver);
+		pause = new WebDriverPause(driver, 1000);
+		observingPause = new WebDriverPause(driver, 1000);
+		observingPause.setObserveMutations(true);
+	}
+
+	@Benchmark
+	public WebDriverElement findElement() throws CandybeanException {
+		return new WebDriverElement(hook, 0, driver);
+	}
+
+	@Benchmark
+	public String getText() throws CandybeanException {
+		return element.getText();
+	}
+
+	@Benchmark
+	public void click() throws CandybeanException {
+		element.click();
+	}
+
+	@Benchmark
+	public Object waitForVisible() throws CandybeanException {
+		return pause.waitUntil(WaitConditions.visible(hook));
+	}
+
+	@Benchmark
+	public Object waitForVisibleObserved() throws CandybeanException {
+		return observingPause.waitUntil(WaitConditions.visible(hook));
+	}
+}
@@ -56,6 +56,13 @@ public abstract class AutomationInterface {
 		this.iType = iType;
 	}
 	
+	/**
+	 * @return The type of this interface
+	 */
+	public Type getType() {
+		return iType;
+	}
+	
 	/**
 	 * Returns the interface type configured for use by the user.
 	 * 
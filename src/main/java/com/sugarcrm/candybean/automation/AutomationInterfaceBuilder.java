@@ -13,6 +13,7 @@ import com.sugarcrm.candybean.automation.AutomationInterface.Type;
 import com.sugarcrm.candybean.configuration.Configuration;
 import com.sugarcrm.candybean.exceptions.CandybeanException;
 import com.sugarcrm.candybean.utilities.CandybeanLogger;
+import com.sugarcrm.candybean.utilities.LogContext;
 
 public class AutomationInterfaceBuilder {
 
@@ -61,6 +62,8 @@ public class AutomationInterfaceBuilder {
 	/**
 	 * Builds the interface specified. If an interface cannot be built using the specified parameters, an attempt
 	 * will be made using candybean configuration files. If an interface cannot be built, an exception will be thrown.
+	 * When <b>webdriver.pool.enabled</b> is true, the interface leases warm browser sessions from the {@link WebDriverPool}
+	 * and returns them to the pool when stopped.
 	 * <br><br>
 	 * Below are the minimum settings required to build a specific type of interface.
 	 * <br><br>
@@ -115,7 +118,10 @@ public class AutomationInterfaceBuilder {
 		CandybeanLogger cbLogger;
 		try {
 			cbLogger = (CandybeanLogger) Logger.getLogger(Candybean.class.getSimpleName());
-			if (!cbLogger.containsHandler(cls.getSimpleName())) {
+			if (LogContext.get(LogContext.TEST_CLASS) != null) {
+				// Run by VRunner, which tags each test with its class; records are routed by that tag
+				cbLogger.getRoutingHandler(new File("./log"));
+			} else if (!cbLogger.containsHandler(cls.getSimpleName())) {
 				FileHandler fh = new FileHandler("./log/" + cls.getSimpleName() + ".log");
 				cbLogger.addHandler(fh, cls.getSimpleName());
 			}
@@ -145,7 +151,69 @@ public class AutomationInterfaceBuilder {
 	}
 
 	
-	private WebDriverInterface getWebDriverInterface(Type type) throws CandybeanException {
+	/*
+	 * Returns the interface for the given type, leasing its sessions from the WebDriverPool
+	 * when 'webdriver.pool.enabled' is true.
+	 */
+	private WebDriverInterface getWebDriverInterface(final Type type) throws CandybeanException {
+		if (!Boolean.parseBoolean(candybean.config.getValue("webdriver.pool.enabled", "false"))) {
+			return createWebDriverInterface(type);
+		}
+		logger.info("WebDriver pooling enabled; sessions for the interface " + type + " will be reused across tests.");
+		return new PooledWebDriverInterface(type, new WebDriverPool.Factory() {
+			@Override
+			public String getKey() {
+				return getPoolKey(type);
+			}
+
+			@Override
+			public boolean isThreadBound() {
+				// Local Chrome drivers are wrapped in a ThreadGuard
+				return type == Type.CHROME && !isRemote();
+			}
+
+			@Override
+			public WebDriverInterface create() throws CandybeanException {
+				return createWebDriverInterface(type);
+			}
+		}, WebDriverPool.getInstance());
+	}
+
+	/*
+	 * Identifies the sessions createWebDriverInterface would build for the given type, from
+	 * the settings it reads, without building one
+	 */
+	private String getPoolKey(Type type) {
+		StringBuilder key = new StringBuilder(type.toString());
+		if (Boolean.parseBoolean(candybean.config.getValue("grid.enabled"))) {
+			key.append("/grid/").append(candybean.config.getValue("grid.ip")).append(':')
+					.append(candybean.config.getValue("grid.port")).append('/')
+					.append(candybean.config.getValue("grid.browser")).append('/')
+					.append(candybean.config.getValue("grid.platform"));
+		} else if (Boolean.parseBoolean(candybean.config.getValue("saucelabs.enabled"))) {
+			key.append("/saucelabs/").append(candybean.config.getValue("saucelabs.browser")).append('/')
+					.append(candybean.config.getValue("saucelabs.version")).append('/')
+					.append(candybean.config.getValue("saucelabs.platform"));
+		}
+		if (type == Type.ANDROID || type == Type.IOS) {
+			String testClassName = cls.getSimpleName();
+			if (type == Type.ANDROID ? isAndroidFullyConfigured(true) : isIOSFullyConfigured(true)) {
+				key.append('/').append(appPath).append('/').append(appPackage).append('/').append(appActivity);
+			} else {
+				key.append('/').append(candybean.config.getValue(testClassName + ".app")).append('/')
+						.append(candybean.config.getValue(testClassName + ".app-package")).append('/')
+						.append(candybean.config.getValue(testClassName + ".app-activity"));
+			}
+		}
+		return key.toString();
+	}
+
+	private boolean isRemote() {
+		return Boolean.parseBoolean(candybean.config.getValue("grid.enabled"))
+				|| Boolean.parseBoolean(candybean.config.getValue("saucelabs.enabled"));
+	}
+	
+	private WebDriverInterface createWebDriverInterface(Type type) throws CandybeanException {
 		WebDriverInterface iface = null;
 		DesiredCapabilities capabilities;
 		String testClassName = cls.getSimpleName();
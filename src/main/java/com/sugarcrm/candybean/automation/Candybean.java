@@ -27,6 +27,7 @@ import java.util.logging.LogManager;
 import java.util.logging.Logger;
 import com.sugarcrm.candybean.configuration.Configuration;
 import com.sugarcrm.candybean.exceptions.CandybeanException;
+import com.sugarcrm.candybean.utilities.AsyncHandler;
 import com.sugarcrm.candybean.utilities.CandybeanLogger;
 import com.sugarcrm.candybean.utilities.Utils;
 
@@ -82,6 +83,9 @@ public final class Candybean {
 			log = this.createLogger();
 			LogManager.getLogManager().addLogger(log);
 			log.config("Instantiating Candybean with config: " + config.toString());
+			if (config.configFile != null && Boolean.parseBoolean(config.getValue("config.reload.enabled", "false"))) {
+				config.watch();
+			}
 		} catch (Exception e) {
 			throw new CandybeanException(e);
 		}
@@ -204,7 +208,15 @@ public final class Candybean {
 		// Gets the logger based the configuration file specified at 'java.util.logging.config.file'
 		LogManager.getLogManager().reset();
 		LogManager.getLogManager().readConfiguration();
-		return new CandybeanLogger(this.getClass().getSimpleName());
+		CandybeanLogger logger = new CandybeanLogger(this.getClass().getSimpleName());
+		if (Boolean.parseBoolean(config.getValue("logging.async.enabled", "false"))) {
+			int capacity = Integer.parseInt(config.getValue("logging.async.capacity", "8192"));
+			AsyncHandler.Overflow overflow = AsyncHandler.getOverflow(config.getValue("logging.async.overflow", "block"));
+			// The configured handlers are on the root logger
+			AsyncHandler.install(Logger.getLogger(""), capacity, overflow);
+			logger.enableAsync(capacity, overflow);
+		}
+		return logger;
 	}
 
 	/**
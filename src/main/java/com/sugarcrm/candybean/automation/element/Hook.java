@@ -141,6 +141,24 @@ public class Hook {
 		return "VHook(" + this.getHookStrategy() + "," + this.getHookString() + ")";
 	}
 
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Hook)) {
+			return false;
+		}
+		Hook other = (Hook) obj;
+		return hookStrategy == other.hookStrategy
+				&& (hookString == null ? other.hookString == null : hookString.equals(other.hookString));
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (hookStrategy == null ? 0 : hookStrategy.hashCode()) + (hookString == null ? 0 : hookString.hashCode());
+	}
+
 	public Strategy getHookStrategy() {
 		return hookStrategy;
 	}
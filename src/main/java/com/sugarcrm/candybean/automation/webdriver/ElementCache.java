@@ -0,0 +1,143 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.WebElement;
+
+import com.sugarcrm.candybean.automation.element.Hook;
+
+/**
+ * Remembers the web elements found for each {@link Hook} and index within a window and frame
+ * context, so that repeated lookups of the same hook do not each cost a round trip to the
+ * browser.  A {@link WebDriverInterface} invalidates its cache whenever it navigates or
+ * changes focus, and elements found stale are re-resolved and replaced.  Changes to the
+ * page that neither navigate nor make elements stale, such as a list re-rendered in place,
+ * are not noticed, so the cache is only enabled by <b>perf.element.cache.enabled</b>.
+ */
+public class ElementCache {
+
+	/*
+	 * The identity of a looked up element
+	 */
+	private static class Key {
+		private final Hook hook;
+		private final int index;
+		private final String context;
+
+		private Key(Hook hook, int index, String context) {
+			this.hook = hook;
+			this.index = index;
+			this.context = context;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return index == other.index && hook.equals(other.hook) && context.equals(other.context);
+		}
+
+		@Override
+		public int hashCode() {
+			return (hook.hashCode() * 31 + index) * 31 + context.hashCode();
+		}
+	}
+
+	private final Map<Key, WebElement> elements = new HashMap<Key, WebElement>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong stale = new AtomicLong();
+	private final boolean enabled;
+
+	/**
+	 * @param enabled Whether elements are cached; a disabled cache misses every lookup
+	 */
+	public ElementCache(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return The cached element, or null if there is none
+	 */
+	public synchronized WebElement get(Hook hook, int index, String context) {
+		WebElement we = enabled ? elements.get(new Key(hook, index, context)) : null;
+		(we == null ? misses : hits).incrementAndGet();
+		return we;
+	}
+
+	public synchronized void put(Hook hook, int index, String context, WebElement we) {
+		if (enabled) {
+			elements.put(new Key(hook, index, context), we);
+		}
+	}
+
+	/**
+	 * Replaces an element that was found to be stale.
+	 */
+	public synchronized void replaceStale(Hook hook, int index, String context, WebElement we) {
+		stale.incrementAndGet();
+		put(hook, index, context, we);
+	}
+
+	/**
+	 * Forgets every cached element.
+	 */
+	public synchronized void invalidate() {
+		elements.clear();
+	}
+
+	/**
+	 * @return The number of lookups answered from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return The number of lookups that went to the browser
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return The number of elements re-resolved after going stale
+	 */
+	public long getStaleCount() {
+		return stale.get();
+	}
+
+	public synchronized int size() {
+		return elements.size();
+	}
+
+	@Override
+	public String toString() {
+		return "ElementCache(hits=" + hits + ", misses=" + misses + ", stale=" + stale + ", size=" + size() + ")";
+	}
+}
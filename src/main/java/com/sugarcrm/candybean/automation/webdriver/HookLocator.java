@@ -0,0 +1,130 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.sugarcrm.candybean.automation.element.Hook;
+import com.sugarcrm.candybean.automation.element.Hook.Strategy;
+
+/**
+ * Builds the JavaScript used to locate elements by {@link Hook} inside the browser, so that
+ * many hooks can be resolved, or polled, in a single round trip.
+ * 
+ * Scripts take the hooks as their first argument, an array of [strategy, hook string]
+ * pairs, and call the injected <code>locate(strategy, hookString)</code> function, which
+ * returns the matching elements in document order or null when the strategy cannot be
+ * evaluated in the page, or <code>locateFirst(strategy, hookString)</code>, which stops at
+ * the first match.  LINK and PLINK hooks depend on the rendered text of links as
+ * WebDriver computes it and are not scriptable; callers resolve them with
+ * {@link org.openqa.selenium.WebDriver#findElements} instead.
+ */
+public final class HookLocator {
+
+	/**
+	 * Defines locate(strategy, hookString) for use by the script that follows it.
+	 */
+	public static final String LOCATE_FUNCTION =
+			"function locate(strategy, value) {" +
+			"  var found = [], i, all, snapshot;" +
+			"  switch (strategy) {" +
+			"  case 'CSS': all = document.querySelectorAll(value); break;" +
+			"  case 'CLASS': all = document.getElementsByClassName(value); break;" +
+			"  case 'TAG': all = document.getElementsByTagName(value); break;" +
+			"  case 'NAME': all = document.getElementsByName(value); break;" +
+			"  case 'ID':" +
+			"    all = document.querySelectorAll('[id]');" +
+			"    for (i = 0; i < all.length; i++) { if (all[i].id === value) { found.push(all[i]); } }" +
+			"    return found;" +
+			"  case 'XPATH':" +
+			"    snapshot = document.evaluate(value, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);" +
+			"    for (i = 0; i < snapshot.snapshotLength; i++) {" +
+			"      if (snapshot.snapshotItem(i).nodeType === 1) { found.push(snapshot.snapshotItem(i)); }" +
+			"    }" +
+			"    return found;" +
+			"  default: return null;" +
+			"  }" +
+			"  for (i = 0; i < all.length; i++) { found.push(all[i]); }" +
+			"  return found;" +
+			"}";
+
+	/**
+	 * Defines locateFirst(strategy, hookString), which returns the first matching element in
+	 * document order, null if there is none, or false when the strategy cannot be evaluated.
+	 */
+	public static final String LOCATE_FIRST_FUNCTION =
+			"function locateFirst(strategy, value) {" +
+			"  var node, nodes;" +
+			"  switch (strategy) {" +
+			"  case 'CSS': return document.querySelector(value);" +
+			"  case 'CLASS': return document.getElementsByClassName(value)[0] || null;" +
+			"  case 'TAG': return document.getElementsByTagName(value)[0] || null;" +
+			"  case 'NAME': return document.getElementsByName(value)[0] || null;" +
+			"  case 'ID': return document.getElementById(value);" +
+			"  case 'XPATH':" +
+			"    nodes = document.evaluate(value, document, null, XPathResult.ORDERED_NODE_ITERATOR_TYPE, null);" +
+			"    while ((node = nodes.iterateNext())) { if (node.nodeType === 1) { return node; } }" +
+			"    return null;" +
+			"  default: return false;" +
+			"  }" +
+			"}";
+
+	/**
+	 * Returns, for each hook in arguments[0], its first matching element, null if no
+	 * element matches, or false if the hook could not be evaluated.
+	 */
+	public static final String LOCATE_FIRST_SCRIPT = LOCATE_FIRST_FUNCTION +
+			"var hooks = arguments[0], results = [];" +
+			"for (var h = 0; h < hooks.length; h++) {" +
+			"  try { results.push(locateFirst(hooks[h][0], hooks[h][1])); } catch (e) { results.push(false); }" +
+			"}" +
+			"return results;";
+
+	private HookLocator() {
+	}
+
+	/**
+	 * @param hook A hook
+	 * @return Whether the hook can be located by the injected script
+	 */
+	public static boolean isScriptable(Hook hook) {
+		Strategy strategy = hook.getHookStrategy();
+		return strategy != Strategy.LINK && strategy != Strategy.PLINK;
+	}
+
+	/**
+	 * @param hooks Scriptable hooks
+	 * @return The script argument describing the given hooks
+	 */
+	public static List<List<String>> toArgument(Collection<Hook> hooks) {
+		List<List<String>> argument = new ArrayList<List<String>>(hooks.size());
+		for (Hook hook : hooks) {
+			List<String> pair = new ArrayList<String>(2);
+			pair.add(hook.getHookStrategy().name());
+			pair.add(hook.getHookString());
+			argument.add(pair);
+		}
+		return argument;
+	}
+}
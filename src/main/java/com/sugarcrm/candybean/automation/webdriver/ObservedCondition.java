@@ -0,0 +1,130 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+import com.sugarcrm.candybean.automation.element.Hook;
+
+/**
+ * A {@link Hook}-based condition which, besides being polled from Java, can be awaited
+ * inside the browser: {@link #OBSERVE_SCRIPT} re-evaluates it whenever a
+ * <code>MutationObserver</code> reports a change to the DOM, and calls back as soon as it
+ * holds.  The browser-side check only tells {@link WebDriverPause} when to look; the
+ * condition is then applied once from Java, so its result is exactly that of polling.
+ * 
+ * @param <T> The type the condition returns when it is satisfied
+ */
+public class ObservedCondition<T> implements ExpectedCondition<T> {
+
+	/**
+	 * The browser-side checks, each an expression over <code>els</code>, the elements located
+	 * by the hook, and <code>text</code>.
+	 */
+	public enum Check {
+		PRESENT("els.length > 0"),
+		VISIBLE("els.length > 0 && shown(els[0])"),
+		INVISIBLE("els.length === 0 || !shown(els[0])"),
+		TEXT_PRESENT("els.length > 0 && (els[0].innerText || els[0].textContent || '').indexOf(text) >= 0");
+
+		private final String expression;
+
+		private Check(String expression) {
+			this.expression = expression;
+		}
+	}
+
+	/**
+	 * Arguments: strategy, hook string, check expression, text, timeout in milliseconds, and
+	 * the callback.  Calls back with true as soon as the check holds, or false at the timeout.
+	 * The check is also re-evaluated every 100ms, to notice changes the DOM does not report,
+	 * such as stylesheets loading.
+	 */
+	public static final String OBSERVE_SCRIPT = HookLocator.LOCATE_FUNCTION +
+			"var strategy = arguments[0], value = arguments[1], text = arguments[3];" +
+			"var test = new Function('els', 'text', 'shown', 'return ' + arguments[2] + ';');" +
+			"var callback = arguments[arguments.length - 1], done = false, observer, interval, timer;" +
+			"function shown(el) {" +
+			"  var style = window.getComputedStyle(el);" +
+			"  return style.visibility !== 'hidden' && style.display !== 'none'" +
+			"    && (el.offsetWidth > 0 || el.offsetHeight > 0 || el.getClientRects().length > 0);" +
+			"}" +
+			"function check() { var els = locate(strategy, value) || []; return test(els, text, shown); }" +
+			"function finish(result) {" +
+			"  if (done) { return; }" +
+			"  done = true;" +
+			"  if (observer) { observer.disconnect(); }" +
+			"  clearInterval(interval); clearTimeout(timer);" +
+			"  callback(result);" +
+			"}" +
+			"if (check()) { finish(true); return; }" +
+			"observer = new MutationObserver(function() { if (check()) { finish(true); } });" +
+			"observer.observe(document.documentElement || document," +
+			"  { childList: true, subtree: true, attributes: true, characterData: true });" +
+			"interval = setInterval(function() { if (check()) { finish(true); } }, 100);" +
+			"timer = setTimeout(function() { finish(false); }, arguments[4]);";
+
+	private final ExpectedCondition<T> condition;
+	private final Hook hook;
+	private final Check check;
+	private final String text;
+
+	/**
+	 * @param condition The condition as polled from Java
+	 * @param hook The hook the condition is about
+	 * @param check The equivalent browser-side check
+	 * @param text The text the check looks for, if any
+	 */
+	public ObservedCondition(ExpectedCondition<T> condition, Hook hook, Check check, String text) {
+		this.condition = condition;
+		this.hook = hook;
+		this.check = check;
+		this.text = text;
+	}
+
+	/**
+	 * @return Whether the condition can be awaited inside the browser
+	 */
+	public boolean isObservable() {
+		return HookLocator.isScriptable(hook);
+	}
+
+	/**
+	 * @param timeoutMs How long the script should wait, in milliseconds
+	 * @return The arguments of {@link #OBSERVE_SCRIPT} for this condition
+	 */
+	public Object[] getScriptArguments(long timeoutMs) {
+		return new Object[] { hook.getHookStrategy().name(), hook.getHookString(), check.expression,
+				text == null ? "" : text, timeoutMs };
+	}
+
+	@Override
+	public T apply(WebDriver driver) {
+		return condition.apply(driver);
+	}
+
+	@Override
+	public String toString() {
+		return condition.toString();
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import com.sugarcrm.candybean.exceptions.CandybeanException;
+
+/**
+ * A {@link WebDriverInterface} whose browser session is leased from a {@link WebDriverPool}.
+ * Starting the interface leases a warm session when one is available, and stopping it
+ * returns the session to the pool rather than quitting the browser.
+ */
+public class PooledWebDriverInterface extends WebDriverInterface {
+
+	private final WebDriverPool.Factory factory;
+	private final WebDriverPool pool;
+
+	/*
+	 * The interface whose session is currently leased
+	 */
+	private WebDriverInterface session;
+
+	/**
+	 * @param iType The type of the pooled interfaces
+	 * @param factory Creates the unstarted interfaces new sessions are started from
+	 * @param pool The pool to lease sessions from
+	 * @throws CandybeanException
+	 */
+	public PooledWebDriverInterface(Type iType, WebDriverPool.Factory factory, WebDriverPool pool) throws CandybeanException {
+		super(iType);
+		this.factory = factory;
+		this.pool = pool;
+	}
+
+	@Override
+	public void start() throws CandybeanException {
+		logger.info("Leasing pooled automation interface with type: " + super.iType);
+		session = pool.lease(factory);
+		super.wd = session.wd;
+		super.start(); // requires wd to be instantiated first
+	}
+
+	@Override
+	public void stop() throws CandybeanException {
+		logger.info("Releasing pooled automation interface with type: " + super.iType);
+		super.clearWindows();
+		if (session != null) {
+			pool.release(session);
+			session = null;
+		}
+	}
+
+	/**
+	 * Quits the leased session instead of returning it to the pool, then leases another.
+	 */
+	@Override
+	public void restart() throws CandybeanException {
+		logger.info("Restarting pooled automation interface with type: " + super.iType);
+		super.clearWindows();
+		if (session != null) {
+			pool.evict(session);
+			session = null;
+		}
+		this.start();
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Searches the rendered text of a page, or of an element, in a single script.
+ * 
+ * Like the element by element search it replaces, the text of every element not marked
+ * <code>visible="false"</code> is searched on its own, so a match never spans two elements
+ * that the rendered text does not already join.  Since an element's rendered text includes
+ * that of its descendants, only the outermost such elements are read.  Their text is the
+ * <code>innerText</code>, which like {@link WebElement#getText()} only includes rendered
+ * text; browsers without <code>innerText</code> are searched with a <code>TreeWalker</code>
+ * over the text nodes of rendered elements.  When the driver cannot execute scripts, the
+ * search falls back to {@link #scan}, which reads the text of every element and so costs one
+ * round trip per element.
+ */
+public final class TextSearch {
+
+	/**
+	 * The elements searched when no root element is given: those not marked
+	 * <code>visible="false"</code> that are not within another such element.
+	 */
+	static final String OUTERMOST_XPATH = "//*[not(@visible='false') and not(ancestor::*[not(@visible='false')])]";
+
+	/**
+	 * Arguments: the root element, or null for the document, the text, and whether the search
+	 * is case sensitive.  Returns whether the rendered text of the root, or of any element
+	 * matching {@link #OUTERMOST_XPATH}, contains the text.
+	 */
+	public static final String CONTAINS_SCRIPT =
+			"var root = arguments[0], target = arguments[1], caseSensitive = arguments[2], roots = [];" +
+			"if (root) {" +
+			"  roots.push(root);" +
+			"} else {" +
+			"  var found = document.evaluate(\"" + OUTERMOST_XPATH + "\", document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);" +
+			"  for (var i = 0; i < found.snapshotLength; i++) { roots.push(found.snapshotItem(i)); }" +
+			"}" +
+			"if (!caseSensitive) { target = target.toLowerCase(); }" +
+			"for (var r = 0; r < roots.length; r++) {" +
+			"  var text;" +
+			"  if (typeof roots[r].innerText === 'string') {" +
+			"    text = roots[r].innerText;" +
+			"  } else {" +
+			"    var walker = document.createTreeWalker(roots[r], NodeFilter.SHOW_TEXT, null, false), node, parts = [];" +
+			"    while ((node = walker.nextNode())) {" +
+			"      var parent = node.parentNode;" +
+			"      if (parent && parent.getClientRects && parent.getClientRects().length > 0) { parts.push(node.nodeValue); }" +
+			"    }" +
+			"    text = parts.join('');" +
+			"  }" +
+			"  if (!caseSensitive) { text = text.toLowerCase(); }" +
+			"  if (text.indexOf(target) >= 0) { return true; }" +
+			"}" +
+			"return false;";
+
+	private TextSearch() {
+	}
+
+	/**
+	 * @param wd The driver to search with
+	 * @param root The element to search within, or null to search the document
+	 * @param s The text searched for
+	 * @param caseSensitive Whether or not the search is case sensitive
+	 * @return Whether the rendered text contains the given text
+	 */
+	public static boolean contains(WebDriver wd, WebElement root, String s, boolean caseSensitive) {
+		if (wd instanceof JavascriptExecutor) {
+			try {
+				Object result = ((JavascriptExecutor) wd).executeScript(CONTAINS_SCRIPT, root, s, caseSensitive);
+				if (result instanceof Boolean) {
+					return (Boolean) result;
+				}
+			} catch (WebDriverException e) {
+				// Fall back to reading the text of every element
+			}
+		}
+		if (root == null) {
+			return scan(wd, "//*[not(@visible='false')]", null, s, caseSensitive);
+		}
+		return scan(root, ".//*[not(@visible='false')]", root, s, caseSensitive);
+	}
+
+	/**
+	 * Reads the text of every element matching the XPath, and of the given element if any,
+	 * one round trip at a time.
+	 * 
+	 * @param context The context the XPath is evaluated in
+	 * @param xpath The XPath selecting the elements to read
+	 * @param self An element to read in addition, or null
+	 * @param s The text searched for
+	 * @param caseSensitive Whether or not the search is case sensitive
+	 * @return Whether the text of any element contains the given text
+	 */
+	public static boolean scan(SearchContext context, String xpath, WebElement self, String s, boolean caseSensitive) {
+		if (!caseSensitive) s = s.toLowerCase();
+		List<WebElement> wes = context.findElements(By.xpath(xpath));
+		if (self != null) wes.add(self);
+		for (WebElement we : wes) {
+			String text = we.getText();
+			if (!caseSensitive) text = text.toLowerCase();
+			if (text.contains(s)) return true;
+		}
+		return false;
+	}
+}
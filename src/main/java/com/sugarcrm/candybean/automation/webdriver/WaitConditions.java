@@ -66,7 +66,7 @@ public class WaitConditions {
 	 * @throws CandybeanException
 	 */
 	public static ExpectedCondition<WebDriverElement> visible(final Hook hook) {
-		return new ExpectedCondition<WebDriverElement>() {
+		return new ObservedCondition<WebDriverElement>(new ExpectedCondition<WebDriverElement>() {
 			@Override
 			public WebDriverElement apply(WebDriver driver) {
 				try {
@@ -81,7 +81,7 @@ public class WaitConditions {
 			public String toString() {
 				return "visibility of " + hook;
 			}
-		};
+		}, hook, ObservedCondition.Check.VISIBLE, null);
 	}
 
 	/**
@@ -115,7 +115,8 @@ public class WaitConditions {
 	 * @throws CandybeanException
 	 */
 	public static ExpectedCondition<Boolean> invisible(Hook hook) throws CandybeanException {
-		return ExpectedConditions.invisibilityOfElementLocated(getBy(hook));
+		return new ObservedCondition<Boolean>(ExpectedConditions.invisibilityOfElementLocated(getBy(hook)),
+				hook, ObservedCondition.Check.INVISIBLE, null);
 	}
 
 	/**
@@ -136,7 +137,7 @@ public class WaitConditions {
 	 * @throws CandybeanException
 	 */
 	public static ExpectedCondition<WebDriverElement> present(final Hook hook) {
-		return new ExpectedCondition<WebDriverElement>() {
+		return new ObservedCondition<WebDriverElement>(new ExpectedCondition<WebDriverElement>() {
 			@Override
 			public WebDriverElement apply(WebDriver driver) {
 				try {
@@ -151,7 +152,7 @@ public class WaitConditions {
 			public String toString() {
 				return "visibility of " + hook;
 			}
-		};
+		}, hook, ObservedCondition.Check.PRESENT, null);
 	}
 
 	/**
@@ -302,7 +303,8 @@ public class WaitConditions {
 	 * @throws CandybeanException
 	 */
 	public static ExpectedCondition<Boolean> textIsPresent(Hook hook, String text) throws CandybeanException {
-		return ExpectedConditions.textToBePresentInElementLocated(getBy(hook), text);
+		return new ObservedCondition<Boolean>(ExpectedConditions.textToBePresentInElementLocated(getBy(hook), text),
+				hook, ObservedCondition.Check.TEXT_PRESENT, text);
 	}
 
 	/**
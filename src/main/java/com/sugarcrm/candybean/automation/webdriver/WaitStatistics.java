@@ -0,0 +1,203 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records how long waits take, per condition, so that the conditions which dominate the
+ * time spent waiting can be found.  Conditions are identified by their toString(), e.g.
+ * "visibility of VHook(ID,login)".  At most {@value #MAX_CONDITIONS} conditions are tracked
+ * apart; waits for further conditions are recorded together under {@value #OTHER_CONDITIONS}.
+ */
+public class WaitStatistics {
+
+	/**
+	 * A histogram of wait times with power-of-two millisecond buckets: bucket 0 counts
+	 * waits under 1ms, and bucket i counts waits of [2^(i-1), 2^i) milliseconds.
+	 */
+	public static class Histogram {
+		public static final int BUCKETS = 20;
+
+		private final String condition;
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong timeouts = new AtomicLong();
+		private final AtomicLong totalMillis = new AtomicLong();
+		private final AtomicLong maxMillis = new AtomicLong();
+		private final AtomicLong polls = new AtomicLong();
+
+		private Histogram(String condition) {
+			this.condition = condition;
+		}
+
+		private void record(long millis, int pollCount, boolean satisfied) {
+			int bucket = millis <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+			buckets.incrementAndGet(bucket);
+			count.incrementAndGet();
+			totalMillis.addAndGet(millis);
+			polls.addAndGet(pollCount);
+			if (!satisfied) {
+				timeouts.incrementAndGet();
+			}
+			long max;
+			while (millis > (max = maxMillis.get()) && !maxMillis.compareAndSet(max, millis)) {
+				// retry until the larger value is stored
+			}
+		}
+
+		public String getCondition() {
+			return condition;
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public long getTimeouts() {
+			return timeouts.get();
+		}
+
+		public long getTotalMillis() {
+			return totalMillis.get();
+		}
+
+		public long getMaxMillis() {
+			return maxMillis.get();
+		}
+
+		public long getPolls() {
+			return polls.get();
+		}
+
+		/**
+		 * @param bucket A bucket index below {@link #BUCKETS}
+		 * @return The number of waits recorded in the bucket
+		 */
+		public long getBucket(int bucket) {
+			return buckets.get(bucket);
+		}
+
+		/**
+		 * @param percent A percentile between 0 and 100
+		 * @return The upper bound, in milliseconds, of the bucket holding the percentile
+		 */
+		public long getPercentileMillis(int percent) {
+			long total = count.get();
+			long rank = (long) Math.ceil(percent / 100.0 * total);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += buckets.get(i);
+				if (seen >= rank && seen > 0) {
+					return 1L << i;
+				}
+			}
+			return maxMillis.get();
+		}
+
+		@Override
+		public String toString() {
+			return condition + ": count=" + count + ", timeouts=" + timeouts + ", total=" + totalMillis
+					+ "ms, p50<=" + getPercentileMillis(50) + "ms, p95<=" + getPercentileMillis(95)
+					+ "ms, max=" + maxMillis + "ms, polls=" + polls;
+		}
+	}
+
+	/**
+	 * The number of conditions whose waits are recorded apart
+	 */
+	public static final int MAX_CONDITIONS = 1024;
+
+	/**
+	 * The condition under which waits are recorded once {@link #MAX_CONDITIONS} are tracked
+	 */
+	public static final String OTHER_CONDITIONS = "(other conditions)";
+
+	private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	private WaitStatistics() {
+	}
+
+	/**
+	 * Records a finished wait.
+	 * 
+	 * @param condition The condition waited for
+	 * @param millis The time spent waiting
+	 * @param polls The number of times the condition was evaluated
+	 * @param satisfied Whether the condition was met before the deadline
+	 */
+	public static void record(String condition, long millis, int polls, boolean satisfied) {
+		Histogram histogram = histograms.get(condition);
+		if (histogram == null) {
+			if (histograms.size() >= MAX_CONDITIONS) {
+				condition = OTHER_CONDITIONS;
+			}
+			histograms.putIfAbsent(condition, new Histogram(condition));
+			histogram = histograms.get(condition);
+		}
+		histogram.record(millis, polls, satisfied);
+	}
+
+	/**
+	 * @return The histogram of the given condition, or null if it was never waited for
+	 */
+	public static Histogram getHistogram(String condition) {
+		return histograms.get(condition);
+	}
+
+	/**
+	 * @return Every histogram, by condition
+	 */
+	public static Map<String, Histogram> getHistograms() {
+		return Collections.unmodifiableMap(histograms);
+	}
+
+	/**
+	 * @param limit The maximum number of conditions to return
+	 * @return The conditions with the most total wait time, most first
+	 */
+	public static List<Histogram> getSlowest(int limit) {
+		List<Histogram> slowest = new ArrayList<Histogram>(histograms.values());
+		Collections.sort(slowest, new Comparator<Histogram>() {
+			@Override
+			public int compare(Histogram h1, Histogram h2) {
+				return Long.compare(h2.getTotalMillis(), h1.getTotalMillis());
+			}
+		});
+		return slowest.subList(0, Math.min(limit, slowest.size()));
+	}
+
+	/**
+	 * Forgets every recorded wait.
+	 */
+	public static void reset() {
+		histograms.clear();
+	}
+}
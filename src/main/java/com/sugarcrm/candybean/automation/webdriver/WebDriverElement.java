@@ -22,9 +22,11 @@
 package com.sugarcrm.candybean.automation.webdriver;
 
 import java.util.List;
+import java.util.logging.Level;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
@@ -47,6 +49,12 @@ public class WebDriverElement extends Element {
 	protected WebDriver wd;
 	protected WebElement we;
 
+	/*
+	 * The cache this element was found through, if any, and the focus context it was found in
+	 */
+	private ElementCache cache;
+	private String context;
+
 	public WebDriverElement(Strategy strategy, String hookString, WebDriver wd) throws CandybeanException {
 		this(new Hook(strategy, hookString), wd);
 	}
@@ -75,6 +83,34 @@ public class WebDriverElement extends Element {
 		this.we = we;
 	}
 
+	/*
+	 * An element found through the given cache, which is re-resolved from the page when it
+	 * goes stale.
+	 */
+	WebDriverElement(Hook hook, int index, WebDriver wd, WebElement we, ElementCache cache, String context) throws CandybeanException {
+		this(hook, index, wd, we);
+		this.cache = cache;
+		this.context = context;
+	}
+
+	/*
+	 * Finds this element again after its web element went stale, e.g. because the page
+	 * re-rendered it. Elements not found through a cache may be relative to a parent
+	 * element and are not re-resolved.
+	 */
+	private void reresolve(StaleElementReferenceException e) throws CandybeanException {
+		if (cache == null) {
+			throw e;
+		}
+		List<WebElement> wes = this.wd.findElements(Hook.getBy(this.hook));
+		if (wes.size() <= this.index) {
+			throw e;
+		}
+		logger.log(Level.INFO, "Re-resolved stale element: {0}", this);
+		this.we = wes.get(this.index);
+		cache.replaceStale(this.hook, this.index, this.context, this.we);
+	}
+
 	/**
 	 * Get the value of an attribute of the element.
 	 * 
@@ -86,9 +122,14 @@ public class WebDriverElement extends Element {
 	 *             found
 	 */
 	public String getAttribute(String attribute) throws CandybeanException {
-		logger.info("Getting attribute: " + attribute
-				+ " for element: " + this.toString());
-		String value = we.getAttribute(attribute);
+		logger.log(Level.INFO, "Getting attribute: {0} for element: {1}", new Object[] { attribute, this });
+		String value;
+		try {
+			value = we.getAttribute(attribute);
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			value = we.getAttribute(attribute);
+		}
 		if (value == null)
 			throw new CandybeanException("Attribute does not exist.");
 		else
@@ -96,9 +137,15 @@ public class WebDriverElement extends Element {
 	}
 
 	public String getSource() throws CandybeanException {
-		logger.info("Getting source for element: " + this.toString());
-		return (String) ((JavascriptExecutor) this.wd)
-				.executeScript("return arguments[0].innerHTML;", this.we);
+		logger.log(Level.INFO, "Getting source for element: {0}", this);
+		try {
+			return (String) ((JavascriptExecutor) this.wd)
+					.executeScript("return arguments[0].innerHTML;", this.we);
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			return (String) ((JavascriptExecutor) this.wd)
+					.executeScript("return arguments[0].innerHTML;", this.we);
+		}
 	}
 
 	/**
@@ -108,8 +155,14 @@ public class WebDriverElement extends Element {
 	 * @return the visible text of this element
 	 */
 	public String getText() throws CandybeanException {
-		logger.info("Getting text for element: " + this.toString());
-		String type = this.we.getAttribute("type");
+		logger.log(Level.INFO, "Getting text for element: {0}", this);
+		String type;
+		try {
+			type = this.we.getAttribute("type");
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			type = this.we.getAttribute("type");
+		}
 		if (type != null
 				&& (type.equalsIgnoreCase("button") || type
 						.equalsIgnoreCase("input"))) {
@@ -122,8 +175,13 @@ public class WebDriverElement extends Element {
 	 * Click the element.
 	 */
 	public void click() throws CandybeanException {
-		logger.info("Clicking on element: " + this.toString());
-		we.click();
+		logger.log(Level.INFO, "Clicking on element: {0}", this);
+		try {
+			we.click();
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			we.click();
+		}
 	}
 
 	/**
@@ -137,34 +195,32 @@ public class WebDriverElement extends Element {
 	 * @return Returns true if the interface visibly contains the given string
 	 */
 	public boolean contains(String s, boolean caseSensitive) {
-		logger.info("Searching if the element contains the following string: '"
-				+ s + "' with case sensitivity: " + caseSensitive);
-		String lowercase = s;
-		if (!caseSensitive) {
-			lowercase = s.toLowerCase();
-		}
-		List<WebElement> wes = this.we.findElements(By
-				.xpath(".//*[not(@visible='false')]"));
-		wes.add(this.we);
-		for (WebElement webElement : wes) {
-			String text = webElement.getText();
-			if (!caseSensitive) {
-				text = text.toLowerCase();
-			}
-			if (text.contains(lowercase)) {
-				return true;
+		logger.log(Level.INFO, "Searching if the element contains the following string: ''{0}'' with case sensitivity: {1}",
+				new Object[] { s, caseSensitive });
+		try {
+			return TextSearch.contains(this.wd, this.we, s, caseSensitive);
+		} catch (StaleElementReferenceException e) {
+			try {
+				reresolve(e);
+			} catch (CandybeanException ce) {
+				// contains does not declare CandybeanException; report the stale element
+				throw e;
 			}
+			return TextSearch.contains(this.wd, this.we, s, caseSensitive);
 		}
-		return false;
 	}
 
 	/**
 	 * Double-click the element.
 	 */
 	public void doubleClick() throws CandybeanException {
-		logger.info("Double-clicking on element: " + this.toString());
-		Actions action = new Actions(this.wd);
-		action.doubleClick(we).perform();
+		logger.log(Level.INFO, "Double-clicking on element: {0}", this);
+		try {
+			new Actions(this.wd).doubleClick(we).perform();
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			new Actions(this.wd).doubleClick(we).perform();
+		}
 	}
 
 	/**
@@ -175,8 +231,7 @@ public class WebDriverElement extends Element {
 	 */
 	public void dragNDrop(WebDriverElement dropControl)
 			throws CandybeanException {
-		logger.info("Dragging element: " + this.toString()
-				+ " to element: " + dropControl.toString());
+		logger.log(Level.INFO, "Dragging element: {0} to element: {1}", new Object[] { this, dropControl });
 		Actions action = new Actions(this.wd);
 		action.dragAndDrop(this.we, dropControl.we).build().perform();
 	}
@@ -192,8 +247,7 @@ public class WebDriverElement extends Element {
 	 * @throws CandybeanException
 	 */
 	public Element getSelect(Hook hook, int index) throws CandybeanException {
-		logger.info("Getting select: " + hook.toString() 
-				+ " from element: " + this.toString() + " with index: " + index);
+		logger.log(Level.INFO, "Getting select: {0} from element: {1} with index: {2,number,#}", new Object[] { hook, this, index });
 		WebElement childWe = this.we.findElements(Hook.getBy(hook)).get(index);
 		return new WebDriverSelector(hook, index, this.wd, childWe); 
 	}
@@ -210,8 +264,7 @@ public class WebDriverElement extends Element {
 	 */
 	@Override
 	public Element getElement(Hook hook, int index) throws CandybeanException {
-		logger.info("Getting element: " + hook.toString()
-				+ " from element: " + this.toString() + " with index: " + index);
+		logger.log(Level.INFO, "Getting element: {0} from element: {1} with index: {2,number,#}", new Object[] { hook, this, index });
 		WebElement childWe = this.we.findElements(Hook.getBy(hook)).get(index);
 		return new WebDriverElement(hook, index, this.wd, childWe);
 	}
@@ -220,9 +273,13 @@ public class WebDriverElement extends Element {
 	 * Hover over this element.
 	 */
 	public void hover() throws CandybeanException {
-		logger.info("Hovering over element: " + this.toString());
-		Actions action = new Actions(this.wd);
-		action.moveToElement(this.we).perform();
+		logger.log(Level.INFO, "Hovering over element: {0}", this);
+		try {
+			new Actions(this.wd).moveToElement(this.we).perform();
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			new Actions(this.wd).moveToElement(this.we).perform();
+		}
 	}
 
 	/**
@@ -231,17 +288,26 @@ public class WebDriverElement extends Element {
 	 * to Selenium}
 	 */
 	public boolean isDisplayed() throws CandybeanException {
-		logger.info("Determining if element is visible: " + this.toString());
-		return we.isDisplayed();
+		logger.log(Level.INFO, "Determining if element is visible: {0}", this);
+		try {
+			return we.isDisplayed();
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			return we.isDisplayed();
+		}
 	}
 
 	/**
 	 * Right-click this element.
 	 */
 	public void rightClick() throws CandybeanException {
-		logger.info("Right-clicking element: " + this.toString());
-		Actions action = new Actions(this.wd);
-		action.contextClick(this.we).perform();
+		logger.log(Level.INFO, "Right-clicking element: {0}", this);
+		try {
+			new Actions(this.wd).contextClick(this.we).perform();
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			new Actions(this.wd).contextClick(this.we).perform();
+		}
 	}
 
 	/**
@@ -256,19 +322,27 @@ public class WebDriverElement extends Element {
 	 * Scroll the element to the specified location in the window.
 	 */
 	public void scroll(Location loc) throws CandybeanException {
-		int y = this.we.getLocation().getY();
-		int height = this.we.getSize().getHeight();
+		int y;
+		int height;
+		try {
+			y = this.we.getLocation().getY();
+			height = this.we.getSize().getHeight();
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			y = this.we.getLocation().getY();
+			height = this.we.getSize().getHeight();
+		}
 		switch (loc) {
 		case TOP:
-			logger.info("Scrolling element to the top of the viewport: " + this.toString());
+			logger.log(Level.INFO, "Scrolling element to the top of the viewport: {0}", this);
 			((JavascriptExecutor) this.wd).executeScript("window.scrollTo(0," + y + ");");
 			break;
 		case BOTTOM:
-			logger.info("Scrolling element to the bottom of the viewport: " + this.toString());
+			logger.log(Level.INFO, "Scrolling element to the bottom of the viewport: {0}", this);
 			((JavascriptExecutor) this.wd).executeScript("window.scrollTo(0," + y + "- window.innerHeight + " + height + ");");
 			break;
 		case MIDDLE:
-			logger.info("Scrolling element to the middle of the viewport: " + this.toString());
+			logger.log(Level.INFO, "Scrolling element to the middle of the viewport: {0}", this);
 			((JavascriptExecutor) this.wd).executeScript("window.scrollTo(0," + y + "- (window.innerHeight/2) + " + height/2 + ");");
 			break;
 		default:
@@ -283,19 +357,14 @@ public class WebDriverElement extends Element {
 	 *            string to send
 	 */
 	public void sendString(String input) throws CandybeanException {
-		logger.info("Sending string: " + input + " to element: "
-				+ this.toString());
-		this.we.clear();
-
-		// Re-find the element to avoid the stale element problem.
-		// Re-finding this *still* causes problems in getControl.getControl
-		// situations; a
-		// universal solution should be found to resolve this inconsistency
-		// since this
-		// is the only method that does it and it violates the general
-		// architecture
-		this.we = this.wd.findElements(Hook.getBy(this.hook)).get(this.index);
-		this.we.sendKeys(input);
+		logger.log(Level.INFO, "Sending string: {0} to element: {1}", new Object[] { input, this });
+		try {
+			this.we.clear();
+		} catch (StaleElementReferenceException e) {
+			reresolve(e);
+			this.we.clear();
+		}
+		sendKeys(input);
 	}
 
 	/**
@@ -309,13 +378,28 @@ public class WebDriverElement extends Element {
 	 */
 	public void sendString(String input, boolean append)
 			throws CandybeanException {
-		logger.info("Clear first?: " + append + "; sending string: " + input
-				+ " to element: " + this.toString());
+		logger.log(Level.INFO, "Clear first?: {0}; sending string: {1} to element: {2}", new Object[] { append, input, this });
 		if (!append)
 			this.sendString(input);
 		else {
-			// Re-find the element to avoid the stale element problem.
-			this.we = this.wd.findElements(Hook.getBy(this.hook)).get(this.index);
+			sendKeys(input);
+		}
+	}
+
+	/*
+	 * Clearing an element can make the page re-render it, so a stale element is expected
+	 * here. Elements found through the interface are re-resolved through the element cache;
+	 * others are found again from the page, as they always have been.
+	 */
+	private void sendKeys(String input) throws CandybeanException {
+		try {
+			this.we.sendKeys(input);
+		} catch (StaleElementReferenceException e) {
+			if (cache != null) {
+				reresolve(e);
+			} else {
+				this.we = this.wd.findElements(Hook.getBy(this.hook)).get(this.index);
+			}
 			this.we.sendKeys(input);
 		}
 	}
@@ -29,11 +29,15 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.awt.image.BufferedImage;
 
 import javax.imageio.ImageIO;
@@ -57,6 +61,7 @@ import com.sugarcrm.candybean.automation.Candybean;
 import com.sugarcrm.candybean.automation.element.Element;
 import com.sugarcrm.candybean.automation.element.Hook;
 import com.sugarcrm.candybean.automation.element.Hook.Strategy;
+import com.sugarcrm.candybean.configuration.ConfigurationSnapshot;
 import com.sugarcrm.candybean.exceptions.CandybeanException;
 import com.sugarcrm.candybean.utilities.Utils.Pair;
 
@@ -73,8 +78,19 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	private String baseUrl = "";
 	private Stack<Pair<Integer, String>> windows = new Stack<Pair<Integer, String>>();
 	
+	/*
+	 * Elements found by hook, invalidated whenever the page or focus changes
+	 */
+	private final ElementCache elementCache;
+	
+	/*
+	 * The frames focused within the current window, outermost first
+	 */
+	private String frameContext = "";
+	
 	protected WebDriverInterface(Type iType) throws CandybeanException {
 		super(iType);
+		this.elementCache = new ElementCache(Boolean.parseBoolean(candybean.config.getValue("perf.element.cache.enabled", "false")));
 	}
 	
 	/**
@@ -102,6 +118,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	@Override
 	public void stop() throws CandybeanException {
 		this.windows.clear();
+		this.resetFocusContext();
 		this.wd.quit();
 	}
 	
@@ -113,13 +130,48 @@ public abstract class WebDriverInterface extends AutomationInterface {
 		this.start();
 	}
 	
+	/*
+	 * Forgets the focused windows without ending the session, for sessions that outlive
+	 * this interface.
+	 */
+	void clearWindows() {
+		this.windows.clear();
+		this.resetFocusContext();
+	}
+	
+	/**
+	 * Returns the cache of elements found by hook.  Navigating or switching focus through
+	 * {@link #wd} directly bypasses this interface, in which case the cache should be
+	 * invalidated by the caller.
+	 * 
+	 * @return The element cache of this interface
+	 */
+	public ElementCache getElementCache() {
+		return this.elementCache;
+	}
+	
+	/*
+	 * Identifies the window and frame that element lookups are currently relative to
+	 */
+	String getFocusContext() {
+		return (this.windows.isEmpty() ? "" : this.windows.peek().y) + this.frameContext;
+	}
+	
+	/*
+	 * Called when focus returns to the top of a window, or the page changes
+	 */
+	private void resetFocusContext() {
+		this.frameContext = "";
+		this.elementCache.invalidate();
+	}
+	
 	/**
 	 * Display a modal dialog box to the test user.
 	 *
 	 * @param message	 	String to display on the dialog box
 	 */
 	public void interact(String message) {
-		logger.info("Interaction via popup dialog with message: " + message);
+		logger.log(Level.INFO, "Interaction via popup dialog with message: {0}", message);
 		JOptionPane.showInputDialog(message);
 	}
 
@@ -128,9 +180,15 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 * @return
 	 */
 	public WebDriverPause getPause() {
-		long timeoutS = Long.parseLong(candybean.config.getValue("perf.explicit.wait.seconds", "15"));
-		long timeoutMs = timeoutS * 1000;
-		return new WebDriverPause(wd, timeoutMs);
+		ConfigurationSnapshot config = candybean.config.snapshot();
+		long timeoutMs = config.getDuration("perf.explicit.wait.seconds", TimeUnit.MILLISECONDS, TimeUnit.SECONDS, 15000);
+		long initialPollMs = config.getLong("perf.wait.poll.initial.ms", WebDriverPause.DEFAULT_INITIAL_POLL_MS);
+		long maxPollMs = config.getLong("perf.wait.poll.max.ms", WebDriverPause.DEFAULT_MAX_POLL_MS);
+		double pollFactor = config.getDouble("perf.wait.poll.factor", WebDriverPause.DEFAULT_POLL_FACTOR);
+		WebDriverPause pause = new WebDriverPause(wd, timeoutMs, initialPollMs, maxPollMs, pollFactor);
+		pause.setObserveMutations(WebDriverPause.OBSERVE_MODE.equalsIgnoreCase(
+				config.getValue("perf.wait.mode", WebDriverPause.POLL_MODE)));
+		return pause;
 	}
 	
 	/**
@@ -141,7 +199,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 * @throws AWTException 
 	 */
 	public void screenshot(File file) throws CandybeanException {
-		logger.info("Taking screenshot; saving to file: " + file.toString());
+		logger.log(Level.INFO, "Taking screenshot; saving to file: {0}", file);
 		Rectangle screen = new Rectangle(Toolkit.getDefaultToolkit().getScreenSize());
 		BufferedImage screenshot;
 		try {
@@ -172,6 +230,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	public void refresh() throws CandybeanException {
 		logger.info("Refreshing the interface.");
 		this.wd.navigate().refresh();
+		this.resetFocusContext();
 	}
 
 	/**
@@ -180,8 +239,9 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 * @param url	the URL to be loaded by the browser
 	 */
 	public void go(String url) throws CandybeanException {
-		logger.info("Going to URL and switching to window: " + url);
+		logger.log(Level.INFO, "Going to URL and switching to window: {0}", url);
 		this.wd.get(url);
+		this.resetFocusContext();
 	}
 	
 	/**
@@ -191,7 +251,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 */
 	public String getURL() {
 		String url = this.wd.getCurrentUrl();
-		logger.info("Getting URL " + url);
+		logger.log(Level.INFO, "Getting URL {0}", url);
 		return url;
 	}
 
@@ -201,6 +261,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	public void backward() throws CandybeanException {
 		logger.info("Navigating the interface backward.");
 		this.wd.navigate().back();
+		this.resetFocusContext();
 	}
 
 	/**
@@ -215,15 +276,8 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 * contains the given string
 	 */
 	public boolean contains(String s, boolean caseSensitive) throws CandybeanException {
-		logger.info("Searching if the interface contains the following string: " + s + " with case sensitivity: " + caseSensitive);
-		if (!caseSensitive) s = s.toLowerCase();
-		List<WebElement> wes = this.wd.findElements(By.xpath("//*[not(@visible='false')]"));
-		for (WebElement we : wes) {
-			String text = we.getText();
-			if (!caseSensitive) text = text.toLowerCase();
-			if (text.contains(s)) return true;
-		}
-		return false;
+		logger.log(Level.INFO, "Searching if the interface contains the following string: {0} with case sensitivity: {1}", new Object[] { s, caseSensitive });
+		return TextSearch.contains(this.wd, null, s, caseSensitive);
 	}
 	
 	/**
@@ -233,6 +287,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	public void focusDefault() throws CandybeanException {
 		logger.info("Focusing to default content.");
 		this.wd.switchTo().defaultContent();
+		this.resetFocusContext();
 	}
 	
 	/**
@@ -241,8 +296,10 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 * @param index		the serial, zero-based index of the iframe to focus
 	 */
 	public void focusFrame(int index) throws CandybeanException {
-		logger.info("Focusing to frame by index: " + index);
+		logger.log(Level.INFO, "Focusing to frame by index: {0,number,#}", index);
 		this.getPause().waitUntil(WaitConditions.frameToBeAvailableAndSwitchToIt(index));
+		this.elementCache.invalidate();
+		this.frameContext += "/frame[" + index + "]";
 	}
 	
 	/**
@@ -251,8 +308,10 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 * @param nameOrId	the name or ID identifying the targeted IFrame
 	 */
 	public void focusFrame(String nameOrId) throws CandybeanException {
-		logger.info("Focusing to frame by name or ID: " + nameOrId);
+		logger.log(Level.INFO, "Focusing to frame by name or ID: {0}", nameOrId);
 		this.getPause().waitUntil(WaitConditions.frameToBeAvailableAndSwitchToIt(nameOrId));
+		this.elementCache.invalidate();
+		this.frameContext += "/frame(" + nameOrId + ")";
 	}
 	
 	/**
@@ -261,19 +320,22 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 * @param wde		The element representing a focus-targeted IFrame
 	 */
 	public void focusFrame(WebDriverElement wde) throws CandybeanException {
-		logger.info("Focusing to frame by element: " + wde.toString());
+		logger.log(Level.INFO, "Focusing to frame by element: {0}", wde);
 		this.getPause().waitUntil(WaitConditions.frameToBeAvailableAndSwitchToIt(wde));
+		this.elementCache.invalidate();
+		this.frameContext += "/" + wde.toString();
 	}
 	
 	/**
 	 * Close the current browser window.
 	 */
 	public void closeWindow() throws CandybeanException {
-		logger.info("Closing window with handle: " + windows.peek());
+		logger.log(Level.INFO, "Closing window with handle: {0}", windows.peek());
 		this.wd.close();
 		this.windows.pop();
-		logger.info("Refocusing to previous window with handle: " + windows.peek());
+		logger.log(Level.INFO, "Refocusing to previous window with handle: {0}", windows.peek());
 		this.wd.switchTo().window(windows.peek().y);
+		this.resetFocusContext();
 	}
 
 	/**
@@ -288,7 +350,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 */
 	public void focusWindow(int index) throws CandybeanException {
 		if (index == windows.peek().x.intValue()) {
-			logger.warning("No focus was made because the given index matched the current index: " + index);
+			logger.log(Level.WARNING, "No focus was made because the given index matched the current index: {0,number,#}", index);
 		} else if (index < 0) {
 			throw new CandybeanException("Given focus window index is out of bounds: " + index + "; current size: " + windows.size());
 		} else {
@@ -299,7 +361,8 @@ public abstract class WebDriverInterface extends AutomationInterface {
 			} else {
 				this.wd.switchTo().window(windowHandles[index]);
 				windows.push(new Pair<Integer, String>(new Integer(index), this.wd.getWindowHandle()));
-				logger.info("Focused by index: " + index + " to window: " + windows.peek());
+				this.resetFocusContext();
+				logger.log(Level.INFO, "Focused by index: {0,number,#} to window: {1}", new Object[] { index, windows.peek() });
 			}
 		}
 	}
@@ -318,7 +381,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 		String curTitle = this.wd.getTitle();
 		String curUrl = this.wd.getCurrentUrl();
 		if (titleOrUrl.equals(curTitle) || titleOrUrl.equals(curUrl)) {
-			logger.warning("No focus was made because the given string matched the current title or URL: " + titleOrUrl);
+			logger.log(Level.WARNING, "No focus was made because the given string matched the current title or URL: {0}", titleOrUrl);
 		} else {
 			Set<String> windowHandlesSet = this.wd.getWindowHandles();
 			String[] windowHandles = windowHandlesSet.toArray(new String[] {""});
@@ -328,11 +391,13 @@ public abstract class WebDriverInterface extends AutomationInterface {
 				WebDriver window = this.wd.switchTo().window(windowHandles[i]);
 				if (window.getTitle().equals(titleOrUrl) || window.getCurrentUrl().equals(titleOrUrl)) {
 					windows.push(new Pair<Integer, String>(new Integer(i), this.wd.getWindowHandle()));
-					logger.info("Focused by title or URL: " + titleOrUrl + " to window: " + windows.peek());
+					logger.log(Level.INFO, "Focused by title or URL: {0} to window: {1}", new Object[] { titleOrUrl, windows.peek() });
 					windowFound = true;
 				}
 				i++;
 			}
+			// Every window was visited while searching
+			this.resetFocusContext();
 			if (!windowFound) {
 				this.wd.switchTo().window(windows.peek().y);
 				throw new CandybeanException("The given focus window string matched no title or URL: " + titleOrUrl);
@@ -346,6 +411,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	public void forward() throws CandybeanException {
 		logger.info("Navigating the interface forward.");
 		this.wd.navigate().forward();
+		this.resetFocusContext();
 	}
 	
 	/**
@@ -412,7 +478,17 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 * @throws CandybeanException 
 	 */
 	public WebDriverElement getWebDriverElement(Hook hook, int index) throws CandybeanException {
-		return new WebDriverElement(hook, index, this.wd);
+		String context = this.getFocusContext();
+		WebElement we = this.elementCache.get(hook, index, context);
+		if (we == null) {
+			List<WebElement> wes = this.wd.findElements(Hook.getBy(hook));
+			if (wes.size() == 0) {
+				throw new CandybeanException("Control not found; zero web elements returned.");
+			}
+			we = wes.get(index);
+			this.elementCache.put(hook, index, context, we);
+		}
+		return new WebDriverElement(hook, index, this.wd, we, this.elementCache, context);
 	}
 	
 	/**
@@ -438,6 +514,67 @@ public abstract class WebDriverInterface extends AutomationInterface {
 		return elements;
 	}
 
+	/**
+	 * Gets the first element matching each of the given hooks.  Hooks located by CSS, ID,
+	 * NAME, CLASS, TAG or XPATH are resolved together by a single injected script; LINK and
+	 * PLINK hooks, or hooks the script cannot evaluate, are looked up one at a time.  Hooks
+	 * already in the element cache are not looked up again.
+	 * 
+	 * @param hooks The hooks to resolve, by name
+	 * @return The element found for each name, in the order of the given map; names whose
+	 * hook matches no element are absent
+	 * @throws CandybeanException 
+	 */
+	public Map<String, WebDriverElement> getWebDriverElements(Map<String, Hook> hooks) throws CandybeanException {
+		logger.log(Level.INFO, "Getting {0,number,#} elements in one batch", hooks.size());
+		Map<String, WebDriverElement> elements = new LinkedHashMap<String, WebDriverElement>();
+		String context = this.getFocusContext();
+		boolean canScript = this.wd instanceof JavascriptExecutor;
+		Map<String, WebElement> cached = new HashMap<String, WebElement>();
+		List<Hook> scripted = new ArrayList<Hook>();
+		for (Map.Entry<String, Hook> entry : hooks.entrySet()) {
+			WebElement we = this.elementCache.get(entry.getValue(), 0, context);
+			if (we != null) {
+				cached.put(entry.getKey(), we);
+			} else if (canScript && HookLocator.isScriptable(entry.getValue())) {
+				scripted.add(entry.getValue());
+			}
+		}
+		List<?> results = null;
+		if (!scripted.isEmpty()) {
+			Object result = ((JavascriptExecutor) this.wd).executeScript(HookLocator.LOCATE_FIRST_SCRIPT, HookLocator.toArgument(scripted));
+			if (result instanceof List && ((List<?>) result).size() == scripted.size()) {
+				results = (List<?>) result;
+			}
+		}
+		int next = 0;
+		for (Map.Entry<String, Hook> entry : hooks.entrySet()) {
+			WebElement we = cached.get(entry.getKey());
+			if (we == null) {
+				Object found = Boolean.FALSE;
+				if (canScript && HookLocator.isScriptable(entry.getValue())) {
+					found = results == null ? Boolean.FALSE : results.get(next);
+					next++;
+				}
+				if (Boolean.FALSE.equals(found)) {
+					// Not scriptable, or the script could not evaluate it
+					List<WebElement> wes = this.wd.findElements(Hook.getBy(entry.getValue()));
+					found = wes.isEmpty() ? null : wes.get(0);
+				}
+				if (found instanceof WebElement) {
+					we = (WebElement) found;
+					this.elementCache.put(entry.getValue(), 0, context, we);
+				}
+			}
+			if (we != null) {
+				elements.put(entry.getKey(), new WebDriverElement(entry.getValue(), 0, this.wd, we, this.elementCache, context));
+			} else {
+				logger.log(Level.INFO, "No element found for hook: {0}={1}", new Object[] { entry.getKey(), entry.getValue() });
+			}
+		}
+		return elements;
+	}
+
 	/**
 	 * @param strategy	method to use to search for the control
 	 * @param hook		string to find using the specified strategy
@@ -475,7 +612,7 @@ public abstract class WebDriverInterface extends AutomationInterface {
 	 */
 	private void waitForAlertDismissal() {
 		long timeoutSec = Long.parseLong(candybean.config.getValue("perf.implicit.wait.seconds", "20"));
-		logger.info("Waiting for alert to be dismissed, timeout in " + timeoutSec + " seconds.");
+		logger.log(Level.INFO, "Waiting for alert to be dismissed, timeout in {0,number,#} seconds.", timeoutSec);
 		long startTime = System.currentTimeMillis();
 		while(true) {
 			if(!isDialogVisible()) {
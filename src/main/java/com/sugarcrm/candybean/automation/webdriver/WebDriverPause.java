@@ -1,141 +1,271 @@
-/**
- * Candybean is a next generation automation and testing framework suite.
- * It is a collection of components that foster test automation, execution
- * configuration, data abstraction, results illustration, tag-based execution,
- * top-down and bottom-up batches, mobile variants, test translation across
- * languages, plain-language testing, and web service testing.
- * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
- *
- * This program is free software: you can redistribute it and/or modify
- * it under the terms of the GNU Affero General Public License as
- * published by the Free Software Foundation, either version 3 of the
- * License, or (at your option) any later version.
- *
- * This program is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU Affero General Public License for more details.
- *
- * You should have received a copy of the GNU Affero General Public License
- * along with this program.  If not, see <http://www.gnu.org/licenses/>.
- */
-package com.sugarcrm.candybean.automation.webdriver;
-
-import com.sugarcrm.candybean.automation.Candybean;
-import com.sugarcrm.candybean.automation.element.Hook;
-import org.openqa.selenium.WebDriver;
-
-import org.openqa.selenium.*;
-import org.openqa.selenium.support.ui.ExpectedCondition;
-import org.openqa.selenium.support.ui.WebDriverWait;
-
-import com.sugarcrm.candybean.exceptions.CandybeanException;
-
-import java.util.logging.Logger;
-
-import static java.lang.System.currentTimeMillis;
-
-/**
- * Utility class that provides several methods for an element to pause until a
- * condition is satisfied
- *
- * @author Eric Tam
- */
-public class WebDriverPause {
-	private WebDriver wd;
-	private long defaultTimeoutMs;
-	private static final long WD_POLLING_INTERVAL = 1000;
-
-	public Logger logger;
-
-	public WebDriverPause(WebDriver wd, long defaultTimeoutMs) {
-		this.wd = wd;
-		this.defaultTimeoutMs = defaultTimeoutMs;
-		this.logger = Logger.getLogger(Candybean.class.getSimpleName());
-	}
-
-	/**
-	 * Accepts any ExpectedCondition and poll under this condition is satisfied within timeout
-	 * @param timeoutMs	Timeout in Milliseconds
-	 * @param condition	The condition to poll
-	 * @return			Returning the object that is returned from ExpectedCondition when the condition is met
-	 * @throws CandybeanException
-	 */
-	public Object waitUntil(ExpectedCondition condition, long timeoutMs) throws CandybeanException {
-		long wdPollingInterval = WD_POLLING_INTERVAL;
-		if(timeoutMs <= WD_POLLING_INTERVAL) {
-			wdPollingInterval = timeoutMs;
-		}
-
-		// This is done by double-polling. WebDriverWait waits for wdPollingInterval amount of time.
-		// This is done repetitively until the time reaches timeoutMs.
-		final long startTime = currentTimeMillis();
-		long currentTime = 0;
-		CandybeanException toThrow = null;
-		Object toReturn = null;
-
-		while(currentTime <= timeoutMs) {
-			try {
-				logger.info(currentTime + " milliseconds have passed. Waiting until " + condition.toString() +
-						" is satisfied.");
-				toReturn = (new WebDriverWait(this.wd, wdPollingInterval / 1000)).until(condition);
-				toThrow = null;
-				break;
-			} catch (WebDriverException wdException) {
-				toThrow = new CandybeanException(wdException.toString());
-			}
-			currentTime = currentTimeMillis() - startTime;
-		}
-
-		if(toThrow != null) {
-			logger.severe("The timeout " + timeoutMs + " milliseconds have reached. Throwing Exception.");
-			throw toThrow;
-		}
-
-		return toReturn;
-	}
-
-	public Object waitUntil(ExpectedCondition<?> condition) throws CandybeanException {
-		return this.waitUntil(condition, defaultTimeoutMs);
-	}
-
-	/**
-	 * Provides a simple method to wait for visible as it is often used
-	 * @param hook
-	 * @param timeoutMs
-	 * @throws CandybeanException
-	 */
-	public WebDriverElement waitForVisible(Hook hook, long timeoutMs) throws CandybeanException {
-		return (WebDriverElement) this.waitUntil(WaitConditions.visible(hook), timeoutMs);
-	}
-
-	/**
-	 * Provides a simple method to wait for visible as it is often used
-	 * @param hook
-	 * @return
-	 * @throws CandybeanException
-	 */
-	public WebDriverElement waitForVisible(Hook hook) throws CandybeanException {
-		return this.waitForVisible(hook, defaultTimeoutMs);
-	}
-
-	/**
-	 * Provides a simple method to wait for visible as it is often used
-	 * @param wde
-	 * @param timeoutMs
-	 * @throws CandybeanException
-	 */
-	public WebDriverElement waitForVisible(WebDriverElement wde, long timeoutMs) throws CandybeanException {
-		return (WebDriverElement) this.waitUntil(WaitConditions.visible(wde), timeoutMs);
-	}
-
-	/**
-	 * Provides a simple method to wait for visible as it is often used
-	 * @param wde
-	 * @return
-	 * @throws CandybeanException
-	 */
-	public WebDriverElement waitForVisible(WebDriverElement wde) throws CandybeanException {
-		return this.waitForVisible(wde, defaultTimeoutMs);
-	}
-}
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import com.sugarcrm.candybean.automation.Candybean;
+import com.sugarcrm.candybean.automation.element.Hook;
+import org.openqa.selenium.WebDriver;
+
+import org.openqa.selenium.*;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+import com.sugarcrm.candybean.exceptions.CandybeanException;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Utility class that provides several methods for an element to pause until a
+ * condition is satisfied
+ *
+ * Conditions are polled until a single deadline.  The first poll is immediate; the
+ * interval between polls then starts at <b>perf.wait.poll.initial.ms</b> and grows by
+ * <b>perf.wait.poll.factor</b> up to <b>perf.wait.poll.max.ms</b>, so short waits return
+ * within milliseconds of the condition being met while long waits poll the browser less
+ * often.  Every wait is recorded in {@link WaitStatistics}.
+ *
+ * With <b>perf.wait.mode</b> set to <i>observe</i>, an {@link ObservedCondition} is first
+ * awaited inside the browser, which reports back as soon as the DOM changes so that the
+ * condition holds, in a single round trip.  The condition is then confirmed by one poll;
+ * when the browser cannot run the script, or the confirmation fails, the wait falls back
+ * to polling until the same deadline.
+ *
+ * @author Eric Tam
+ */
+public class WebDriverPause {
+	public static final long DEFAULT_INITIAL_POLL_MS = 25;
+	public static final long DEFAULT_MAX_POLL_MS = 500;
+	public static final double DEFAULT_POLL_FACTOR = 2.0;
+	public static final String POLL_MODE = "poll";
+	public static final String OBSERVE_MODE = "observe";
+
+	/**
+	 * The script timeout last set on each driver, so that it is only set when a wait needs a
+	 * longer one.
+	 */
+	private static final Map<WebDriver, Long> scriptTimeouts = new WeakHashMap<WebDriver, Long>();
+
+	/**
+	 * Added to the script timeout so that the browser times out the observation first.
+	 */
+	private static final long SCRIPT_TIMEOUT_SLACK_MS = 1000;
+
+	private WebDriver wd;
+	private long defaultTimeoutMs;
+	private final long initialPollMs;
+	private final long maxPollMs;
+	private final double pollFactor;
+	private boolean observeMutations = false;
+
+	public Logger logger;
+
+	public WebDriverPause(WebDriver wd, long defaultTimeoutMs) {
+		this(wd, defaultTimeoutMs, DEFAULT_INITIAL_POLL_MS, DEFAULT_MAX_POLL_MS, DEFAULT_POLL_FACTOR);
+	}
+
+	/**
+	 * @param wd The driver conditions are evaluated against
+	 * @param defaultTimeoutMs The timeout of waits that do not specify one
+	 * @param initialPollMs The interval before the second poll
+	 * @param maxPollMs The longest interval between polls
+	 * @param pollFactor The factor by which the interval grows after each poll
+	 */
+	public WebDriverPause(WebDriver wd, long defaultTimeoutMs, long initialPollMs, long maxPollMs, double pollFactor) {
+		this.wd = wd;
+		this.defaultTimeoutMs = defaultTimeoutMs;
+		this.initialPollMs = Math.max(1, initialPollMs);
+		this.maxPollMs = Math.max(this.initialPollMs, maxPollMs);
+		this.pollFactor = Math.max(1.0, pollFactor);
+		this.logger = Logger.getLogger(Candybean.class.getSimpleName());
+	}
+
+	/**
+	 * @return The timeout of waits not given one, in milliseconds
+	 */
+	public long getDefaultTimeoutMs() {
+		return defaultTimeoutMs;
+	}
+
+	/**
+	 * @param observeMutations Whether {@link ObservedCondition}s are awaited inside the browser
+	 * before being polled
+	 */
+	public void setObserveMutations(boolean observeMutations) {
+		this.observeMutations = observeMutations;
+	}
+
+	/**
+	 * @return Whether {@link ObservedCondition}s are awaited inside the browser
+	 */
+	public boolean isObserveMutations() {
+		return observeMutations;
+	}
+
+	/**
+	 * Accepts any ExpectedCondition and poll under this condition is satisfied within timeout
+	 * @param timeoutMs	Timeout in Milliseconds
+	 * @param condition	The condition to poll
+	 * @return			Returning the object that is returned from ExpectedCondition when the condition is met
+	 * @throws CandybeanException
+	 */
+	public Object waitUntil(ExpectedCondition condition, long timeoutMs) throws CandybeanException {
+		final long startTime = System.nanoTime();
+		final long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		long interval = initialPollMs;
+		int polls = 0;
+		WebDriverException lastException = null;
+		if (observeMutations && condition instanceof ObservedCondition && this.wd instanceof JavascriptExecutor
+				&& ((ObservedCondition<?>) condition).isObservable()) {
+			polls++;
+			try {
+				if (observe((ObservedCondition<?>) condition, deadline)) {
+					Object value = condition.apply(this.wd);
+					if (value != null && !Boolean.FALSE.equals(value)) {
+						long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+						WaitStatistics.record(condition.toString(), elapsedMs, polls, true);
+						if (logger.isLoggable(Level.FINE)) {
+							logger.log(Level.FINE, "{0} was observed after {1,number,#} milliseconds.", new Object[] { condition, elapsedMs });
+						}
+						return value;
+					}
+				}
+			} catch (WebDriverException wdException) {
+				// The browser cannot observe the condition; poll it instead
+				lastException = wdException;
+				if (logger.isLoggable(Level.FINE)) {
+					logger.log(Level.FINE, "Unable to observe {0}; polling instead: {1}", new Object[] { condition, wdException.getMessage() });
+				}
+			}
+		}
+		while (true) {
+			polls++;
+			try {
+				Object value = condition.apply(this.wd);
+				if (value != null && !Boolean.FALSE.equals(value)) {
+					long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+					WaitStatistics.record(condition.toString(), elapsedMs, polls, true);
+					if (logger.isLoggable(Level.FINE)) {
+						logger.log(Level.FINE, "{0} was satisfied after {1,number,#} milliseconds and {2,number,#} polls.", new Object[] { condition, elapsedMs, polls });
+					}
+					return value;
+				}
+			} catch (WebDriverException wdException) {
+				// Conditions are retried until the deadline, whatever the driver reports
+				lastException = wdException;
+			}
+			long remainingNs = deadline - System.nanoTime();
+			if (remainingNs <= 0) {
+				break;
+			}
+			if (logger.isLoggable(Level.FINEST)) {
+				logger.log(Level.FINEST, "Poll {0,number,#}: waiting {1,number,#} milliseconds until {2} is satisfied.", new Object[] { polls, interval, condition });
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(Math.min(TimeUnit.MILLISECONDS.toNanos(interval), remainingNs));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CandybeanException("Interrupted while waiting until " + condition + " is satisfied.");
+			}
+			interval = Math.min(maxPollMs, (long) Math.ceil(interval * pollFactor));
+		}
+
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		WaitStatistics.record(condition.toString(), elapsedMs, polls, false);
+		logger.log(Level.SEVERE, "The timeout {0,number,#} milliseconds have reached. Throwing Exception.", timeoutMs);
+		throw new CandybeanException("Timed out after " + elapsedMs + " milliseconds and " + polls
+				+ " polls waiting until " + condition + " is satisfied"
+				+ (lastException == null ? "." : ": " + lastException.toString()));
+	}
+
+	/**
+	 * Runs {@link ObservedCondition#OBSERVE_SCRIPT} for the time remaining until the deadline.
+	 * @param condition The condition to observe
+	 * @param deadline The {@link System#nanoTime()} by which to return
+	 * @return Whether the browser reported the condition as satisfied
+	 */
+	private boolean observe(ObservedCondition<?> condition, long deadline) {
+		long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+		if (remainingMs <= 0) {
+			return false;
+		}
+		long scriptTimeoutMs = remainingMs + SCRIPT_TIMEOUT_SLACK_MS;
+		synchronized (scriptTimeouts) {
+			Long current = scriptTimeouts.get(this.wd);
+			if (current == null || current < scriptTimeoutMs) {
+				// Set generously, so that later waits on this driver seldom need to set it again
+				long timeoutMs = Math.max(scriptTimeoutMs, defaultTimeoutMs + SCRIPT_TIMEOUT_SLACK_MS);
+				this.wd.manage().timeouts().setScriptTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+				scriptTimeouts.put(this.wd, timeoutMs);
+			}
+		}
+		Object result = ((JavascriptExecutor) this.wd).executeAsyncScript(ObservedCondition.OBSERVE_SCRIPT,
+				condition.getScriptArguments(remainingMs));
+		return Boolean.TRUE.equals(result);
+	}
+
+	public Object waitUntil(ExpectedCondition<?> condition) throws CandybeanException {
+		return this.waitUntil(condition, defaultTimeoutMs);
+	}
+
+	/**
+	 * Provides a simple method to wait for visible as it is often used
+	 * @param hook
+	 * @param timeoutMs
+	 * @throws CandybeanException
+	 */
+	public WebDriverElement waitForVisible(Hook hook, long timeoutMs) throws CandybeanException {
+		return (WebDriverElement) this.waitUntil(WaitConditions.visible(hook), timeoutMs);
+	}
+
+	/**
+	 * Provides a simple method to wait for visible as it is often used
+	 * @param hook
+	 * @return
+	 * @throws CandybeanException
+	 */
+	public WebDriverElement waitForVisible(Hook hook) throws CandybeanException {
+		return this.waitForVisible(hook, defaultTimeoutMs);
+	}
+
+	/**
+	 * Provides a simple method to wait for visible as it is often used
+	 * @param wde
+	 * @param timeoutMs
+	 * @throws CandybeanException
+	 */
+	public WebDriverElement waitForVisible(WebDriverElement wde, long timeoutMs) throws CandybeanException {
+		return (WebDriverElement) this.waitUntil(WaitConditions.visible(wde), timeoutMs);
+	}
+
+	/**
+	 * Provides a simple method to wait for visible as it is often used
+	 * @param wde
+	 * @return
+	 * @throws CandybeanException
+	 */
+	public WebDriverElement waitForVisible(WebDriverElement wde) throws CandybeanException {
+		return this.waitForVisible(wde, defaultTimeoutMs);
+	}
+}
@@ -0,0 +1,386 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import com.sugarcrm.candybean.automation.Candybean;
+import com.sugarcrm.candybean.exceptions.CandybeanException;
+
+/**
+ * Keeps started WebDriver sessions warm so that they can be leased by one test class after
+ * another instead of launching a new browser for each.
+ * 
+ * Sessions are keyed by the configuration their {@link Factory} describes, and sessions
+ * bound to the thread that started them are also keyed by that thread; those left idle by a
+ * thread that has ended are quit.  Between leases a session is reset (cookies, local and
+ * session storage, extra windows, frames, and the page are cleared) and checked for health
+ * before it is handed out again.  Sessions that fail either step, or that reach the maximum
+ * number of uses, are quit.  When the pool holds its maximum of idle sessions, the one idle
+ * longest is quit to make room.  Idle sessions are quit when the JVM exits.
+ * 
+ * The pool is configured with:
+ * <ul>
+ * 	<li><b>webdriver.pool.maxUses</b>: leases before a session is replaced (default 20)</li>
+ * 	<li><b>webdriver.pool.maxIdle</b>: idle sessions kept per key (default parallel.threads)</li>
+ * 	<li><b>webdriver.pool.maxIdleTotal</b>: idle sessions kept across all keys (default
+ * 	parallel.threads)</li>
+ * </ul>
+ */
+public class WebDriverPool {
+
+	/**
+	 * Creates the unstarted interfaces that new pooled sessions are started from.
+	 */
+	public interface Factory {
+		/**
+		 * @return Identifies the sessions this factory creates; factories with equal keys
+		 * must create interchangeable sessions
+		 */
+		String getKey();
+
+		/**
+		 * @return Whether the sessions created may only be used by the thread that started
+		 * them, e.g. drivers wrapped in a ThreadGuard
+		 */
+		boolean isThreadBound();
+
+		WebDriverInterface create() throws CandybeanException;
+	}
+
+	/*
+	 * A started session and its bookkeeping
+	 */
+	private static class Session {
+		private final String key;
+		private final WebDriverInterface iface;
+
+		/*
+		 * The thread a thread-bound session was started by, otherwise null
+		 */
+		private final Thread owner;
+		private int uses = 0;
+		private long idleSince;
+
+		private Session(String key, WebDriverInterface iface, Thread owner) {
+			this.key = key;
+			this.iface = iface;
+			this.owner = owner;
+		}
+	}
+
+	private static WebDriverPool instance;
+
+	private final Logger logger = Logger.getLogger(Candybean.class.getSimpleName());
+	private final int maxUses;
+	private final int maxIdle;
+	private final int maxIdleTotal;
+	private final Map<String, Deque<Session>> idle = new HashMap<String, Deque<Session>>();
+	private final Map<WebDriverInterface, Session> leased = new IdentityHashMap<WebDriverInterface, Session>();
+	private int idleCount = 0;
+	private long releases = 0;
+
+	/**
+	 * @param maxUses The number of leases after which a session is quit
+	 * @param maxIdle The number of idle sessions kept per key
+	 * @param maxIdleTotal The number of idle sessions kept across all keys
+	 */
+	public WebDriverPool(int maxUses, int maxIdle, int maxIdleTotal) {
+		this.maxUses = Math.max(1, maxUses);
+		this.maxIdle = Math.max(0, maxIdle);
+		this.maxIdleTotal = Math.max(0, maxIdleTotal);
+	}
+
+	/**
+	 * @return The pool shared by all interfaces built in this JVM
+	 * @throws CandybeanException if candybean cannot be instantiated
+	 */
+	public static synchronized WebDriverPool getInstance() throws CandybeanException {
+		if (instance == null) {
+			Candybean candybean = Candybean.getInstance();
+			String threads = candybean.config.getValue("parallel.threads", "4");
+			int maxUses = Integer.parseInt(candybean.config.getValue("webdriver.pool.maxUses", "20"));
+			int maxIdle = Integer.parseInt(candybean.config.getValue("webdriver.pool.maxIdle", threads));
+			int maxIdleTotal = Integer.parseInt(candybean.config.getValue("webdriver.pool.maxIdleTotal", threads));
+			instance = new WebDriverPool(maxUses, maxIdle, maxIdleTotal);
+			final WebDriverPool pool = instance;
+			Runtime.getRuntime().addShutdownHook(new Thread("webdriver-pool-shutdown") {
+				@Override
+				public void run() {
+					pool.shutdown();
+				}
+			});
+		}
+		return instance;
+	}
+
+	/**
+	 * Leases a started session matching the key of the given factory.  A healthy idle
+	 * session with the same key is preferred; otherwise a new interface is created and
+	 * started.
+	 * 
+	 * @param factory Describes the session wanted, and creates it if none is idle
+	 * @return A started interface whose session is leased to the caller
+	 * @throws CandybeanException if a new session cannot be started
+	 */
+	public WebDriverInterface lease(Factory factory) throws CandybeanException {
+		Thread owner = factory.isThreadBound() ? Thread.currentThread() : null;
+		String key = owner == null ? factory.getKey() : factory.getKey() + "/thread-" + owner.getId();
+		for (Session orphan : pollOrphans()) {
+			logger.info("Evicting pooled " + orphan.iface.getType() + " session left by an ended thread");
+			quit(orphan);
+		}
+		Session session;
+		while ((session = pollIdle(key)) != null) {
+			if (isHealthy(session.iface.wd)) {
+				logger.info("Reusing pooled " + session.iface.getType() + " session (use " + (session.uses + 1) + " of " + maxUses + ")");
+				break;
+			}
+			logger.info("Evicting unhealthy pooled " + session.iface.getType() + " session");
+			quit(session);
+		}
+		if (session == null) {
+			WebDriverInterface iface = factory.create();
+			iface.start();
+			session = new Session(key, iface, owner);
+		}
+		session.uses++;
+		synchronized (this) {
+			leased.put(session.iface, session);
+		}
+		return session.iface;
+	}
+
+	/**
+	 * Returns a leased session to the pool.  The session is reset and kept warm unless it
+	 * has reached its maximum uses, the pool is full, or the reset fails.
+	 * 
+	 * @param iface An interface returned by {@link #lease}
+	 */
+	public void release(WebDriverInterface iface) {
+		Session session;
+		synchronized (this) {
+			session = leased.remove(iface);
+		}
+		if (session == null) {
+			return;
+		}
+		if (session.uses >= maxUses) {
+			logger.info("Retiring pooled " + iface.getType() + " session after " + session.uses + " uses");
+			quit(session);
+		} else if (!reset(iface.wd)) {
+			logger.info("Evicting pooled " + iface.getType() + " session that could not be reset");
+			quit(session);
+		} else {
+			for (Session displaced : offerIdle(session)) {
+				quit(displaced);
+			}
+		}
+	}
+
+	/**
+	 * Quits a leased session instead of returning it to the pool, e.g. after it failed.
+	 * 
+	 * @param iface An interface returned by {@link #lease}
+	 */
+	public void evict(WebDriverInterface iface) {
+		Session session;
+		synchronized (this) {
+			session = leased.remove(iface);
+		}
+		if (session != null) {
+			quit(session);
+		}
+	}
+
+	/**
+	 * @return The number of idle sessions across all keys
+	 */
+	public synchronized int getIdleCount() {
+		return idleCount;
+	}
+
+	/**
+	 * Quits every idle session.  Leased sessions are quit when released.
+	 */
+	public void shutdown() {
+		List<Session> sessions = new ArrayList<Session>();
+		synchronized (this) {
+			for (Deque<Session> deque : idle.values()) {
+				sessions.addAll(deque);
+			}
+			idle.clear();
+			idleCount = 0;
+		}
+		for (Session session : sessions) {
+			quit(session);
+		}
+	}
+
+	private synchronized Session pollIdle(String key) {
+		Deque<Session> sessions = idle.get(key);
+		Session session = sessions == null ? null : sessions.pollFirst();
+		if (session != null) {
+			removed(key, sessions);
+		}
+		return session;
+	}
+
+	/*
+	 * Adds a released session to the idle sessions, returning the sessions that must be quit:
+	 * the session itself if its key already holds the maximum, or the session idle longest
+	 * if the pool does
+	 */
+	private synchronized List<Session> offerIdle(Session session) {
+		List<Session> displaced = new ArrayList<Session>();
+		Deque<Session> sessions = idle.get(session.key);
+		if (maxIdleTotal == 0 || (sessions != null && sessions.size() >= maxIdle)) {
+			displaced.add(session);
+			return displaced;
+		}
+		if (idleCount >= maxIdleTotal) {
+			displaced.add(pollLongestIdle());
+			sessions = idle.get(session.key);
+		}
+		if (sessions == null) {
+			sessions = new ArrayDeque<Session>();
+			idle.put(session.key, sessions);
+		}
+		// Most recently used first, so the warmest session is leased next
+		session.idleSince = ++releases;
+		sessions.addFirst(session);
+		idleCount++;
+		return displaced;
+	}
+
+	/*
+	 * Removes the idle session released earliest; the last of each key is its oldest
+	 */
+	private Session pollLongestIdle() {
+		Deque<Session> oldest = null;
+		String oldestKey = null;
+		for (Map.Entry<String, Deque<Session>> entry : idle.entrySet()) {
+			Deque<Session> sessions = entry.getValue();
+			if (oldest == null || sessions.peekLast().idleSince < oldest.peekLast().idleSince) {
+				oldest = sessions;
+				oldestKey = entry.getKey();
+			}
+		}
+		Session session = oldest.pollLast();
+		removed(oldestKey, oldest);
+		return session;
+	}
+
+	/*
+	 * Removes the idle sessions whose owning thread has ended, which no thread can use
+	 */
+	private synchronized List<Session> pollOrphans() {
+		List<Session> orphans = new ArrayList<Session>();
+		Iterator<Deque<Session>> deques = idle.values().iterator();
+		while (deques.hasNext()) {
+			Deque<Session> sessions = deques.next();
+			Iterator<Session> each = sessions.iterator();
+			while (each.hasNext()) {
+				Session session = each.next();
+				if (session.owner != null && !session.owner.isAlive()) {
+					each.remove();
+					idleCount--;
+					orphans.add(session);
+				}
+			}
+			if (sessions.isEmpty()) {
+				deques.remove();
+			}
+		}
+		return orphans;
+	}
+
+	/*
+	 * Accounts for a session taken from the idle sessions of the given key
+	 */
+	private void removed(String key, Deque<Session> sessions) {
+		idleCount--;
+		if (sessions.isEmpty()) {
+			idle.remove(key);
+		}
+	}
+
+	/*
+	 * A session is healthy if it still answers with its window handle
+	 */
+	private static boolean isHealthy(WebDriver wd) {
+		try {
+			return wd != null && wd.getWindowHandle() != null;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	/*
+	 * Clears the state a test may have left in the browser, returning false if it fails
+	 */
+	private boolean reset(WebDriver wd) {
+		try {
+			Iterator<String> handles = wd.getWindowHandles().iterator();
+			String main = handles.next();
+			while (handles.hasNext()) {
+				wd.switchTo().window(handles.next());
+				wd.close();
+			}
+			wd.switchTo().window(main);
+			wd.switchTo().defaultContent();
+			wd.manage().deleteAllCookies();
+			if (wd instanceof JavascriptExecutor) {
+				try {
+					((JavascriptExecutor) wd).executeScript("try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+				} catch (RuntimeException e) {
+					// Storage is unavailable on some pages and platforms
+					logger.fine("Unable to clear web storage: " + e.getMessage());
+				}
+			}
+			wd.get("about:blank");
+			return true;
+		} catch (RuntimeException e) {
+			logger.warning("Unable to reset pooled session: " + e.getMessage());
+			return false;
+		}
+	}
+
+	private void quit(Session session) {
+		try {
+			session.iface.stop();
+		} catch (Exception e) {
+			logger.warning("Unable to quit pooled " + session.iface.getType() + " session: " + e.getMessage());
+		}
+	}
+}
@@ -22,15 +22,14 @@
 package com.sugarcrm.candybean.configuration;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.Enumeration;
-import org.json.simple.JSONObject;
-
-import java.util.Map;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import com.sugarcrm.candybean.utilities.Utils;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 /**
  * Configuration is an object that represents a set of key-value pairs.
@@ -39,6 +38,9 @@ import org.json.simple.parser.ParseException;
  * return the system defined environment variable for the key. If it is not defined,
  * configuration will return the value defined in the properties file, and finally return
  * a default value if it not found using the first two methods.
+ *
+ * A configuration loaded from a file can watch it, see {@link #watch()}, and is then
+ * reloaded whenever the file is written, notifying its {@link ConfigurationListener}s.
  */
 public class Configuration {
 
@@ -48,15 +50,35 @@ public class Configuration {
     public final File configFile;
 	
     /**
-     * The .properties file associated with this object.
+     * The .properties file associated with this object; replaced as a whole on reload.
      */
-    private Properties properties;
+    private volatile Properties properties;
 
     /**
      * A private logger for this object.
      */
     private Logger logger;
 
+    /**
+     * Counts changes to the properties, so that a snapshot of older properties is not reused.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The latest snapshot taken, see {@link #snapshot()}.
+     */
+    private volatile ConfigurationSnapshot snapshot;
+
+    /**
+     * Notified when this configuration is reloaded with different values.
+     */
+    private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<ConfigurationListener>();
+
+    /**
+     * Watches the config file while {@link #watch()} is in effect.
+     */
+    private ConfigurationWatcher watcher;
+
     /**
      * A Configuration object with no physical file path given. The properties initialized
      * with the default properties.
@@ -113,7 +135,142 @@ public class Configuration {
      */
     public Object setValue(String key, String value) {
         logger.info("Set key value property: {" + key + ", " + value + "}");
-        return properties.setProperty(key, value);
+        Object previous = properties.setProperty(key, value);
+        version.incrementAndGet();
+        return previous;
+    }
+
+    /**
+     * Returns an immutable snapshot of this configuration, with values resolved and parsed
+     * once, for lock-free reads on hot paths.  The same snapshot is returned until this
+     * configuration changes; changes to system properties are not noticed.
+     *
+     * @return the snapshot of the current values
+     */
+    public ConfigurationSnapshot snapshot() {
+        ConfigurationSnapshot current = snapshot;
+        long currentVersion = version.get();
+        if (current == null || current.version != currentVersion) {
+            current = new ConfigurationSnapshot(properties, currentVersion);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Registers a listener notified when this configuration is reloaded with different values.
+     *
+     * @param listener
+     */
+    public void addListener(ConfigurationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener a listener registered with {@link #addListener(ConfigurationListener)}
+     */
+    public void removeListener(ConfigurationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching the config file in the background, reloading this configuration
+     * whenever the file is written.  Does nothing if the file is already being watched.
+     *
+     * @throws IOException if the file cannot be watched
+     * @throws IllegalStateException if this configuration has no config file
+     */
+    public synchronized void watch() throws IOException {
+        if (configFile == null) {
+            throw new IllegalStateException("There is no config file to watch.");
+        }
+        if (watcher == null) {
+            watcher = new ConfigurationWatcher(this, configFile);
+            watcher.start();
+            logger.info("Watching " + configFile.getAbsolutePath() + " for changes.");
+        }
+    }
+
+    /**
+     * Stops watching the config file, see {@link #watch()}.
+     */
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                logger.warning("Unable to stop watching " + configFile.getAbsolutePath() + ": " + e.getMessage());
+            }
+            watcher = null;
+        }
+    }
+
+    /**
+     * Rereads the config file and, if its values differ from the current ones, replaces
+     * them all at once, so that readers see either the old or the new values but never a
+     * mix, and then notifies the registered listeners.  Values set with
+     * {@link #setValue(String, String)} are replaced by those of the file.
+     *
+     * A file that changes while it is read, or that does not end with a complete line, is
+     * taken to be still being written and is not loaded.  Writers should therefore end the
+     * file with a line break, or better, write a temporary file and rename it over the
+     * config file, as the configuration server does.
+     *
+     * @return whether the values changed
+     * @throws IOException if the file cannot be read or is incomplete, in which case the
+     * current values are kept
+     * @throws IllegalStateException if this configuration has no config file
+     */
+    public synchronized boolean reload() throws IOException {
+        if (configFile == null) {
+            throw new IllegalStateException("There is no config file to reload.");
+        }
+        long length = configFile.length();
+        long modified = configFile.lastModified();
+        byte[] content = Files.readAllBytes(configFile.toPath());
+        if (content.length != length || configFile.length() != length || configFile.lastModified() != modified
+                || !endsWithCompleteLine(content)) {
+            throw new IOException(configFile.getAbsolutePath() + " is incomplete or still being written.");
+        }
+        Properties loaded = new Properties();
+        loaded.load(new ByteArrayInputStream(content));
+        resolvePlatformValues(loaded);
+        if (loaded.equals(properties)) {
+            return false;
+        }
+        ConfigurationSnapshot previous = snapshot();
+        properties = loaded;
+        ConfigurationSnapshot current = new ConfigurationSnapshot(loaded, version.incrementAndGet());
+        snapshot = current;
+        logger.info("Reloaded " + configFile.getAbsolutePath() + ".");
+        for (ConfigurationListener listener : listeners) {
+            try {
+                listener.configurationChanged(previous, current);
+            } catch (RuntimeException e) {
+                logger.warning("Configuration listener failed: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Whether the content ends with a line break that does not continue the last value
+     */
+    private static boolean endsWithCompleteLine(byte[] content) {
+        int end = content.length - 1;
+        if (end < 0 || (content[end] != '\n' && content[end] != '\r')) {
+            return false;
+        }
+        if (content[end] == '\n' && end > 0 && content[end - 1] == '\r') {
+            end--;
+        }
+        end--;
+        int backslashes = 0;
+        while (end >= 0 && content[end] == '\\') {
+            backslashes++;
+            end--;
+        }
+        return backslashes % 2 == 0;
     }
 
     /**
@@ -157,45 +314,35 @@ public class Configuration {
 
     private void load(InputStream in) throws IOException {
         this.properties.load(in);
+        resolvePlatformValues(properties);
+        version.incrementAndGet();
+    }
+
+    /*
+     * Replaces each value which is a JSON object of values per platform by the value for
+     * the current platform
+     */
+    private static void resolvePlatformValues(Properties properties) {
         String platform = Utils.getCurrentPlatform();
         Enumeration<?> e = properties.propertyNames();
         while (e.hasMoreElements()) {
             String key = (String) e.nextElement();
             String value = properties.getProperty(key);
-            JSONParser parser = new JSONParser();
-            String newValue;
-            try {
-                Object valueObject = parser.parse(value);
-                //get value for current platform key
-                if (valueObject instanceof Map) {
-                    JSONObject valueMap = (JSONObject) valueObject;
-                    newValue = (String) valueMap.get(platform);
-                } else {
-                    newValue = value;
-                }
-            } catch (ParseException pe) {
-                //parsedString is not a smartValue/json object.
-                newValue = value;
+            String newValue = PlatformValues.resolve(value, platform);
+            if (newValue != value) {
+                properties.setProperty(key, newValue);
             }
-            properties.setProperty(key, newValue);
         }
     }
     
+    /**
+     * @param props
+     * @param key
+     * @return the value of the key for the current platform if the value is a JSON object
+     *         of values per platform, or otherwise the value itself
+     */
     public static String getPlatformValue(Properties props, String key) {
-	    String platform = Utils.getCurrentPlatform();
-	    String valueStr = props.getProperty(key);
-        JSONParser parser = new JSONParser();
-        try {
-            Object valueObject = parser.parse(valueStr);
-            if (valueObject instanceof Map) {
-                JSONObject valueMap = (JSONObject) valueObject;
-                return (String) valueMap.get(platform);
-            } else {
-                return valueStr;
-            }
-        } catch (ParseException pe) {
-            return valueStr;
-        }
+        return PlatformValues.resolve(props.getProperty(key), Utils.getCurrentPlatform());
     }
 
     /**
@@ -266,5 +413,6 @@ public class Configuration {
     public void clear() {
         logger.warning("Clearing properties...");
         properties.clear();
+        version.incrementAndGet();
     }
 }
@@ -0,0 +1,267 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.configuration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sugarcrm.candybean.utilities.Utils;
+
+/**
+ * An immutable copy of the values of a {@link Configuration}, for reading configuration on
+ * hot paths.  Each value is resolved once, when the snapshot is taken: a system property
+ * of the same name still takes precedence over the properties, and numbers, booleans and
+ * durations are parsed up front, so that reads are plain lookups in an unchanging map,
+ * without locks.
+ * 
+ * Changes made after the snapshot was taken, including to system properties, are not
+ * seen; {@link Configuration#snapshot()} returns a new snapshot after its configuration
+ * changes.
+ */
+public final class ConfigurationSnapshot {
+
+	private static final Pattern DURATION = Pattern.compile("\\s*(\\d+)\\s*(ns|us|ms|s|m|h|d)\\s*");
+
+	private final Map<String, Entry> entries;
+	final long version;
+
+	/**
+	 * @param properties The properties of a configuration; system properties take
+	 *        precedence over them
+	 * @param version The version of the configuration the properties are from
+	 */
+	ConfigurationSnapshot(Properties properties, long version) {
+		this.version = version;
+		Map<String, Entry> resolved = new HashMap<String, Entry>();
+		for (String key : properties.stringPropertyNames()) {
+			resolved.put(key, new Entry(properties.getProperty(key)));
+		}
+		Properties system = System.getProperties();
+		for (String key : system.stringPropertyNames()) {
+			resolved.put(key, new Entry(system.getProperty(key)));
+		}
+		this.entries = Collections.unmodifiableMap(resolved);
+	}
+
+	/**
+	 * @param key
+	 * @return The value of the key, or null if it is not set
+	 */
+	public String getValue(String key) {
+		Entry entry = entries.get(key);
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * @param key
+	 * @param defaultValue
+	 * @return The value of the key, or the default value if it is not set
+	 */
+	public String getValue(String key, String defaultValue) {
+		Entry entry = entries.get(key);
+		return entry == null ? defaultValue : entry.value;
+	}
+
+	/**
+	 * @param key
+	 * @param defaultValue
+	 * @return The value of the key as a long, or the default value if it is not set
+	 * @throws NumberFormatException if the value is not a whole number
+	 */
+	public long getLong(String key, long defaultValue) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return defaultValue;
+		}
+		if (entry.longValue == null) {
+			throw new NumberFormatException(key + " is not a whole number: " + entry.value);
+		}
+		return entry.longValue;
+	}
+
+	/**
+	 * @param key
+	 * @param defaultValue
+	 * @return The value of the key as a double, or the default value if it is not set
+	 * @throws NumberFormatException if the value is not a number
+	 */
+	public double getDouble(String key, double defaultValue) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return defaultValue;
+		}
+		if (entry.doubleValue == null) {
+			throw new NumberFormatException(key + " is not a number: " + entry.value);
+		}
+		return entry.doubleValue;
+	}
+
+	/**
+	 * @param key
+	 * @param defaultValue
+	 * @return Whether the value of the key is "true", ignoring case, or the default value
+	 *         if it is not set
+	 */
+	public boolean getBoolean(String key, boolean defaultValue) {
+		Entry entry = entries.get(key);
+		return entry == null ? defaultValue : entry.booleanValue;
+	}
+
+	/**
+	 * Reads a duration, given either as a number in the given unit, or as a number
+	 * followed by one of the units ns, us, ms, s, m, h or d, e.g. "15" or "1500ms".
+	 * 
+	 * @param key
+	 * @param unit The unit of the value returned, and of values without a unit
+	 * @param defaultValue The duration, in the given unit, if the key is not set
+	 * @return The duration in the given unit
+	 * @throws NumberFormatException if the value is not a duration
+	 */
+	public long getDuration(String key, TimeUnit unit, long defaultValue) {
+		return getDuration(key, unit, unit, defaultValue);
+	}
+
+	/**
+	 * Reads a duration, given either as a number in the unit for bare numbers, or as a
+	 * number followed by one of the units ns, us, ms, s, m, h or d; e.g. with seconds for
+	 * bare numbers and milliseconds returned, "15" is 15000 and "1500ms" is 1500.
+	 * 
+	 * @param key
+	 * @param unit The unit of the value returned
+	 * @param bareUnit The unit of values without a unit
+	 * @param defaultValue The duration, in the unit returned, if the key is not set
+	 * @return The duration in the given unit
+	 * @throws NumberFormatException if the value is not a duration
+	 */
+	public long getDuration(String key, TimeUnit unit, TimeUnit bareUnit, long defaultValue) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return defaultValue;
+		}
+		if (entry.longValue != null) {
+			return unit.convert(entry.longValue, bareUnit);
+		}
+		if (entry.durationNanos == null) {
+			throw new NumberFormatException(key + " is not a duration: " + entry.value);
+		}
+		return unit.convert(entry.durationNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param key
+	 * @return The value of the key adjusted to a path of this platform, see
+	 *         {@link Utils#adjustPath(String)}, or null if it is not set
+	 */
+	public String getPath(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		// Adjusted on first use, since adjusting logs; racing readers compute the same path
+		String path = entry.path;
+		if (path == null) {
+			path = Utils.adjustPath(entry.value);
+			entry.path = path;
+		}
+		return path;
+	}
+
+	/**
+	 * @param key
+	 * @return Whether the key is set
+	 */
+	public boolean hasKey(String key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * @return The keys set, including those of system properties
+	 */
+	public Set<String> getKeys() {
+		return entries.keySet();
+	}
+
+	/*
+	 * A value and its parsed forms
+	 */
+	private static final class Entry {
+		private final String value;
+		private final Long longValue;
+		private final Double doubleValue;
+		private final boolean booleanValue;
+		private final Long durationNanos;
+		private String path;
+
+		private Entry(String value) {
+			this.value = value;
+			String trimmed = value.trim();
+			this.longValue = parseLong(trimmed);
+			this.doubleValue = longValue != null ? Double.valueOf(longValue) : parseDouble(trimmed);
+			this.booleanValue = Boolean.parseBoolean(trimmed);
+			this.durationNanos = parseDuration(trimmed);
+		}
+
+		private static Long parseLong(String value) {
+			try {
+				return Long.valueOf(value);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		private static Double parseDouble(String value) {
+			try {
+				return Double.valueOf(value);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		private static Long parseDuration(String value) {
+			Matcher matcher = DURATION.matcher(value);
+			if (!matcher.matches()) {
+				return null;
+			}
+			long amount;
+			try {
+				amount = Long.parseLong(matcher.group(1));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			String unit = matcher.group(2);
+			TimeUnit timeUnit = unit.equals("ns") ? TimeUnit.NANOSECONDS
+					: unit.equals("us") ? TimeUnit.MICROSECONDS
+					: unit.equals("ms") ? TimeUnit.MILLISECONDS
+					: unit.equals("s") ? TimeUnit.SECONDS
+					: unit.equals("m") ? TimeUnit.MINUTES
+					: unit.equals("h") ? TimeUnit.HOURS
+					: TimeUnit.DAYS;
+			return timeUnit.toNanos(amount);
+		}
+	}
+}
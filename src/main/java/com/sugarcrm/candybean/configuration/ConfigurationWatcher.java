@@ -0,0 +1,126 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.configuration;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Reloads a {@link Configuration} on a daemon thread whenever its file is written.  Since
+ * a file is often rewritten in several steps (the configuration server deletes, creates
+ * and then writes it), the watcher waits until no more changes come in for a moment
+ * before reloading.
+ */
+final class ConfigurationWatcher implements Closeable {
+
+	/*
+	 * How long the file must be left alone before it is reloaded
+	 */
+	private static final long SETTLE_MS = 100;
+
+	private final Logger logger = Logger.getLogger(ConfigurationWatcher.class.getSimpleName());
+	private final Configuration config;
+	private final Path file;
+	private final WatchService watchService;
+	private final Thread thread;
+
+	/**
+	 * @param config The configuration to reload
+	 * @param file The file the configuration was loaded from
+	 * @throws IOException if the directory of the file cannot be watched
+	 */
+	ConfigurationWatcher(Configuration config, File file) throws IOException {
+		this.config = config;
+		this.file = file.getAbsoluteFile().toPath();
+		Path dir = this.file.getParent();
+		this.watchService = dir.getFileSystem().newWatchService();
+		dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "candybean-config-watcher");
+		this.thread.setDaemon(true);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	/**
+	 * Stops watching the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				if (!changed(watchService.take())) {
+					continue;
+				}
+				WatchKey key;
+				while ((key = watchService.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+					changed(key);
+				}
+				try {
+					config.reload();
+				} catch (IOException e) {
+					logger.warning("Unable to reload " + file + ", keeping the current configuration: " + e.getMessage());
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// Closed
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * Whether the events of the key concern the watched file; resets the key
+	 */
+	private boolean changed(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW || file.getFileName().equals(event.context())) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+}
@@ -0,0 +1,253 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.configuration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Resolves configuration values which hold a value per platform, written as a JSON object
+ * such as {"linux": "/usr/bin/firefox", "mac": "/Applications/Firefox.app"}, to the value
+ * for a platform.  Any other value resolves to itself.
+ * 
+ * Values are recognized by their first character, so that plain values cost a single
+ * check, and objects of string values are read in one pass without building a JSON tree.
+ * Other JSON is left to the JSON parser.  Resolved objects are cached, since the same
+ * values are resolved again whenever a configuration or hook file is loaded.
+ */
+final class PlatformValues {
+
+	/*
+	 * The cache is emptied when it grows to this many values
+	 */
+	private static final int CACHE_SIZE = 4096;
+
+	private static final Map<String, Resolved> cache = new ConcurrentHashMap<String, Resolved>();
+
+	private PlatformValues() {
+	}
+
+	/**
+	 * @param value A configuration value, possibly null
+	 * @param platform The platform, see {@link com.sugarcrm.candybean.utilities.Utils#getCurrentPlatform()}
+	 * @return The value for the platform if the value is a JSON object, which is null if
+	 *         the object has no such value, or otherwise the value itself
+	 */
+	static String resolve(String value, String platform) {
+		if (value == null || !isObject(value)) {
+			return value;
+		}
+		Resolved resolved = cache.get(value);
+		if (resolved == null || !resolved.platform.equals(platform)) {
+			resolved = new Resolved(platform, parse(value, platform));
+			if (cache.size() >= CACHE_SIZE) {
+				cache.clear();
+			}
+			cache.put(value, resolved);
+		}
+		return resolved.value;
+	}
+
+	/**
+	 * Empties the cache of resolved values.
+	 */
+	static void clearCache() {
+		cache.clear();
+	}
+
+	private static boolean isObject(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (!isWhitespace(c)) {
+				return c == '{';
+			}
+		}
+		return false;
+	}
+
+	private static String parse(String value, String platform) {
+		try {
+			return new Scanner(value).platformValue(platform);
+		} catch (NotScannable e) {
+			return parseJson(value, platform);
+		}
+	}
+
+	/*
+	 * Resolves JSON the scanner does not read, such as objects with values other than
+	 * strings, or malformed JSON, which resolves to itself
+	 */
+	private static String parseJson(String value, String platform) {
+		try {
+			Object valueObject = new JSONParser().parse(value);
+			if (valueObject instanceof Map) {
+				return (String) ((JSONObject) valueObject).get(platform);
+			}
+			return value;
+		} catch (ParseException e) {
+			return value;
+		}
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+	}
+
+	/*
+	 * Thrown by the scanner at JSON it does not read; without a stack trace, since it only
+	 * hands the value over to the JSON parser
+	 */
+	private static final class NotScannable extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		private NotScannable() {
+			super(null, null, false, false);
+		}
+	}
+
+	/*
+	 * Reads a JSON object of string values, throwing NotScannable at anything else
+	 */
+	private static final class Scanner {
+		private final String text;
+		private int pos;
+
+		private Scanner(String text) {
+			this.text = text;
+		}
+
+		private String platformValue(String platform) throws NotScannable {
+			String platformValue = null;
+			expect('{');
+			if (peek() == '}') {
+				pos++;
+			} else {
+				while (true) {
+					String key = string();
+					expect(':');
+					String value = string();
+					if (key.equals(platform)) {
+						platformValue = value;
+					}
+					char c = next();
+					if (c == '}') {
+						break;
+					} else if (c != ',') {
+						throw new NotScannable();
+					}
+				}
+			}
+			if (peek() != 0) {
+				throw new NotScannable();
+			}
+			return platformValue;
+		}
+
+		private String string() throws NotScannable {
+			expect('"');
+			int start = pos;
+			StringBuilder unescaped = null;
+			while (pos < text.length()) {
+				char c = text.charAt(pos++);
+				if (c == '"') {
+					return unescaped == null ? text.substring(start, pos - 1) : unescaped.toString();
+				} else if (c == '\\') {
+					if (unescaped == null) {
+						unescaped = new StringBuilder(text.substring(start, pos - 1));
+					}
+					unescaped.append(escaped());
+				} else if (c < ' ') {
+					throw new NotScannable();
+				} else if (unescaped != null) {
+					unescaped.append(c);
+				}
+			}
+			throw new NotScannable();
+		}
+
+		private char escaped() throws NotScannable {
+			if (pos >= text.length()) {
+				throw new NotScannable();
+			}
+			char c = text.charAt(pos++);
+			switch (c) {
+			case '"': return '"';
+			case '\\': return '\\';
+			case '/': return '/';
+			case 'b': return '\b';
+			case 'f': return '\f';
+			case 'n': return '\n';
+			case 'r': return '\r';
+			case 't': return '\t';
+			case 'u':
+				if (pos + 4 > text.length()) {
+					throw new NotScannable();
+				}
+				try {
+					char unicode = (char) Integer.parseInt(text.substring(pos, pos + 4), 16);
+					pos += 4;
+					return unicode;
+				} catch (NumberFormatException e) {
+					throw new NotScannable();
+				}
+			default:
+				throw new NotScannable();
+			}
+		}
+
+		private void expect(char expected) throws NotScannable {
+			if (next() != expected) {
+				throw new NotScannable();
+			}
+		}
+
+		/*
+		 * The next character which is not whitespace, or 0 at the end
+		 */
+		private char next() {
+			char c = peek();
+			pos++;
+			return c;
+		}
+
+		private char peek() {
+			while (pos < text.length() && isWhitespace(text.charAt(pos))) {
+				pos++;
+			}
+			return pos < text.length() ? text.charAt(pos) : 0;
+		}
+	}
+
+	private static final class Resolved {
+		private final String platform;
+		private final String value;
+
+		private Resolved(String platform, String value) {
+			this.platform = platform;
+			this.value = value;
+		}
+	}
+}
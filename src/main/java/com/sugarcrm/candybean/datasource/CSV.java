@@ -33,6 +33,9 @@ import au.com.bytecode.opencsv.CSVParser;
 /**
  * CSV class parses an input csv file. 
  * 
+ * The whole file is read into memory; use {@link CsvStream} to iterate the records of large
+ * files instead.
+ * 
  * @author Trampus
  * @author Jon duSaint
  */
@@ -67,7 +70,7 @@ public class CSV extends DataSource {
 	}
 
 	/**
-	 * Read the CSV file and process the file into an array of hashes.
+	 * Read the CSV file and process the file into columns, one FieldSet view per line.
 	 * 
 	 * @param br
 	 *            BufferedReader for the CSV file with line 1 consumed
@@ -75,10 +78,12 @@ public class CSV extends DataSource {
 	private void createData(BufferedReader br) {
 		String line = "";
 		String[] linedata;
+		ColumnarDataSource data = new ColumnarDataSource(this.keys);
+		data.setFilename(this.getFilename());
+		setData(data);
 
 		try {
 			while ((line = br.readLine()) != null) {
-				line = line.replaceAll("\\n", "");
 				
 				if (line.isEmpty()) {
 					continue;
@@ -86,18 +91,10 @@ public class CSV extends DataSource {
 
 				linedata = this.parser.parseLine(line);
 				
-				int linelen = linedata.length - 1;
-				FieldSet tmphash = new FieldSet();
-				for (int i = 0; i <= this.keys.size() - 1; i++) {
-					if (i <= linelen) {
-						// do not remove leading and trailing spaces: CB-18
-						tmphash.put(this.keys.get(i), linedata[i]);  
-					} else {
-						tmphash.put(this.keys.get(i), "");
-					}
-				}
-				this.getData().add(tmphash);
+				// do not remove leading and trailing spaces: CB-18
+				data.addRow(linedata);
 			}
+			data.trimToSize();
 		} catch (Exception exp) {
 			log.severe(exp.getMessage());
 		}
@@ -117,7 +114,6 @@ public class CSV extends DataSource {
 			keys = new ArrayList<String>();
 
 			while ((line = br.readLine()) != null) {
-				line = line.replaceAll("\\n", "");
 				if (line.isEmpty()) {
 					continue;
 				} else {
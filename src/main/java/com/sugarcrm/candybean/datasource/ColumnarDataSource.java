@@ -0,0 +1,179 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ColumnarDataSource stores its records by column rather than as one map per record.  The
+ * column names are held once, each column is an array of values, and repeated values of a
+ * column share a single String.  The records of the list are {@link FieldSet} views of
+ * their row, which cost a few bytes each; a record that is changed copies its row first.
+ * 
+ * Repeated values are detected per column until the first {@value #POOL_SAMPLE} rows show
+ * that most of a column's values are distinct, e.g. for identifiers, at which point the
+ * column stops pooling its values.
+ */
+public class ColumnarDataSource extends DataSource implements Table {
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * The number of rows after which columns of mostly distinct values stop pooling
+	 */
+	private static final int POOL_SAMPLE = 1024;
+
+	private final String[] keys;
+	private final int[] sources;
+	private final Map<String, Integer> columnIndex;
+	private String[][] columns;
+	private int rows = 0;
+	private int capacity = 16;
+	private transient List<Map<String, String>> pools;
+
+	/**
+	 * @param keys The column names, in order.  Like the keys of a map, a repeated name is
+	 * a single column, whose value is that of its last occurrence in a row.
+	 */
+	public ColumnarDataSource(List<String> keys) {
+		super();
+		Map<String, Integer> index = new HashMap<String, Integer>();
+		List<String> distinct = new ArrayList<String>();
+		List<Integer> last = new ArrayList<Integer>();
+		for (int i = 0; i < keys.size(); i++) {
+			Integer column = index.get(keys.get(i));
+			if (column == null) {
+				index.put(keys.get(i), distinct.size());
+				distinct.add(keys.get(i));
+				last.add(i);
+			} else {
+				last.set(column, i);
+			}
+		}
+		this.keys = distinct.toArray(new String[distinct.size()]);
+		this.sources = new int[this.keys.length];
+		for (int c = 0; c < sources.length; c++) {
+			sources[c] = last.get(c);
+		}
+		this.columnIndex = index;
+		this.columns = new String[this.keys.length][capacity];
+		this.pools = new ArrayList<Map<String, String>>();
+		for (int i = 0; i < this.keys.length; i++) {
+			pools.add(new HashMap<String, String>());
+		}
+	}
+
+	/**
+	 * Appends a row and adds its record to this data source.  Values missing from the end
+	 * of the row are empty, and values beyond the last key are ignored.
+	 * 
+	 * @param values The values of the row, in the order of the keys given on creation
+	 * @return The record of the row
+	 */
+	public FieldSet addRow(String[] values) {
+		if (rows == capacity) {
+			grow(capacity * 2);
+		}
+		for (int c = 0; c < keys.length; c++) {
+			int source = sources[c];
+			columns[c][rows] = pool(c, source < values.length ? values[source] : "");
+		}
+		FieldSet record = new FieldSet(this, rows++);
+		add(record);
+		return record;
+	}
+
+	private void grow(int newCapacity) {
+		for (int c = 0; c < columns.length; c++) {
+			columns[c] = Arrays.copyOf(columns[c], newCapacity);
+		}
+		capacity = newCapacity;
+	}
+
+	private String pool(int column, String value) {
+		if (pools == null || value == null) {
+			return value;
+		}
+		Map<String, String> pool = pools.get(column);
+		if (pool == null) {
+			return value;
+		}
+		String pooled = pool.get(value);
+		if (pooled == null) {
+			pool.put(value, value);
+			pooled = value;
+		}
+		if (rows == POOL_SAMPLE && pool.size() > POOL_SAMPLE / 2) {
+			pools.set(column, null);
+		}
+		return pooled;
+	}
+
+	/**
+	 * @return The distinct column names, in order
+	 */
+	public List<String> getKeys() {
+		return Collections.unmodifiableList(Arrays.asList(keys));
+	}
+
+	/**
+	 * @return The number of rows stored, whether or not their records are still listed
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Releases the pools of repeated values, once no more rows will be added.  Rows added
+	 * afterwards are stored without pooling.
+	 */
+	public void trimToSize() {
+		super.trimToSize();
+		pools = null;
+		grow(Math.max(rows, 1));
+	}
+
+	@Override
+	public int getColumn(Object key) {
+		Integer column = columnIndex.get(key);
+		return column == null ? -1 : column.intValue();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return keys.length;
+	}
+
+	@Override
+	public String getKey(int column) {
+		return keys[column];
+	}
+
+	@Override
+	public String getValue(int row, int column) {
+		return columns[column][row];
+	}
+}
@@ -22,12 +22,22 @@
 package com.sugarcrm.candybean.datasource;
 
 import java.io.File;
+import java.io.IOException;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 
@@ -42,6 +52,14 @@ public class CsvDataAdapter extends DataAdapter {
 	
 	private static Logger log = Logger.getLogger(CsvDataAdapter.class.getSimpleName());
 
+	/*
+	 * Parses files for every adapter; created by the first adapter to load files in
+	 * parallel, with the number of threads it is configured with
+	 */
+	private static ExecutorService loadExecutor;
+
+	private final Map<String, Long> loadTimes = new ConcurrentHashMap<String, Long>();
+
 	public CsvDataAdapter(Configuration config) {
 		super(config);
 	}
@@ -55,72 +73,157 @@ public class CsvDataAdapter extends DataAdapter {
 	 */
 	public HashMap<String, DataSource> getData(String testData) {
 
-		List<File> csvFileList = getCsvFileList(testData);
+		List<File> csvFileList = getCsvFileList(testData, DataAdapter.Selection.ALL);
 		HashMap<String, DataSource> dataSourceHashMap = convertIt(csvFileList);
 
 		return dataSourceHashMap;
 	}
 
-	public Map<String, DataSource> getData(String testData, DataAdapter.Selection select) {
-		// determines whether to select all the files based on file pattern
-		selection = select;  
+	/**
+	 * Reads a single csv file from the DataSourceCache, parsing it on a miss
+	 * 
+	 * @param f
+	 *            : File, the csv file
+	 * @return dataSource : DataSource
+	 */
+	protected DataSource load(File f) {
+		return DataSourceCache.getInstance().get(f, new DataSourceCache.Loader() {
+			@Override
+			public DataSource load(File file) {
+				return parse(file);
+			}
+		});
+	}
 
-		
-		List<File> csvFileList = getCsvFileList(testData);
-		Map<String, DataSource> dataSourceHashMap = convertIt(csvFileList);
+	/*
+	 * Parses a single csv file, recording how long it took
+	 */
+	private DataSource parse(File f) {
+		long start = System.nanoTime();
+		// CSV parses CSV file. It inherits from DataSource
+		CSV csv = new CSV(f.getAbsolutePath());
+		DataSource ds = csv.getDataSource();
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		loadTimes.put(f.getAbsolutePath(), elapsedMs);
+		log.fine("Loaded " + ds.size() + " rows from " + f.getAbsolutePath() + " in " + elapsedMs + " ms");
+		return ds;
+	}
 
-		return dataSourceHashMap;
+	private int getLoadThreads() {
+		String threads = configuration == null ? null
+				: configuration.getValue("datasource.load.threads");
+		if (threads == null) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		try {
+			return Math.max(1, Integer.parseInt(threads.trim()));
+		} catch (NumberFormatException e) {
+			log.warning("Invalid datasource.load.threads: " + threads + "; loading files one at a time.");
+			return 1;
+		}
 	}
 
 	/**
-	 * getCsvFileList returns a list of File object based on an input pattern
+	 * getLoadTimes returns how long it took to parse each csv file loaded by
+	 * this adapter
 	 * 
-	 * @param testData
-	 *            : String
-	 * @return fileList : List<File>
+	 * @return loadTimes : Map<String, Long>, milliseconds by absolute file path
 	 */
-	private static List<File> getCsvFileList(String dataPath) {
-
-		File dataFileAbsolute = getDataFullPath(dataPath);
-
-		String dataFilename = dataFileAbsolute.getName();
-		String dataParent = dataFileAbsolute.getParent();
-
-		File[] files = getAllFilesBasedOnPattern(dataParent, dataFilename,
-				"csv");
-
-		List<File> fileList = new ArrayList<File>(Arrays.asList(files));
-
-		return fileList;
+	public Map<String, Long> getLoadTimes() {
+		return Collections.unmodifiableMap(loadTimes);
 	}
 
-	private static String getDataBaseDirFromProp(Configuration config, String property) {
-
-		String currDir = System.getProperty("user.dir");
-		String csvBaseDir = config.getValue(property, "/home/testData");
-		String fileFullPath = currDir + File.separator + csvBaseDir;
+	public Map<String, DataSource> getData(String testData, DataAdapter.Selection select) {
+		// select determines whether to select all the files based on file pattern
+		List<File> csvFileList = getCsvFileList(testData, select);
+		Map<String, DataSource> dataSourceHashMap = convertIt(csvFileList);
 
-		return fileFullPath; // returning just filePath also works
+		return dataSourceHashMap;
 	}
 
-	private static File getDataFullPath(String dataPath) {
-		String dataBaseDir = getDataBaseDirFromProp(DataAdapter.configuration, DataAdapter.dataBasePath);
-		String dataFullPath = dataBaseDir + File.separator + dataPath;
+	/**
+	 * getDataStream is used by client (end user) to iterate the records of a
+	 * single csv file lazily, for files too large to be read into a DataSource
+	 * 
+	 * @param testData
+	 *            : String, the name of the file without its extension
+	 * @return csvStream : CsvStream, which the client closes
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public CsvStream getDataStream(String testData) throws IOException {
+		File csvFile = new File(getDataFullPath(testData).getPath() + ".csv");
+		return new CsvStream(csvFile);
+	}
 
-		File dataFile = new File(dataFullPath);
-		File dataFileAbsolute = null;
+	/**
+	 * getSample selects a sample of the records of a single csv file while
+	 * streaming it, so that the file is never loaded whole
+	 * 
+	 * @param testData
+	 *            : String, the name of the file without its extension
+	 * @param sample
+	 *            : Sample, the records to select
+	 * @return dataSource : DataSource, empty if there is no such file
+	 */
+	@Override
+	public DataSource getSample(String testData, Sample sample) {
+		File csvFile = new File(getDataFullPath(testData).getPath() + ".csv");
+		if (!csvFile.isFile()) {
+			log.warning("No data file " + csvFile.getAbsolutePath() + " to sample.");
+			return new DataSource();
+		}
 		try {
-			dataFileAbsolute = dataFile.getAbsoluteFile();
-		} catch (Exception e) {
-			log.info(e.getMessage());
+			CsvStream stream = new CsvStream(csvFile);
+			try {
+				return sample.apply(stream);
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to sample " + csvFile.getAbsolutePath(), e);
 		}
+	}
 
-		return dataFileAbsolute;
+	/**
+	 * getCsvFileList returns a list of File object based on an input pattern
+	 * 
+	 * @param testData
+	 *            : String
+	 * @return fileList : List<File>
+	 */
+	private List<File> getCsvFileList(String dataPath, DataAdapter.Selection select) {
+		return getFileList(dataPath, "csv", select);
+	}
+
+	/**
+	 * @param threads The number of threads to create the executor with, if it
+	 *            does not exist yet
+	 * @return The executor shared by all adapters to parse files; its threads
+	 *         are daemons, so it is never shut down
+	 */
+	private static synchronized ExecutorService getLoadExecutor(int threads) {
+		if (loadExecutor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			loadExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "candybean-csv-load-" + count.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return loadExecutor;
 	}
 
 	/**
 	 * convertIt converts the input list of File objects into a list of
-	 * DataSource
+	 * DataSource. Files are parsed in parallel by up to
+	 * datasource.load.threads threads, by default one per processor, on a
+	 * pool shared by all adapters and sized by the first to use it, and the
+	 * time taken to parse each is kept in {@link #getLoadTimes()}. Files
+	 * already parsed by this JVM are read from the {@link DataSourceCache}.
 	 * 
 	 * @param csvFileList
 	 *            : List<File>
@@ -129,16 +232,39 @@ public class CsvDataAdapter extends DataAdapter {
 	private HashMap<String, DataSource> convertIt(List<File> csvFileList) {
 
 		HashMap<String, DataSource> dataSourceHashMap = new HashMap<String, DataSource>();
+		List<Callable<DataSource>> loads = new ArrayList<Callable<DataSource>>();
+		for (final File f : csvFileList) {
+			loads.add(new Callable<DataSource>() {
+				@Override
+				public DataSource call() {
+					return load(f);
+				}
+			});
+		}
+
+		int loadThreads = getLoadThreads();
+		int threads = Math.min(loadThreads, loads.size());
+		List<DataSource> dataSources = new ArrayList<DataSource>();
+		if (threads <= 1) {
+			for (File f : csvFileList) {
+				dataSources.add(load(f));
+			}
+		} else {
+			try {
+				for (Future<DataSource> future : getLoadExecutor(loadThreads).invokeAll(loads)) {
+					dataSources.add(future.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while loading " + csvFileList, e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Unable to load " + csvFileList, e.getCause());
+			}
+		}
 
-		for (File f : csvFileList) {
-			String absPath = f.getAbsolutePath();
-			
-			// CSV parses CSV file. It inherits from DataSource
-			CSV csv = new CSV(absPath); 
-			DataSource ds = csv.getDataSource();
-			
-			String filenameNoExt = f.getName().replace(".csv", "");
-			dataSourceHashMap.put(filenameNoExt, ds);
+		for (int i = 0; i < csvFileList.size(); i++) {
+			String filenameNoExt = csvFileList.get(i).getName().replace(".csv", "");
+			dataSourceHashMap.put(filenameNoExt, dataSources.get(i));
 		}
 
 		return dataSourceHashMap;
@@ -0,0 +1,447 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * CsvStream iterates the records of a CSV file lazily, for files too large to be held in a
+ * {@link DataSource}.  The file is memory-mapped a window at a time, and every record of an
+ * iteration is the same {@link Record}, a view of the current line which shares the column
+ * index of the file's header and only decodes the fields that are read, so iterating
+ * allocates next to nothing per record.  A record is only valid until the iterator advances;
+ * use {@link Record#toFieldSet()} to keep it.
+ * 
+ * Files are read as UTF-8.  Fields are split and unquoted as {@link CSV} splits them: fields
+ * are separated by commas, may be quoted with double quotes, and a quote inside a quoted
+ * field is escaped by doubling it or with a backslash.  Blank lines are skipped, the first
+ * line is the header, and fields missing from the end of a record are empty.
+ */
+public class CsvStream implements Iterable<CsvStream.Record>, Closeable {
+
+	/*
+	 * The largest part of the file mapped at once
+	 */
+	private static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final int windowSize;
+	private final String[] columns;
+	private final Map<String, Integer> columnIndex;
+	private final long dataStart;
+
+	/**
+	 * @param file The CSV file to stream
+	 * @throws IOException If the file cannot be opened or its header read
+	 */
+	public CsvStream(File file) throws IOException {
+		this(file, DEFAULT_WINDOW_SIZE);
+	}
+
+	CsvStream(File file, int windowSize) throws IOException {
+		this.file = file;
+		this.windowSize = windowSize;
+		this.raf = new RandomAccessFile(file, "r");
+		this.channel = raf.getChannel();
+		boolean opened = false;
+		try {
+			Cursor cursor = new Cursor(0);
+			if (cursor.nextLine()) {
+				cursor.split();
+				this.columns = new String[cursor.fieldCount];
+				for (int i = 0; i < columns.length; i++) {
+					columns[i] = cursor.decode(i);
+				}
+			} else {
+				this.columns = new String[0];
+			}
+			this.dataStart = cursor.position;
+			opened = true;
+		} finally {
+			if (!opened) {
+				// Nobody can close a stream that failed to construct
+				raf.close();
+			}
+		}
+		Map<String, Integer> index = new HashMap<String, Integer>();
+		for (int i = 0; i < columns.length; i++) {
+			index.put(columns[i], i);
+		}
+		this.columnIndex = Collections.unmodifiableMap(index);
+	}
+
+	/**
+	 * @return The file streamed
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return The column names of the header, in order
+	 */
+	public List<String> getColumns() {
+		return Collections.unmodifiableList(Arrays.asList(columns));
+	}
+
+	/**
+	 * Returns an iterator over the records of the file, from the first after the header.
+	 * Each iterator maps the file independently, and reuses a single {@link Record}.
+	 */
+	@Override
+	public Iterator<Record> iterator() {
+		final Cursor cursor = new Cursor(dataStart);
+		final Record record = new Record(cursor);
+		return new Iterator<Record>() {
+			private boolean ready = false;
+			private boolean done = false;
+
+			@Override
+			public boolean hasNext() {
+				if (!ready && !done) {
+					try {
+						done = !cursor.nextLine();
+					} catch (IOException e) {
+						throw new IllegalStateException("Unable to read " + file, e);
+					}
+					ready = !done;
+				}
+				return ready;
+			}
+
+			@Override
+			public Record next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				ready = false;
+				cursor.split();
+				record.reset();
+				return record;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Reads every record into a {@link ColumnarDataSource}.
+	 * @return The records of the file
+	 */
+	public DataSource toDataSource() {
+		ColumnarDataSource ds = new ColumnarDataSource(Arrays.asList(columns));
+		ds.setFilename(file.getAbsolutePath());
+		String[] values = new String[columns.length];
+		for (Record record : this) {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = record.get(i);
+			}
+			ds.addRow(values);
+		}
+		ds.trimToSize();
+		return ds;
+	}
+
+	@Override
+	public void close() throws IOException {
+		raf.close();
+	}
+
+	/*
+	 * Reads lines from a window of the mapped file into a reusable buffer, and splits them
+	 * into fields.
+	 */
+	private class Cursor {
+		private MappedByteBuffer window;
+		private long windowStart;
+		private long position;
+		private byte[] line = new byte[256];
+		private int length;
+		private int[] starts = new int[16];
+		private int[] ends = new int[16];
+		private boolean[] quoted = new boolean[16];
+		private int fieldCount;
+		private byte[] scratch = new byte[256];
+
+		private Cursor(long position) {
+			this.position = position;
+		}
+
+		/*
+		 * Advances to the next line which is not blank, without its line terminator
+		 */
+		private boolean nextLine() throws IOException {
+			long size = channel.size();
+			while (position < size) {
+				long end = findLineEnd(size);
+				int lineLength = (int) (end - position);
+				if (line.length < lineLength) {
+					line = new byte[Math.max(lineLength, line.length * 2)];
+				}
+				window.position((int) (position - windowStart));
+				window.get(line, 0, lineLength);
+				position = end < size ? end + 1 : end;
+				length = lineLength;
+				if (length > 0 && line[length - 1] == '\r') {
+					length--;
+				}
+				if (length > 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * Returns the position of the next line feed, or the end of the file, mapping as much
+		 * of the file as the line needs
+		 */
+		private long findLineEnd(long size) throws IOException {
+			int mapSize = windowSize;
+			while (true) {
+				if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+					map(mapSize, size);
+				}
+				int limit = window.limit();
+				for (int i = (int) (position - windowStart); i < limit; i++) {
+					if (window.get(i) == '\n') {
+						return windowStart + i;
+					}
+				}
+				if (windowStart + limit >= size) {
+					return size;
+				}
+				// The line does not fit in the rest of the window; map again from its start
+				if (position == windowStart) {
+					mapSize = (int) Math.min(Integer.MAX_VALUE, (long) mapSize * 2);
+				}
+				map(mapSize, size);
+			}
+		}
+
+		private void map(int mapSize, long size) throws IOException {
+			windowStart = position;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapSize, size - position));
+		}
+
+		/*
+		 * Finds the bounds of the fields of the current line
+		 */
+		private void split() {
+			fieldCount = 0;
+			int start = 0;
+			boolean inQuotes = false;
+			boolean hasQuotes = false;
+			for (int i = 0; i <= length; i++) {
+				if (i == length || (line[i] == ',' && !inQuotes)) {
+					addField(start, i, hasQuotes);
+					start = i + 1;
+					hasQuotes = false;
+					inQuotes = false;
+				} else if (line[i] == '"') {
+					hasQuotes = true;
+					if (inQuotes && i + 1 < length && line[i + 1] == '"') {
+						i++;
+					} else {
+						inQuotes = !inQuotes;
+					}
+				} else if (line[i] == '\\' && inQuotes && i + 1 < length && (line[i + 1] == '"' || line[i + 1] == '\\')) {
+					hasQuotes = true;
+					i++;
+				}
+			}
+		}
+
+		private void addField(int start, int end, boolean hasQuotes) {
+			if (fieldCount == starts.length) {
+				starts = Arrays.copyOf(starts, fieldCount * 2);
+				ends = Arrays.copyOf(ends, fieldCount * 2);
+				quoted = Arrays.copyOf(quoted, fieldCount * 2);
+			}
+			starts[fieldCount] = start;
+			ends[fieldCount] = end;
+			quoted[fieldCount] = hasQuotes;
+			fieldCount++;
+		}
+
+		/*
+		 * Decodes a field of the current line, removing its quotes
+		 */
+		private String decode(int field) {
+			if (field >= fieldCount) {
+				return "";
+			}
+			int start = starts[field];
+			int end = ends[field];
+			if (!quoted[field]) {
+				return new String(line, start, end - start, StandardCharsets.UTF_8);
+			}
+			int i = start;
+			while (i < end && (line[i] == ' ' || line[i] == '\t')) {
+				i++;
+			}
+			if (i == end || line[i] != '"') {
+				// Whitespace is only dropped before an opening quote
+				i = start;
+			}
+			if (scratch.length < end - start) {
+				scratch = new byte[Math.max(end - start, scratch.length * 2)];
+			}
+			int n = 0;
+			boolean inQuotes = false;
+			for (; i < end; i++) {
+				byte b = line[i];
+				if (b == '"') {
+					if (inQuotes && i + 1 < end && line[i + 1] == '"') {
+						scratch[n++] = '"';
+						i++;
+					} else {
+						inQuotes = !inQuotes;
+					}
+				} else if (b == '\\' && inQuotes && i + 1 < end && (line[i + 1] == '"' || line[i + 1] == '\\')) {
+					scratch[n++] = line[++i];
+				} else {
+					scratch[n++] = b;
+				}
+			}
+			return new String(scratch, 0, n, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * A record of a {@link CsvStream}: a read-only view of the current line of an iteration,
+	 * keyed by the header's column names.  Fields are decoded when first read.
+	 */
+	public class Record extends AbstractMap<String, String> {
+		private final Cursor cursor;
+		private final String[] values = new String[columns.length];
+		private Set<Map.Entry<String, String>> entries;
+
+		private Record(Cursor cursor) {
+			this.cursor = cursor;
+		}
+
+		private void reset() {
+			Arrays.fill(values, null);
+		}
+
+		/**
+		 * @param column The index of a column of the header
+		 * @return The value of the column in this record
+		 */
+		public String get(int column) {
+			String value = values[column];
+			if (value == null) {
+				value = cursor.decode(column);
+				values[column] = value;
+			}
+			return value;
+		}
+
+		@Override
+		public String get(Object key) {
+			Integer column = columnIndex.get(key);
+			return column == null ? null : get(column.intValue());
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return columnIndex.containsKey(key);
+		}
+
+		@Override
+		public int size() {
+			return columns.length;
+		}
+
+		@Override
+		public Set<Map.Entry<String, String>> entrySet() {
+			if (entries == null) {
+				entries = new AbstractSet<Map.Entry<String, String>>() {
+					@Override
+					public Iterator<Map.Entry<String, String>> iterator() {
+						return new Iterator<Map.Entry<String, String>>() {
+							private int column = 0;
+
+							@Override
+							public boolean hasNext() {
+								return column < columns.length;
+							}
+
+							@Override
+							public Map.Entry<String, String> next() {
+								if (!hasNext()) {
+									throw new NoSuchElementException();
+								}
+								int current = column++;
+								return new SimpleImmutableEntry<String, String>(columns[current], get(current));
+							}
+
+							@Override
+							public void remove() {
+								throw new UnsupportedOperationException();
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return columns.length;
+					}
+				};
+			}
+			return entries;
+		}
+
+		/**
+		 * @return A copy of this record which stays valid after the iterator advances
+		 */
+		public FieldSet toFieldSet() {
+			FieldSet fieldSet = new FieldSet();
+			for (int i = 0; i < columns.length; i++) {
+				fieldSet.put(columns[i], get(i));
+			}
+			return fieldSet;
+		}
+	}
+}
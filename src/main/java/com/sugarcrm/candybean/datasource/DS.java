@@ -21,6 +21,7 @@
  */
 package com.sugarcrm.candybean.datasource;
 
+import java.io.IOException;
 import java.util.Map;
 
 import com.sugarcrm.candybean.configuration.Configuration;
@@ -30,7 +31,7 @@ import com.sugarcrm.candybean.datasource.DataSource;
 import com.sugarcrm.candybean.datasource.DataAdapterFactory.DataAdapterType;
 
 public class DS {
-	public enum DataType { CSV, XML };
+	public enum DataType { CSV, XML, JSON, JDBC, SNAPSHOT };
 	private String testName;
 	private DataAdapterFactory adapterFactory;
 	private DataAdapter dataAdapter;
@@ -89,12 +90,45 @@ public class DS {
 		return dataSourceHashMap;
 	}
 	
+	/**
+     * @param dataSet is the name of a single data file, without its extension
+     * @return A CsvStream iterating the records of the data file lazily,
+     *         for files too large to be read into a DataSource; the caller
+     *         closes it
+     * @throws IOException if the data file cannot be opened
+     */
+	public CsvStream getDataStream(String dataSet) throws IOException {
+		DataAdapter adapter = getDataAdapter().setDataBasePath(getPropKey());
+		if (!(adapter instanceof CsvDataAdapter)) {
+			throw new UnsupportedOperationException("Only CSV data can be streamed.");
+		}
+		return ((CsvDataAdapter) adapter).getDataStream(dataSet);
+	}
+	
+	/**
+     * @param dataSet is the name of a single data file, without its extension
+     * @param sample selects the rows, e.g. Sample.reservoir(100).withSeed(42)
+     * @return A DataSource of the sampled rows, selected in a single pass
+     *         over the data file where its type can be streamed
+     */
+	public DataSource getDataSample(String dataSet, Sample sample) {
+		return getDataAdapter().setDataBasePath(getPropKey()).getSample(dataSet, sample);
+	}
+	
 	public void cleanup() {
 //		config.deleteFile();
 	}
 	
 	private DataAdapterType getDataType(DataType dataType) {
 		switch (dataType) {
+		case XML:
+			return DataAdapterType.XML;
+		case JSON:
+			return DataAdapterType.JSON;
+		case JDBC:
+			return DataAdapterType.JDBC;
+		case SNAPSHOT:
+			return DataAdapterType.SNAPSHOT;
 		case CSV: 
 		default:
 			return DataAdapterType.CSV;
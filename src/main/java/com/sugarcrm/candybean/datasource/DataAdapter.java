@@ -23,7 +23,11 @@ package com.sugarcrm.candybean.datasource;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Logger;
 
 import org.apache.commons.io.filefilter.RegexFileFilter;
 
@@ -33,27 +37,113 @@ import com.sugarcrm.candybean.configuration.Configuration;
  * DataAdapter is an interface class a client uses to convert csv, xml, etc.
  * into a HashMap of DataSource
  * 
+ * The configuration and data base path belong to each adapter, and the
+ * selection to each call, so adapters may be used by several threads at once;
+ * the data base path is usually set once, before the adapter is shared.
  */
 public abstract class DataAdapter {
+	private static Logger log = Logger.getLogger(DataAdapter.class.getSimpleName());
+
 	public enum Selection {ALL, SINGLE};
-	static Configuration configuration;
-	static String dataBasePath;
-	static Selection selection = Selection.ALL;
+	protected final Configuration configuration;
+	private volatile String dataBasePath;
 
 	public DataAdapter(Configuration config) {
-		DataAdapter.configuration = config;
+		this.configuration = config;
 	}
 
 	public DataAdapter setDataBasePath(String dataBasePath) {
-		DataAdapter.dataBasePath = dataBasePath;
+		this.dataBasePath = dataBasePath;
 		return this;
 	}
+
+	/**
+	 * @return The configuration key of the directory data files are read from
+	 */
+	public String getDataBasePath() {
+		return dataBasePath;
+	}
+
+	public Configuration getConfiguration() {
+		return configuration;
+	}
 	
+	/**
+	 * @param testData The pattern of the data files, selecting all matching files
+	 */
 	public abstract Map<String, DataSource> getData(String testData);
 	public abstract Map<String, DataSource> getData(String testData, DataAdapter.Selection select);
 
+	/**
+	 * getSample selects a sample of the rows of a single data file.  Adapters
+	 * which can stream their files select the sample while reading the file,
+	 * without loading it; others load it first.
+	 * 
+	 * @param testData
+	 *            : String, the name of the file without its extension
+	 * @param sample
+	 *            : Sample, the rows to select
+	 * @return dataSource : DataSource, empty if there is no such file
+	 */
+	public DataSource getSample(String testData, Sample sample) {
+		Map<String, DataSource> data = getData(testData, DataAdapter.Selection.SINGLE);
+		DataSource ds = data.get(testData);
+		if (ds == null && data.size() == 1) {
+			ds = data.values().iterator().next();
+		}
+		return sample.apply(ds == null ? new DataSource() : ds);
+	}
+
+	/**
+	 * getFileList returns a list of File object based on an input pattern
+	 * 
+	 * @param dataPath
+	 *            : String, the pattern relative to the data base directory
+	 * @param ext
+	 *            : String, the extension of the files
+	 * @return fileList : List<File>
+	 */
+	protected List<File> getFileList(String dataPath, String ext, DataAdapter.Selection select) {
+
+		File dataFileAbsolute = getDataFullPath(dataPath);
+
+		String dataFilename = dataFileAbsolute.getName();
+		String dataParent = dataFileAbsolute.getParent();
+
+		File[] files = getAllFilesBasedOnPattern(dataParent, dataFilename,
+				ext, select);
+
+		List<File> fileList = new ArrayList<File>(Arrays.asList(files));
+
+		return fileList;
+	}
+
+	private static String getDataBaseDirFromProp(Configuration config, String property) {
+
+		String currDir = System.getProperty("user.dir");
+		String csvBaseDir = config.getValue(property, "/home/testData");
+		String fileFullPath = currDir + File.separator + csvBaseDir;
+
+		return fileFullPath; // returning just filePath also works
+	}
+
+	protected File getDataFullPath(String dataPath) {
+		String dataBaseDir = getDataBaseDirFromProp(configuration, getDataBasePath());
+		String dataFullPath = dataBaseDir + File.separator + dataPath;
+
+		File dataFile = new File(dataFullPath);
+		File dataFileAbsolute = null;
+		try {
+			dataFileAbsolute = dataFile.getAbsoluteFile();
+		} catch (Exception e) {
+			log.info(e.getMessage());
+		}
+
+		return dataFileAbsolute;
+	}
+
 	protected static File[] getAllFilesBasedOnPattern(String fileFullDirPath,
-			String testData, String ext) {
+			String testData, String ext, Selection selection) {
 		File dir = new File(fileFullDirPath);
 		File[] files;
 
@@ -69,6 +159,6 @@ public abstract class DataAdapter {
 		FileFilter filter = new RegexFileFilter(pattern);
 		files = dir.listFiles(filter);
 
-		return files;
+		return files == null ? new File[0] : files;
 	}
 }
@@ -29,7 +29,7 @@ import com.sugarcrm.candybean.configuration.Configuration;
  *
  */
 public class DataAdapterFactory {
-	public enum DataAdapterType { CSV, XML };
+	public enum DataAdapterType { CSV, XML, JSON, JDBC, SNAPSHOT };
 	protected Configuration config;
 
 	public DataAdapterFactory(Configuration config) {
@@ -41,7 +41,13 @@ public class DataAdapterFactory {
 		if (adapterType == DataAdapterType.CSV) {
 			return new CsvDataAdapter(config);   
 		} else if (adapterType == DataAdapterType.XML) {
-			return null;
+			return new XmlDataAdapter(config);
+		} else if (adapterType == DataAdapterType.JSON) {
+			return new JsonDataAdapter(config);
+		} else if (adapterType == DataAdapterType.JDBC) {
+			return new JdbcDataAdapter(config);
+		} else if (adapterType == DataAdapterType.SNAPSHOT) {
+			return new SnapshotDataAdapter(config);
 		}
 		else {
 			throw new RuntimeException();
@@ -0,0 +1,221 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.sugarcrm.candybean.automation.Candybean;
+import com.sugarcrm.candybean.configuration.Configuration;
+
+/**
+ * DataSourceCache holds parsed data files for the whole JVM, so that a file is parsed once
+ * however many tests, classes and threads read it.  Files are keyed by canonical path, and a
+ * cached file is parsed again when its modification time or size changes.  The least
+ * recently read files are evicted beyond <b>datasource.cache.maxEntries</b>; setting
+ * <b>datasource.cache.enabled</b> to false parses on every read.
+ * 
+ * Readers get their own copy of a cached DataSource, whose records are copy-on-write views
+ * of the cached ones, so changing a copy never changes the cache.
+ */
+public class DataSourceCache {
+
+	/**
+	 * Parses a data file on a cache miss.
+	 */
+	public interface Loader {
+		DataSource load(File file);
+	}
+
+	/*
+	 * The number of locks files are parsed under; a file always maps to the same lock, so
+	 * the locks do not grow with the number of files read
+	 */
+	private static final int LOCK_STRIPES = 64;
+
+	private static DataSourceCache dataSourceCache;
+
+	private static final Logger log = Logger.getLogger(DataSourceCache.class.getSimpleName());
+
+	private final boolean enabled;
+	private final Map<String, Entry> entries;
+	private final Object[] locks = new Object[LOCK_STRIPES];
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param enabled Whether files are cached at all
+	 * @param maxEntries The number of files kept
+	 */
+	public DataSourceCache(boolean enabled, final int maxEntries) {
+		this.enabled = enabled;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	public static synchronized DataSourceCache getInstance() {
+		if (dataSourceCache == null) {
+			String candybeanConfigStr = System.getProperty(Candybean.CONFIG_KEY, Candybean.DEFAULT_CONFIG_FILE);
+			Configuration config;
+			try {
+				config = new Configuration(new File(candybeanConfigStr));
+			} catch (IOException e) {
+				config = new Configuration();
+			}
+			dataSourceCache = new DataSourceCache(
+					Boolean.parseBoolean(config.getValue("datasource.cache.enabled", "true")),
+					Integer.parseInt(config.getValue("datasource.cache.maxEntries", "64")));
+		}
+		return dataSourceCache;
+	}
+
+	/**
+	 * Returns a copy of the cached contents of the file, parsing it first if it is not
+	 * cached or has changed since it was.  Concurrent reads of the same file parse it once;
+	 * files which share a lock stripe are parsed one at a time.
+	 * 
+	 * @param file The data file
+	 * @param loader Parses the file on a miss
+	 * @return A copy of the file's contents
+	 */
+	public DataSource get(File file, Loader loader) {
+		if (!enabled) {
+			return loader.load(file);
+		}
+		String key = getKey(file);
+		synchronized (getLock(key)) {
+			long modified = file.lastModified();
+			long length = file.length();
+			Entry entry;
+			synchronized (entries) {
+				entry = entries.get(key);
+			}
+			if (entry != null && entry.modified == modified && entry.length == length) {
+				hits.incrementAndGet();
+				return copy(entry.dataSource);
+			}
+			misses.incrementAndGet();
+			if (entry != null) {
+				log.fine(key + " has changed since it was cached; parsing it again.");
+			}
+			DataSource dataSource = loader.load(file);
+			synchronized (entries) {
+				entries.put(key, new Entry(modified, length, dataSource));
+			}
+			return copy(dataSource);
+		}
+	}
+
+	/**
+	 * @param file A data file to drop from the cache
+	 */
+	public void invalidate(File file) {
+		synchronized (entries) {
+			entries.remove(getKey(file));
+		}
+	}
+
+	/**
+	 * Drops every cached file.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return The number of files cached
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return The number of reads served from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return The number of reads which parsed their file
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/*
+	 * Spreads the hash bits, as HashMap does, since file paths often differ only at the end
+	 */
+	private Object getLock(String key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return locks[hash & (LOCK_STRIPES - 1)];
+	}
+
+	private static String getKey(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	static DataSource copy(DataSource dataSource) {
+		DataSource copy = new DataSource();
+		copy.setFilename(dataSource.getFilename());
+		copy.ensureCapacity(dataSource.size());
+		for (FieldSet fieldSet : dataSource) {
+			copy.add(fieldSet.deepClone());
+		}
+		return copy;
+	}
+
+	private static class Entry {
+		private final long modified;
+		private final long length;
+		private final DataSource dataSource;
+
+		private Entry(long modified, long length, DataSource dataSource) {
+			this.modified = modified;
+			this.length = length;
+			this.dataSource = dataSource;
+		}
+	}
+}
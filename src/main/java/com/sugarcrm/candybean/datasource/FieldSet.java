@@ -21,26 +21,234 @@
  */
 package com.sugarcrm.candybean.datasource;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
-
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * FieldSet is the basic type returned by the DataAdapter from converting the original csv, xml, etc. 
  *
+ * A FieldSet is either a view of a row of a {@link ColumnarDataSource} or {@link Snapshot}, or holds its own
+ * fields.  A view copies its row into its own fields when it is first changed, and so does
+ * a {@link #deepClone()} of either, so that copies cost nothing until they are written to.
+ * Changes made through {@link #entrySet()}, {@link #keySet()} and {@link #values()}, or their
+ * iterators and entries, copy the fields in the same way.
+ * 
+ * FieldSet was a HashMap until rows were stored by column; it is now an {@link AbstractMap},
+ * so code should refer to it as a FieldSet or a Map rather than a HashMap.
  */
-public class FieldSet extends HashMap<String, String> {
-	private static final long serialVersionUID = -6700016461709667889L;
-	
+public class FieldSet extends AbstractMap<String, String> implements Serializable {
+	private static final long serialVersionUID = 2L;
+
+	private Table table;
+	private int row;
+	private Map<String, String> fields;
+	private boolean shared = false;
+
+	public FieldSet() {
+		this.fields = new HashMap<String, String>();
+	}
+
+	FieldSet(Table table, int row) {
+		this.table = table;
+		this.row = row;
+	}
+
 	/**
 	 * Creates deep copy of a FieldSet. All items will be cloned.
+	 * The fields are only copied when either FieldSet is first changed.
 	 * @return - deepClone of a FieldSet
 	 * @author mlouis
 	 */
 	public FieldSet deepClone() {
-		FieldSet newHash = new FieldSet();
-		for(String key : this.keySet()){
-			newHash.put(key, this.get(key));
+		if (table != null) {
+			return new FieldSet(table, row);
 		}
+		FieldSet newHash = new FieldSet();
+		newHash.fields = this.fields;
+		newHash.shared = true;
+		this.shared = true;
 		return newHash;
 	}
-} 
\ No newline at end of file
+
+	/*
+	 * Gives this FieldSet fields of its own before they are changed
+	 */
+	private Map<String, String> writable() {
+		if (table != null) {
+			Map<String, String> copy = new HashMap<String, String>();
+			for (int c = 0; c < table.getColumnCount(); c++) {
+				copy.put(table.getKey(c), table.getValue(row, c));
+			}
+			fields = copy;
+			table = null;
+		} else if (shared) {
+			fields = new HashMap<String, String>(fields);
+			shared = false;
+		}
+		return fields;
+	}
+
+	/*
+	 * Views are written as FieldSets with fields of their own
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		writable();
+		out.defaultWriteObject();
+	}
+
+	@Override
+	public String get(Object key) {
+		if (table != null) {
+			int column = table.getColumn(key);
+			return column < 0 ? null : table.getValue(row, column);
+		}
+		return fields.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return table != null ? table.getColumn(key) >= 0 : fields.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return table != null ? table.getColumnCount() : fields.size();
+	}
+
+	@Override
+	public String put(String key, String value) {
+		return writable().put(key, value);
+	}
+
+	@Override
+	public String remove(Object key) {
+		return containsKey(key) ? writable().remove(key) : null;
+	}
+
+	@Override
+	public void clear() {
+		table = null;
+		fields = new HashMap<String, String>();
+		shared = false;
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return new AbstractSet<Map.Entry<String, String>>() {
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				return table != null ? new RowIterator(table, row) : new FieldIterator(fields);
+			}
+
+			@Override
+			public int size() {
+				return FieldSet.this.size();
+			}
+
+			@Override
+			public void clear() {
+				FieldSet.this.clear();
+			}
+		};
+	}
+
+	/*
+	 * An entry whose value is written through to the FieldSet
+	 */
+	private class FieldEntry extends SimpleEntry<String, String> {
+		private static final long serialVersionUID = 1L;
+
+		private FieldEntry(String key, String value) {
+			super(key, value);
+		}
+
+		@Override
+		public String setValue(String value) {
+			super.setValue(value);
+			return FieldSet.this.put(getKey(), value);
+		}
+	}
+
+	/*
+	 * Iterates the row of a view, which stays readable after the view copies it
+	 */
+	private class RowIterator implements Iterator<Map.Entry<String, String>> {
+		private final Table view;
+		private final int viewRow;
+		private int column = 0;
+
+		private RowIterator(Table view, int viewRow) {
+			this.view = view;
+			this.viewRow = viewRow;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return column < view.getColumnCount();
+		}
+
+		@Override
+		public Map.Entry<String, String> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int current = column++;
+			return new FieldEntry(view.getKey(current), view.getValue(viewRow, current));
+		}
+
+		@Override
+		public void remove() {
+			if (column == 0) {
+				throw new IllegalStateException();
+			}
+			FieldSet.this.remove(view.getKey(column - 1));
+		}
+	}
+
+	/*
+	 * Iterates the fields of a FieldSet, which may be shared with a copy; a removal while
+	 * they are shared copies them first and leaves the iterated map as it was
+	 */
+	private class FieldIterator implements Iterator<Map.Entry<String, String>> {
+		private final Map<String, String> source;
+		private final Iterator<Map.Entry<String, String>> iterator;
+		private String last;
+
+		private FieldIterator(Map<String, String> source) {
+			this.source = source;
+			this.iterator = source.entrySet().iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override
+		public Map.Entry<String, String> next() {
+			Map.Entry<String, String> entry = iterator.next();
+			last = entry.getKey();
+			return new FieldEntry(entry.getKey(), entry.getValue());
+		}
+
+		@Override
+		public void remove() {
+			if (writable() == source) {
+				iterator.remove();
+			} else if (last != null) {
+				fields.remove(last);
+				last = null;
+			} else {
+				throw new IllegalStateException();
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * FieldSetStream iterates the records of a data file lazily, one {@link FieldSet} at a
+ * time, for files too large to be held in a {@link DataSource}.  Each iterator reads the
+ * file independently with a streaming parser, and closes it when it reaches the end of
+ * the file; {@link #close()} closes any that have not.
+ */
+public abstract class FieldSetStream implements Iterable<FieldSet>, Closeable {
+
+	private final File file;
+	private final List<Cursor> open = new ArrayList<Cursor>();
+
+	/**
+	 * @param file The data file
+	 * @throws FileNotFoundException If the file does not exist
+	 */
+	protected FieldSetStream(File file) throws FileNotFoundException {
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file + " does not exist.");
+		}
+		this.file = file;
+	}
+
+	/**
+	 * A single pass over the records of the file.
+	 */
+	protected interface Cursor extends Closeable {
+
+		/**
+		 * @return The next record, or null at the end of the file
+		 * @throws IOException If the file cannot be read or parsed
+		 */
+		FieldSet next() throws IOException;
+	}
+
+	/**
+	 * @return A cursor positioned before the first record of the file
+	 * @throws IOException If the file cannot be opened
+	 */
+	protected abstract Cursor open() throws IOException;
+
+	/**
+	 * @return The file streamed
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public Iterator<FieldSet> iterator() {
+		final Cursor cursor;
+		try {
+			cursor = open();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read " + file, e);
+		}
+		synchronized (open) {
+			open.add(cursor);
+		}
+		return new Iterator<FieldSet>() {
+			private FieldSet next = null;
+			private boolean done = false;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null && !done) {
+					try {
+						next = cursor.next();
+						if (next == null) {
+							done = true;
+							close(cursor);
+						}
+					} catch (IOException e) {
+						throw new IllegalStateException("Unable to read " + file, e);
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public FieldSet next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				FieldSet current = next;
+				next = null;
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Reads every record into a {@link DataSource}.
+	 * @return The records of the file
+	 */
+	public DataSource toDataSource() {
+		DataSource ds = new DataSource();
+		ds.setFilename(file.getAbsolutePath());
+		for (FieldSet record : this) {
+			ds.add(record);
+		}
+		ds.trimToSize();
+		return ds;
+	}
+
+	private void close(Cursor cursor) throws IOException {
+		synchronized (open) {
+			open.remove(cursor);
+		}
+		cursor.close();
+	}
+
+	@Override
+	public void close() throws IOException {
+		List<Cursor> cursors;
+		synchronized (open) {
+			cursors = new ArrayList<Cursor>(open);
+			open.clear();
+		}
+		for (Cursor cursor : cursors) {
+			cursor.close();
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * JdbcConnectionPool keeps a small set of open connections to a database, so that reading
+ * test data does not open a connection for every query.  At most <i>size</i> connections
+ * are open at once; {@link #acquire()} waits for one to be released when all are in use.
+ * 
+ * Pools are shared by every adapter of the JVM which reads the same database as the same
+ * user, see {@link #getPool(String, String, String, int)}.
+ */
+public class JdbcConnectionPool {
+
+	private static final Logger log = Logger.getLogger(JdbcConnectionPool.class.getSimpleName());
+
+	private static final ConcurrentMap<String, JdbcConnectionPool> pools = new ConcurrentHashMap<String, JdbcConnectionPool>();
+
+	/*
+	 * How long to wait for a connection when all are in use
+	 */
+	private static final long ACQUIRE_TIMEOUT_SECONDS = 60;
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final int size;
+	private final BlockingQueue<Connection> idle = new LinkedBlockingQueue<Connection>();
+	private final Semaphore permits;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param url The JDBC url of the database
+	 * @param user The database user, or null
+	 * @param password The user's password, or null
+	 * @param size The most connections open at once
+	 */
+	public JdbcConnectionPool(String url, String user, String password, int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("A connection pool needs at least one connection, not " + size + ".");
+		}
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.size = size;
+		this.permits = new Semaphore(size, true);
+	}
+
+	/**
+	 * Returns the JVM's pool for the database and user, creating it on first use.  The size
+	 * of a pool is the size it was first requested with.
+	 * 
+	 * @param url The JDBC url of the database
+	 * @param user The database user, or null
+	 * @param password The user's password, or null
+	 * @param size The most connections open at once
+	 * @return The shared pool
+	 */
+	public static JdbcConnectionPool getPool(String url, String user, String password, int size) {
+		String key = url + "\n" + user;
+		JdbcConnectionPool pool = pools.get(key);
+		if (pool == null || pool.closed) {
+			JdbcConnectionPool newPool = new JdbcConnectionPool(url, user, password, size);
+			if (pool == null) {
+				pool = pools.putIfAbsent(key, newPool);
+			} else {
+				pool = pools.replace(key, pool, newPool) ? null : pools.get(key);
+			}
+			if (pool == null) {
+				pool = newPool;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Takes an idle connection, or opens one if fewer than <i>size</i> are open.  The
+	 * connection must be given back with {@link #release(Connection)}.
+	 * 
+	 * @return An open connection
+	 * @throws SQLException If no connection could be opened, or none was released in time
+	 */
+	public Connection acquire() throws SQLException {
+		if (closed) {
+			throw new SQLException("The connection pool for " + url + " is closed.");
+		}
+		try {
+			if (!permits.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				throw new SQLException("Timed out waiting for one of " + size + " connections to " + url + ".");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection to " + url + ".", e);
+		}
+		try {
+			Connection connection;
+			while ((connection = idle.poll()) != null) {
+				if (!connection.isClosed()) {
+					return connection;
+				}
+			}
+			log.fine("Opening a connection to " + url);
+			return user == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gives back a connection taken with {@link #acquire()}.  Connections which were closed,
+	 * or are left in a transaction which cannot be rolled back, are dropped.
+	 * 
+	 * @param connection The connection
+	 */
+	public void release(Connection connection) {
+		try {
+			if (closed || connection.isClosed()) {
+				connection.close();
+				return;
+			}
+			if (!connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+			idle.offer(connection);
+		} catch (SQLException e) {
+			log.warning("Dropping a connection to " + url + ": " + e.getMessage());
+			closeQuietly(connection);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * @return The number of idle connections kept open
+	 */
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return The most connections open at once
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Closes the idle connections; connections in use are closed when they are released.
+	 */
+	public void close() {
+		closed = true;
+		Connection connection;
+		while ((connection = idle.poll()) != null) {
+			closeQuietly(connection);
+		}
+	}
+
+	private void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			log.fine("Unable to close a connection to " + url + ": " + e.getMessage());
+		}
+	}
+}
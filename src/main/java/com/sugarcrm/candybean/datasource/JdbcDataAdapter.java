@@ -0,0 +1,294 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+/**
+ * JdbcDataAdapter is used by client to read test data from database tables
+ * into a list of DataSource, so that tests can read fixtures straight from a
+ * seeded database.  Tables are selected like data files: all tables named
+ * after the test data, or with a "_suffix" after it, or only the one named
+ * after it.  Each row is a FieldSet named by column label; NULL is empty.
+ * 
+ * The adapter is configured by <b>datasource.jdbc.url</b>,
+ * <b>datasource.jdbc.user</b>, <b>datasource.jdbc.password</b> and
+ * optionally <b>datasource.jdbc.driver</b>, the driver class to load.
+ * Tables are looked up in <b>datasource.jdbc.schema</b>, or the current
+ * schema of the connection, and read by their schema-qualified name.
+ * Rows are fetched <b>datasource.jdbc.fetchSize</b> at a time (500 by
+ * default) over at most <b>datasource.jdbc.pool.size</b> pooled
+ * connections (4 by default).  With <b>datasource.jdbc.cache.enabled</b>,
+ * the results of each query are kept for the JVM, keyed by a hash of the
+ * database and query, since the database cannot tell when they change.
+ */
+public class JdbcDataAdapter extends DataAdapter {
+
+	private static Logger log = Logger.getLogger(JdbcDataAdapter.class.getSimpleName());
+
+	private static final int DEFAULT_FETCH_SIZE = 500;
+	private static final int DEFAULT_POOL_SIZE = 4;
+	private static final int DEFAULT_CACHE_ENTRIES = 64;
+
+	private static final Map<String, DataSource> results = new LinkedHashMap<String, DataSource>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, DataSource> eldest) {
+			return size() > DEFAULT_CACHE_ENTRIES;
+		}
+	};
+
+	public JdbcDataAdapter(Configuration config) {
+		super(config);
+	}
+
+	/**
+	 * getData is used by client (end user) to obtain a HashMap of DataSource
+	 * 
+	 * @param testData
+	 *            : String, the name of the tables
+	 * @return dataSourceHashMap : HashMap<String, DataSource>, by table name
+	 */
+	@Override
+	public Map<String, DataSource> getData(String testData) {
+		return getData(testData, DataAdapter.Selection.ALL);
+	}
+
+	@Override
+	public Map<String, DataSource> getData(String testData, DataAdapter.Selection select) {
+		String name = Pattern.quote(testData);
+		String pattern = select == DataAdapter.Selection.SINGLE ? name : name + "|" + name + "_[^_]+";
+		Pattern tablePattern = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+		Map<String, DataSource> dataSourceHashMap = new HashMap<String, DataSource>();
+		try {
+			Map<String, String> tables = new LinkedHashMap<String, String>();
+			JdbcConnectionPool pool = getPool();
+			Connection connection = pool.acquire();
+			try {
+				DatabaseMetaData metaData = connection.getMetaData();
+				String quote = metaData.getIdentifierQuoteString().trim();
+				ResultSet resultSet = metaData.getTables(connection.getCatalog(), getSchemaPattern(connection, metaData),
+						"%", new String[] { "TABLE" });
+				try {
+					while (resultSet.next()) {
+						String table = resultSet.getString("TABLE_NAME");
+						if (!tablePattern.matcher(table).matches()) {
+							continue;
+						}
+						String schema = resultSet.getString("TABLE_SCHEM");
+						String qualified = schema == null ? quote(table, quote) : quote(schema, quote) + "." + quote(table, quote);
+						if (tables.containsKey(table)) {
+							log.warning("Table " + table + " is in more than one schema; reading " + tables.get(table) + ".");
+						} else {
+							tables.put(table, qualified);
+						}
+					}
+				} finally {
+					resultSet.close();
+				}
+			} finally {
+				pool.release(connection);
+			}
+			for (Map.Entry<String, String> table : tables.entrySet()) {
+				dataSourceHashMap.put(table.getKey(), query("SELECT * FROM " + table.getValue()));
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("Unable to read " + testData + " from " + getUrl(), e);
+		}
+		return dataSourceHashMap;
+	}
+
+	/**
+	 * Runs a query, fetching its rows datasource.jdbc.fetchSize at a time
+	 * 
+	 * @param sql
+	 *            : String, the query
+	 * @return dataSource : DataSource, a FieldSet per row
+	 * @throws SQLException
+	 *             if the query fails
+	 */
+	public DataSource query(String sql) throws SQLException {
+		if (!Boolean.parseBoolean(getValue("datasource.jdbc.cache.enabled", "false"))) {
+			return execute(sql);
+		}
+		String key = hash(getUrl() + "\n" + getValue("datasource.jdbc.user", null) + "\n" + sql);
+		DataSource cached;
+		synchronized (results) {
+			cached = results.get(key);
+		}
+		if (cached == null) {
+			cached = execute(sql);
+			synchronized (results) {
+				results.put(key, cached);
+			}
+		}
+		return DataSourceCache.copy(cached);
+	}
+
+	/**
+	 * Drops every cached query result.
+	 */
+	public static void clearCache() {
+		synchronized (results) {
+			results.clear();
+		}
+	}
+
+	private DataSource execute(String sql) throws SQLException {
+		long start = System.nanoTime();
+		JdbcConnectionPool pool = getPool();
+		Connection connection = pool.acquire();
+		try {
+			Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			try {
+				statement.setFetchSize(getIntValue("datasource.jdbc.fetchSize", DEFAULT_FETCH_SIZE));
+				ResultSet resultSet = statement.executeQuery(sql);
+				try {
+					ResultSetMetaData metaData = resultSet.getMetaData();
+					List<String> keys = new ArrayList<String>();
+					for (int c = 1; c <= metaData.getColumnCount(); c++) {
+						keys.add(metaData.getColumnLabel(c));
+					}
+					ColumnarDataSource ds = new ColumnarDataSource(keys);
+					ds.setFilename(sql);
+					String[] values = new String[keys.size()];
+					while (resultSet.next()) {
+						for (int c = 0; c < values.length; c++) {
+							String value = resultSet.getString(c + 1);
+							values[c] = value == null ? "" : value;
+						}
+						ds.addRow(values);
+					}
+					ds.trimToSize();
+					log.fine("Read " + ds.size() + " rows in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+							+ " ms: " + sql);
+					return ds;
+				} finally {
+					resultSet.close();
+				}
+			} finally {
+				statement.close();
+			}
+		} finally {
+			pool.release(connection);
+		}
+	}
+
+	/*
+	 * The schemas to list tables from: the configured one, else the connection's current one,
+	 * escaped for use as a metadata search pattern; null, for every schema, if neither is known
+	 */
+	private String getSchemaPattern(Connection connection, DatabaseMetaData metaData) throws SQLException {
+		String schema = getValue("datasource.jdbc.schema", null);
+		if (schema == null) {
+			try {
+				schema = connection.getSchema();
+			} catch (AbstractMethodError e) {
+				// A driver older than JDBC 4.1
+			} catch (SQLException e) {
+				log.fine("Unable to get the current schema: " + e.getMessage());
+			}
+		}
+		String escape = metaData.getSearchStringEscape();
+		if (schema == null || escape == null || escape.isEmpty()) {
+			return schema;
+		}
+		return schema.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+	}
+
+	private static String quote(String identifier, String quote) {
+		return quote.isEmpty() ? identifier : quote + identifier.replace(quote, quote + quote) + quote;
+	}
+
+	private JdbcConnectionPool getPool() throws SQLException {
+		String driver = getValue("datasource.jdbc.driver", null);
+		if (driver != null) {
+			try {
+				Class.forName(driver);
+			} catch (ClassNotFoundException e) {
+				throw new SQLException("JDBC driver " + driver + " is not on the classpath.", e);
+			}
+		}
+		String url = getUrl();
+		if (url == null) {
+			throw new SQLException("datasource.jdbc.url is not configured.");
+		}
+		return JdbcConnectionPool.getPool(url, getValue("datasource.jdbc.user", null),
+				getValue("datasource.jdbc.password", null), getIntValue("datasource.jdbc.pool.size", DEFAULT_POOL_SIZE));
+	}
+
+	private String getUrl() {
+		return getValue("datasource.jdbc.url", null);
+	}
+
+	private String getValue(String key, String defaultValue) {
+		String value = configuration == null ? null : configuration.getValue(key);
+		return value == null || value.trim().isEmpty() ? defaultValue : value;
+	}
+
+	private int getIntValue(String key, int defaultValue) {
+		String value = getValue(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			log.warning("Invalid " + key + ": " + value + "; using " + defaultValue + ".");
+			return defaultValue;
+		}
+	}
+
+	private static String hash(String s) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * JsonStream iterates the records of a JSON file with the token-based parser of
+ * json-simple, which pauses after each record, so that no object tree is built and only
+ * the current record is held in memory.
+ * 
+ * The records are the objects in an array which is either the file itself or the value of
+ * a key of the object the file holds, such as "records"; the first such array holding
+ * objects is read, and arrays nested any deeper are never taken for records.  The fields
+ * of a record are its values, named after their keys; the values of nested objects are
+ * named by the keys leading to them joined with dots, and nested arrays are skipped.
+ * A null is read as an empty field.
+ * 
+ * <pre>
+ * [{"id": 1, "name": "alice", "address": {"city": "Paris"}}]
+ * </pre>
+ * 
+ * Files are read as UTF-8.
+ */
+public class JsonStream extends FieldSetStream {
+
+	/**
+	 * @param file The JSON file
+	 * @throws FileNotFoundException If the file does not exist
+	 */
+	public JsonStream(File file) throws FileNotFoundException {
+		super(file);
+	}
+
+	@Override
+	protected Cursor open() throws IOException {
+		final Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(getFile()), StandardCharsets.UTF_8));
+		final JSONParser parser = new JSONParser();
+		final RecordHandler handler = new RecordHandler();
+		return new Cursor() {
+			private boolean started = false;
+
+			@Override
+			public FieldSet next() throws IOException {
+				try {
+					while (handler.record == null && !handler.finished) {
+						parser.parse(reader, handler, started);
+						started = true;
+					}
+				} catch (ParseException e) {
+					throw new IOException("Unable to parse " + getFile() + ": " + e, e);
+				}
+				FieldSet record = handler.record;
+				handler.record = null;
+				return record;
+			}
+
+			@Override
+			public void close() throws IOException {
+				reader.close();
+			}
+		};
+	}
+
+	/*
+	 * Builds records from the parser's tokens, pausing the parser after each record
+	 */
+	private static class RecordHandler implements ContentHandler {
+		private FieldSet record;
+		private boolean finished = false;
+		private FieldSet current;
+		private int depth = 0;
+		private boolean rootObject = false;
+		// The depth of the array of records, while in it, or -1
+		private int recordsDepth = -1;
+		private boolean recordsRead = false;
+		private int nestedArrays = 0;
+		private final List<String> path = new ArrayList<String>();
+
+		@Override
+		public void startJSON() {
+		}
+
+		@Override
+		public void endJSON() {
+			finished = true;
+		}
+
+		@Override
+		public boolean startObject() {
+			depth++;
+			if (depth == 1) {
+				rootObject = true;
+			} else if (recordsDepth > 0 && depth == recordsDepth + 1 && current == null) {
+				current = new FieldSet();
+				recordsRead = true;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean endObject() {
+			if (current != null && depth == recordsDepth + 1) {
+				record = current;
+				current = null;
+				depth--;
+				return false;
+			}
+			depth--;
+			return true;
+		}
+
+		@Override
+		public boolean startObjectEntry(String key) {
+			if (current != null) {
+				path.add(key);
+			}
+			return true;
+		}
+
+		@Override
+		public boolean endObjectEntry() {
+			if (current != null) {
+				path.remove(path.size() - 1);
+			}
+			return true;
+		}
+
+		@Override
+		public boolean startArray() {
+			depth++;
+			if (current != null) {
+				nestedArrays++;
+			} else if (recordsDepth > 0 && depth == recordsDepth + 1) {
+				skipArray();
+			} else if (recordsDepth < 0 && !recordsRead && (depth == 1 || depth == 2 && rootObject)) {
+				recordsDepth = depth;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean endArray() {
+			if (current != null) {
+				nestedArrays--;
+			} else if (depth == recordsDepth) {
+				recordsDepth = -1;
+			}
+			depth--;
+			return true;
+		}
+
+		@Override
+		public boolean primitive(Object value) {
+			if (current != null) {
+				if (nestedArrays == 0 && !path.isEmpty()) {
+					current.put(join(path), value == null ? "" : value.toString());
+				}
+			} else if (recordsDepth > 0 && depth == recordsDepth) {
+				skipArray();
+			}
+			return true;
+		}
+
+		/*
+		 * Gives up on an array which holds values other than objects, unless records were
+		 * already read from it
+		 */
+		private void skipArray() {
+			if (!recordsRead) {
+				recordsDepth = -1;
+			}
+		}
+
+		private static String join(List<String> path) {
+			if (path.size() == 1) {
+				return path.get(0);
+			}
+			StringBuilder key = new StringBuilder(path.get(0));
+			for (int i = 1; i < path.size(); i++) {
+				key.append('.').append(path.get(i));
+			}
+			return key.toString();
+		}
+	}
+}
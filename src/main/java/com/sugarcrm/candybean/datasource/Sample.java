@@ -0,0 +1,262 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * A Sample selects a representative subset of the rows of a data set in a single pass
+ * over them, holding only the rows selected so far, so that a smoke run can read a
+ * slice of a data set too large to load:
+ * 
+ * <ul>
+ * <li>{@link #reservoir(int)} keeps a uniformly random <i>size</i> rows</li>
+ * <li>{@link #fraction(double)} keeps each row with the given probability</li>
+ * <li>{@link #stratified(String, int)} keeps up to <i>size</i> random rows for each
+ * value of a column, so that every value is represented</li>
+ * </ul>
+ * 
+ * A sample given a seed with {@link #withSeed(long)} selects the same rows from the same
+ * data every time; otherwise the seed is random and logged, so that a run can be
+ * repeated.  Selected rows keep their order in the data set.
+ */
+public final class Sample {
+
+	private static final Logger log = Logger.getLogger(Sample.class.getSimpleName());
+
+	private enum Method { RESERVOIR, FRACTION, STRATIFIED };
+
+	private final Method method;
+	private final int size;
+	private final double fraction;
+	private final String column;
+	private final Long seed;
+
+	private Sample(Method method, int size, double fraction, String column, Long seed) {
+		this.method = method;
+		this.size = size;
+		this.fraction = fraction;
+		this.column = column;
+		this.seed = seed;
+	}
+
+	/**
+	 * @param size The number of rows to keep
+	 * @return A sample of at most <i>size</i> rows, each row equally likely to be kept
+	 */
+	public static Sample reservoir(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("A sample cannot have " + size + " rows.");
+		}
+		return new Sample(Method.RESERVOIR, size, 0, null, null);
+	}
+
+	/**
+	 * @param fraction The probability, from 0 to 1, of keeping each row
+	 * @return A sample of about <i>fraction</i> of the rows
+	 */
+	public static Sample fraction(double fraction) {
+		if (!(fraction >= 0 && fraction <= 1)) {
+			throw new IllegalArgumentException("A sample fraction must be between 0 and 1, not " + fraction + ".");
+		}
+		return new Sample(Method.FRACTION, 0, fraction, null, null);
+	}
+
+	/**
+	 * @param column The column whose values divide the rows into strata; rows without
+	 *        the column are in the stratum of the empty value
+	 * @param size The number of rows to keep from each stratum
+	 * @return A sample of at most <i>size</i> rows per value of the column
+	 */
+	public static Sample stratified(String column, int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("A sample cannot have " + size + " rows.");
+		}
+		return new Sample(Method.STRATIFIED, size, 0, column, null);
+	}
+
+	/**
+	 * @param seed The seed of the random selection
+	 * @return This sample, selecting rows with the given seed
+	 */
+	public Sample withSeed(long seed) {
+		return new Sample(method, size, fraction, column, seed);
+	}
+
+	/**
+	 * Selects the rows of the sample.  Rows are copied when they are selected, so they may
+	 * be views which are only valid until the next row is read, like those of a
+	 * {@link CsvStream}.
+	 * 
+	 * @param rows The rows of a data set, read once
+	 * @return The selected rows, in the order read
+	 */
+	public DataSource apply(Iterable<? extends Map<String, String>> rows) {
+		long seed = this.seed != null ? this.seed : new Random().nextLong();
+		if (this.seed == null) {
+			log.info("Sampling " + this + " with seed " + seed);
+		}
+		Random random = new Random(mix(seed));
+		DataSource ds = new DataSource();
+		if (method == Method.FRACTION) {
+			for (Map<String, String> row : rows) {
+				if (random.nextDouble() < fraction) {
+					ds.add(copy(row));
+				}
+			}
+		} else if (method == Method.RESERVOIR) {
+			Reservoir reservoir = new Reservoir(size, random);
+			long index = 0;
+			for (Map<String, String> row : rows) {
+				reservoir.offer(index++, row);
+			}
+			reservoir.drainTo(ds);
+		} else {
+			Map<String, Reservoir> strata = new HashMap<String, Reservoir>();
+			long index = 0;
+			for (Map<String, String> row : rows) {
+				String value = row.get(column);
+				value = value == null ? "" : value;
+				Reservoir reservoir = strata.get(value);
+				if (reservoir == null) {
+					// Seeded per stratum, so that a stratum's rows don't depend on the others'
+					reservoir = new Reservoir(size, new Random(mix(seed ^ mix(value.hashCode()))));
+					strata.put(value, reservoir);
+				}
+				reservoir.offer(index++, row);
+			}
+			Reservoir all = new Reservoir(Integer.MAX_VALUE, random);
+			for (Reservoir reservoir : strata.values()) {
+				reservoir.drainTo(all);
+			}
+			all.drainTo(ds);
+		}
+		ds.trimToSize();
+		return ds;
+	}
+
+	@Override
+	public String toString() {
+		switch (method) {
+		case FRACTION:
+			return "fraction(" + fraction + ")";
+		case STRATIFIED:
+			return "stratified(" + column + ", " + size + ")";
+		default:
+			return "reservoir(" + size + ")";
+		}
+	}
+
+	/*
+	 * Scrambles a seed (the SplitMix64 finalizer), since Randoms with nearby seeds start
+	 * with nearly the same numbers
+	 */
+	private static long mix(long seed) {
+		long z = seed + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static FieldSet copy(Map<String, String> row) {
+		if (row instanceof FieldSet) {
+			return (FieldSet) row;
+		}
+		if (row instanceof CsvStream.Record) {
+			return ((CsvStream.Record) row).toFieldSet();
+		}
+		FieldSet fieldSet = new FieldSet();
+		fieldSet.putAll(row);
+		return fieldSet;
+	}
+
+	/*
+	 * Keeps a uniformly random subset of the rows offered to it (Vitter's algorithm R)
+	 */
+	private static class Reservoir {
+		private final int capacity;
+		private final Random random;
+		private long[] indexes = new long[16];
+		private FieldSet[] rows = new FieldSet[16];
+		private int count = 0;
+		private long seen = 0;
+
+		private Reservoir(int capacity, Random random) {
+			this.capacity = capacity;
+			this.random = random;
+		}
+
+		private void offer(long index, Map<String, String> row) {
+			long n = seen++;
+			if (count < capacity) {
+				add(index, copy(row));
+			} else {
+				long slot = (long) (random.nextDouble() * (n + 1));
+				if (slot < capacity) {
+					indexes[(int) slot] = index;
+					rows[(int) slot] = copy(row);
+				}
+			}
+		}
+
+		private void add(long index, FieldSet row) {
+			if (count == rows.length) {
+				int length = (int) Math.min((long) capacity, 2L * rows.length);
+				indexes = Arrays.copyOf(indexes, length);
+				rows = Arrays.copyOf(rows, length);
+			}
+			indexes[count] = index;
+			rows[count++] = row;
+		}
+
+		private void drainTo(Reservoir other) {
+			for (int i = 0; i < count; i++) {
+				other.add(indexes[i], rows[i]);
+			}
+		}
+
+		/*
+		 * Adds the kept rows in the order they were offered
+		 */
+		private void drainTo(DataSource ds) {
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Long.compare(indexes[a], indexes[b]);
+				}
+			});
+			ds.ensureCapacity(ds.size() + count);
+			for (Integer i : order) {
+				ds.add(rows[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,373 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A Snapshot is a csv file compiled into a binary form that is read without
+ * any parsing: the file is memory mapped, and values are only decoded when
+ * a row is first read.
+ * 
+ * The layout, in big endian order, is a header of the magic number, format
+ * version, length, modification time and CRC32 checksum of the source csv
+ * file, the column, row and string counts and the length of the string data;
+ * followed by the string table index of each column name, the string table
+ * index of each value row by row, the offset of each string in the string
+ * data, and the UTF-8 string data itself.  Each distinct string is stored
+ * once, and row r starts at value r * columns.
+ * 
+ * A snapshot is stale when its checksum no longer matches its csv file, see
+ * {@link #isFresh(File)}.
+ */
+public class Snapshot implements Table {
+
+	/**
+	 * The extension of snapshot files, which are written next to their csv
+	 * files
+	 */
+	public static final String EXTENSION = "cbsnap";
+
+	static final int MAGIC = 0x4342534E;
+	static final int VERSION = 1;
+	private static final int HEADER_BYTES = 48;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final long sourceLength;
+	private final long sourceModified;
+	private final long sourceChecksum;
+	private final int columnCount;
+	private final int rowCount;
+	private final IntBuffer values;
+	private final IntBuffer offsets;
+	private final ByteBuffer strings;
+	private final String[] keys;
+	private final Map<String, Integer> columns = new HashMap<String, Integer>();
+	private final String[] decoded;
+
+	private Snapshot(File file, MappedByteBuffer buffer) throws IOException {
+		this.file = file;
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a snapshot.");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(file + " is a version " + buffer.getInt(4) + " snapshot; version " + VERSION + " is supported.");
+		}
+		sourceLength = buffer.getLong(8);
+		sourceModified = buffer.getLong(16);
+		sourceChecksum = buffer.getLong(24);
+		columnCount = buffer.getInt(32);
+		rowCount = buffer.getInt(36);
+		int stringCount = buffer.getInt(40);
+		int stringBytes = buffer.getInt(44);
+		long expected = HEADER_BYTES + 4L * (columnCount + (long) rowCount * columnCount + stringCount + 1) + stringBytes;
+		if (columnCount < 0 || rowCount < 0 || stringCount < 0 || stringBytes < 0 || expected != buffer.capacity()) {
+			throw new IOException(file + " is truncated or corrupt.");
+		}
+		IntBuffer ints = slice(buffer, HEADER_BYTES, 4 * (columnCount + rowCount * columnCount + stringCount + 1)).asIntBuffer();
+		IntBuffer names = slice(ints, 0, columnCount);
+		values = slice(ints, columnCount, rowCount * columnCount);
+		offsets = slice(ints, columnCount + rowCount * columnCount, stringCount + 1);
+		strings = slice(buffer, buffer.capacity() - stringBytes, stringBytes);
+		decoded = new String[stringCount];
+		keys = new String[columnCount];
+		for (int c = 0; c < columnCount; c++) {
+			keys[c] = string(names.get(c));
+			columns.put(keys[c], c);
+		}
+	}
+
+	/**
+	 * Maps a snapshot file into memory
+	 * 
+	 * @param file The snapshot file
+	 * @return The snapshot
+	 * @throws IOException if the file cannot be read or is not a snapshot
+	 */
+	public static Snapshot open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large to be a snapshot.");
+			}
+			// The mapping stays valid after the channel is closed
+			return new Snapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @param csvFile A csv file
+	 * @return The snapshot file compiled from the csv file
+	 */
+	public static File getSnapshotFile(File csvFile) {
+		String name = csvFile.getName();
+		int dot = name.lastIndexOf('.');
+		return new File(csvFile.getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + "." + EXTENSION);
+	}
+
+	/**
+	 * Compiles a csv file into a snapshot next to it
+	 * 
+	 * @param csvFile The csv file
+	 * @return The snapshot file
+	 * @throws IOException if the csv file cannot be read or the snapshot cannot be written
+	 */
+	public static File compile(File csvFile) throws IOException {
+		return compile(csvFile, getSnapshotFile(csvFile));
+	}
+
+	/**
+	 * Compiles a csv file into a snapshot.  The snapshot is written to a
+	 * temporary file first, so that readers never see a partial snapshot.
+	 * 
+	 * @param csvFile The csv file
+	 * @param snapshotFile The snapshot file to write
+	 * @return The snapshot file
+	 * @throws IOException if the csv file cannot be read or the snapshot cannot be written
+	 */
+	public static File compile(File csvFile, File snapshotFile) throws IOException {
+		if (!csvFile.isFile()) {
+			throw new IOException(csvFile + " does not exist.");
+		}
+		long length = csvFile.length();
+		long modified = csvFile.lastModified();
+		long checksum = checksum(csvFile);
+		DataSource data = new CSV(csvFile.getAbsolutePath()).getDataSource();
+		ColumnarDataSource table = data instanceof ColumnarDataSource ? (ColumnarDataSource) data : new ColumnarDataSource(Collections.<String>emptyList());
+
+		Map<String, Integer> ids = new LinkedHashMap<String, Integer>();
+		int columnCount = table.getColumnCount();
+		int rowCount = table.getRowCount();
+		int[] names = new int[columnCount];
+		for (int c = 0; c < columnCount; c++) {
+			names[c] = id(ids, table.getKey(c));
+		}
+		int[] values = new int[rowCount * columnCount];
+		for (int r = 0; r < rowCount; r++) {
+			for (int c = 0; c < columnCount; c++) {
+				values[r * columnCount + c] = id(ids, table.getValue(r, c));
+			}
+		}
+		byte[][] encoded = new byte[ids.size()][];
+		int stringBytes = 0;
+		int i = 0;
+		for (String s : ids.keySet()) {
+			encoded[i] = s.getBytes(UTF8);
+			stringBytes += encoded[i++].length;
+		}
+
+		File temp = File.createTempFile(snapshotFile.getName(), ".tmp", snapshotFile.getAbsoluteFile().getParentFile());
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(length);
+				out.writeLong(modified);
+				out.writeLong(checksum);
+				out.writeInt(columnCount);
+				out.writeInt(rowCount);
+				out.writeInt(encoded.length);
+				out.writeInt(stringBytes);
+				for (int name : names) {
+					out.writeInt(name);
+				}
+				for (int value : values) {
+					out.writeInt(value);
+				}
+				int offset = 0;
+				for (byte[] bytes : encoded) {
+					out.writeInt(offset);
+					offset += bytes.length;
+				}
+				out.writeInt(offset);
+				for (byte[] bytes : encoded) {
+					out.write(bytes);
+				}
+			} finally {
+				out.close();
+			}
+			Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+		return snapshotFile;
+	}
+
+	/**
+	 * @param file A file
+	 * @return The CRC32 checksum of the file's contents
+	 * @throws IOException if the file cannot be read
+	 */
+	static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * A snapshot is fresh when it was compiled from the current contents of
+	 * its csv file.  The checksum is only computed when the csv file's length
+	 * or modification time differ from when it was compiled.
+	 * 
+	 * @param csvFile The csv file the snapshot was compiled from
+	 * @return true if the snapshot matches the csv file
+	 * @throws IOException if the csv file cannot be read
+	 */
+	public boolean isFresh(File csvFile) throws IOException {
+		if (!csvFile.isFile() || csvFile.length() != sourceLength) {
+			return false;
+		}
+		return csvFile.lastModified() == sourceModified || checksum(csvFile) == sourceChecksum;
+	}
+
+	/**
+	 * @return A DataSource whose FieldSets are views of this snapshot's rows,
+	 *         named after the csv file the snapshot was compiled from
+	 */
+	public DataSource toDataSource() {
+		DataSource ds = new DataSource();
+		ds.ensureCapacity(rowCount);
+		for (int r = 0; r < rowCount; r++) {
+			ds.add(new FieldSet(this, r));
+		}
+		ds.setFilename(getSourceFile().getAbsolutePath());
+		return ds;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return The csv file next to this snapshot, which it was compiled from
+	 */
+	public File getSourceFile() {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return new File(file.getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + ".csv");
+	}
+
+	public long getSourceChecksum() {
+		return sourceChecksum;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public int getColumn(Object key) {
+		Integer column = columns.get(key);
+		return column == null ? -1 : column;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return columnCount;
+	}
+
+	@Override
+	public String getKey(int column) {
+		return keys[column];
+	}
+
+	@Override
+	public String getValue(int row, int column) {
+		return string(values.get(row * columnCount + column));
+	}
+
+	/*
+	 * Decodes a string of the string table once; racing threads decode equal
+	 * strings, so the cache needs no lock
+	 */
+	private String string(int id) {
+		String s = decoded[id];
+		if (s == null) {
+			int start = offsets.get(id);
+			byte[] bytes = new byte[offsets.get(id + 1) - start];
+			ByteBuffer source = strings.duplicate();
+			source.position(start);
+			source.get(bytes);
+			s = new String(bytes, UTF8);
+			decoded[id] = s;
+		}
+		return s;
+	}
+
+	private static int id(Map<String, Integer> ids, String s) {
+		String value = s == null ? "" : s;
+		Integer id = ids.get(value);
+		if (id == null) {
+			id = ids.size();
+			ids.put(value, id);
+		}
+		return id;
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+		ByteBuffer copy = buffer.duplicate();
+		copy.position(position);
+		copy.limit(position + length);
+		return copy.slice();
+	}
+
+	private static IntBuffer slice(IntBuffer buffer, int position, int length) {
+		IntBuffer copy = buffer.duplicate();
+		copy.position(position);
+		copy.limit(position + length);
+		return copy.slice();
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SnapshotCompiler compiles csv files into {@link Snapshot}s, which
+ * {@link SnapshotDataAdapter} reads instead of parsing the csv files.
+ * 
+ * Usage: SnapshotCompiler [--check[=true|false]] &lt;csv file or directory&gt;...
+ * 
+ * Directories are searched for csv files recursively.  Only csv files
+ * without a fresh snapshot are compiled.  With --check, nothing is compiled,
+ * and it fails if any snapshot is missing or stale.  Failures are thrown
+ * rather than exiting, so that it can also be run inside Maven.
+ */
+public class SnapshotCompiler {
+
+	public static void main(String[] args) throws IOException {
+		boolean check = false;
+		List<File> csvFiles = new ArrayList<File>();
+		for (String arg : args) {
+			if ("--check".equals(arg)) {
+				check = true;
+			} else if (arg.startsWith("--check=")) {
+				check = Boolean.parseBoolean(arg.substring("--check=".length()));
+			} else {
+				collect(new File(arg), csvFiles);
+			}
+		}
+		if (csvFiles.isEmpty()) {
+			throw new IllegalArgumentException("No csv files found. Usage: SnapshotCompiler [--check] <csv file or directory>...");
+		}
+		int stale = 0;
+		for (File csvFile : csvFiles) {
+			if (isFresh(csvFile)) {
+				continue;
+			}
+			if (check) {
+				System.out.println("Stale: " + Snapshot.getSnapshotFile(csvFile));
+				stale++;
+			} else {
+				System.out.println("Compiled: " + Snapshot.compile(csvFile));
+			}
+		}
+		if (stale > 0) {
+			throw new IllegalStateException(stale + " of " + csvFiles.size() + " snapshots are missing or stale.");
+		}
+	}
+
+	/**
+	 * @param csvFile A csv file
+	 * @return true if the csv file has a snapshot compiled from its current contents
+	 * @throws IOException if the csv file cannot be read
+	 */
+	public static boolean isFresh(File csvFile) throws IOException {
+		File snapshotFile = Snapshot.getSnapshotFile(csvFile);
+		if (!snapshotFile.isFile()) {
+			return false;
+		}
+		try {
+			return Snapshot.open(snapshotFile).isFresh(csvFile);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static void collect(File file, List<File> csvFiles) {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					collect(child, csvFiles);
+				}
+			}
+		} else if (file.getName().endsWith(".csv")) {
+			csvFiles.add(file);
+		}
+	}
+}
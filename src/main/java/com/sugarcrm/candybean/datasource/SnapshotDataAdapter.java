@@ -0,0 +1,82 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+/**
+ * SnapshotDataAdapter reads the same csv datasets as CsvDataAdapter, but
+ * from the {@link Snapshot} compiled next to each csv file when there is one,
+ * so that data which rarely changes is not parsed on every run.  A csv file
+ * without a snapshot, or whose snapshot is stale, is parsed as usual.
+ * 
+ * Snapshots are built by {@link SnapshotCompiler}.
+ */
+public class SnapshotDataAdapter extends CsvDataAdapter {
+
+	private static Logger log = Logger.getLogger(SnapshotDataAdapter.class.getSimpleName());
+
+	public SnapshotDataAdapter(Configuration config) {
+		super(config);
+	}
+
+	/**
+	 * Selects a sample of the rows of a single csv file, read from its snapshot
+	 * when it is fresh, which is cheaper than streaming the csv file
+	 */
+	@Override
+	public DataSource getSample(String testData, Sample sample) {
+		File csvFile = new File(getDataFullPath(testData).getPath() + ".csv");
+		return sample.apply(csvFile.isFile() ? load(csvFile) : new DataSource());
+	}
+
+	/**
+	 * Reads a single csv file from its snapshot, or parses it when its
+	 * snapshot is missing, stale or unreadable
+	 * 
+	 * @param f
+	 *            : File, the csv file
+	 * @return dataSource : DataSource
+	 */
+	@Override
+	protected DataSource load(File f) {
+		File snapshotFile = Snapshot.getSnapshotFile(f);
+		if (snapshotFile.isFile()) {
+			try {
+				Snapshot snapshot = Snapshot.open(snapshotFile);
+				if (snapshot.isFresh(f)) {
+					return snapshot.toDataSource();
+				}
+				log.warning(snapshotFile.getAbsolutePath() + " is stale; parsing " + f.getAbsolutePath()
+						+ " instead. Recompile it with " + SnapshotCompiler.class.getName() + ".");
+			} catch (IOException e) {
+				log.warning("Unable to read " + snapshotFile.getAbsolutePath() + "; parsing "
+						+ f.getAbsolutePath() + " instead: " + e.getMessage());
+			}
+		}
+		return super.load(f);
+	}
+}
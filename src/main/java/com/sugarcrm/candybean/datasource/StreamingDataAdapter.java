@@ -0,0 +1,145 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+/**
+ * StreamingDataAdapter converts data files read by a {@link FieldSetStream}
+ * into DataSources, one FieldSet per record, without building a document
+ * tree.  Files already read by this JVM are read from the
+ * {@link DataSourceCache}.
+ */
+public abstract class StreamingDataAdapter extends DataAdapter {
+
+	private static Logger log = Logger.getLogger(StreamingDataAdapter.class.getSimpleName());
+
+	public StreamingDataAdapter(Configuration config) {
+		super(config);
+	}
+
+	/**
+	 * @return The extension of the data files, without the dot
+	 */
+	protected abstract String getExtension();
+
+	/**
+	 * @param file
+	 *            : File, a data file
+	 * @return stream : FieldSetStream over the records of the file
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	protected abstract FieldSetStream open(File file) throws IOException;
+
+	@Override
+	public Map<String, DataSource> getData(String testData) {
+		return getData(testData, DataAdapter.Selection.ALL);
+	}
+
+	@Override
+	public Map<String, DataSource> getData(String testData, DataAdapter.Selection select) {
+		Map<String, DataSource> dataSourceHashMap = new HashMap<String, DataSource>();
+		List<File> fileList = getFileList(testData, getExtension(), select);
+		for (File f : fileList) {
+			String filenameNoExt = f.getName().substring(0, f.getName().length() - getExtension().length() - 1);
+			dataSourceHashMap.put(filenameNoExt, load(f));
+		}
+		return dataSourceHashMap;
+	}
+
+	/**
+	 * getDataStream is used by client (end user) to iterate the records of a
+	 * single data file lazily, for files too large to be read into a
+	 * DataSource
+	 * 
+	 * @param testData
+	 *            : String, the name of the file without its extension
+	 * @return stream : FieldSetStream, which the client closes
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public FieldSetStream getDataStream(String testData) throws IOException {
+		return open(new File(getDataFullPath(testData).getPath() + "." + getExtension()));
+	}
+
+	/**
+	 * getSample selects a sample of the records of a single data file while
+	 * streaming it, so that the file is never loaded whole
+	 * 
+	 * @param testData
+	 *            : String, the name of the file without its extension
+	 * @param sample
+	 *            : Sample, the records to select
+	 * @return dataSource : DataSource, empty if there is no such file
+	 */
+	@Override
+	public DataSource getSample(String testData, Sample sample) {
+		File file = new File(getDataFullPath(testData).getPath() + "." + getExtension());
+		if (!file.isFile()) {
+			log.warning("No data file " + file.getAbsolutePath() + " to sample.");
+			return new DataSource();
+		}
+		try {
+			FieldSetStream stream = open(file);
+			try {
+				return sample.apply(stream);
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to sample " + file.getAbsolutePath(), e);
+		}
+	}
+
+	private DataSource load(File f) {
+		return DataSourceCache.getInstance().get(f, new DataSourceCache.Loader() {
+			@Override
+			public DataSource load(File file) {
+				FieldSetStream stream = null;
+				try {
+					stream = open(file);
+					DataSource ds = stream.toDataSource();
+					log.fine("Loaded " + ds.size() + " rows from " + file.getAbsolutePath());
+					return ds;
+				} catch (IOException e) {
+					throw new IllegalStateException("Unable to load " + file.getAbsolutePath(), e);
+				} finally {
+					if (stream != null) {
+						try {
+							stream.close();
+						} catch (IOException e) {
+							log.warning("Unable to close " + file.getAbsolutePath() + ": " + e.getMessage());
+						}
+					}
+				}
+			}
+		});
+	}
+}
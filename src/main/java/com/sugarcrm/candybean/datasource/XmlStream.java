@@ -0,0 +1,157 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * XmlStream iterates the records of an XML file with a StAX parser, so that no document
+ * tree is built and only the current record is held in memory.
+ * 
+ * Each child element of the root element is a record.  Its attributes, and the text of
+ * each of its child elements, are the fields of the record, named after the attribute or
+ * element; the text of elements nested deeper is part of the text of their field.
+ * 
+ * <pre>
+ * &lt;accounts&gt;
+ *   &lt;account id="1"&gt;&lt;name&gt;alice&lt;/name&gt;&lt;city&gt;Paris&lt;/city&gt;&lt;/account&gt;
+ * &lt;/accounts&gt;
+ * </pre>
+ * 
+ * DTDs and external entities are not read.
+ */
+public class XmlStream extends FieldSetStream {
+
+	private static final XMLInputFactory FACTORY = createFactory();
+
+	/**
+	 * @param file The XML file
+	 * @throws FileNotFoundException If the file does not exist
+	 */
+	public XmlStream(File file) throws FileNotFoundException {
+		super(file);
+	}
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+
+	@Override
+	protected Cursor open() throws IOException {
+		final InputStream in = new BufferedInputStream(new FileInputStream(getFile()));
+		final XMLStreamReader reader;
+		try {
+			synchronized (FACTORY) {
+				reader = FACTORY.createXMLStreamReader(in);
+			}
+		} catch (XMLStreamException e) {
+			in.close();
+			throw new IOException("Unable to parse " + getFile(), e);
+		}
+		return new Cursor() {
+			private boolean inRoot = false;
+
+			@Override
+			public FieldSet next() throws IOException {
+				try {
+					while (reader.hasNext()) {
+						int event = reader.next();
+						if (event == XMLStreamConstants.START_ELEMENT) {
+							if (inRoot) {
+								return readRecord(reader);
+							}
+							inRoot = true;
+						} else if (event == XMLStreamConstants.END_ELEMENT) {
+							return null;
+						}
+					}
+					return null;
+				} catch (XMLStreamException e) {
+					throw new IOException("Unable to parse " + getFile(), e);
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					throw new IOException("Unable to close " + getFile(), e);
+				} finally {
+					in.close();
+				}
+			}
+		};
+	}
+
+	/*
+	 * Reads the record starting at the current element, leaving the reader at its end
+	 */
+	private static FieldSet readRecord(XMLStreamReader reader) throws XMLStreamException {
+		FieldSet record = new FieldSet();
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			record.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		}
+		StringBuilder text = new StringBuilder();
+		String field = null;
+		int depth = 1;
+		while (depth > 0) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				if (++depth == 2) {
+					field = reader.getLocalName();
+					text.setLength(0);
+				}
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				if (depth >= 2) {
+					text.append(reader.getText());
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				if (depth-- == 2) {
+					record.put(field, text.toString());
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		return record;
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.sugarcrm.candybean.datasource.CsvDataAdapter;
+import com.sugarcrm.candybean.datasource.CsvStream;
+import com.sugarcrm.candybean.datasource.DS;
+import com.sugarcrm.candybean.datasource.DataAdapter;
+import com.sugarcrm.candybean.datasource.DataSource;
+import com.sugarcrm.candybean.datasource.FieldSet;
+import com.sugarcrm.candybean.datasource.FieldSetStream;
+import com.sugarcrm.candybean.datasource.StreamingDataAdapter;
+
+/**
+ * The rows of a {@link VData} data set, numbered and handed out one at a time to any
+ * number of threads.  CSV, XML and JSON files are streamed, so rows are only read as
+ * they are taken; other data sets are read whole.
+ */
+class DataRows implements Closeable {
+
+	/*
+	 * The key the data directory is given to the data adapter under
+	 */
+	private static final String DIR_KEY = "vdata.dir";
+
+	/**
+	 * A row and its index in the data set.
+	 */
+	static class Row {
+		final int index;
+		final FieldSet fields;
+
+		Row(int index, FieldSet fields) {
+			this.index = index;
+			this.fields = fields;
+		}
+	}
+
+	private final Iterator<FieldSet> rows;
+	private final Closeable stream;
+	private int next = 0;
+
+	private DataRows(Iterator<FieldSet> rows, Closeable stream) {
+		this.rows = rows;
+		this.stream = stream;
+	}
+
+	/**
+	 * @param testName The name of the test reading the data
+	 * @param data The data set
+	 * @return The rows of the data set
+	 * @throws IOException If the data set cannot be read
+	 */
+	static DataRows open(String testName, VData data) throws IOException {
+		DS ds = new DS(testName);
+		ds.init(data.type(), DIR_KEY, data.dir());
+		DataAdapter adapter = ds.getDataAdapter();
+		if (adapter instanceof StreamingDataAdapter) {
+			FieldSetStream stream = ((StreamingDataAdapter) adapter.setDataBasePath(DIR_KEY)).getDataStream(data.value());
+			return new DataRows(stream.iterator(), stream);
+		}
+		if (adapter != null && adapter.getClass() == CsvDataAdapter.class) {
+			final CsvStream stream = ds.getDataStream(data.value());
+			final Iterator<CsvStream.Record> records = stream.iterator();
+			return new DataRows(new Iterator<FieldSet>() {
+				@Override
+				public boolean hasNext() {
+					return records.hasNext();
+				}
+
+				@Override
+				public FieldSet next() {
+					return records.next().toFieldSet();
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			}, stream);
+		}
+		DataSource dataSource = ds.getDataSource(data.value());
+		if (dataSource == null) {
+			throw new IOException("No data set " + data.value() + " in " + data.dir());
+		}
+		return new DataRows(dataSource.iterator(), null);
+	}
+
+	/**
+	 * @return The next row, or null once every row has been taken
+	 */
+	synchronized Row take() {
+		if (!rows.hasNext()) {
+			return null;
+		}
+		try {
+			return new Row(next++, rows.next());
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (stream != null) {
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+import com.sugarcrm.candybean.automation.Candybean;
+import com.sugarcrm.candybean.automation.webdriver.WaitStatistics;
+import com.sugarcrm.candybean.configuration.Configuration;
+
+/**
+ * A custom {@link RunListener} which times every test method and appends the duration to
+ * a {@link DurationStore}.  A test that runs notably longer than its recorded 95th
+ * percentile is logged as a slowdown.  At the end of the run, the conditions that were
+ * waited on longest are logged from {@link WaitStatistics}.
+ */
+public class DurationRecorder extends RunListener {
+
+	/*
+	 * The default file location of the duration store
+	 */
+	private static final String DURATIONS_PATH = "target/durations/durations.bin";
+
+	/*
+	 * Singleton DurationRecorder instance
+	 */
+	private static DurationRecorder durationRecorder;
+
+	/*
+	 * Start times of the running tests; tests may run in parallel
+	 */
+	private final Map<Description, Long> startTimes = new ConcurrentHashMap<Description, Long>();
+
+	private final DurationStore store;
+
+	private final Logger logger;
+
+	/*
+	 * Runs longer than this multiple of the recorded p95 are reported as slowdowns
+	 */
+	private final double slowdownFactor;
+
+	private DurationRecorder() throws IOException {
+		super();
+		logger = Logger.getLogger(Candybean.class.getSimpleName());
+		String candybeanConfigStr = System.getProperty(Candybean.CONFIG_KEY, Candybean.DEFAULT_CONFIG_FILE);
+		Configuration config = new Configuration(new File(candybeanConfigStr));
+		this.store = new DurationStore(new File(config.getValue("durations.path", DURATIONS_PATH)),
+				Integer.parseInt(config.getValue("durations.history", "20")));
+		this.slowdownFactor = Double.parseDouble(config.getValue("durations.slowdownFactor", "1.5"));
+	}
+
+	public static synchronized DurationRecorder getInstance() throws IOException {
+		if (durationRecorder == null) {
+			durationRecorder = new DurationRecorder();
+		}
+		return durationRecorder;
+	}
+
+	/**
+	 * @return The store the durations are recorded to
+	 */
+	public DurationStore getStore() {
+		return store;
+	}
+
+	@Override
+	public void testStarted(Description description) throws Exception {
+		startTimes.put(description, System.nanoTime());
+	}
+
+	@Override
+	public void testFinished(Description description) throws Exception {
+		Long start = startTimes.remove(description);
+		if (start == null) {
+			return;
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+		String key = DurationStore.getKey(description);
+		DurationStore.Statistics previous = store.getStatistics(key);
+		if (previous != null && previous.getRuns() >= 5 && millis > previous.getP95() * slowdownFactor) {
+			logger.warning("Slowdown: " + key + " took " + millis + "ms; previously " + previous);
+		}
+		store.record(key, millis);
+	}
+
+	@Override
+	public void testRunFinished(Result result) throws Exception {
+		store.flush();
+		for (WaitStatistics.Histogram histogram : WaitStatistics.getSlowest(10)) {
+			logger.info("Wait time: " + histogram);
+		}
+		super.testRunFinished(result);
+	}
+}
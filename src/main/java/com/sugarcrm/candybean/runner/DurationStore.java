@@ -0,0 +1,565 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.junit.runner.Description;
+
+import com.sugarcrm.candybean.automation.Candybean;
+
+/**
+ * An append-only binary store of test execution times which keeps the last N durations
+ * of every test method.
+ * 
+ * The file starts with a magic number, version and generation stamp, followed by two kinds
+ * of records: a key record assigning an integer id to a test name the first time it is
+ * seen, and a sample record holding an id and a duration in milliseconds.  A sample costs
+ * nine bytes on disk, so a store of 100k tests loads with one sequential read and a single
+ * pass over the bytes.  When samples that have fallen out of the history window dominate the
+ * file, or the file ends in a damaged record, it is rewritten on load with only the retained
+ * samples and a new generation stamp.
+ * 
+ * Several JVMs may record to the same file.  Durations are buffered until {@link #flush()},
+ * which holds an exclusive lock on a <code>.lock</code> file next to the store while it
+ * reads the records others have appended since, assigns ids to new tests after theirs and
+ * appends its own records.  A store that finds a new generation stamp reloads the file
+ * before appending.
+ */
+public class DurationStore implements DurationHistory {
+
+	/**
+	 * Rolling statistics for the retained durations of a single test.
+	 */
+	public static class Statistics {
+		private final int runs;
+		private final long last;
+		private final long p50;
+		private final long p95;
+
+		private Statistics(int[] durations, int last) {
+			int[] sorted = Arrays.copyOf(durations, durations.length);
+			Arrays.sort(sorted);
+			this.runs = sorted.length;
+			this.last = last;
+			this.p50 = percentile(sorted, 50);
+			this.p95 = percentile(sorted, 95);
+		}
+
+		/**
+		 * @return The number of retained durations
+		 */
+		public int getRuns() {
+			return runs;
+		}
+
+		/**
+		 * @return The most recent duration in milliseconds
+		 */
+		public long getLast() {
+			return last;
+		}
+
+		/**
+		 * @return The median duration in milliseconds
+		 */
+		public long getP50() {
+			return p50;
+		}
+
+		/**
+		 * @return The 95th percentile duration in milliseconds
+		 */
+		public long getP95() {
+			return p95;
+		}
+
+		/*
+		 * Nearest-rank percentile of a sorted, non-empty array
+		 */
+		private static long percentile(int[] sorted, int percent) {
+			int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+			return sorted[Math.max(0, rank - 1)];
+		}
+
+		@Override
+		public String toString() {
+			return "Statistics(runs=" + runs + ", last=" + last + "ms, p50=" + p50 + "ms, p95=" + p95 + "ms)";
+		}
+	}
+
+	/*
+	 * The last N durations of one test, kept in a ring
+	 */
+	private static class Entry {
+		private final int[] ring;
+		private int size = 0;
+		private int next = 0;
+
+		/*
+		 * The id of the test in the store file, or -1 until its key is written
+		 */
+		private int id = -1;
+
+		private Entry(int history) {
+			this.ring = new int[history];
+		}
+
+		private void add(int millis) {
+			ring[next] = millis;
+			next = (next + 1) % ring.length;
+			size = Math.min(size + 1, ring.length);
+		}
+
+		private int last() {
+			return ring[(next + ring.length - 1) % ring.length];
+		}
+
+		/*
+		 * Retained durations, oldest first
+		 */
+		private int[] durations() {
+			int[] durations = new int[size];
+			int start = size < ring.length ? 0 : next;
+			for (int i = 0; i < size; i++) {
+				durations[i] = ring[(start + i) % ring.length];
+			}
+			return durations;
+		}
+	}
+
+	/*
+	 * A duration recorded but not yet appended to the store file
+	 */
+	private static class Sample {
+		private final String key;
+		private final int millis;
+
+		private Sample(String key, int millis) {
+			this.key = key;
+			this.millis = millis;
+		}
+	}
+
+	private static final int MAGIC = 0x43424452;
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 16;
+	private static final byte KEY_RECORD = 1;
+	private static final byte SAMPLE_RECORD = 2;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Random GENERATIONS = new Random();
+
+	/*
+	 * Compact on load once the file holds this many times more samples than are retained
+	 */
+	private static final int COMPACTION_RATIO = 4;
+
+	private final Logger logger = Logger.getLogger(Candybean.class.getSimpleName());
+	private final File file;
+	private final File lockFile;
+	private final int history;
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+	private final List<Entry> byId = new ArrayList<Entry>();
+	private final List<Sample> pending = new ArrayList<Sample>();
+
+	/*
+	 * The generation stamp of the file as last read, and the length of its complete records
+	 */
+	private long generation = 0;
+	private long position = 0;
+
+	/*
+	 * Set when the file ends in a damaged record that new records must not follow
+	 */
+	private boolean damaged = false;
+
+	/**
+	 * Opens the store at the given file, loading any durations already recorded there.
+	 * 
+	 * @param file The store file; created on the first write if it does not exist
+	 * @param history The number of durations retained per test
+	 * @throws IOException if the existing file cannot be read or compacted
+	 */
+	public DurationStore(File file, int history) throws IOException {
+		this(file, history, true);
+	}
+
+	private DurationStore(File file, int history, boolean compact) throws IOException {
+		this.file = file;
+		this.lockFile = new File(file.getPath() + ".lock");
+		this.history = Math.max(1, history);
+		long start = System.currentTimeMillis();
+		if (compact) {
+			synchronized (DurationStore.class) {
+				FileLock lock = lock();
+				try {
+					int samples = load();
+					int retained = 0;
+					for (Entry entry : entries.values()) {
+						retained += entry.size;
+					}
+					if (damaged || samples > COMPACTION_RATIO * Math.max(retained, 1024)) {
+						compact();
+					}
+				} finally {
+					release(lock);
+				}
+			}
+		} else {
+			load();
+		}
+		logger.fine("Loaded " + entries.size() + " test durations from " + file.getPath() + " in "
+				+ (System.currentTimeMillis() - start) + "ms");
+	}
+
+	/**
+	 * Loads the durations of a store without ever writing to its file, e.g. a history shared
+	 * by several JVMs.  Nothing must be recorded to the store returned.
+	 * 
+	 * @param file The store file
+	 * @param history The number of durations retained per test
+	 * @return The durations recorded in the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static DurationStore readOnly(File file, int history) throws IOException {
+		if (!file.isFile()) {
+			throw new IOException("No such duration store: " + file.getPath());
+		}
+		return new DurationStore(file, history, false);
+	}
+
+	/**
+	 * Records the duration of a test run.  Durations are appended to the file on
+	 * {@link #flush()}.
+	 * 
+	 * @param key The qualified test name
+	 * @param millis The duration of the run in milliseconds
+	 */
+	public synchronized void record(String key, long millis) {
+		int duration = (int) Math.min(Integer.MAX_VALUE, Math.max(0, millis));
+		addEntry(key).add(duration);
+		pending.add(new Sample(key, duration));
+	}
+
+	/**
+	 * Appends the durations recorded since the last flush to the store file, first reading
+	 * any durations other JVMs have appended since.
+	 * 
+	 * @throws IOException if the store cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		if (pending.isEmpty()) {
+			return;
+		}
+		synchronized (DurationStore.class) {
+			FileLock lock = lock();
+			try {
+				catchUp();
+				if (damaged || generation == 0) {
+					// Retained durations, including those pending, are written over the file
+					compact();
+				} else {
+					append();
+				}
+				pending.clear();
+			} finally {
+				release(lock);
+			}
+		}
+	}
+
+	/**
+	 * Flushes the store.  The store stays usable afterwards.
+	 * 
+	 * @throws IOException if the store cannot be written
+	 */
+	public synchronized void close() throws IOException {
+		flush();
+	}
+
+	/**
+	 * @param key The qualified test name
+	 * @return The statistics of the given test, or null if it has never been recorded
+	 */
+	public synchronized Statistics getStatistics(String key) {
+		Entry entry = entries.get(key);
+		return entry == null || entry.size == 0 ? null : new Statistics(entry.durations(), entry.last());
+	}
+
+	/**
+	 * @return The number of tests with recorded durations
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the median of the retained durations of the described test.
+	 */
+	@Override
+	public long getExpectedMillis(Description description) {
+		Statistics statistics = getStatistics(getKey(description));
+		return statistics == null ? -1 : statistics.getP50();
+	}
+
+	/**
+	 * @param description A test method description
+	 * @return The key under which the durations of the test are stored
+	 */
+	public static String getKey(Description description) {
+		return description.getClassName() + "." + description.getMethodName();
+	}
+
+	/*
+	 * Takes the lock shared by every JVM writing the store.  Locks are held per JVM, so
+	 * callers also hold the class monitor.
+	 */
+	private FileLock lock() throws IOException {
+		File parent = lockFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		RandomAccessFile raf = new RandomAccessFile(lockFile, "rw");
+		try {
+			return raf.getChannel().lock();
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	private static void release(FileLock lock) throws IOException {
+		try {
+			lock.release();
+		} finally {
+			lock.channel().close();
+		}
+	}
+
+	/*
+	 * Reads every record of the store file, returning the number of samples read
+	 */
+	private int load() throws IOException {
+		generation = 0;
+		position = 0;
+		damaged = false;
+		if (!file.exists() || file.length() < HEADER_BYTES) {
+			return 0;
+		}
+		ByteBuffer buffer = read(0);
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			logger.warning("Ignoring unrecognized duration store: " + file.getPath());
+			return 0;
+		}
+		generation = buffer.getLong();
+		position = HEADER_BYTES;
+		return readRecords(buffer);
+	}
+
+	/*
+	 * Reads the records appended to the store file since it was last read, or all of it
+	 * again if it has been rewritten since.  Called with the lock held.
+	 */
+	private void catchUp() throws IOException {
+		long stamp = 0;
+		if (file.exists() && file.length() >= HEADER_BYTES) {
+			ByteBuffer header = read(0);
+			if (header.getInt() == MAGIC && header.getInt() == VERSION) {
+				stamp = header.getLong();
+			}
+		}
+		if (stamp != generation || file.length() < position) {
+			// Rewritten by another JVM: start from its contents and re-apply what is pending
+			entries.clear();
+			byId.clear();
+			load();
+			for (Sample sample : pending) {
+				addEntry(sample.key).add(sample.millis);
+			}
+		} else if (generation != 0 && file.length() > position) {
+			readRecords(read(position));
+		}
+	}
+
+	/*
+	 * Reads the store file from the given offset to its end
+	 */
+	private ByteBuffer read(long offset) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - offset));
+			channel.position(offset);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// read the rest of the file
+			}
+			buffer.flip();
+			return buffer;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/*
+	 * Reads records from the buffer, advancing the position past each complete one.  A
+	 * record cut short by an interrupted write marks the file as damaged.  Returns the number
+	 * of samples read.
+	 */
+	private int readRecords(ByteBuffer buffer) {
+		int samples = 0;
+		try {
+			while (buffer.hasRemaining()) {
+				int start = buffer.position();
+				byte type = buffer.get();
+				int id = buffer.getInt();
+				if (type == KEY_RECORD) {
+					byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+					buffer.get(bytes);
+					Entry entry = addEntry(new String(bytes, UTF8));
+					entry.id = id;
+					while (byId.size() <= id) {
+						byId.add(null);
+					}
+					byId.set(id, entry);
+				} else if (type == SAMPLE_RECORD) {
+					int millis = buffer.getInt();
+					if (id < byId.size() && byId.get(id) != null) {
+						byId.get(id).add(millis);
+						samples++;
+					}
+				} else {
+					logger.warning("Corrupt duration store record at byte " + position + ": " + file.getPath());
+					damaged = true;
+					break;
+				}
+				position += buffer.position() - start;
+			}
+		} catch (BufferUnderflowException e) {
+			logger.warning("Duration store ends with an incomplete record: " + file.getPath());
+			damaged = true;
+		}
+		return samples;
+	}
+
+	/*
+	 * Appends the pending durations, and the keys of tests new to the file.  Called with the
+	 * lock held.
+	 */
+	private void append() throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		try {
+			for (Sample sample : pending) {
+				Entry entry = entries.get(sample.key);
+				if (entry.id < 0) {
+					entry.id = byId.size();
+					byId.add(entry);
+					writeKey(out, entry.id, sample.key);
+				}
+				writeSample(out, entry.id, sample.millis);
+			}
+		} finally {
+			out.close();
+		}
+		position = file.length();
+	}
+
+	/*
+	 * Rewrites the store with only the retained durations, under a new generation stamp.
+	 * Called with the lock held.
+	 */
+	private void compact() throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		long stamp;
+		do {
+			stamp = GENERATIONS.nextLong();
+		} while (stamp == 0 || stamp == generation);
+		File compacted = new File(file.getPath() + ".tmp");
+		DataOutputStream tmp = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compacted)));
+		byId.clear();
+		try {
+			tmp.writeInt(MAGIC);
+			tmp.writeInt(VERSION);
+			tmp.writeLong(stamp);
+			for (Map.Entry<String, Entry> each : entries.entrySet()) {
+				Entry entry = each.getValue();
+				entry.id = byId.size();
+				byId.add(entry);
+				writeKey(tmp, entry.id, each.getKey());
+				for (int millis : entry.durations()) {
+					writeSample(tmp, entry.id, millis);
+				}
+			}
+		} finally {
+			tmp.close();
+		}
+		Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		generation = stamp;
+		position = file.length();
+		damaged = false;
+		logger.info("Compacted duration store: " + file.getPath());
+	}
+
+	private Entry addEntry(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry(history);
+			entries.put(key, entry);
+		}
+		return entry;
+	}
+
+	private static void writeKey(DataOutputStream stream, int id, String key) throws IOException {
+		byte[] bytes = key.getBytes(UTF8);
+		stream.writeByte(KEY_RECORD);
+		stream.writeInt(id);
+		stream.writeShort(Math.min(bytes.length, 0xFFFF));
+		stream.write(bytes, 0, Math.min(bytes.length, 0xFFFF));
+	}
+
+	private static void writeSample(DataOutputStream stream, int id, int millis) throws IOException {
+		stream.writeByte(SAMPLE_RECORD);
+		stream.writeInt(id);
+		stream.writeInt(millis);
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.runner.Description;
+import org.junit.runners.model.FrameworkMethod;
+
+/**
+ * Deterministically splits the test methods of a class across <b>shard.total</b> JVMs so
+ * that each JVM selects a disjoint subset without any coordination.  This only holds if
+ * every JVM uses the very same duration history, so {@link VRunner} passes either a frozen
+ * history file named by <b>shard.history</b> or no history at all.
+ * 
+ * Methods with a recorded duration are balanced greedily, longest first, onto the shard
+ * with the least expected time.  Ties are broken starting from a shard chosen by the hash
+ * of the class name, so that classes with only a few tests do not all land on the first
+ * shard.  Methods without history are assigned by the hash of their qualified name.
+ */
+public class TestSharder {
+
+	private final int index;
+	private final int total;
+	private final DurationHistory history;
+
+	/**
+	 * @param index The zero-based shard to select tests for
+	 * @param total The number of shards
+	 * @param history The expected durations used to balance shards
+	 */
+	public TestSharder(int index, int total, DurationHistory history) {
+		if (total < 1 || index < 0 || index >= total) {
+			throw new IllegalArgumentException("Invalid shard " + index + " of " + total);
+		}
+		this.index = index;
+		this.total = total;
+		this.history = history;
+	}
+
+	/**
+	 * Returns the methods of the given class which belong to this shard, in their original order.
+	 * 
+	 * @param testClass The class declaring the test methods
+	 * @param methods The test methods of the class
+	 * @return The subset of methods assigned to this shard
+	 */
+	public List<FrameworkMethod> select(Class<?> testClass, List<FrameworkMethod> methods) {
+		if (total == 1) {
+			return methods;
+		}
+		final String className = testClass.getName();
+		final List<FrameworkMethod> timed = new ArrayList<FrameworkMethod>();
+		final List<Long> weights = new ArrayList<Long>();
+		Set<FrameworkMethod> selected = new HashSet<FrameworkMethod>();
+		for (FrameworkMethod method : methods) {
+			long expected = history.getExpectedMillis(Description.createTestDescription(testClass, method.getName()));
+			if (expected >= 0) {
+				timed.add(method);
+				weights.add(expected);
+			} else if (bucket(className + "." + method.getName()) == index) {
+				selected.add(method);
+			}
+		}
+
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < timed.size(); i++) {
+			order.add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				int byWeight = weights.get(i2).compareTo(weights.get(i1));
+				return byWeight != 0 ? byWeight : timed.get(i1).getName().compareTo(timed.get(i2).getName());
+			}
+		});
+		long[] loads = new long[total];
+		int offset = bucket(className);
+		for (int i : order) {
+			int lightest = offset;
+			for (int k = 1; k < total; k++) {
+				int shard = (offset + k) % total;
+				if (loads[shard] < loads[lightest]) {
+					lightest = shard;
+				}
+			}
+			loads[lightest] += Math.max(1, weights.get(i));
+			if (lightest == index) {
+				selected.add(timed.get(i));
+			}
+		}
+
+		List<FrameworkMethod> shard = new ArrayList<FrameworkMethod>(selected.size());
+		for (FrameworkMethod method : methods) {
+			if (selected.contains(method)) {
+				shard.add(method);
+			}
+		}
+		return shard;
+	}
+
+	@Override
+	public String toString() {
+		return "Shard " + index + " of " + total;
+	}
+
+	/*
+	 * String.hashCode is specified, so every JVM maps a name to the same shard
+	 */
+	private int bucket(String name) {
+		return (name.hashCode() & Integer.MAX_VALUE) % total;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.sugarcrm.candybean.datasource.DS;
+
+/**
+ * Runs a test method once per row of a {@link DS} data set, each row as its own test
+ * named method[row], with a new instance of the test class and its own befores and
+ * afters.  The method takes the row as its only parameter:
+ * 
+ * <pre>
+ * &#64;Test
+ * &#64;VData(value = "Accounts", dir = "testData")
+ * public void createAccount(FieldSet account) { ... }
+ * </pre>
+ * 
+ * Rows are read lazily as the run proceeds, and when 'parallel.enabled' is true they run
+ * on several of VRunner's threads, whichever 'parallel.scheduler' is used; see
+ * {@link VRunner}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface VData {
+	/**
+	 * The data set, the name of a single data file without its extension (or a table)
+	 */
+	String value();
+
+	/**
+	 * The directory of the data file, relative to the working directory
+	 */
+	String dir() default "testData";
+
+	DS.DataType type() default DS.DataType.CSV;
+}
@@ -27,11 +27,15 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -39,17 +43,30 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import javax.xml.bind.JAXBException;
+import org.junit.Ignore;
 import org.junit.Test;
+import org.junit.internal.runners.model.EachTestNotifier;
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
 import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.RunnerScheduler;
+import org.junit.runners.model.Statement;
 import com.sugarcrm.candybean.automation.Candybean;
+import com.sugarcrm.candybean.configuration.Configuration;
+import com.sugarcrm.candybean.configuration.ConfigurationListener;
+import com.sugarcrm.candybean.configuration.ConfigurationSnapshot;
+import com.sugarcrm.candybean.datasource.FieldSet;
 import com.sugarcrm.candybean.exceptions.CandybeanException;
 import com.sugarcrm.candybean.utilities.CandybeanLogger;
+import com.sugarcrm.candybean.utilities.LogContext;
 
 /**
  * Custom JUnit test runner class. When a test is annotated to use this runner,
@@ -60,15 +77,57 @@ import com.sugarcrm.candybean.utilities.CandybeanLogger;
  * test is not run.  This feature provides extra control for not executing tests that
  * perhaps are known to fail or currently under development.  The block list file path 
  * is specified using the system variable "blocklist" (either camel or lower case).
+ * 
+ * When 'parallel.enabled' is true, test methods run concurrently on 'parallel.threads'
+ * threads.  The 'parallel.scheduler' key selects how: 'fifo' (the default) submits
+ * methods in declaration order, while 'workstealing' runs the longest tests first,
+ * balances workers by work stealing and caps concurrency per {@link VResource}.
+ * 
+ * When 'shard.total' is greater than one, only the share of test methods belonging to
+ * shard 'shard.index' (zero-based) is run; see {@link TestSharder}.  Both keys may be
+ * given as system variables so that every JVM or CI agent can share one configuration.
+ * 
+ * A test method annotated with {@link VData} runs once per row of its data set.  Rows
+ * are read as they are run rather than up front, and each is reported as its own test.
+ * With the 'fifo' scheduler, idle worker threads join in running the rows of a method;
+ * with 'workstealing', the worker that took the method is joined by row threads of
+ * their own, 'parallel.threads' of them per test class run.
+ * 
+ * Tests run with the class and method they belong to in their {@link LogContext}, so
+ * that whatever thread runs them, their records are routed to the log file of their
+ * class; the log files are merged once the class has run.
  *
  */
 public class VRunner extends BlockJUnit4ClassRunner {
 	
 	public static final String BLOCKLIST_PATH_KEY = "blocklist";
 	public static final String BLOCKLIST_COMMENT = "#";
-	private static int threadCounter = 0;
+	public static final String WORK_STEALING_SCHEDULER = "workstealing";
+	private static final AtomicInteger threadCounter = new AtomicInteger();
 	private static Logger logger;
 	private static Candybean candybean;
+	private static DurationHistory durationHistory;
+	
+	/*
+	 * Set when test methods are handed to the work-stealing scheduler instead of a RunnerScheduler
+	 */
+	private WorkStealingScheduler workStealingScheduler;
+	
+	/*
+	 * Test methods gathered on the calling thread for the work-stealing scheduler
+	 */
+	private final ThreadLocal<List<FrameworkMethod>> pendingMethods = new ThreadLocal<List<FrameworkMethod>>();
+	
+	/*
+	 * The worker threads which help run the rows of VData methods, and how many there are
+	 */
+	private volatile ExecutorService rowWorkers;
+	private volatile int rowParallelism = 1;
+	
+	/*
+	 * Resizes the 'fifo' worker threads when 'parallel.threads' is changed by a reload of the configuration
+	 */
+	private ConfigurationListener threadsListener;
 	
 	public VRunner(Class<?> klass) throws InitializationError, SecurityException, IOException {
 		super(klass);
@@ -76,13 +135,32 @@ public class VRunner extends BlockJUnit4ClassRunner {
 			candybean = Candybean.getInstance();
 			boolean parallelTests = Boolean.parseBoolean(candybean.config.getValue("parallel.enabled","false"));
 			if (parallelTests) {
-				setScheduler(new NonBlockingAsynchronousRunner(Integer.parseInt(Candybean.getInstance().config.getValue("parallel.threads", "4"))));
+				int threads = Integer.parseInt(candybean.config.getValue("parallel.threads", "4"));
+				if (WORK_STEALING_SCHEDULER.equalsIgnoreCase(candybean.config.getValue("parallel.scheduler", "fifo"))) {
+					workStealingScheduler = new WorkStealingScheduler(threads, new CandybeanThreadFactory(threads), candybean.config);
+					rowParallelism = threads;
+				} else {
+					final NonBlockingAsynchronousRunner scheduler = new NonBlockingAsynchronousRunner(threads);
+					rowWorkers = scheduler.fService;
+					rowParallelism = threads;
+					setScheduler(scheduler);
+					threadsListener = new ConfigurationListener() {
+						@Override
+						public void configurationChanged(ConfigurationSnapshot previous, ConfigurationSnapshot current) {
+							int threads = (int) current.getLong("parallel.threads", 4);
+							if (threads > 0 && threads != rowParallelism) {
+								scheduler.setThreads(threads);
+								rowParallelism = threads;
+							}
+						}
+					};
+				}
 			}
 		} catch (CandybeanException e1) {
 			logger = Logger.getLogger(VRunner.class.getSimpleName());
 			logger.severe("Unable to instantiate candybean.");
 		}
-
+		shard();
 	}
 
 	// TODO add validation/error checking, flexibility in provided class/method name, etc.
@@ -147,6 +225,90 @@ public class VRunner extends BlockJUnit4ClassRunner {
 		return finalTestMethods;
 	}
 	
+	/*
+	 * Filters the test methods down to those of the configured shard, if sharding is enabled.
+	 * A filter is used rather than computeTestMethods() so that a class with no tests on this
+	 * shard is skipped by run() instead of failing validation with "No runnable methods".
+	 */
+	private void shard() {
+		Configuration config;
+		try {
+			config = Candybean.getInstance().config;
+		} catch (CandybeanException e) {
+			return;
+		}
+		String totalValue = config.getValue("shard.total");
+		if (totalValue == null) {
+			return;
+		}
+		final TestSharder sharder;
+		try {
+			int total = Integer.parseInt(totalValue.trim());
+			int index = Integer.parseInt(config.getValue("shard.index", "0").trim());
+			sharder = new TestSharder(index, total, getShardHistory(config));
+		} catch (IllegalArgumentException e) {
+			// Running every test is preferable to silently running none
+			logger.severe("Sharding disabled: " + e.getMessage());
+			return;
+		}
+		List<FrameworkMethod> testMethods = getChildren();
+		final Set<String> selected = new HashSet<String>();
+		for (FrameworkMethod method : sharder.select(getTestClass().getJavaClass(), testMethods)) {
+			selected.add(method.getName());
+		}
+		logger.info(sharder + " runs " + selected.size() + " of " + testMethods.size() + " tests in " + getTestClass().getName());
+		try {
+			filter(new Filter() {
+				@Override
+				public boolean shouldRun(Description description) {
+					return description.getMethodName() == null || selected.contains(description.getMethodName());
+				}
+
+				@Override
+				public String describe() {
+					return sharder.toString();
+				}
+			});
+		} catch (NoTestsRemainException e) {
+			// None of the tests of this class run on this shard
+		}
+	}
+	
+	/*
+	 * The history shards are balanced by must be the same on every shard, so only a history
+	 * file given explicitly by 'shard.history' is used, and it is only read.  Without one,
+	 * tests are assigned by the hash of their names alone.
+	 */
+	private static DurationHistory getShardHistory(Configuration config) {
+		String path = config.getValue("shard.history");
+		if (path == null || path.trim().isEmpty()) {
+			return DurationHistory.NONE;
+		}
+		try {
+			return DurationStore.readOnly(new File(path.trim()), Integer.parseInt(config.getValue("durations.history", "20")));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Unable to read shard history " + path + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Test methods take no arguments, except {@link VData} methods which take their row.
+	 */
+	@Override
+	protected void validateTestMethods(List<Throwable> errors) {
+		for (FrameworkMethod method : getTestClass().getAnnotatedMethods(Test.class)) {
+			if (method.getAnnotation(VData.class) == null) {
+				method.validatePublicVoidNoArg(false, errors);
+			} else {
+				method.validatePublicVoid(false, errors);
+				Class<?>[] parameters = method.getMethod().getParameterTypes();
+				if (parameters.length != 1 || !parameters[0].isAssignableFrom(FieldSet.class)) {
+					errors.add(new Exception("Method " + method.getName() + " should have a single FieldSet parameter"));
+				}
+			}
+		}
+	}
+	
 	private List<FrameworkMethod> removeBlockedTests(List<FrameworkMethod> tests) throws FileNotFoundException, IOException {
 		Set<String> blockListTests = this.getBlockedTestNames();
 		logger.info("Blocked tests: ");
@@ -196,12 +358,318 @@ public class VRunner extends BlockJUnit4ClassRunner {
 		}
 	}
 	
+	/**
+	 * Sets the source of historical test durations used to plan parallel runs.
+	 * 
+	 * @param history The duration history to consult
+	 */
+	public static synchronized void setDurationHistory(DurationHistory history) {
+		durationHistory = history == null ? DurationHistory.NONE : history;
+	}
+	
+	/**
+	 * Returns the source of historical test durations, by default the {@link DurationStore}
+	 * written by the {@link DurationRecorder}.
+	 * 
+	 * @return The duration history used to plan parallel runs
+	 */
+	public static synchronized DurationHistory getDurationHistory() {
+		if (durationHistory == null) {
+			try {
+				durationHistory = DurationRecorder.getInstance().getStore();
+			} catch (IOException e) {
+				Logger.getLogger(Candybean.class.getSimpleName()).warning("Unable to load test durations: " + e.getMessage());
+				durationHistory = DurationHistory.NONE;
+			}
+		}
+		return durationHistory;
+	}
+	
+	/**
+	 * With the work-stealing scheduler, the children are first run on the calling thread
+	 * with {@link #runChild} only collecting them (so JUnit's filtering and sorting still
+	 * apply), and are then executed together by the scheduler.
+	 */
+	@Override
+	protected Statement childrenInvoker(final RunNotifier notifier) {
+		final Statement collectChildren = super.childrenInvoker(notifier);
+		if (workStealingScheduler == null) {
+			return collectChildren;
+		}
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				List<FrameworkMethod> methods = new ArrayList<FrameworkMethod>();
+				pendingMethods.set(methods);
+				try {
+					collectChildren.evaluate();
+				} finally {
+					pendingMethods.remove();
+				}
+				// Row threads are named apart from the scheduler's, as interfaces key per-thread resources by name
+				rowWorkers = Executors.newFixedThreadPool(rowParallelism, new CandybeanThreadFactory(rowParallelism, "row"));
+				try {
+					workStealingScheduler.execute(createTasks(methods, notifier));
+				} finally {
+					rowWorkers.shutdown();
+					rowWorkers = null;
+				}
+			}
+		};
+	}
+	
+	@Override
+	protected Statement classBlock(RunNotifier notifier) {
+		return withLogContext(super.classBlock(notifier), null);
+	}
+	
+	@Override
+	protected Statement methodBlock(FrameworkMethod method) {
+		return withLogContext(super.methodBlock(method), method.getName());
+	}
+	
+	/*
+	 * Runs the statement with this class, and the method if given, in the log context of the running thread
+	 */
+	private Statement withLogContext(final Statement statement, final String methodName) {
+		final String className = getTestClass().getJavaClass().getSimpleName();
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				Map<String, String> previous = LogContext.getAll();
+				LogContext.put(LogContext.TEST_CLASS, className);
+				LogContext.put(LogContext.TEST_METHOD, methodName);
+				try {
+					statement.evaluate();
+				} finally {
+					LogContext.setAll(previous);
+				}
+			}
+		};
+	}
+	
+	@Override
+	protected void runChild(FrameworkMethod method, RunNotifier notifier) {
+		List<FrameworkMethod> pending = pendingMethods.get();
+		if (pending != null) {
+			pending.add(method);
+		} else {
+			runMethod(method, notifier);
+		}
+	}
+	
+	private void runMethod(FrameworkMethod method, RunNotifier notifier) {
+		VData data = method.getAnnotation(VData.class);
+		if (data == null) {
+			super.runChild(method, notifier);
+		} else {
+			runRows(method, data, notifier);
+		}
+	}
+	
+	/*
+	 * Runs a VData method once per row.  The calling thread takes rows until there are none
+	 * left, and idle row workers join in; the method is done once the workers which joined
+	 * have finished their last row.  Rows which cannot be read fail the method itself.  If
+	 * the calling thread is interrupted, no further rows are started, and the data is only
+	 * closed once the workers have finished the rows they are running.
+	 */
+	private void runRows(final FrameworkMethod method, VData data, final RunNotifier notifier) {
+		Description description = describeChild(method);
+		if (method.getAnnotation(Ignore.class) != null) {
+			notifier.fireTestIgnored(description);
+			return;
+		}
+		final DataRows rows;
+		try {
+			rows = DataRows.open(getTestClass().getName() + "." + method.getName(), data);
+		} catch (Exception e) {
+			new EachTestNotifier(notifier, description).addFailure(e);
+			return;
+		}
+		final AtomicReference<Throwable> readError = new AtomicReference<Throwable>();
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					DataRows.Row row;
+					while (!stopped.get() && (row = rows.take()) != null) {
+						runRow(method, row, notifier);
+					}
+				} catch (RuntimeException e) {
+					readError.compareAndSet(null, e);
+				}
+			}
+		};
+		try {
+			ExecutorService workers = rowWorkers;
+			if (workers == null || rowParallelism < 2) {
+				worker.run();
+			} else {
+				runOnRowWorkers(workers, worker, stopped);
+			}
+		} finally {
+			try {
+				rows.close();
+			} catch (IOException e) {
+				logger.warning("Unable to close the data of " + method.getName() + ": " + e.getMessage());
+			}
+		}
+		if (readError.get() != null) {
+			new EachTestNotifier(notifier, description).addFailure(readError.get());
+		}
+	}
+	
+	private void runOnRowWorkers(ExecutorService workers, final Runnable worker, AtomicBoolean stopped) {
+		final Object monitor = new Object();
+		final int[] active = { 0 };
+		final boolean[] finished = { false };
+		for (int i = 1; i < rowParallelism; i++) {
+			try {
+				workers.submit(new Runnable() {
+					@Override
+					public void run() {
+						synchronized (monitor) {
+							if (finished[0]) {
+								return;
+							}
+							active[0]++;
+						}
+						try {
+							worker.run();
+						} finally {
+							synchronized (monitor) {
+								active[0]--;
+								monitor.notifyAll();
+							}
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				break;
+			}
+		}
+		worker.run();
+		boolean interrupted = false;
+		synchronized (monitor) {
+			finished[0] = true;
+			while (active[0] > 0) {
+				try {
+					monitor.wait();
+				} catch (InterruptedException e) {
+					// Stop the workers, but wait for them before their rows are closed under them
+					interrupted = true;
+					stopped.set(true);
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void runRow(FrameworkMethod method, DataRows.Row row, RunNotifier notifier) {
+		FrameworkMethod rowMethod = new RowMethod(method.getMethod(), row);
+		Description description = Description.createTestDescription(getTestClass().getJavaClass(),
+				rowMethod.getName(), method.getAnnotations());
+		runLeaf(methodBlock(rowMethod), description, notifier);
+	}
+	
+	/*
+	 * A VData method bound to one of its rows
+	 */
+	private static class RowMethod extends FrameworkMethod {
+		private final DataRows.Row row;
+		
+		RowMethod(Method method, DataRows.Row row) {
+			super(method);
+			this.row = row;
+		}
+		
+		@Override
+		public String getName() {
+			return super.getName() + "[" + row.index + "]";
+		}
+		
+		@Override
+		public Object invokeExplosively(Object target, Object... params) throws Throwable {
+			return super.invokeExplosively(target, row.fields);
+		}
+	}
+	
+	/*
+	 * Wraps each test method in a task weighted by its expected duration. Tests without
+	 * history are weighted with the mean of those that have one.
+	 */
+	private List<WorkStealingScheduler.Task> createTasks(List<FrameworkMethod> methods, final RunNotifier notifier) {
+		DurationHistory history = getDurationHistory();
+		long[] expected = new long[methods.size()];
+		long knownTotal = 0;
+		int knownCount = 0;
+		for (int i = 0; i < methods.size(); i++) {
+			expected[i] = history.getExpectedMillis(describeChild(methods.get(i)));
+			if (expected[i] >= 0) {
+				knownTotal += expected[i];
+				knownCount++;
+			}
+		}
+		long unknownWeight = knownCount == 0 ? 1 : Math.max(1, knownTotal / knownCount);
+		List<WorkStealingScheduler.Task> tasks = new ArrayList<WorkStealingScheduler.Task>(methods.size());
+		for (int i = 0; i < methods.size(); i++) {
+			final FrameworkMethod method = methods.get(i);
+			long weight = expected[i] >= 0 ? expected[i] : unknownWeight;
+			tasks.add(new WorkStealingScheduler.Task(weight, getResource(method)) {
+				@Override
+				public void run() {
+					runMethod(method, notifier);
+				}
+
+				@Override
+				public void cancel() {
+					new EachTestNotifier(notifier, describeChild(method)).addFailure(
+							new InterruptedException("Interrupted before " + method.getName() + " could run"));
+				}
+			});
+		}
+		return tasks;
+	}
+	
+	/*
+	 * Returns the resource a test method occupies: its own VResource, its class's VResource,
+	 * or the resource implied by the configured automation interface.
+	 */
+	private String getResource(FrameworkMethod method) {
+		VResource resource = method.getAnnotation(VResource.class);
+		if (resource == null) {
+			resource = getTestClass().getJavaClass().getAnnotation(VResource.class);
+		}
+		if (resource != null) {
+			return resource.value();
+		}
+		if (Boolean.parseBoolean(candybean.config.getValue("grid.enabled", "false"))) {
+			return "grid";
+		} else if (Boolean.parseBoolean(candybean.config.getValue("saucelabs.enabled", "false"))) {
+			return "saucelabs";
+		}
+		String iface = candybean.config.getValue("automation.interface", "chrome").trim().toLowerCase();
+		if (iface.equals("android") || iface.equals("ios")) {
+			return "appium";
+		}
+		return iface;
+	}
+	
 	/**
 	 * Adds a {@link TestRecorder} listener to the JUnit {@link RunNotifier} which
-	 * listens to a failing state of a test annotated with {@link Record}. 
+	 * listens to a failing state of a test annotated with {@link Record}, and a
+	 * {@link DurationRecorder} which records how long every test takes.
 	 */
     @Override
     public void run(final RunNotifier notifier) {
+    	if (getDescription().getChildren().isEmpty()) {
+    		// Every test was filtered out, e.g. to other shards; skip the class setup as well
+    		return;
+    	}
     	try {
 			notifier.addFirstListener(TestRecorder.getInstance());
 		} catch (SecurityException e) {
@@ -211,14 +679,70 @@ public class VRunner extends BlockJUnit4ClassRunner {
 		} catch (JAXBException e) {
 			logger.info("Unable to instantiate test recorder");
 		}
-    	super.run(notifier);
+    	DurationRecorder durationRecorder = null;
+    	try {
+    		durationRecorder = DurationRecorder.getInstance();
+    		// Each test class is run with this listener; don't time a test twice on a shared notifier
+    		notifier.removeListener(durationRecorder);
+    		notifier.addListener(durationRecorder);
+    	} catch (IOException e) {
+    		logger.info("Unable to instantiate duration recorder");
+    	}
+    	if (logger instanceof CandybeanLogger) {
+    		try {
+    			((CandybeanLogger) logger).getRoutingHandler(new File("./log"));
+    		} catch (IOException e) {
+    			logger.warning("Unable to route test logs: " + e.getMessage());
+    		}
+    	}
+    	if (threadsListener != null) {
+    		candybean.config.addListener(threadsListener);
+    	}
+    	try {
+    		super.run(notifier);
+    	} finally {
+    		if (threadsListener != null) {
+    			candybean.config.removeListener(threadsListener);
+    		}
+    	}
+    	if (durationRecorder != null) {
+    		try {
+    			durationRecorder.getStore().flush();
+    		} catch (IOException e) {
+    			logger.warning("Unable to write test durations: " + e.getMessage());
+    		}
+    	}
+    	if (logger instanceof CandybeanLogger) {
+    		try {
+    			((CandybeanLogger) logger).mergeRoutedLogs();
+    		} catch (IOException e) {
+    			logger.warning("Unable to merge the test logs: " + e.getMessage());
+    		}
+    	}
     }
     
     private static class NonBlockingAsynchronousRunner implements RunnerScheduler {
         private final List<Future<Object>> futures = Collections.synchronizedList(new ArrayList<Future<Object>>());
-        private final ExecutorService fService;
+        private final ThreadPoolExecutor fService;
+        private final CandybeanThreadFactory threadFactory;
         public NonBlockingAsynchronousRunner(int threads) {
-            fService = Executors.newFixedThreadPool(threads, new CandybeanThreadFactory(threads));
+            threadFactory = new CandybeanThreadFactory(threads);
+            fService = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads, threadFactory);
+        }
+
+        /*
+         * Changes the number of worker threads; surplus threads end once they finish their current test
+         */
+        public void setThreads(int threads) {
+            threadFactory.setNumOfThreads(threads);
+            if (threads > fService.getMaximumPoolSize()) {
+                fService.setMaximumPoolSize(threads);
+                fService.setCorePoolSize(threads);
+            } else {
+                fService.setCorePoolSize(threads);
+                fService.setMaximumPoolSize(threads);
+            }
+            logger.info("Running tests on " + threads + " threads.");
         }
 
         public void schedule(final Runnable childStatement) {
@@ -251,18 +775,32 @@ public class VRunner extends BlockJUnit4ClassRunner {
     
 	private static class CandybeanThreadFactory implements ThreadFactory {
 		
-		private int numOfThreads = 4;
+		private volatile int numOfThreads = 4;
+		
+		private final String kind;
 		
 		public CandybeanThreadFactory(int numOfThreads) {
+			this(numOfThreads, "");
+		}
+		
+		/**
+		 * @param numOfThreads The number of threads whose names are reused
+		 * @param kind Added to the names of the threads, to tell them apart from other pools'
+		 */
+		public CandybeanThreadFactory(int numOfThreads, String kind) {
 			super();
 			this.numOfThreads = numOfThreads;
+			this.kind = kind;
+		}
+		
+		public void setNumOfThreads(int numOfThreads) {
+			this.numOfThreads = numOfThreads;
 		}
 
 		public Thread newThread(Runnable r) {
-			if(threadCounter == numOfThreads){
-				threadCounter = 0;
-			}
-			return new Thread(r, candybean.config.getValue("parallel.threadNamePattern","")+threadCounter++);
+			// Thread names are reused modulo the pool size; interfaces key per-thread resources by name
+			int threadNumber = (threadCounter.getAndIncrement() & Integer.MAX_VALUE) % numOfThreads;
+			return new Thread(r, candybean.config.getValue("parallel.threadNamePattern","") + kind + threadNumber);
 		}
 	}
 }
@@ -0,0 +1,300 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.sugarcrm.candybean.automation.Candybean;
+import com.sugarcrm.candybean.configuration.Configuration;
+
+/**
+ * Runs a batch of weighted tasks across a fixed number of workers.
+ * 
+ * Tasks are ordered longest-first and dealt to per-worker deques so that the expected
+ * load of every worker is as even as possible (longest processing time first).  A worker
+ * that runs out of work steals from the worker with the most remaining weight, so a bad
+ * estimate only costs the time of a single task.  A worker interrupted while waiting
+ * cancels the tasks left in its deque rather than leave them unrun.  Each task occupies a slot of its resource type (e.g. chrome,
+ * grid, appium) while it runs; the number of slots per resource is read from
+ * <b>parallel.slots.&lt;resource&gt;</b> and shared by every scheduler in the JVM.  A task
+ * whose resource has no free slot is passed over in favor of one that can run now.
+ */
+public class WorkStealingScheduler {
+
+	/**
+	 * A unit of work with an expected duration and the resource it occupies.
+	 */
+	public static abstract class Task implements Runnable {
+		private final long weight;
+		private final String resource;
+
+		public Task(long weight, String resource) {
+			this.weight = weight;
+			this.resource = resource;
+		}
+
+		public long getWeight() {
+			return weight;
+		}
+
+		public String getResource() {
+			return resource;
+		}
+
+		/**
+		 * Called instead of {@link #run()} when the task is given up without running, because
+		 * its worker was interrupted.  Does nothing by default.
+		 */
+		public void cancel() {
+		}
+	}
+
+	/*
+	 * Slots per resource type, shared by all schedulers in this JVM. Resources without
+	 * a configured slot count have no entry and are unbounded.
+	 */
+	private static final ConcurrentMap<String, Semaphore> slots = new ConcurrentHashMap<String, Semaphore>();
+
+	/*
+	 * How long an idle worker waits for a slot to free up before looking again
+	 */
+	private static final long IDLE_WAIT_MS = 100;
+
+	private final Logger logger = Logger.getLogger(Candybean.class.getSimpleName());
+	private final Configuration config;
+	private final ThreadFactory threadFactory;
+	private final int parallelism;
+
+	private final Object monitor = new Object();
+	private List<Deque<Task>> deques;
+	private AtomicInteger queued;
+
+	/**
+	 * @param parallelism The maximum number of tasks to run at once
+	 * @param threadFactory Creates the worker threads
+	 * @param config Configuration from which resource slot counts are read
+	 */
+	public WorkStealingScheduler(int parallelism, ThreadFactory threadFactory, Configuration config) {
+		this.parallelism = Math.max(1, parallelism);
+		this.threadFactory = threadFactory;
+		this.config = config;
+	}
+
+	/**
+	 * Runs the given tasks and returns once all of them have finished.
+	 * 
+	 * @param tasks The tasks to run
+	 * @throws InterruptedException if interrupted while waiting for the workers
+	 */
+	public void execute(List<Task> tasks) throws InterruptedException {
+		if (tasks.isEmpty()) {
+			return;
+		}
+		List<Task> ordered = new ArrayList<Task>(tasks);
+		Collections.sort(ordered, new Comparator<Task>() {
+			@Override
+			public int compare(Task t1, Task t2) {
+				return Long.compare(t2.getWeight(), t1.getWeight());
+			}
+		});
+		int workers = Math.min(parallelism, ordered.size());
+		deques = new ArrayList<Deque<Task>>(workers);
+		long[] loads = new long[workers];
+		for (int i = 0; i < workers; i++) {
+			deques.add(new ConcurrentLinkedDeque<Task>());
+		}
+		for (Task task : ordered) {
+			int lightest = 0;
+			for (int i = 1; i < workers; i++) {
+				if (loads[i] < loads[lightest]) {
+					lightest = i;
+				}
+			}
+			deques.get(lightest).addLast(task);
+			loads[lightest] += Math.max(1, task.getWeight());
+		}
+		queued = new AtomicInteger(ordered.size());
+		logger.info("Scheduling " + ordered.size() + " tasks across " + workers + " workers");
+
+		List<Thread> threads = new ArrayList<Thread>(workers);
+		for (int i = 0; i < workers; i++) {
+			Thread thread = threadFactory.newThread(new Worker(i));
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	private class Worker implements Runnable {
+		private final int id;
+
+		public Worker(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public void run() {
+			while (queued.get() > 0) {
+				Task task = take(deques.get(id));
+				if (task == null) {
+					task = steal();
+				}
+				if (task == null) {
+					// Work remains but every remaining task is waiting on a resource slot
+					synchronized (monitor) {
+						try {
+							monitor.wait(IDLE_WAIT_MS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							cancelAll(deques.get(id));
+							return;
+						}
+					}
+					continue;
+				}
+				try {
+					task.run();
+				} catch (Throwable t) {
+					logger.severe("Scheduled task failed: " + t.getMessage());
+				} finally {
+					release(task.getResource());
+					synchronized (monitor) {
+						monitor.notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Takes the first task from the head of the given deque whose resource slot is free.
+	 */
+	private Task take(Deque<Task> deque) {
+		Iterator<Task> iter = deque.iterator();
+		while (iter.hasNext()) {
+			Task task = iter.next();
+			if (acquire(task.getResource())) {
+				if (deque.removeFirstOccurrence(task)) {
+					queued.decrementAndGet();
+					return task;
+				}
+				// Another worker got to it first
+				release(task.getResource());
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Cancels the tasks left in the deque of a worker that is giving up
+	 */
+	private void cancelAll(Deque<Task> deque) {
+		Task task;
+		while ((task = deque.pollFirst()) != null) {
+			queued.decrementAndGet();
+			logger.warning("Scheduled task cancelled by an interrupt before it ran");
+			try {
+				task.cancel();
+			} catch (Throwable t) {
+				logger.severe("Cancelling a scheduled task failed: " + t.getMessage());
+			}
+		}
+	}
+
+	/*
+	 * Takes a task from the worker with the most remaining weight, in line with the longest
+	 * processing time first deal. Tests are coarse-grained, so a thief takes the victim's
+	 * longest remaining task rather than its shortest; this keeps the longest work from
+	 * being left for last.
+	 */
+	private Task steal() {
+		List<Deque<Task>> victims = new ArrayList<Deque<Task>>(deques);
+		final long[] weights = new long[victims.size()];
+		for (int i = 0; i < weights.length; i++) {
+			for (Task task : victims.get(i)) {
+				weights[i] += Math.max(1, task.getWeight());
+			}
+		}
+		List<Integer> order = new ArrayList<Integer>(weights.length);
+		for (int i = 0; i < weights.length; i++) {
+			order.add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Long.compare(weights[i2], weights[i1]);
+			}
+		});
+		for (int i : order) {
+			if (weights[i] == 0) {
+				break;
+			}
+			Task task = take(victims.get(i));
+			if (task != null) {
+				return task;
+			}
+		}
+		return null;
+	}
+
+	private boolean acquire(String resource) {
+		Semaphore semaphore = getSlots(resource);
+		return semaphore == null || semaphore.tryAcquire();
+	}
+
+	private void release(String resource) {
+		Semaphore semaphore = getSlots(resource);
+		if (semaphore != null) {
+			semaphore.release();
+		}
+	}
+
+	private Semaphore getSlots(String resource) {
+		if (resource == null) {
+			return null;
+		}
+		Semaphore semaphore = slots.get(resource);
+		if (semaphore == null) {
+			String capacity = config.getValue("parallel.slots." + resource);
+			if (capacity == null) {
+				return null;
+			}
+			slots.putIfAbsent(resource, new Semaphore(Math.max(1, Integer.parseInt(capacity.trim())), true));
+			semaphore = slots.get(resource);
+		}
+		return semaphore;
+	}
+}
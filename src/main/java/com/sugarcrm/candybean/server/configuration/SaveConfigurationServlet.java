@@ -4,6 +4,9 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Logger;
@@ -54,12 +57,15 @@ public class SaveConfigurationServlet extends HttpServlet {
 
 	}
 
+	/*
+	 * Writes the file next to the config file and renames it over the config file, so that a
+	 * configuration watching the file never reads it half written
+	 */
 	private void writeNewConfigFile(Configuration config, Properties props)
 			throws IOException {
-		File f = config.configFile;
-		f.delete();
-		f.createNewFile();
-		FileWriter fw = new FileWriter(f.getAbsoluteFile());
+		File target = config.configFile.getAbsoluteFile();
+		File f = new File(target.getParentFile(), target.getName() + ".tmp");
+		FileWriter fw = new FileWriter(f);
 		BufferedWriter bw = new BufferedWriter(fw);
 		//Write header first if it exists
 		if(props.containsKey("configuration.header")){
@@ -91,6 +97,11 @@ public class SaveConfigurationServlet extends HttpServlet {
 			}
 		}
 		bw.close();
+		try {
+			Files.move(f.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(f.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
 	}
 
 }
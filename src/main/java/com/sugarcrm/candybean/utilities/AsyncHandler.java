@@ -0,0 +1,321 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.utilities;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A handler which hands log records to other handlers on a background writer thread, so
+ * that the threads logging neither format records nor write them.  Records wait in a
+ * bounded, lock-free ring buffer; when it is full, the {@link Overflow} policy decides
+ * whether the logging thread waits for room or the record is dropped.  Dropped records
+ * are counted and reported in a warning once there is room again.
+ * 
+ * Messages are formatted by the target handlers on the writer thread, so parameterized
+ * messages, e.g. logger.log(Level.INFO, "Clicking on element: {0}", element), are only
+ * turned into strings there; their parameters must be safe to format later and from
+ * another thread.  The source class and method of a record are found before it is
+ * queued, since they are taken from the stack of the logging thread.
+ */
+public class AsyncHandler extends Handler {
+
+	/**
+	 * What to do with a record when the buffer is full.
+	 */
+	public enum Overflow {
+		/**
+		 * Wait until the writer makes room
+		 */
+		BLOCK,
+		/**
+		 * Drop the record
+		 */
+		DROP,
+		/**
+		 * Drop records below {@link Level#WARNING}, and wait for room for the others
+		 */
+		DROP_BELOW_WARNING
+	}
+
+	/*
+	 * How long the writer sleeps when there is nothing to write, and how long a logging
+	 * thread sleeps while waiting for room
+	 */
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long FULL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final List<Handler> targets = new CopyOnWriteArrayList<Handler>();
+	private final Overflow overflow;
+	private final int mask;
+	private final AtomicReferenceArray<LogRecord> slots;
+
+	/*
+	 * The position each slot is ready for: a record may be put in a slot when its sequence
+	 * equals the tail, and taken when it is one past the head
+	 */
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private long head;
+
+	/*
+	 * How many records have been handed to the targets, for flush()
+	 */
+	private volatile long written;
+	private final AtomicLong dropped = new AtomicLong();
+	private long droppedReported;
+	private volatile boolean closed;
+
+	/*
+	 * How many threads are in publish(); the writer waits for them before it stops, so that
+	 * a record offered just after close() is still written or counted as dropped
+	 */
+	private final AtomicInteger publishing = new AtomicInteger();
+	private final Thread writer;
+
+	/**
+	 * @param capacity How many records may wait to be written; rounded up to a power of two
+	 * @param overflow What to do with records when that many are waiting
+	 * @param targets The handlers to write records to
+	 */
+	public AsyncHandler(int capacity, Overflow overflow, Handler... targets) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.overflow = overflow;
+		this.mask = size - 1;
+		this.slots = new AtomicReferenceArray<LogRecord>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		for (Handler target : targets) {
+			this.targets.add(target);
+		}
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "candybean-log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Replaces the handlers of a logger by an AsyncHandler writing to them.
+	 * 
+	 * @param logger
+	 * @param capacity See {@link #AsyncHandler(int, Overflow, Handler...)}
+	 * @param overflow
+	 * @return the AsyncHandler now on the logger
+	 */
+	public static AsyncHandler install(Logger logger, int capacity, Overflow overflow) {
+		Handler[] handlers = logger.getHandlers();
+		AsyncHandler async = new AsyncHandler(capacity, overflow, handlers);
+		for (Handler handler : handlers) {
+			logger.removeHandler(handler);
+		}
+		logger.addHandler(async);
+		return async;
+	}
+
+	/**
+	 * @param name An overflow policy name, e.g. "drop" or "drop_below_warning", in any case
+	 * @return The policy
+	 * @throws IllegalArgumentException if there is no such policy
+	 */
+	public static Overflow getOverflow(String name) {
+		return Overflow.valueOf(name.trim().toUpperCase().replace('-', '_'));
+	}
+
+	/**
+	 * @param target A handler to write records to from now on
+	 */
+	public void addTarget(Handler target) {
+		targets.add(target);
+	}
+
+	/**
+	 * @param target A handler to stop writing records to; it is not closed
+	 */
+	public void removeTarget(Handler target) {
+		targets.remove(target);
+	}
+
+	/**
+	 * @return How many records have been dropped because the buffer was full
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	@Override
+	public void publish(LogRecord record) {
+		publishing.incrementAndGet();
+		try {
+			if (closed || !isLoggable(record)) {
+				return;
+			}
+			// Found from the stack of this thread, so it cannot wait for the writer
+			record.getSourceClassName();
+			// The writer must not wait for itself, should a target log through this handler
+			boolean wait = Thread.currentThread() != writer && (overflow == Overflow.BLOCK
+					|| (overflow == Overflow.DROP_BELOW_WARNING && record.getLevel().intValue() >= Level.WARNING.intValue()));
+			while (!offer(record)) {
+				if (!wait || closed) {
+					dropped.incrementAndGet();
+					return;
+				}
+				LockSupport.unpark(writer);
+				LockSupport.parkNanos(FULL_NANOS);
+			}
+		} finally {
+			publishing.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Waits until the records published so far are written, then flushes the targets.
+	 */
+	@Override
+	public void flush() {
+		long published = tail.get();
+		while (written < published && writer.isAlive()) {
+			LockSupport.unpark(writer);
+			LockSupport.parkNanos(FULL_NANOS);
+		}
+		for (Handler target : targets) {
+			target.flush();
+		}
+	}
+
+	/**
+	 * Writes the records published so far, stops the writer and closes the targets.
+	 */
+	@Override
+	public void close() throws SecurityException {
+		if (closed) {
+			return;
+		}
+		flush();
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Handler target : targets) {
+			target.close();
+		}
+	}
+
+	/*
+	 * Puts the record in the buffer, unless it is full; called by any thread
+	 */
+	private boolean offer(LogRecord record) {
+		while (true) {
+			long position = tail.get();
+			int index = (int) position & mask;
+			long available = sequences.get(index) - position;
+			if (available < 0) {
+				return false;
+			}
+			if (available == 0 && tail.compareAndSet(position, position + 1)) {
+				slots.set(index, record);
+				sequences.set(index, position + 1);
+				return true;
+			}
+		}
+	}
+
+	/*
+	 * Takes the next record from the buffer, or null if there is none yet; called by the writer only
+	 */
+	private LogRecord poll() {
+		int index = (int) head & mask;
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+		LogRecord record = slots.get(index);
+		slots.set(index, null);
+		sequences.set(index, head + mask + 1);
+		head++;
+		return record;
+	}
+
+	private void write() {
+		while (true) {
+			LogRecord record = poll();
+			if (record != null) {
+				publishToTargets(record);
+				written = head;
+				continue;
+			}
+			reportDropped();
+			// A thread still in publish() may have passed the closed check and not offered yet
+			if (closed && publishing.get() == 0 && head == tail.get()) {
+				return;
+			}
+			LockSupport.parkNanos(IDLE_NANOS);
+		}
+	}
+
+	private void reportDropped() {
+		long count = dropped.get();
+		if (count > droppedReported) {
+			LogRecord warning = new LogRecord(Level.WARNING, (count - droppedReported)
+					+ " log records were dropped because the log buffer was full.");
+			warning.setLoggerName(AsyncHandler.class.getSimpleName());
+			warning.setSourceClassName(AsyncHandler.class.getName());
+			warning.setSourceMethodName("publish");
+			droppedReported = count;
+			publishToTargets(warning);
+		}
+	}
+
+	private void publishToTargets(LogRecord record) {
+		for (Handler target : targets) {
+			try {
+				target.publish(record);
+			} catch (RuntimeException e) {
+				reportError("Unable to write a log record.", e, ErrorManager.WRITE_FAILURE);
+			}
+		}
+	}
+}
@@ -1,8 +1,12 @@
 package com.sugarcrm.candybean.utilities;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
 public class CandybeanLogger extends Logger {
@@ -10,7 +14,17 @@ public class CandybeanLogger extends Logger {
 	/*
 	 * List of handlers that have have been added to the candybean logger
 	 */
-	private Map<String,FileHandler> handlers = new HashMap<String, FileHandler>();
+	private Map<String,FileHandler> handlers = new ConcurrentHashMap<String, FileHandler>();
+	
+	/*
+	 * Writes records to the file handlers in the background, once asynchronous logging is enabled
+	 */
+	private AsyncHandler async;
+	
+	/*
+	 * Writes records to a log file per test class, once routing is enabled
+	 */
+	private RoutingHandler router;
 
 	/*
 	 * Default constructor
@@ -26,6 +40,11 @@ public class CandybeanLogger extends Logger {
 		FileHandler handler = handlers.get(simpleClassName);
 		if(handler != null){
 			handlers.remove(simpleClassName);
+			if (async != null) {
+				// Write what is queued for the handler before closing it
+				async.flush();
+				async.removeTarget(handler);
+			}
 			handler.close();
 			super.removeHandler(handler);
 		}
@@ -38,7 +57,68 @@ public class CandybeanLogger extends Logger {
 	 */
 	public void addHandler(FileHandler fh, String simpleClassName) {
 		handlers.put(simpleClassName, fh);
-		super.addHandler(fh);
+		if (async != null) {
+			async.addTarget(fh);
+		} else {
+			super.addHandler(fh);
+		}
+	}
+	
+	/**
+	 * Returns the handler writing the records of this logger to a log file per test class,
+	 * as named by {@link LogContext#TEST_CLASS}, in the given directory, adding it to this
+	 * logger first if needed.  It uses the level configured for file handlers.  The handler
+	 * is not made asynchronous, since it routes by the context of the logging thread and
+	 * each thread writes to its own channel anyway.
+	 * 
+	 * @param logDir The directory of the log files; only used when the handler is added
+	 * @return the routing handler
+	 * @throws IOException if the log directory cannot be created
+	 */
+	public synchronized RoutingHandler getRoutingHandler(File logDir) throws IOException {
+		if (router == null) {
+			router = new RoutingHandler(logDir, LogContext.TEST_CLASS);
+			String level = LogManager.getLogManager().getProperty("java.util.logging.FileHandler.level");
+			if (level != null) {
+				router.setLevel(Level.parse(level.trim()));
+			}
+			super.addHandler(router);
+		}
+		return router;
+	}
+	
+	/**
+	 * Merges the records routed to per-class log files so far, see {@link RoutingHandler#merge()}.
+	 * 
+	 * @throws IOException if the log files cannot be written
+	 */
+	public void mergeRoutedLogs() throws IOException {
+		RoutingHandler current;
+		synchronized (this) {
+			current = router;
+		}
+		if (current != null) {
+			current.merge();
+		}
+	}
+	
+	/**
+	 * Writes the records of this logger to its file handlers, both those added so far and
+	 * those added later, on a background thread; see {@link AsyncHandler}.
+	 * 
+	 * @param capacity How many records may wait to be written
+	 * @param overflow What to do with records when that many are waiting
+	 */
+	public synchronized void enableAsync(int capacity, AsyncHandler.Overflow overflow) {
+		if (async != null) {
+			return;
+		}
+		async = new AsyncHandler(capacity, overflow);
+		for (FileHandler handler : handlers.values()) {
+			super.removeHandler(handler);
+			async.addTarget(handler);
+		}
+		super.addHandler(async);
 	}
 	
 	/**
@@ -0,0 +1,112 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.utilities;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values describing what the current thread is doing, such as the test it runs, for log
+ * handlers to look up when a record is published; see {@link RoutingHandler}.  The values
+ * of a thread are inherited by the threads it starts.
+ * 
+ * The values are held in an unmodifiable map which is replaced on every change, so that
+ * {@link #getAll()} is a consistent snapshot which may be kept without copying.
+ */
+public final class LogContext {
+
+	/**
+	 * The simple name of the test class being run
+	 */
+	public static final String TEST_CLASS = "test.class";
+
+	/**
+	 * The name of the test method being run
+	 */
+	public static final String TEST_METHOD = "test.method";
+
+	private static final InheritableThreadLocal<Map<String, String>> values = new InheritableThreadLocal<Map<String, String>>() {
+		@Override
+		protected Map<String, String> initialValue() {
+			return Collections.emptyMap();
+		}
+	};
+
+	private LogContext() {
+	}
+
+	/**
+	 * @param key
+	 * @return The value of the key for the current thread, or null if it is not set
+	 */
+	public static String get(String key) {
+		return values.get().get(key);
+	}
+
+	/**
+	 * @param key
+	 * @param value The value of the key for the current thread; null removes the key
+	 */
+	public static void put(String key, String value) {
+		if (value == null) {
+			remove(key);
+			return;
+		}
+		Map<String, String> changed = new HashMap<String, String>(values.get());
+		changed.put(key, value);
+		values.set(Collections.unmodifiableMap(changed));
+	}
+
+	/**
+	 * @param key A key to remove for the current thread
+	 */
+	public static void remove(String key) {
+		Map<String, String> current = values.get();
+		if (current.containsKey(key)) {
+			Map<String, String> changed = new HashMap<String, String>(current);
+			changed.remove(key);
+			values.set(Collections.unmodifiableMap(changed));
+		}
+	}
+
+	/**
+	 * @return The values of the current thread, which do not change
+	 */
+	public static Map<String, String> getAll() {
+		return values.get();
+	}
+
+	/**
+	 * @param all Values returned by {@link #getAll()}, to restore for the current thread
+	 */
+	public static void setAll(Map<String, String> all) {
+		values.set(all);
+	}
+
+	/**
+	 * Removes all values for the current thread.
+	 */
+	public static void clear() {
+		values.set(Collections.<String, String>emptyMap());
+	}
+}
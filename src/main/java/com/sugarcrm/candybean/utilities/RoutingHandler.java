@@ -0,0 +1,308 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * A handler which writes each record to a log file chosen by the {@link LogContext} of the
+ * thread publishing it, e.g. one file per test class, without threads sharing a handler,
+ * a file or a lock.  Records published without the context key are ignored.
+ * 
+ * Each thread writes its formatted records to a buffered channel of its own, a spool file
+ * in the spool directory.  {@link #merge()} then sorts the records of all channels into
+ * one file per context value, &lt;value&gt;.log in the log directory, in the order they
+ * were logged.  The first merge of a handler replaces existing log files of the same
+ * names and later merges append to them.  Closing the handler merges what is left.
+ */
+public class RoutingHandler extends Handler {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String SPOOL_EXTENSION = ".spool";
+
+	private final File logDir;
+	private final File spoolDir;
+	private final String key;
+	private final AtomicInteger channelCount = new AtomicInteger();
+	private final Queue<Channel> channels = new ConcurrentLinkedQueue<Channel>();
+	private final ThreadLocal<Channel> channel = new ThreadLocal<Channel>() {
+		@Override
+		protected Channel initialValue() {
+			Channel created = new Channel(channelCount.getAndIncrement());
+			channels.add(created);
+			return created;
+		}
+	};
+
+	/*
+	 * The log files written by earlier merges, to append to
+	 */
+	private final Set<String> merged = new HashSet<String>();
+	private volatile boolean closed;
+
+	/**
+	 * @param logDir The directory to merge log files into
+	 * @param key The {@link LogContext} key naming the log file of a record, e.g.
+	 *        {@link LogContext#TEST_CLASS}
+	 * @throws IOException if the directories cannot be created
+	 */
+	public RoutingHandler(File logDir, String key) throws IOException {
+		this.logDir = logDir;
+		this.spoolDir = new File(logDir, ".spool");
+		this.key = key;
+		if (!spoolDir.isDirectory() && !spoolDir.mkdirs()) {
+			throw new IOException("Unable to create " + spoolDir.getAbsolutePath());
+		}
+		setFormatter(new SimpleFormatter());
+	}
+
+	/**
+	 * @param name A context value
+	 * @return The log file records with the value are merged into
+	 */
+	public File getLogFile(String name) {
+		return new File(logDir, name.replaceAll("[^A-Za-z0-9._-]", "_") + ".log");
+	}
+
+	@Override
+	public void publish(LogRecord record) {
+		if (closed || !isLoggable(record)) {
+			return;
+		}
+		String name = LogContext.get(key);
+		if (name == null) {
+			return;
+		}
+		String text;
+		try {
+			text = getFormatter().format(record);
+		} catch (RuntimeException e) {
+			reportError("Unable to format a log record.", e, ErrorManager.FORMAT_FAILURE);
+			return;
+		}
+		try {
+			channel.get().write(record.getSequenceNumber(), name, text);
+		} catch (IOException e) {
+			reportError("Unable to write a log record.", e, ErrorManager.WRITE_FAILURE);
+		}
+	}
+
+	@Override
+	public void flush() {
+		for (Channel each : channels) {
+			try {
+				each.flush();
+			} catch (IOException e) {
+				reportError("Unable to flush a log channel.", e, ErrorManager.FLUSH_FAILURE);
+			}
+		}
+	}
+
+	/**
+	 * Merges the records of all channels, logged so far, into their log files.  Threads may
+	 * keep logging meanwhile; their later records are left for the next merge.
+	 * 
+	 * @throws IOException if the records cannot be read or written
+	 */
+	public synchronized void merge() throws IOException {
+		List<File> spools = new ArrayList<File>();
+		for (Channel each : channels) {
+			File spool = each.roll();
+			if (spool != null) {
+				spools.add(spool);
+			}
+		}
+		if (spools.isEmpty()) {
+			return;
+		}
+		PriorityQueue<SpoolReader> readers = new PriorityQueue<SpoolReader>(spools.size(), new Comparator<SpoolReader>() {
+			@Override
+			public int compare(SpoolReader r1, SpoolReader r2) {
+				return Long.compare(r1.sequence, r2.sequence);
+			}
+		});
+		List<SpoolReader> opened = new ArrayList<SpoolReader>();
+		Map<String, Writer> writers = new HashMap<String, Writer>();
+		try {
+			for (File spool : spools) {
+				SpoolReader reader = new SpoolReader(spool);
+				opened.add(reader);
+				if (reader.next()) {
+					readers.add(reader);
+				}
+			}
+			while (!readers.isEmpty()) {
+				SpoolReader reader = readers.poll();
+				Writer writer = writers.get(reader.name);
+				if (writer == null) {
+					boolean append = !merged.add(reader.name);
+					writer = new BufferedWriter(new OutputStreamWriter(
+							new FileOutputStream(getLogFile(reader.name), append), getCharset()));
+					writers.put(reader.name, writer);
+				}
+				writer.write(reader.text);
+				if (reader.next()) {
+					readers.add(reader);
+				}
+			}
+		} finally {
+			for (SpoolReader reader : opened) {
+				reader.close();
+			}
+			for (Writer writer : writers.values()) {
+				writer.close();
+			}
+			for (File spool : spools) {
+				spool.delete();
+			}
+		}
+	}
+
+	/**
+	 * Merges the records logged so far and stops routing records.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			merge();
+		} catch (IOException e) {
+			reportError("Unable to merge the log channels.", e, ErrorManager.CLOSE_FAILURE);
+		}
+		spoolDir.delete();
+	}
+
+	private Charset getCharset() {
+		String encoding = getEncoding();
+		return encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+	}
+
+	/*
+	 * The spool file of one thread; only locked by that thread, apart from merges
+	 */
+	private final class Channel {
+		private final int id;
+		private int spools;
+		private File spool;
+		private DataOutputStream out;
+
+		private Channel(int id) {
+			this.id = id;
+		}
+
+		private synchronized void write(long sequence, String name, String text) throws IOException {
+			if (out == null) {
+				spool = new File(spoolDir, id + "-" + spools++ + SPOOL_EXTENSION);
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spool)));
+			}
+			out.writeLong(sequence);
+			writeString(name);
+			writeString(text);
+		}
+
+		private void writeString(String value) throws IOException {
+			byte[] bytes = value.getBytes(UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		private synchronized void flush() throws IOException {
+			if (out != null) {
+				out.flush();
+			}
+		}
+
+		/*
+		 * Closes the current spool file, if any, and returns it; later records go to a new one
+		 */
+		private synchronized File roll() throws IOException {
+			if (out == null) {
+				return null;
+			}
+			out.close();
+			out = null;
+			return spool;
+		}
+	}
+
+	private static final class SpoolReader {
+		private final DataInputStream in;
+		private long sequence;
+		private String name;
+		private String text;
+
+		private SpoolReader(File spool) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(spool)));
+		}
+
+		private boolean next() throws IOException {
+			try {
+				sequence = in.readLong();
+			} catch (EOFException e) {
+				return false;
+			}
+			name = readString();
+			text = readString();
+			return true;
+		}
+
+		private String readString() throws IOException {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return new String(bytes, UTF_8);
+		}
+
+		private void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -86,4 +86,13 @@ public class HookUnitTest {
 			Assert.fail("Exception caught.");
 		}
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testEquals() {
+		Hook hook = new Hook(Strategy.ID, "hookstring");
+		Assert.assertEquals(hook, new Hook(Strategy.ID, "hookstring"));
+		Assert.assertEquals(hook.hashCode(), new Hook(Strategy.ID, "hookstring").hashCode());
+		Assert.assertNotEquals(hook, new Hook(Strategy.NAME, "hookstring"));
+		Assert.assertNotEquals(hook, new Hook(Strategy.ID, "otherstring"));
+	}
+}
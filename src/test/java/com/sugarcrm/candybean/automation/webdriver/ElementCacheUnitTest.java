@@ -0,0 +1,90 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.Test;
+import org.openqa.selenium.WebElement;
+
+import com.sugarcrm.candybean.automation.element.Hook;
+import com.sugarcrm.candybean.automation.element.Hook.Strategy;
+
+public class ElementCacheUnitTest {
+
+	private static WebElement element() {
+		return (WebElement) Proxy.newProxyInstance(ElementCacheUnitTest.class.getClassLoader(),
+				new Class<?>[] { WebElement.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return method.getName().equals("hashCode") ? System.identityHashCode(proxy) : null;
+					}
+				});
+	}
+
+	@Test
+	public void cachesByHookIndexAndContext() {
+		ElementCache cache = new ElementCache(true);
+		WebElement we = element();
+		cache.put(new Hook(Strategy.ID, "id"), 0, "window", we);
+		assertSame(we, cache.get(new Hook(Strategy.ID, "id"), 0, "window"));
+		assertNull(cache.get(new Hook(Strategy.ID, "id"), 1, "window"));
+		assertNull(cache.get(new Hook(Strategy.ID, "id"), 0, "window/frame[0]"));
+		assertNull(cache.get(new Hook(Strategy.NAME, "id"), 0, "window"));
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	@Test
+	public void invalidateForgetsElements() {
+		ElementCache cache = new ElementCache(true);
+		Hook hook = new Hook(Strategy.CSS, "div");
+		cache.put(hook, 0, "", element());
+		cache.invalidate();
+		assertNull(cache.get(hook, 0, ""));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void replaceStaleCountsReResolution() {
+		ElementCache cache = new ElementCache(true);
+		Hook hook = new Hook(Strategy.CSS, "div");
+		WebElement fresh = element();
+		cache.put(hook, 0, "", element());
+		cache.replaceStale(hook, 0, "", fresh);
+		assertSame(fresh, cache.get(hook, 0, ""));
+		assertEquals(1, cache.getStaleCount());
+	}
+
+	@Test
+	public void disabledCacheAlwaysMisses() {
+		ElementCache cache = new ElementCache(false);
+		Hook hook = new Hook(Strategy.CSS, "div");
+		cache.put(hook, 0, "", element());
+		assertNull(cache.get(hook, 0, ""));
+		assertEquals(1, cache.getMisses());
+	}
+}
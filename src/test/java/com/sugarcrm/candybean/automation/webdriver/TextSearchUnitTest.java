@@ -0,0 +1,115 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Searches a page of many elements through a driver which counts its round trips.
+ */
+public class TextSearchUnitTest {
+
+	private static final int ELEMENTS = 5000;
+
+	private final AtomicInteger roundTrips = new AtomicInteger();
+	private final List<String> texts = new ArrayList<String>();
+	private boolean scripts;
+	private WebDriver driver;
+
+	@Before
+	public void setUp() {
+		for (int i = 0; i < ELEMENTS; i++) {
+			texts.add(i == ELEMENTS - 1 ? "Account Name" : "Account " + i);
+		}
+		driver = (WebDriver) Proxy.newProxyInstance(TextSearchUnitTest.class.getClassLoader(),
+				new Class<?>[] { WebDriver.class, JavascriptExecutor.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						roundTrips.incrementAndGet();
+						if (method.getName().equals("executeScript")) {
+							if (!scripts) {
+								throw new WebDriverException("Scripts are disabled");
+							}
+							Object[] scriptArgs = (Object[]) args[1];
+							for (String text : texts) {
+								if (text.toLowerCase().contains(((String) scriptArgs[1]).toLowerCase())) {
+									return Boolean.TRUE;
+								}
+							}
+							return Boolean.FALSE;
+						} else if (method.getName().equals("findElements")) {
+							List<WebElement> elements = new ArrayList<WebElement>();
+							for (String text : texts) {
+								elements.add(element(text));
+							}
+							return elements;
+						}
+						return null;
+					}
+				});
+	}
+
+	private WebElement element(final String text) {
+		return (WebElement) Proxy.newProxyInstance(TextSearchUnitTest.class.getClassLoader(),
+				new Class<?>[] { WebElement.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						roundTrips.incrementAndGet();
+						return method.getName().equals("getText") ? text : null;
+					}
+				});
+	}
+
+	@Test
+	public void searchesThePageInOneRoundTrip() {
+		scripts = true;
+		assertTrue(TextSearch.contains(driver, null, "account name", false));
+		assertEquals(1, roundTrips.get());
+	}
+
+	@Test
+	public void scansElementByElementWithoutScripts() {
+		assertTrue(TextSearch.contains(driver, null, "account name", false));
+		// The failed script, the search for elements and the text of each of them
+		assertEquals(ELEMENTS + 2, roundTrips.get());
+	}
+}
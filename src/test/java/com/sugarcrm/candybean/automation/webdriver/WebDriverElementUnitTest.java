@@ -0,0 +1,108 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import com.sugarcrm.candybean.automation.element.Hook;
+import com.sugarcrm.candybean.automation.element.Hook.Strategy;
+
+public class WebDriverElementUnitTest {
+
+	/*
+	 * An element whose attributes all have the given value, or which is stale if that is null
+	 */
+	private static WebElement element(final String value) {
+		return (WebElement) Proxy.newProxyInstance(WebDriverElementUnitTest.class.getClassLoader(),
+				new Class<?>[] { WebElement.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						if (method.getName().equals("getAttribute")) {
+							if (value == null) {
+								throw new StaleElementReferenceException("stale");
+							}
+							return value;
+						}
+						return null;
+					}
+				});
+	}
+
+	/*
+	 * A driver which finds the given elements for every hook
+	 */
+	private static WebDriver driver(final WebElement... found) {
+		return (WebDriver) Proxy.newProxyInstance(WebDriverElementUnitTest.class.getClassLoader(),
+				new Class<?>[] { WebDriver.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("findElements")) {
+							return Arrays.asList(found);
+						}
+						return method.getName().equals("hashCode") ? System.identityHashCode(proxy) : null;
+					}
+				});
+	}
+
+	@Test
+	public void staleCachedElementIsReResolved() throws Exception {
+		Hook hook = new Hook(Strategy.ID, "name");
+		ElementCache cache = new ElementCache(true);
+		WebElement stale = element(null);
+		WebElement fresh = element("fresh");
+		cache.put(hook, 1, "window", stale);
+		WebDriverElement element = new WebDriverElement(hook, 1, driver(element("other"), fresh), stale, cache,
+				"window");
+		assertEquals("fresh", element.getAttribute("value"));
+		assertSame(fresh, element.we);
+		assertSame(fresh, cache.get(hook, 1, "window"));
+		assertEquals(1, cache.getStaleCount());
+	}
+
+	@Test(expected = StaleElementReferenceException.class)
+	public void staleElementIsRethrownWhenNoLongerOnThePage() throws Exception {
+		Hook hook = new Hook(Strategy.ID, "name");
+		WebDriverElement element = new WebDriverElement(hook, 1, driver(element("other")), element(null),
+				new ElementCache(true), "window");
+		element.getAttribute("value");
+	}
+
+	@Test(expected = StaleElementReferenceException.class)
+	public void uncachedElementIsNotReResolved() throws Exception {
+		Hook hook = new Hook(Strategy.ID, "name");
+		WebDriverElement element = new WebDriverElement(hook, 0, driver(element("fresh")), element(null));
+		element.getAttribute("value");
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+import com.sugarcrm.candybean.automation.AutomationInterface.Type;
+import com.sugarcrm.candybean.automation.Candybean;
+import com.sugarcrm.candybean.automation.element.Hook;
+import com.sugarcrm.candybean.automation.element.Hook.Strategy;
+import com.sugarcrm.candybean.configuration.Configuration;
+import com.sugarcrm.candybean.exceptions.CandybeanException;
+
+public class WebDriverPauseUnitTest {
+
+	/*
+	 * Satisfied once the given number of milliseconds have passed since creation
+	 */
+	private static class AfterMillis implements ExpectedCondition<Boolean> {
+		private final long readyAt;
+		private final String name;
+		private int applied = 0;
+
+		private AfterMillis(String name, long millis) {
+			this.name = name;
+			this.readyAt = System.currentTimeMillis() + millis;
+		}
+
+		@Override
+		public Boolean apply(WebDriver driver) {
+			applied++;
+			if (applied == 1) {
+				throw new NoSuchElementException("not yet");
+			}
+			return System.currentTimeMillis() >= readyAt;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/*
+	 * A driver whose asynchronous scripts return the given result, or throw it
+	 */
+	private static WebDriver scriptingDriver(final Object scriptResult, final int[] scripts) {
+		return (WebDriver) Proxy.newProxyInstance(WebDriverPauseUnitTest.class.getClassLoader(),
+				new Class<?>[] { WebDriver.class, JavascriptExecutor.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("executeAsyncScript")) {
+							scripts[0]++;
+							if (scriptResult instanceof RuntimeException) {
+								throw (RuntimeException) scriptResult;
+							}
+							return scriptResult;
+						}
+						if (method.getName().equals("manage") || method.getName().equals("timeouts")) {
+							return Proxy.newProxyInstance(WebDriverPauseUnitTest.class.getClassLoader(),
+									new Class<?>[] { method.getReturnType() }, this);
+						}
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						if (method.getName().equals("equals")) {
+							return proxy == args[0];
+						}
+						return null;
+					}
+				});
+	}
+
+	@Before
+	public void setUp() {
+		WaitStatistics.reset();
+	}
+
+	@Test
+	public void returnsSoonAfterConditionIsMet() throws Exception {
+		WebDriverPause pause = new WebDriverPause(null, 5000, 10, 50, 2.0);
+		long start = System.currentTimeMillis();
+		assertEquals(Boolean.TRUE, pause.waitUntil(new AfterMillis("ready", 120)));
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue("Took " + elapsed + "ms", elapsed >= 120 && elapsed < 400);
+		WaitStatistics.Histogram histogram = WaitStatistics.getHistogram("ready");
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getTimeouts());
+		assertTrue(histogram.getPolls() > 2);
+	}
+
+	@Test
+	public void timesOutAtTheDeadline() throws Exception {
+		WebDriverPause pause = new WebDriverPause(null, 5000, 10, 50, 2.0);
+		long start = System.currentTimeMillis();
+		try {
+			pause.waitUntil(new AfterMillis("never", 60000), 200);
+			fail("Expected a timeout");
+		} catch (CandybeanException e) {
+			assertTrue(e.getMessage().contains("never"));
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue("Took " + elapsed + "ms", elapsed >= 200 && elapsed < 600);
+		assertEquals(1, WaitStatistics.getHistogram("never").getTimeouts());
+	}
+
+	@Test
+	public void ranksConditionsByTotalWaitTime() throws Exception {
+		WaitStatistics.record("short", 5, 1, true);
+		WaitStatistics.record("long", 300, 6, true);
+		WaitStatistics.record("long", 700, 9, false);
+		assertEquals("long", WaitStatistics.getSlowest(1).get(0).getCondition());
+		WaitStatistics.Histogram histogram = WaitStatistics.getHistogram("long");
+		assertEquals(1000, histogram.getTotalMillis());
+		assertEquals(700, histogram.getMaxMillis());
+		assertEquals(512, histogram.getPercentileMillis(50));
+		assertEquals(1024, histogram.getPercentileMillis(95));
+	}
+
+	@Test
+	public void groupsConditionsBeyondTheLimit() throws Exception {
+		for (int i = 0; i < WaitStatistics.MAX_CONDITIONS + 10; i++) {
+			WaitStatistics.record("condition " + i, 1, 1, true);
+		}
+		WaitStatistics.record("condition 0", 1, 1, true);
+		assertEquals(WaitStatistics.MAX_CONDITIONS + 1, WaitStatistics.getHistograms().size());
+		assertEquals(2, WaitStatistics.getHistogram("condition 0").getCount());
+		assertNull(WaitStatistics.getHistogram("condition " + WaitStatistics.MAX_CONDITIONS));
+		assertEquals(10, WaitStatistics.getHistogram(WaitStatistics.OTHER_CONDITIONS).getCount());
+	}
+
+	@Test
+	public void observesConditionInBrowser() throws Exception {
+		int[] scripts = new int[1];
+		WebDriverPause pause = new WebDriverPause(scriptingDriver(Boolean.TRUE, scripts), 5000, 10, 50, 2.0);
+		pause.setObserveMutations(true);
+		AfterMillis ready = new AfterMillis("observed", 0);
+		ready.applied = 1;
+		ExpectedCondition<Boolean> condition = new ObservedCondition<Boolean>(ready,
+				new Hook(Strategy.ID, "ready"), ObservedCondition.Check.PRESENT, null);
+		assertEquals(Boolean.TRUE, pause.waitUntil(condition));
+		assertEquals(1, scripts[0]);
+		assertEquals(2, ready.applied);
+	}
+
+	@Test
+	public void fallsBackToPollingWhenObservationFails() throws Exception {
+		int[] scripts = new int[1];
+		WebDriver driver = scriptingDriver(new WebDriverException("no async scripts"), scripts);
+		WebDriverPause pause = new WebDriverPause(driver, 5000, 10, 50, 2.0);
+		pause.setObserveMutations(true);
+		ExpectedCondition<Boolean> condition = new ObservedCondition<Boolean>(new AfterMillis("fallback", 50),
+				new Hook(Strategy.ID, "ready"), ObservedCondition.Check.PRESENT, null);
+		assertEquals(Boolean.TRUE, pause.waitUntil(condition));
+		assertEquals(1, scripts[0]);
+	}
+
+	@Test
+	public void pollsHooksThatCannotBeObserved() throws Exception {
+		int[] scripts = new int[1];
+		WebDriverPause pause = new WebDriverPause(scriptingDriver(Boolean.TRUE, scripts), 5000, 10, 50, 2.0);
+		pause.setObserveMutations(true);
+		ExpectedCondition<Boolean> condition = new ObservedCondition<Boolean>(new AfterMillis("link", 50),
+				new Hook(Strategy.LINK, "Home"), ObservedCondition.Check.PRESENT, null);
+		assertEquals(Boolean.TRUE, pause.waitUntil(condition));
+		assertEquals(0, scripts[0]);
+	}
+
+	@Test
+	public void readsSubSecondTimeoutFromConfiguration() throws Exception {
+		WebDriverInterface iface = new WebDriverInterface(Type.FIREFOX) {
+		};
+		Configuration config = Candybean.getInstance().config;
+		String previous = config.getValue("perf.explicit.wait.seconds", "15");
+		try {
+			config.setValue("perf.explicit.wait.seconds", "1500ms");
+			assertEquals(1500, iface.getPause().getDefaultTimeoutMs());
+			config.setValue("perf.explicit.wait.seconds", "2");
+			assertEquals(2000, iface.getPause().getDefaultTimeoutMs());
+		} finally {
+			config.setValue("perf.explicit.wait.seconds", previous);
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.automation.webdriver;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import com.sugarcrm.candybean.exceptions.CandybeanException;
+
+public class WebDriverPoolUnitTest {
+
+	/*
+	 * Records the calls made to a browser session without starting one
+	 */
+	private static class FakeSession implements InvocationHandler {
+		private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+		private boolean broken = false;
+
+		private WebDriver create() {
+			return (WebDriver) proxy(WebDriver.class, JavascriptExecutor.class);
+		}
+
+		private Object proxy(Class<?>... interfaces) {
+			return Proxy.newProxyInstance(getClass().getClassLoader(), interfaces, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (broken) {
+				throw new RuntimeException("Session is gone");
+			}
+			calls.add(method.getName());
+			Class<?> type = method.getReturnType();
+			if (method.getName().equals("getWindowHandles")) {
+				Set<String> handles = new LinkedHashSet<String>();
+				handles.add("main");
+				handles.add("popup");
+				return handles;
+			} else if (type == String.class) {
+				return "main";
+			} else if (type == boolean.class) {
+				return false;
+			} else if (type.isInterface()) {
+				return proxy(type);
+			}
+			return null;
+		}
+	}
+
+	private static class FakeInterface extends WebDriverInterface {
+		private final FakeSession session = new FakeSession();
+		private int starts = 0;
+		private boolean quit = false;
+
+		public FakeInterface() throws CandybeanException {
+			super(Type.FIREFOX);
+		}
+
+		@Override
+		public void start() {
+			starts++;
+			wd = session.create();
+		}
+
+		@Override
+		public void stop() {
+			quit = true;
+		}
+	}
+
+	private static class FakeFactory implements WebDriverPool.Factory {
+		private final List<FakeInterface> created = new ArrayList<FakeInterface>();
+		private final String key;
+		private final boolean threadBound;
+
+		private FakeFactory() {
+			this("firefox", false);
+		}
+
+		private FakeFactory(String key, boolean threadBound) {
+			this.key = key;
+			this.threadBound = threadBound;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public boolean isThreadBound() {
+			return threadBound;
+		}
+
+		@Override
+		public WebDriverInterface create() throws CandybeanException {
+			FakeInterface iface = new FakeInterface();
+			created.add(iface);
+			return iface;
+		}
+	}
+
+	@Test
+	public void reusesReleasedSession() throws Exception {
+		WebDriverPool pool = new WebDriverPool(10, 2, 4);
+		FakeFactory factory = new FakeFactory();
+		WebDriverInterface first = pool.lease(factory);
+		pool.release(first);
+		assertEquals(1, pool.getIdleCount());
+		WebDriverInterface second = pool.lease(factory);
+		assertSame(first, second);
+		assertEquals(1, ((FakeInterface) second).starts);
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(1, factory.created.size());
+	}
+
+	@Test
+	public void resetsSessionOnRelease() throws Exception {
+		WebDriverPool pool = new WebDriverPool(10, 2, 4);
+		FakeInterface iface = (FakeInterface) pool.lease(new FakeFactory());
+		iface.session.calls.clear();
+		pool.release(iface);
+		List<String> calls = iface.session.calls;
+		assertTrue(calls.contains("close"));
+		assertTrue(calls.contains("defaultContent"));
+		assertTrue(calls.contains("deleteAllCookies"));
+		assertTrue(calls.contains("executeScript"));
+		assertEquals("get", calls.get(calls.size() - 1));
+		assertFalse(iface.quit);
+	}
+
+	@Test
+	public void retiresSessionAfterMaxUses() throws Exception {
+		WebDriverPool pool = new WebDriverPool(2, 2, 4);
+		FakeFactory factory = new FakeFactory();
+		FakeInterface iface = (FakeInterface) pool.lease(factory);
+		pool.release(iface);
+		assertSame(iface, pool.lease(factory));
+		pool.release(iface);
+		assertTrue(iface.quit);
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test
+	public void evictsUnhealthySessionOnLease() throws Exception {
+		WebDriverPool pool = new WebDriverPool(10, 2, 4);
+		FakeFactory factory = new FakeFactory();
+		FakeInterface first = (FakeInterface) pool.lease(factory);
+		pool.release(first);
+		first.session.broken = true;
+		FakeInterface second = (FakeInterface) pool.lease(factory);
+		assertNotSame(first, second);
+		assertTrue(first.quit);
+		assertEquals(1, second.starts);
+	}
+
+	@Test
+	public void quitsSessionsBeyondMaxIdle() throws Exception {
+		WebDriverPool pool = new WebDriverPool(10, 1, 4);
+		FakeFactory factory = new FakeFactory();
+		FakeInterface first = (FakeInterface) pool.lease(factory);
+		FakeInterface second = (FakeInterface) pool.lease(factory);
+		pool.release(first);
+		pool.release(second);
+		assertEquals(1, pool.getIdleCount());
+		assertFalse(first.quit);
+		assertTrue(second.quit);
+		pool.shutdown();
+		assertTrue(first.quit);
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test
+	public void quitsLongestIdleSessionBeyondMaxIdleTotal() throws Exception {
+		WebDriverPool pool = new WebDriverPool(10, 2, 2);
+		FakeInterface first = (FakeInterface) pool.lease(new FakeFactory("firefox", false));
+		FakeInterface second = (FakeInterface) pool.lease(new FakeFactory("ie", false));
+		FakeInterface third = (FakeInterface) pool.lease(new FakeFactory("grid", false));
+		pool.release(first);
+		pool.release(second);
+		pool.release(third);
+		assertEquals(2, pool.getIdleCount());
+		assertTrue(first.quit);
+		assertFalse(second.quit);
+		assertFalse(third.quit);
+	}
+
+	@Test
+	public void evictsThreadBoundSessionsOfEndedThreads() throws Exception {
+		final WebDriverPool pool = new WebDriverPool(10, 2, 4);
+		final FakeFactory factory = new FakeFactory("chrome", true);
+		final FakeInterface[] leased = new FakeInterface[1];
+		Thread worker = new Thread() {
+			@Override
+			public void run() {
+				try {
+					leased[0] = (FakeInterface) pool.lease(factory);
+					pool.release(leased[0]);
+				} catch (CandybeanException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		worker.start();
+		worker.join();
+		assertEquals(1, pool.getIdleCount());
+		FakeInterface mine = (FakeInterface) pool.lease(factory);
+		assertNotSame(leased[0], mine);
+		assertTrue(leased[0].quit);
+		assertEquals(0, pool.getIdleCount());
+	}
+}
@@ -23,6 +23,8 @@ package com.sugarcrm.candybean.automation.webdriver;
 
 import static org.junit.Assert.*;
 import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.sugarcrm.candybean.configuration.Configuration;
 import com.sugarcrm.candybean.testUtilities.TestConfiguration;
@@ -349,6 +351,69 @@ public class WebDriverSystemTest {
 //		this.iface.getWebDriverElement(null);
 	}
 
+	@Test
+	public void getWebDriverElementsBatchTest() throws Exception {
+		iface.go("data:text/html,<div id='one' class='box'>One</div><input name='two' value='Two'/>"
+				+ "<span>Three</span><a href='#'>Four link</a>");
+		Map<String, Hook> hooks = new LinkedHashMap<String, Hook>();
+		hooks.put("id", new Hook(Strategy.ID, "one"));
+		hooks.put("name", new Hook(Strategy.NAME, "two"));
+		hooks.put("css", new Hook(Strategy.CSS, "div.box"));
+		hooks.put("class", new Hook(Strategy.CLASS, "box"));
+		hooks.put("tag", new Hook(Strategy.TAG, "span"));
+		hooks.put("xpath", new Hook(Strategy.XPATH, "//span[text()='Three']"));
+		hooks.put("link", new Hook(Strategy.LINK, "Four link"));
+		hooks.put("missing", new Hook(Strategy.ID, "none"));
+		Map<String, WebDriverElement> elements = iface.getWebDriverElements(hooks);
+		assertEquals(7, elements.size());
+		assertEquals("One", elements.get("id").getText());
+		assertEquals("Two", elements.get("name").getAttribute("value"));
+		assertEquals("One", elements.get("css").getText());
+		assertEquals("One", elements.get("class").getText());
+		assertEquals("Three", elements.get("tag").getText());
+		assertEquals("Three", elements.get("xpath").getText());
+		assertEquals("Four link", elements.get("link").getText());
+		assertFalse(elements.containsKey("missing"));
+	}
+
+	@Test
+	public void containsLargePageTest() throws Exception {
+		iface.go("about:blank");
+		((org.openqa.selenium.JavascriptExecutor) iface.wd).executeScript(
+				"var table = document.createElement('table');"
+				+ "for (var i = 0; i < 1250; i++) {"
+				+ "  var row = table.insertRow(-1);"
+				+ "  for (var j = 0; j < 3; j++) { row.insertCell(-1).appendChild(document.createTextNode('Account ' + i + '.' + j)); }"
+				+ "}"
+				+ "var hidden = document.createElement('div');"
+				+ "hidden.style.display = 'none';"
+				+ "hidden.appendChild(document.createTextNode('Hidden Needle'));"
+				+ "document.body.appendChild(table);"
+				+ "document.body.appendChild(hidden);");
+		assertTrue(iface.contains("Account 1249.2", true));
+		assertTrue(iface.contains("account 1249.2", false));
+		assertFalse(iface.contains("account 1249.2", true));
+		assertFalse(iface.contains("Hidden Needle", false));
+		assertFalse(iface.contains("1249.1Account", true));
+		assertTrue(TextSearch.scan(iface.wd, TextSearch.OUTERMOST_XPATH, null, "Account 1249.2", true));
+	}
+
+	@Test
+	public void containsSkipsVisibleFalseTest() throws Exception {
+		iface.go("about:blank");
+		((org.openqa.selenium.JavascriptExecutor) iface.wd).executeScript(
+				"var flagged = document.createElement('span');"
+				+ "flagged.appendChild(document.createTextNode('Flagged Needle'));"
+				+ "document.body.appendChild(flagged);"
+				+ "document.documentElement.setAttribute('visible', 'false');"
+				+ "document.body.setAttribute('visible', 'false');");
+		assertTrue(iface.contains("Flagged Needle", true));
+		((org.openqa.selenium.JavascriptExecutor) iface.wd).executeScript(
+				"document.body.lastChild.setAttribute('visible', 'false');");
+		assertFalse(iface.contains("Flagged Needle", true));
+		assertFalse(TextSearch.scan(iface.wd, "//*[not(@visible='false')]", null, "Flagged Needle", true));
+	}
+
 	@Ignore
 	@Test
 	public void getSelectTest() throws Exception {
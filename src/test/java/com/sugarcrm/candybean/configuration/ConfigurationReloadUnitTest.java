@@ -0,0 +1,164 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sugarcrm.candybean.utilities.Utils;
+
+public class ConfigurationReloadUnitTest {
+
+	private File dir;
+	private File file;
+	private Configuration config;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("cbreload", "");
+		dir.delete();
+		dir.mkdirs();
+		file = new File(dir, "candybean.config");
+		write("perf.explicit.wait.seconds = 15\nparallel.threads = 4\n");
+		config = new Configuration(file);
+	}
+
+	@After
+	public void tearDown() {
+		config.stopWatching();
+		file.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testReload() throws IOException {
+		final List<ConfigurationSnapshot[]> changes = new ArrayList<ConfigurationSnapshot[]>();
+		config.addListener(new ConfigurationListener() {
+			@Override
+			public void configurationChanged(ConfigurationSnapshot previous, ConfigurationSnapshot current) {
+				changes.add(new ConfigurationSnapshot[] { previous, current });
+			}
+		});
+		assertFalse(config.reload());
+		assertTrue(changes.isEmpty());
+
+		write("perf.explicit.wait.seconds = 30\nbrowser.path = {\"" + Utils.getCurrentPlatform() + "\": \"/current\", \"other\": \"/other\"}\n");
+		assertTrue(config.reload());
+		assertEquals(1, changes.size());
+		assertEquals(15, changes.get(0)[0].getLong("perf.explicit.wait.seconds", 0));
+		assertEquals(30, changes.get(0)[1].getLong("perf.explicit.wait.seconds", 0));
+		assertEquals(30, config.snapshot().getLong("perf.explicit.wait.seconds", 0));
+		assertEquals("30", config.getValue("perf.explicit.wait.seconds"));
+		assertEquals("/current", config.getValue("browser.path"));
+		assertFalse("Keys removed from the file are removed", config.hasKey("parallel.threads"));
+	}
+
+	@Test
+	public void testFailedReloadKeepsValues() {
+		file.delete();
+		try {
+			config.reload();
+		} catch (IOException e) {
+			assertEquals("15", config.getValue("perf.explicit.wait.seconds"));
+			return;
+		}
+		throw new AssertionError("Expected an IOException");
+	}
+
+	@Test
+	public void testIncompleteFileKeepsValues() throws IOException {
+		String[] partial = { "", "perf.explicit.wait.seconds = 3", "perf.explicit.wait.seconds = 30\nbrowser.path = /a\\\n" };
+		for (String content : partial) {
+			write(content);
+			try {
+				config.reload();
+				throw new AssertionError("Expected an IOException for: " + content);
+			} catch (IOException e) {
+				assertEquals("15", config.getValue("perf.explicit.wait.seconds"));
+			}
+		}
+		write("perf.explicit.wait.seconds = 30\nbrowser.path = /a\\\\\n");
+		assertTrue(config.reload());
+		assertEquals("/a\\", config.getValue("browser.path"));
+	}
+
+	@Test
+	public void testRemovedListener() throws IOException {
+		final List<ConfigurationSnapshot> changes = new ArrayList<ConfigurationSnapshot>();
+		ConfigurationListener listener = new ConfigurationListener() {
+			@Override
+			public void configurationChanged(ConfigurationSnapshot previous, ConfigurationSnapshot current) {
+				changes.add(current);
+			}
+		};
+		config.addListener(listener);
+		config.removeListener(listener);
+		write("parallel.threads = 8\n");
+		assertTrue(config.reload());
+		assertTrue(changes.isEmpty());
+	}
+
+	@Test
+	public void testWatch() throws Exception {
+		final CountDownLatch changed = new CountDownLatch(1);
+		final AtomicReference<ConfigurationSnapshot> current = new AtomicReference<ConfigurationSnapshot>();
+		config.addListener(new ConfigurationListener() {
+			@Override
+			public void configurationChanged(ConfigurationSnapshot previous, ConfigurationSnapshot snapshot) {
+				current.set(snapshot);
+				changed.countDown();
+			}
+		});
+		config.watch();
+		config.watch();
+		write("perf.explicit.wait.seconds = 15\nparallel.threads = 32\n");
+		// Some platforms poll for file changes every few seconds
+		assertTrue("The configuration was not reloaded", changed.await(30, TimeUnit.SECONDS));
+		assertNotNull(current.get());
+		assertEquals(32, current.get().getLong("parallel.threads", 0));
+		assertEquals("32", config.getValue("parallel.threads"));
+	}
+
+	private void write(String content) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+}
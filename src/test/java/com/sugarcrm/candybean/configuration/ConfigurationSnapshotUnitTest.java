@@ -0,0 +1,136 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigurationSnapshotUnitTest {
+
+	private Configuration config;
+
+	@Before
+	public void setUp() {
+		config = new Configuration();
+	}
+
+	@Test
+	public void testTypedValues() {
+		config.setValue("long", " 42 ");
+		config.setValue("double", "1.5");
+		config.setValue("boolean", "TRUE");
+		config.setValue("text", "value");
+		ConfigurationSnapshot snapshot = config.snapshot();
+		assertEquals(42, snapshot.getLong("long", 0));
+		assertEquals(1.5, snapshot.getDouble("double", 0), 0);
+		assertEquals(42, snapshot.getDouble("long", 0), 0);
+		assertTrue(snapshot.getBoolean("boolean", false));
+		assertFalse(snapshot.getBoolean("text", true));
+		assertEquals("value", snapshot.getValue("text"));
+		assertEquals(7, snapshot.getLong("missing", 7));
+		assertEquals("default", snapshot.getValue("missing", "default"));
+		assertNull(snapshot.getValue("missing"));
+		try {
+			snapshot.getLong("text", 0);
+			fail("Expected a NumberFormatException");
+		} catch (NumberFormatException e) {
+			assertTrue(e.getMessage().contains("text"));
+		}
+	}
+
+	@Test
+	public void testDurations() {
+		config.setValue("bare", "15");
+		config.setValue("millis", "1500ms");
+		config.setValue("minutes", "2m");
+		config.setValue("text", "soon");
+		ConfigurationSnapshot snapshot = config.snapshot();
+		assertEquals(15, snapshot.getDuration("bare", TimeUnit.SECONDS, 0));
+		assertEquals(1500, snapshot.getDuration("millis", TimeUnit.MILLISECONDS, 0));
+		assertEquals(1, snapshot.getDuration("millis", TimeUnit.SECONDS, 0));
+		assertEquals(15000, snapshot.getDuration("bare", TimeUnit.MILLISECONDS, TimeUnit.SECONDS, 0));
+		assertEquals(1500, snapshot.getDuration("millis", TimeUnit.MILLISECONDS, TimeUnit.SECONDS, 0));
+		assertEquals(120000, snapshot.getDuration("minutes", TimeUnit.MILLISECONDS, TimeUnit.SECONDS, 0));
+		assertEquals(7, snapshot.getDuration("missing", TimeUnit.MILLISECONDS, TimeUnit.SECONDS, 7));
+		assertEquals(120, snapshot.getDuration("minutes", TimeUnit.SECONDS, 0));
+		assertEquals(3, snapshot.getDuration("missing", TimeUnit.SECONDS, 3));
+		try {
+			snapshot.getDuration("text", TimeUnit.SECONDS, 0);
+			fail("Expected a NumberFormatException");
+		} catch (NumberFormatException e) {
+			assertTrue(e.getMessage().contains("text"));
+		}
+	}
+
+	@Test
+	public void testSystemPropertyPrecedence() {
+		System.setProperty("snapshot.key", "systemValue");
+		try {
+			config.setValue("snapshot.key", "propertiesValue");
+			assertEquals("systemValue", config.snapshot().getValue("snapshot.key"));
+		} finally {
+			System.clearProperty("snapshot.key");
+		}
+	}
+
+	@Test
+	public void testPath() {
+		config.setValue("path", "log/candybean.log");
+		ConfigurationSnapshot snapshot = config.snapshot();
+		assertEquals(config.getPathValue("path"), snapshot.getPath("path"));
+		assertSame(snapshot.getPath("path"), snapshot.getPath("path"));
+		assertNull(snapshot.getPath("missing"));
+	}
+
+	@Test
+	public void testSnapshotIsImmutable() {
+		config.setValue("key", "1");
+		ConfigurationSnapshot snapshot = config.snapshot();
+		assertSame(snapshot, config.snapshot());
+		config.setValue("key", "2");
+		config.setValue("other", "3");
+		assertEquals(1, snapshot.getLong("key", 0));
+		assertFalse(snapshot.hasKey("other"));
+		ConfigurationSnapshot next = config.snapshot();
+		assertNotSame(snapshot, next);
+		assertEquals(2, next.getLong("key", 0));
+		assertTrue(next.hasKey("other"));
+		try {
+			snapshot.getKeys().remove("key");
+			fail("Expected the keys of a snapshot to be unmodifiable");
+		} catch (UnsupportedOperationException e) {
+			assertTrue(snapshot.hasKey("key"));
+		}
+		config.clear();
+		assertFalse(config.snapshot().hasKey("key"));
+	}
+}
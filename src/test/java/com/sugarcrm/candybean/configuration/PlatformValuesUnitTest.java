@@ -0,0 +1,113 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sugarcrm.candybean.utilities.Utils;
+
+public class PlatformValuesUnitTest {
+
+	@Before
+	public void setUp() {
+		PlatformValues.clearCache();
+	}
+
+	@Test
+	public void testPlainValues() {
+		assertEquals("value", PlatformValues.resolve("value", "linux"));
+		assertEquals("", PlatformValues.resolve("", "linux"));
+		assertEquals("42", PlatformValues.resolve("42", "linux"));
+		assertEquals("[\"a\"]", PlatformValues.resolve("[\"a\"]", "linux"));
+		assertNull(PlatformValues.resolve(null, "linux"));
+	}
+
+	@Test
+	public void testPlatformValues() {
+		String value = " {\"linux\": \"/usr/bin/firefox\",\n\t\"mac\" : \"/Applications/Firefox.app\", \"windows\":\"C:/firefox.exe\"} ";
+		assertEquals("/usr/bin/firefox", PlatformValues.resolve(value, "linux"));
+		assertEquals("/Applications/Firefox.app", PlatformValues.resolve(value, "mac"));
+		assertEquals("C:/firefox.exe", PlatformValues.resolve(value, "windows"));
+		assertNull(PlatformValues.resolve(value, "unknown"));
+		assertNull(PlatformValues.resolve("{}", "linux"));
+	}
+
+	@Test
+	public void testEscapes() {
+		assertEquals("C:\\Program Files\\\"x\"/\u00e9",
+				PlatformValues.resolve("{\"windows\": \"C:\\\\Program Files\\\\\\\"x\\\"\\/\\u00e9\"}", "windows"));
+		assertEquals("a\tb", PlatformValues.resolve("{\"l\\u0069nux\": \"a\\tb\"}", "linux"));
+	}
+
+	@Test
+	public void testOtherJson() {
+		// Values the scanner does not read resolve as the JSON parser does
+		assertEquals("{\"linux\": ", PlatformValues.resolve("{\"linux\": ", "linux"));
+		assertEquals("{linux}", PlatformValues.resolve("{linux}", "linux"));
+		assertEquals("{\"linux\": \"a\"} trailing", PlatformValues.resolve("{\"linux\": \"a\"} trailing", "linux"));
+		assertEquals("b", PlatformValues.resolve("{\"mac\": 1, \"linux\": \"b\"}", "linux"));
+		assertEquals("b", PlatformValues.resolve("{\"mac\": {\"x\": \"y\"}, \"linux\": \"b\"}", "linux"));
+	}
+
+	@Test
+	public void testCachePerPlatform() {
+		String value = "{\"linux\": \"a\", \"mac\": \"b\"}";
+		assertEquals("a", PlatformValues.resolve(value, "linux"));
+		assertEquals("b", PlatformValues.resolve(value, "mac"));
+		assertEquals("a", PlatformValues.resolve(value, "linux"));
+	}
+
+	@Test
+	public void testConfigurationLoad() throws IOException {
+		String platform = Utils.getCurrentPlatform();
+		File file = File.createTempFile("platformvalues", ".config");
+		try {
+			Properties properties = new Properties();
+			properties.setProperty("path", "{\"" + platform + "\": \"/current\", \"other\": \"/other\"}");
+			properties.setProperty("plain", "value");
+			FileOutputStream out = new FileOutputStream(file);
+			try {
+				properties.store(out, null);
+			} finally {
+				out.close();
+			}
+			Configuration config = new Configuration(file);
+			assertEquals("/current", config.getValue("path"));
+			assertEquals("value", config.getValue("plain"));
+		} finally {
+			file.delete();
+		}
+		Properties hooks = new Properties();
+		hooks.load(new ByteArrayInputStream(("hook = {\"" + platform + "\": \"ID:id\"}").getBytes("UTF-8")));
+		assertEquals("ID:id", Configuration.getPlatformValue(hooks, "hook"));
+	}
+}
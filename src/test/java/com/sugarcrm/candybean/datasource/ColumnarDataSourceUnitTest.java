@@ -0,0 +1,129 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ColumnarDataSourceUnitTest {
+
+	private static ColumnarDataSource accounts() {
+		ColumnarDataSource ds = new ColumnarDataSource(Arrays.asList("name", "type", "amount"));
+		ds.addRow(new String[] { "Acme", new String("Customer"), "10" });
+		ds.addRow(new String[] { "Globex", new String("Customer"), "20", "ignored" });
+		ds.addRow(new String[] { "Initech" });
+		return ds;
+	}
+
+	@Test
+	public void storesRowsAsFieldSetViews() {
+		ColumnarDataSource ds = accounts();
+		assertEquals(3, ds.size());
+		assertEquals(Arrays.asList("name", "type", "amount"), ds.getKeys());
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put("name", "Globex");
+		expected.put("type", "Customer");
+		expected.put("amount", "20");
+		assertEquals(expected, ds.get(1));
+		assertEquals(ds.get(1), expected);
+		assertEquals(expected.hashCode(), ds.get(1).hashCode());
+		assertEquals("", ds.get(2).get("amount"));
+		assertNull(ds.get(2).get("missing"));
+		assertFalse(ds.get(2).containsKey("missing"));
+	}
+
+	@Test
+	public void poolsRepeatedValues() {
+		ColumnarDataSource ds = accounts();
+		assertSame(ds.get(0).get("type"), ds.get(1).get("type"));
+	}
+
+	@Test
+	public void copiesRowOnWrite() {
+		ColumnarDataSource ds = accounts();
+		FieldSet row = ds.get(0);
+		FieldSet clone = row.deepClone();
+		assertEquals("Acme", row.put("name", "Acme Corp"));
+		assertEquals("Acme Corp", ds.get(0).get("name"));
+		assertEquals("Acme", clone.get("name"));
+		assertEquals("Acme", ds.getValue(0, 0));
+		assertEquals("10", row.remove("amount"));
+		assertEquals(2, row.size());
+		assertEquals(3, clone.size());
+	}
+
+	@Test
+	public void clonesOwnFieldsOnWrite() {
+		FieldSet fields = new FieldSet();
+		fields.put("key", "value");
+		FieldSet clone = fields.deepClone();
+		clone.put("key", "changed");
+		assertEquals("value", fields.get("key"));
+		assertEquals("changed", clone.get("key"));
+		fields.put("other", "added");
+		assertFalse(clone.containsKey("other"));
+	}
+
+	@Test
+	public void collectionViewsCopyOnWrite() {
+		ColumnarDataSource ds = accounts();
+		FieldSet row = ds.get(0);
+		for (Map.Entry<String, String> entry : row.entrySet()) {
+			if (entry.getKey().equals("name")) {
+				entry.setValue("Acme Corp");
+			}
+		}
+		assertEquals("Acme Corp", row.get("name"));
+		assertEquals("Acme", ds.getValue(0, 0));
+
+		FieldSet clone = row.deepClone();
+		assertTrue(clone.keySet().remove("type"));
+		Iterator<String> values = clone.values().iterator();
+		while (values.hasNext()) {
+			if (values.next().equals("10")) {
+				values.remove();
+			}
+		}
+		assertEquals(1, clone.size());
+		assertEquals(3, row.size());
+		assertEquals("Customer", row.get("type"));
+
+		row.keySet().clear();
+		assertTrue(row.isEmpty());
+		assertEquals(1, clone.size());
+	}
+
+	@Test
+	public void keepsLastValueOfRepeatedKeys() {
+		ColumnarDataSource ds = new ColumnarDataSource(Arrays.asList("a", "b", "a"));
+		FieldSet row = ds.addRow(new String[] { "first", "middle", "last" });
+		assertEquals(2, row.size());
+		assertEquals("last", row.get("a"));
+		assertEquals(Arrays.asList("a", "b"), ds.getKeys());
+	}
+}
@@ -21,6 +21,7 @@
  */
 package com.sugarcrm.candybean.datasource;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedWriter;
@@ -92,6 +93,32 @@ public class CsvDataAdapterUnitTest {
 		cleanup(); 
 	}
 
+	@Test
+	public void testParallelLoad() throws Exception {
+		String dataDir = createDataDir(testDataDir + File.separator + "parallel");
+		for (int i = 0; i < 8; i++) {
+			createFile(dataDir, "Accounts_0001_" + i + ".csv", "NAME,INDEX\nAccount " + i + "," + i);
+		}
+		Configuration config = new Configuration();
+		config.setValue("datasource.csv.baseDir", testDataDir);
+		config.setValue("datasource.load.threads", "4");
+		try {
+			CsvDataAdapter dataAdapter = new CsvDataAdapter(config);
+			Map<String, DataSource> dataSourceHashMap = dataAdapter.setDataBasePath("datasource.csv.baseDir")
+					.getData("parallel/Accounts_0001", DataAdapter.Selection.ALL);
+			assertEquals(8, dataSourceHashMap.size());
+			for (int i = 0; i < 8; i++) {
+				DataSource ds = dataSourceHashMap.get("Accounts_0001_" + i);
+				assertEquals(1, ds.size());
+				assertEquals("Account " + i, ds.get(0).get("NAME"));
+				assertEquals(String.valueOf(i), ds.get(0).get("INDEX"));
+			}
+			assertEquals(8, dataAdapter.getLoadTimes().size());
+		} finally {
+			FileUtils.deleteDirectory(new File(testDataDir));
+		}
+	}
+
 	private static String createDataDir(String dirStr) {
 		File dir = new File(dirStr);
 
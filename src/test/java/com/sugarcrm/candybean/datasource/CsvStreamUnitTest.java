@@ -0,0 +1,169 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CsvStreamUnitTest {
+
+	private File csvFile;
+
+	@Before
+	public void setUp() throws IOException {
+		csvFile = File.createTempFile("CsvStreamUnitTest", ".csv");
+		StringBuilder longValue = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			longValue.append("long");
+		}
+		write("\n"
+				+ "name,quote,amount\r\n"
+				+ "Acme, plain ,10\r\n"
+				+ "\n"
+				+ "\"Smith, Jones\",\"He said \"\"hi\"\"\",20\n"
+				+ "Zurich,\"back\\\"slash\",\n"
+				+ "Short\n"
+				+ longValue + ",\"\",30\n"
+				+ "Last,  \"spaced\",40");
+	}
+
+	@After
+	public void tearDown() {
+		csvFile.delete();
+	}
+
+	private void write(String content) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(csvFile), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void matchesCsv() throws IOException {
+		DataSource expected = new CSV(csvFile.getAbsolutePath()).getDataSource();
+		CsvStream stream = new CsvStream(csvFile);
+		try {
+			assertEquals(Arrays.asList("name", "quote", "amount"), stream.getColumns());
+			assertEquals(expected, stream.toDataSource());
+		} finally {
+			stream.close();
+		}
+		assertEquals(6, expected.size());
+		assertEquals("Smith, Jones", expected.get(1).get("name"));
+		assertEquals("He said \"hi\"", expected.get(1).get("quote"));
+		assertEquals("back\"slash", expected.get(2).get("quote"));
+		assertEquals("", expected.get(3).get("amount"));
+	}
+
+	@Test
+	public void remapsWindowsSmallerThanLines() throws IOException {
+		DataSource expected = new CSV(csvFile.getAbsolutePath()).getDataSource();
+		CsvStream stream = new CsvStream(csvFile, 16);
+		try {
+			assertEquals(expected, stream.toDataSource());
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void reusesOneRecordPerIteration() throws IOException {
+		CsvStream stream = new CsvStream(csvFile);
+		try {
+			Iterator<CsvStream.Record> records = stream.iterator();
+			CsvStream.Record first = records.next();
+			assertEquals("Acme", first.get("name"));
+			assertEquals(" plain ", first.get(1));
+			assertNull(first.get("missing"));
+			CsvStream.Record second = records.next();
+			assertSame(first, second);
+			assertEquals("Smith, Jones", second.get("name"));
+			int count = 2;
+			while (records.hasNext()) {
+				records.next();
+				count++;
+			}
+			assertEquals(6, count);
+			assertEquals("Acme", stream.iterator().next().get("name"));
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void decodesUtf8() throws IOException {
+		write("name\nZ\u00fcrich\n");
+		CsvStream stream = new CsvStream(csvFile);
+		try {
+			assertEquals("Z\u00fcrich", stream.iterator().next().get("name"));
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void closesFileWhenHeaderCannotBeRead() throws IOException {
+		File descriptors = new File("/proc/self/fd");
+		Assume.assumeTrue(descriptors.isDirectory());
+		// The first attempt may open jars to load classes
+		openWithNegativeWindow();
+		int open = descriptors.list().length;
+		openWithNegativeWindow();
+		assertEquals(open, descriptors.list().length);
+	}
+
+	private void openWithNegativeWindow() throws IOException {
+		try {
+			new CsvStream(csvFile, -1);
+			fail("A negative window cannot be mapped");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void streamsEmptyFiles() throws IOException {
+		write("");
+		CsvStream stream = new CsvStream(csvFile);
+		try {
+			assertTrue(stream.getColumns().isEmpty());
+			assertFalse(stream.iterator().hasNext());
+		} finally {
+			stream.close();
+		}
+	}
+}
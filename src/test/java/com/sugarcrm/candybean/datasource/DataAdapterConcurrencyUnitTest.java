@@ -0,0 +1,133 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+/**
+ * Loads different datasets from many threads at once, each with its own configuration and
+ * selection, and checks that every thread always gets its own data.
+ */
+public class DataAdapterConcurrencyUnitTest {
+
+	private static final int DATASETS = 8;
+	private static final int THREADS = 16;
+	private static final int ROUNDS = 50;
+
+	@Rule
+	public final TestDataFolder testData = new TestDataFolder();
+
+	@Before
+	public void setUp() throws IOException {
+		for (int d = 0; d < DATASETS; d++) {
+			testData.write("set" + d + File.separator + "Accounts.csv", "SET,FILE\n" + d + ",main\n");
+			testData.write("set" + d + File.separator + "Accounts_extra.csv", "SET,FILE\n" + d + ",extra\n");
+		}
+	}
+
+	@Test
+	public void threadsLoadTheirOwnDatasets() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Callable<Void>> loaders = new ArrayList<Callable<Void>>();
+		for (int t = 0; t < THREADS; t++) {
+			final int dataset = t % DATASETS;
+			final boolean single = t % 2 == 0;
+			loaders.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					Configuration config = new Configuration();
+					config.setValue("datasource.csv.baseDir", testData.getBaseDir() + File.separator + "set" + dataset);
+					DataAdapter adapter = new DataAdapterFactory(config)
+							.createDataAdapter(DataAdapterFactory.DataAdapterType.CSV)
+							.setDataBasePath("datasource.csv.baseDir");
+					start.await();
+					for (int r = 0; r < ROUNDS; r++) {
+						Map<String, DataSource> data = single ? adapter.getData("Accounts", DataAdapter.Selection.SINGLE)
+								: adapter.getData("Accounts");
+						assertEquals(single ? 1 : 2, data.size());
+						assertEquals(String.valueOf(dataset), data.get("Accounts").get(0).get("SET"));
+						assertEquals("main", data.get("Accounts").get(0).get("FILE"));
+						if (!single) {
+							assertEquals(String.valueOf(dataset), data.get("Accounts_extra").get(0).get("SET"));
+						}
+					}
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (Callable<Void> loader : loaders) {
+				results.add(executor.submit(loader));
+			}
+			start.countDown();
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void sharedAdapterHonoursEachCallsSelection() throws Exception {
+		Configuration config = new Configuration();
+		config.setValue("datasource.csv.baseDir", testData.getBaseDir() + File.separator + "set0");
+		final DataAdapter adapter = new CsvDataAdapter(config).setDataBasePath("datasource.csv.baseDir");
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> sizes = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < THREADS * ROUNDS; t++) {
+				final DataAdapter.Selection selection = t % 2 == 0 ? DataAdapter.Selection.SINGLE : DataAdapter.Selection.ALL;
+				sizes.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						return adapter.getData("Accounts", selection).size();
+					}
+				}));
+			}
+			for (int t = 0; t < sizes.size(); t++) {
+				assertEquals(t % 2 == 0 ? 1 : 2, sizes.get(t).get().intValue());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
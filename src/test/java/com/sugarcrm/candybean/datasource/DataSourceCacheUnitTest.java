@@ -0,0 +1,143 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DataSourceCacheUnitTest {
+
+	@Rule
+	public final TestDataFolder testData = new TestDataFolder();
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private final DataSourceCache.Loader loader = new DataSourceCache.Loader() {
+		@Override
+		public DataSource load(File file) {
+			loads.incrementAndGet();
+			return new CSV(file.getAbsolutePath()).getDataSource();
+		}
+	};
+
+	@Before
+	public void setUp() {
+		loads.set(0);
+	}
+
+	@Test
+	public void parsesEachFileOnce() throws IOException {
+		DataSourceCache cache = new DataSourceCache(true, 8);
+		File file = testData.write("Accounts.csv", "name\nAcme\n");
+		assertEquals("Acme", cache.get(file, loader).get(0).get("name"));
+		assertEquals("Acme", cache.get(new File(file.getParentFile(), "./" + file.getName()), loader).get(0).get("name"));
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void isolatesCopiesFromTheCache() throws IOException {
+		DataSourceCache cache = new DataSourceCache(true, 8);
+		File file = testData.write("Accounts.csv", "name\nAcme\n");
+		DataSource first = cache.get(file, loader);
+		first.get(0).put("name", "Changed");
+		first.clear();
+		DataSource second = cache.get(file, loader);
+		assertEquals(1, second.size());
+		assertEquals("Acme", second.get(0).get("name"));
+	}
+
+	@Test
+	public void parsesChangedFilesAgain() throws IOException {
+		DataSourceCache cache = new DataSourceCache(true, 8);
+		File file = testData.write("Accounts.csv", "name\nAcme\n");
+		cache.get(file, loader);
+		testData.write(file.getName(), "name\nAcme\nGlobex\n");
+		assertEquals(2, cache.get(file, loader).size());
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void evictsLeastRecentlyRead() throws IOException {
+		DataSourceCache cache = new DataSourceCache(true, 2);
+		File a = testData.write("A.csv", "name\nA\n");
+		File b = testData.write("B.csv", "name\nB\n");
+		File c = testData.write("C.csv", "name\nC\n");
+		cache.get(a, loader);
+		cache.get(b, loader);
+		cache.get(a, loader);
+		cache.get(c, loader);
+		assertEquals(2, cache.size());
+		cache.get(a, loader);
+		assertEquals(3, loads.get());
+		cache.get(b, loader);
+		assertEquals(4, loads.get());
+	}
+
+	@Test
+	public void parsesEveryReadWhenDisabled() throws IOException {
+		DataSourceCache cache = new DataSourceCache(false, 8);
+		File file = testData.write("Accounts.csv", "name\nAcme\n");
+		cache.get(file, loader);
+		cache.get(file, loader);
+		assertEquals(2, loads.get());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void parsesOnceForConcurrentReaders() throws Exception {
+		final DataSourceCache cache = new DataSourceCache(true, 8);
+		final File file = testData.write("Accounts.csv", "name\nAcme\n");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<DataSource>> reads = new ArrayList<Callable<DataSource>>();
+			for (int i = 0; i < 32; i++) {
+				reads.add(new Callable<DataSource>() {
+					@Override
+					public DataSource call() {
+						return cache.get(file, loader);
+					}
+				});
+			}
+			for (Future<DataSource> read : executor.invokeAll(reads)) {
+				assertEquals("Acme", read.get().get(0).get("name"));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, loads.get());
+	}
+}
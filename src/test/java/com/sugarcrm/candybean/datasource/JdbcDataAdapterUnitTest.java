@@ -0,0 +1,370 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+/**
+ * Reads tables from an in-memory stand-in for a seeded database, served by a minimal JDBC
+ * driver registered for jdbc:candybean: urls.
+ */
+public class JdbcDataAdapterUnitTest {
+
+	private static final FakeDriver driver = new FakeDriver();
+	private static int databases = 0;
+
+	private String url;
+
+	@BeforeClass
+	public static void registerDriver() throws SQLException {
+		DriverManager.registerDriver(driver);
+	}
+
+	@AfterClass
+	public static void deregisterDriver() throws SQLException {
+		DriverManager.deregisterDriver(driver);
+	}
+
+	@Before
+	public void setUp() {
+		// A database per test, so that no test shares another's pool
+		url = "jdbc:candybean:test" + databases++;
+		driver.tables.clear();
+		driver.tables.put("ACCOUNTS", new String[][] { { "NAME", "CITY" }, { "alice", "Paris" }, { "bob", null } });
+		driver.tables.put("ACCOUNTS_EXTRA", new String[][] { { "NAME", "CITY" }, { "carol", "Oslo" } });
+		driver.tables.put("CONTACTS", new String[][] { { "NAME" }, { "dave" } });
+		driver.tables.put("OTHER.ACCOUNTS", new String[][] { { "NAME" }, { "erin" } });
+		driver.connections.set(0);
+		driver.queries.set(0);
+		driver.fetchSize = 0;
+		JdbcDataAdapter.clearCache();
+	}
+
+	@After
+	public void tearDown() {
+		JdbcDataAdapter.clearCache();
+	}
+
+	private JdbcDataAdapter createAdapter(boolean cache) {
+		return createAdapter(cache, new Configuration());
+	}
+
+	private JdbcDataAdapter createAdapter(boolean cache, Configuration config) {
+		config.setValue("datasource.jdbc.url", url);
+		config.setValue("datasource.jdbc.fetchSize", "2");
+		config.setValue("datasource.jdbc.pool.size", "2");
+		config.setValue("datasource.jdbc.cache.enabled", String.valueOf(cache));
+		return (JdbcDataAdapter) new DataAdapterFactory(config).createDataAdapter(DataAdapterFactory.DataAdapterType.JDBC);
+	}
+
+	@Test
+	public void readsMatchingTables() {
+		Map<String, DataSource> data = createAdapter(false).getData("accounts");
+		assertEquals(2, data.size());
+		DataSource accounts = data.get("ACCOUNTS");
+		assertEquals(2, accounts.size());
+		assertEquals("alice", accounts.get(0).get("NAME"));
+		assertEquals("Paris", accounts.get(0).get("CITY"));
+		assertEquals("", accounts.get(1).get("CITY"));
+		assertEquals("carol", data.get("ACCOUNTS_EXTRA").get(0).get("NAME"));
+		assertEquals(2, driver.fetchSize);
+	}
+
+	@Test
+	public void singleSelectionReadsOneTable() {
+		Map<String, DataSource> data = createAdapter(false).getData("ACCOUNTS", DataAdapter.Selection.SINGLE);
+		assertEquals(1, data.size());
+		assertTrue(data.containsKey("ACCOUNTS"));
+	}
+
+	@Test
+	public void namesAreNotPatterns() {
+		assertTrue(createAdapter(false).getData("ACC.UNTS").isEmpty());
+		assertTrue(createAdapter(false).getData("ACCOUNTS|CONTACTS").isEmpty());
+	}
+
+	@Test
+	public void readsTablesOfTheConfiguredSchema() {
+		Configuration config = new Configuration();
+		config.setValue("datasource.jdbc.schema", "OTHER");
+		Map<String, DataSource> data = createAdapter(false, config).getData("ACCOUNTS");
+		assertEquals(1, data.size());
+		assertEquals("erin", data.get("ACCOUNTS").get(0).get("NAME"));
+	}
+
+	@Test
+	public void connectionsArePooled() {
+		JdbcDataAdapter adapter = createAdapter(false);
+		for (int i = 0; i < 10; i++) {
+			adapter.getData("ACCOUNTS");
+		}
+		assertEquals(1, driver.connections.get());
+		assertEquals(1, JdbcConnectionPool.getPool(url, null, null, 2).getIdleCount());
+	}
+
+	@Test
+	public void poolDropsClosedConnections() throws SQLException {
+		JdbcConnectionPool pool = new JdbcConnectionPool(url, null, null, 1);
+		Connection connection = pool.acquire();
+		connection.close();
+		pool.release(connection);
+		assertEquals(0, pool.getIdleCount());
+		Connection another = pool.acquire();
+		assertFalse(another.isClosed());
+		pool.release(another);
+		assertEquals(1, pool.getIdleCount());
+		pool.close();
+		assertTrue(another.isClosed());
+	}
+
+	@Test
+	public void cachedQueriesRunOnce() throws SQLException {
+		JdbcDataAdapter adapter = createAdapter(true);
+		DataSource first = adapter.query("SELECT * FROM \"ACCOUNTS\"");
+		first.get(0).put("NAME", "changed");
+		DataSource second = createAdapter(true).query("SELECT * FROM \"ACCOUNTS\"");
+		assertEquals(1, driver.queries.get());
+		assertEquals("alice", second.get(0).get("NAME"));
+		adapter.query("SELECT * FROM \"CONTACTS\"");
+		assertEquals(2, driver.queries.get());
+	}
+
+	@Test
+	public void uncachedQueriesRunEveryTime() throws SQLException {
+		JdbcDataAdapter adapter = createAdapter(false);
+		adapter.query("SELECT * FROM \"ACCOUNTS\"");
+		adapter.query("SELECT * FROM \"ACCOUNTS\"");
+		assertEquals(2, driver.queries.get());
+	}
+
+	@Test(expected = SQLException.class)
+	public void failedQueriesThrow() throws SQLException {
+		createAdapter(false).query("SELECT * FROM \"MISSING\"");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void missingUrlFails() {
+		new JdbcDataAdapter(new Configuration()).getData("ACCOUNTS");
+	}
+
+	/*
+	 * Serves tables of strings, the first row of each being its column names; tables are in
+	 * the PUBLIC schema unless their name is qualified by another
+	 */
+	private static class FakeDriver implements Driver {
+		private final Map<String, String[][]> tables = new ConcurrentHashMap<String, String[][]>();
+		private final AtomicInteger connections = new AtomicInteger();
+		private final AtomicInteger queries = new AtomicInteger();
+		private volatile int fetchSize;
+
+		@Override
+		public Connection connect(String url, Properties info) {
+			if (!acceptsURL(url)) {
+				return null;
+			}
+			connections.incrementAndGet();
+			final boolean[] closed = { false };
+			return proxy(Connection.class, new Handler() {
+				@Override
+				Object handle(String method, Object[] args) throws SQLException {
+					if (method.equals("close")) {
+						closed[0] = true;
+					} else if (method.equals("isClosed")) {
+						return closed[0];
+					} else if (method.equals("getAutoCommit")) {
+						return true;
+					} else if (method.equals("createStatement")) {
+						return createStatement();
+					} else if (method.equals("getMetaData")) {
+						return createMetaData();
+					} else if (method.equals("getSchema")) {
+						return "PUBLIC";
+					}
+					return null;
+				}
+			});
+		}
+
+		private Statement createStatement() {
+			return proxy(Statement.class, new Handler() {
+				@Override
+				Object handle(String method, Object[] args) throws SQLException {
+					if (method.equals("setFetchSize")) {
+						fetchSize = (Integer) args[0];
+					} else if (method.equals("executeQuery")) {
+						Matcher matcher = Pattern.compile("SELECT \\* FROM (?:\"(\\w+)\"\\.)?\"(\\w+)\"").matcher((String) args[0]);
+						String[][] table = null;
+						if (matcher.matches()) {
+							String schema = matcher.group(1);
+							table = tables.get(schema == null || schema.equals("PUBLIC") ? matcher.group(2) : schema + "." + matcher.group(2));
+						}
+						if (table == null) {
+							throw new SQLException("Unknown query: " + args[0]);
+						}
+						queries.incrementAndGet();
+						return createResultSet(table);
+					}
+					return null;
+				}
+			});
+		}
+
+		private DatabaseMetaData createMetaData() {
+			return proxy(DatabaseMetaData.class, new Handler() {
+				@Override
+				Object handle(String method, Object[] args) {
+					if (method.equals("getIdentifierQuoteString")) {
+						return "\"";
+					} else if (method.equals("getSearchStringEscape")) {
+						return "\\";
+					} else if (method.equals("getTables")) {
+						List<String[]> rows = new ArrayList<String[]>();
+						rows.add(new String[] { "TABLE_SCHEM", "TABLE_NAME" });
+						for (String name : tables.keySet()) {
+							String[] row = name.contains(".") ? name.split("\\.") : new String[] { "PUBLIC", name };
+							if (args[1] == null || row[0].equals(args[1])) {
+								rows.add(row);
+							}
+						}
+						return createResultSet(rows.toArray(new String[rows.size()][]));
+					}
+					return null;
+				}
+			});
+		}
+
+		private ResultSet createResultSet(final String[][] table) {
+			final int[] row = { 0 };
+			final ResultSetMetaData metaData = proxy(ResultSetMetaData.class, new Handler() {
+				@Override
+				Object handle(String method, Object[] args) {
+					if (method.equals("getColumnCount")) {
+						return table[0].length;
+					} else if (method.equals("getColumnLabel") || method.equals("getColumnName")) {
+						return table[0][(Integer) args[0] - 1];
+					}
+					return null;
+				}
+			});
+			return proxy(ResultSet.class, new Handler() {
+				@Override
+				Object handle(String method, Object[] args) {
+					if (method.equals("next")) {
+						return ++row[0] < table.length;
+					} else if (method.equals("getMetaData")) {
+						return metaData;
+					} else if (method.equals("getString")) {
+						int column = args[0] instanceof Integer ? (Integer) args[0] - 1 : Arrays.asList(table[0]).indexOf(args[0]);
+						return table[row[0]][column];
+					}
+					return null;
+				}
+			});
+		}
+
+		@Override
+		public boolean acceptsURL(String url) {
+			return url != null && url.startsWith("jdbc:candybean:");
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+	}
+
+	private static abstract class Handler implements InvocationHandler {
+		abstract Object handle(String method, Object[] args) throws SQLException;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getName().equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			} else if (method.getName().equals("equals")) {
+				return proxy == args[0];
+			}
+			Object result = handle(method.getName(), args);
+			if (result == null && method.getReturnType().isPrimitive()) {
+				Class<?> type = method.getReturnType();
+				return type == boolean.class ? Boolean.FALSE : type == void.class ? null : type == long.class ? (Object) 0L : (Object) 0;
+			}
+			return result;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(JdbcDataAdapterUnitTest.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+public class JsonStreamUnitTest {
+
+	@Rule
+	public final TestDataFolder testData = new TestDataFolder();
+
+	@Test
+	public void readsObjectsOfTopLevelArray() throws IOException {
+		File file = testData.write("Accounts.json", "[\n"
+				+ "  {\"id\": 1, \"name\": \"alice\", \"city\": \"Zürich\", \"note\": null, \"active\": true},\n"
+				+ "  {\"id\": 2.5, \"name\": \"bob\", \"address\": {\"city\": \"Oslo\", \"zip\": {\"code\": \"0150\"}},"
+				+ " \"tags\": [\"a\", {\"b\": 1}], \"after\": \"x\"}\n"
+				+ "]\n");
+		JsonStream stream = new JsonStream(file);
+		try {
+			Iterator<FieldSet> records = stream.iterator();
+			FieldSet first = records.next();
+			assertEquals("1", first.get("id"));
+			assertEquals("alice", first.get("name"));
+			assertEquals("Zürich", first.get("city"));
+			assertEquals("", first.get("note"));
+			assertEquals("true", first.get("active"));
+			assertEquals(5, first.size());
+			FieldSet second = records.next();
+			assertEquals("2.5", second.get("id"));
+			assertEquals("Oslo", second.get("address.city"));
+			assertEquals("0150", second.get("address.zip.code"));
+			assertEquals("x", second.get("after"));
+			assertFalse(second.containsKey("tags"));
+			assertEquals(5, second.size());
+			assertFalse(records.hasNext());
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void readsFirstArrayOfTopLevelObject() throws IOException {
+		File file = testData.write("Export.json", "{\"exported\": \"today\", \"records\": [{\"n\": \"1\"}, {\"n\": \"2\"}], \"count\": 2}");
+		JsonStream stream = new JsonStream(file);
+		try {
+			DataSource ds = stream.toDataSource();
+			assertEquals(2, ds.size());
+			assertEquals("2", ds.get(1).get("n"));
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void readsOnlyArraysOfObjectsUnderTheRoot() throws IOException {
+		File file = testData.write("Export.json", "{\"meta\": {\"owners\": [{\"n\": \"owner\"}]}, \"tags\": [\"a\", \"b\"], "
+				+ "\"grid\": [[{\"n\": \"cell\"}]], \"records\": [{\"n\": \"1\"}], \"more\": [{\"n\": \"more\"}]}");
+		JsonStream stream = new JsonStream(file);
+		try {
+			DataSource ds = stream.toDataSource();
+			assertEquals(1, ds.size());
+			assertEquals("1", ds.get(0).get("n"));
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void iteratesManyRecords() throws IOException {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 10000; i++) {
+			json.append(i == 0 ? "" : ",").append("{\"n\":").append(i).append("}");
+		}
+		File file = testData.write("Rows.json", json.append("]").toString());
+		JsonStream stream = new JsonStream(file);
+		try {
+			int count = 0;
+			for (FieldSet record : stream) {
+				assertEquals(String.valueOf(count++), record.get("n"));
+			}
+			assertEquals(10000, count);
+			// Each iteration reads the file again
+			assertEquals(10000, stream.toDataSource().size());
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void malformedFileFailsIteration() throws IOException {
+		JsonStream stream = new JsonStream(testData.write("Broken.json", "[{\"n\": 1}, {\"n\": 2"));
+		try {
+			for (FieldSet record : stream) {
+				record.size();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void adapterReadsMatchingFiles() throws IOException {
+		testData.write("Accounts.json", "[{\"name\": \"alice\"}]");
+		testData.write("Accounts_extra.json", "[{\"name\": \"bob\"}, {\"name\": \"carol\"}]");
+		Configuration config = new Configuration();
+		config.setValue("datasource.json.baseDir", testData.getBaseDir());
+		JsonDataAdapter adapter = (JsonDataAdapter) new DataAdapterFactory(config)
+				.createDataAdapter(DataAdapterFactory.DataAdapterType.JSON).setDataBasePath("datasource.json.baseDir");
+		Map<String, DataSource> data = adapter.getData("Accounts");
+		assertEquals(2, data.size());
+		assertEquals("alice", data.get("Accounts").get(0).get("name"));
+		assertEquals(2, data.get("Accounts_extra").size());
+		FieldSetStream stream = adapter.getDataStream("Accounts_extra");
+		try {
+			assertEquals("carol", stream.toDataSource().get(1).get("name"));
+		} finally {
+			stream.close();
+		}
+	}
+}
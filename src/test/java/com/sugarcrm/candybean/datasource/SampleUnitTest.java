@@ -0,0 +1,156 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+public class SampleUnitTest {
+
+	private static final int ROWS = 1000;
+
+	@Rule
+	public final TestDataFolder testData = new TestDataFolder();
+
+	private List<FieldSet> rows;
+
+	@Before
+	public void setUp() throws IOException {
+		rows = new ArrayList<FieldSet>();
+		StringBuilder csv = new StringBuilder("ID,REGION\n");
+		for (int i = 0; i < ROWS; i++) {
+			// One row in the rare region
+			String region = i == 500 ? "rare" : i % 3 == 0 ? "east" : "west";
+			FieldSet row = new FieldSet();
+			row.put("ID", String.valueOf(i));
+			row.put("REGION", region);
+			rows.add(row);
+			csv.append(i).append(',').append(region).append('\n');
+		}
+		testData.write("Regions.csv", csv.toString());
+	}
+
+	private static void assertInOrder(DataSource ds) {
+		int last = -1;
+		for (FieldSet row : ds) {
+			int id = Integer.parseInt(row.get("ID"));
+			assertTrue(id > last);
+			last = id;
+		}
+	}
+
+	@Test
+	public void reservoirKeepsSizeRowsInOrder() {
+		DataSource ds = Sample.reservoir(50).withSeed(1).apply(rows);
+		assertEquals(50, ds.size());
+		assertInOrder(ds);
+		assertEquals(ds, Sample.reservoir(50).withSeed(1).apply(rows));
+		assertFalse(ds.equals(Sample.reservoir(50).withSeed(2).apply(rows)));
+	}
+
+	@Test
+	public void reservoirOfSmallDataKeepsEverything() {
+		assertEquals(rows, Sample.reservoir(ROWS * 2).apply(rows));
+		assertTrue(Sample.reservoir(0).apply(rows).isEmpty());
+	}
+
+	@Test
+	public void reservoirIsUniform() {
+		List<FieldSet> ten = rows.subList(0, 10);
+		int[] counts = new int[10];
+		for (int seed = 0; seed < 5000; seed++) {
+			for (FieldSet row : Sample.reservoir(2).withSeed(seed).apply(ten)) {
+				counts[Integer.parseInt(row.get("ID"))]++;
+			}
+		}
+		// Each row is expected 1000 times
+		for (int count : counts) {
+			assertTrue("Row kept " + count + " times", count > 850 && count < 1150);
+		}
+	}
+
+	@Test
+	public void fractionKeepsAboutThatShare() {
+		DataSource ds = Sample.fraction(0.1).withSeed(7).apply(rows);
+		assertTrue(ds.size() > 60 && ds.size() < 140);
+		assertInOrder(ds);
+		assertEquals(ds, Sample.fraction(0.1).withSeed(7).apply(rows));
+		assertEquals(ROWS, Sample.fraction(1).apply(rows).size());
+	}
+
+	@Test
+	public void stratifiedKeepsEveryValue() {
+		DataSource ds = Sample.stratified("REGION", 5).withSeed(3).apply(rows);
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (FieldSet row : ds) {
+			Integer count = counts.get(row.get("REGION"));
+			counts.put(row.get("REGION"), count == null ? 1 : count + 1);
+		}
+		assertEquals(Integer.valueOf(5), counts.get("east"));
+		assertEquals(Integer.valueOf(5), counts.get("west"));
+		assertEquals(Integer.valueOf(1), counts.get("rare"));
+		assertInOrder(ds);
+		assertEquals(ds, Sample.stratified("REGION", 5).withSeed(3).apply(rows));
+	}
+
+	@Test
+	public void streamedRecordsAreCopied() throws IOException {
+		CsvStream stream = new CsvStream(new File(testData.getRoot(), "Regions.csv"));
+		try {
+			assertEquals(Sample.reservoir(20).withSeed(5).apply(rows), Sample.reservoir(20).withSeed(5).apply(stream));
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void adaptersSampleSingleFiles() {
+		Configuration config = new Configuration();
+		config.setValue("datasource.csv.baseDir", testData.getBaseDir());
+		DataAdapter csv = new CsvDataAdapter(config).setDataBasePath("datasource.csv.baseDir");
+		Sample sample = Sample.stratified("REGION", 2).withSeed(9);
+		DataSource ds = csv.getSample("Regions", sample);
+		assertEquals(5, ds.size());
+		assertEquals(sample.apply(rows), ds);
+		assertTrue(csv.getSample("Missing", sample).isEmpty());
+
+		DataAdapter snapshot = new SnapshotDataAdapter(config).setDataBasePath("datasource.csv.baseDir");
+		assertEquals(ds, snapshot.getSample("Regions", sample));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void fractionMustBeAProbability() {
+		Sample.fraction(1.5);
+	}
+}
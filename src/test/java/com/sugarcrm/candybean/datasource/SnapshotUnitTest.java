@@ -0,0 +1,165 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+public class SnapshotUnitTest {
+
+	@Rule
+	public final TestDataFolder testData = new TestDataFolder();
+
+	private File csvFile;
+
+	@Before
+	public void setUp() throws IOException {
+		csvFile = testData.write("Accounts.csv", "NAME,CITY,NOTE\nalice,Paris,\"quoted, with comma\"\nbob,Paris,\nbob,Oslo,last\n");
+	}
+
+	private DataAdapter createAdapter() {
+		Configuration config = new Configuration();
+		config.setValue("datasource.csv.baseDir", testData.getBaseDir());
+		return new DataAdapterFactory(config).createDataAdapter(DataAdapterFactory.DataAdapterType.SNAPSHOT)
+				.setDataBasePath("datasource.csv.baseDir");
+	}
+
+	@Test
+	public void compiledSnapshotMatchesCsv() throws IOException {
+		File snapshotFile = Snapshot.compile(csvFile);
+		assertEquals(new File(testData.getRoot(), "Accounts." + Snapshot.EXTENSION), snapshotFile);
+		assertEquals(csvFile, Snapshot.open(snapshotFile).getSourceFile());
+
+		DataSource parsed = new CSV(csvFile.getAbsolutePath()).getDataSource();
+		Snapshot snapshot = Snapshot.open(snapshotFile);
+		DataSource loaded = snapshot.toDataSource();
+		assertEquals(3, snapshot.getRowCount());
+		assertEquals(parsed, loaded);
+		assertEquals("quoted, with comma", loaded.get(0).get("NOTE"));
+		assertEquals("", loaded.get(1).get("NOTE"));
+		assertNull(loaded.get(0).get("MISSING"));
+		assertTrue(snapshot.isFresh(csvFile));
+	}
+
+	@Test
+	public void stringsAreStoredOnce() throws IOException {
+		StringBuilder csv = new StringBuilder("NAME,CITY\n");
+		for (int i = 0; i < 1000; i++) {
+			csv.append("name").append(i % 10).append(",Paris\n");
+		}
+		testData.write(csvFile.getName(), csv.toString());
+		long length = Snapshot.compile(csvFile).length();
+		// 2000 value indexes, plus a header and a dozen strings
+		assertTrue("Snapshot is " + length + " bytes", length < 2000 * 4 + 256);
+	}
+
+	@Test
+	public void decodesUtf8() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(csvFile, "rw");
+		try {
+			raf.setLength(0);
+			raf.write("NAME\nZürich\n".getBytes("UTF-8"));
+		} finally {
+			raf.close();
+		}
+		DataSource parsed = new CSV(csvFile.getAbsolutePath()).getDataSource();
+		DataSource loaded = Snapshot.open(Snapshot.compile(csvFile)).toDataSource();
+		assertEquals(parsed.get(0).get("NAME"), loaded.get(0).get("NAME"));
+	}
+
+	@Test
+	public void changedCsvMakesSnapshotStale() throws IOException {
+		Snapshot snapshot = Snapshot.open(Snapshot.compile(csvFile));
+		testData.write(csvFile.getName(), "NAME,CITY,NOTE\ncarol,Rome,\nbob,Paris,\nbob,Oslo,last\n");
+		assertFalse(snapshot.isFresh(csvFile));
+		assertFalse(SnapshotCompiler.isFresh(csvFile));
+	}
+
+	@Test
+	public void touchedCsvIsFreshWhenUnchanged() throws IOException {
+		Snapshot snapshot = Snapshot.open(Snapshot.compile(csvFile));
+		assertTrue(csvFile.setLastModified(csvFile.lastModified() - 60000));
+		assertTrue(snapshot.isFresh(csvFile));
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsFilesThatAreNotSnapshots() throws IOException {
+		Snapshot.open(csvFile);
+	}
+
+	@Test
+	public void adapterReadsFreshSnapshots() throws IOException {
+		Snapshot.compile(csvFile);
+		Map<String, DataSource> data = createAdapter().getData("Accounts");
+		assertEquals(1, data.size());
+		assertEquals(csvFile.getAbsolutePath(), data.get("Accounts").getFilename());
+		assertEquals("alice", data.get("Accounts").get(0).get("NAME"));
+	}
+
+	@Test
+	public void adapterParsesCsvWhenSnapshotIsStaleOrMissing() throws IOException {
+		DataAdapter adapter = createAdapter();
+		assertEquals("alice", adapter.getData("Accounts").get("Accounts").get(0).get("NAME"));
+
+		Snapshot.compile(csvFile);
+		testData.write(csvFile.getName(), "NAME,CITY,NOTE\ncarol,Rome,\n");
+		DataSource data = adapter.getData("Accounts").get("Accounts");
+		assertEquals(csvFile.getAbsolutePath(), data.getFilename());
+		assertEquals("carol", data.get(0).get("NAME"));
+	}
+
+	@Test
+	public void changingARowDoesNotChangeTheSnapshot() throws IOException {
+		Snapshot snapshot = Snapshot.open(Snapshot.compile(csvFile));
+		FieldSet row = snapshot.toDataSource().get(0);
+		row.put("NAME", "changed");
+		assertEquals("changed", row.get("NAME"));
+		assertEquals("alice", snapshot.toDataSource().get(0).get("NAME"));
+	}
+
+	@Test
+	public void rowsSerializeWithTheirValues() throws Exception {
+		FieldSet row = Snapshot.open(Snapshot.compile(csvFile)).toDataSource().get(0);
+		Map<String, String> expected = new HashMap<String, String>(row);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(row);
+		out.close();
+		Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(expected, copy);
+	}
+}
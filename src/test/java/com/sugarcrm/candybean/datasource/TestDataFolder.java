@@ -0,0 +1,102 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A temporary directory of test data files, created under testData before and deleted
+ * after each test.  Data adapters resolve their base directory against the working
+ * directory, so configure them with {@link #getBaseDir()}.  A folder may be given a fixed
+ * name for data that must be found at a constant path, such as that of a VData annotation.
+ */
+public class TestDataFolder extends TemporaryFolder {
+
+	private static final File PARENT = new File("testData");
+
+	private final File named;
+
+	public TestDataFolder() {
+		this(null);
+	}
+
+	/**
+	 * @param name The name of the folder under testData, or null for a unique one
+	 */
+	public TestDataFolder(String name) {
+		super(PARENT);
+		this.named = name == null ? null : new File(PARENT, name);
+	}
+
+	@Override
+	protected void before() throws Throwable {
+		PARENT.mkdirs();
+		if (named == null) {
+			super.before();
+		} else {
+			// Left over if an earlier run was killed
+			FileUtils.deleteDirectory(named);
+			if (!named.mkdir()) {
+				throw new IOException("Unable to create " + named);
+			}
+		}
+	}
+
+	@Override
+	protected void after() {
+		if (named == null) {
+			super.after();
+		} else {
+			FileUtils.deleteQuietly(named);
+		}
+	}
+
+	@Override
+	public File getRoot() {
+		return named == null ? super.getRoot() : named;
+	}
+
+	/**
+	 * @return The path of the folder relative to the working directory
+	 */
+	public String getBaseDir() {
+		return PARENT.getPath() + File.separator + getRoot().getName();
+	}
+
+	/**
+	 * Writes a file of test data, creating the directories it is in
+	 * 
+	 * @param path The path of the file, relative to the folder
+	 * @param content The content, written as UTF-8
+	 * @return The file written
+	 * @throws IOException If the file cannot be written
+	 */
+	public File write(String path, String content) throws IOException {
+		File file = new File(getRoot(), path);
+		FileUtils.writeStringToFile(file, content, "UTF-8");
+		return file;
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.datasource;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+public class XmlStreamUnitTest {
+
+	@Rule
+	public final TestDataFolder testData = new TestDataFolder();
+
+	@Test
+	public void readsAttributesAndChildElements() throws IOException {
+		File file = testData.write("Accounts.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<accounts>\n"
+				+ "  <!-- exported -->\n"
+				+ "  <account id=\"1\">\n    <name>alice</name>\n    <city>Zürich</city>\n    <note/>\n  </account>\n"
+				+ "  <account id=\"2\"><name><![CDATA[b<o>b]]></name><address><street>Main</street> 1</address></account>\n"
+				+ "</accounts>\n");
+		XmlStream stream = new XmlStream(file);
+		try {
+			Iterator<FieldSet> records = stream.iterator();
+			FieldSet first = records.next();
+			assertEquals("1", first.get("id"));
+			assertEquals("alice", first.get("name"));
+			assertEquals("Zürich", first.get("city"));
+			assertEquals("", first.get("note"));
+			assertEquals(4, first.size());
+			FieldSet second = records.next();
+			assertEquals("b<o>b", second.get("name"));
+			assertEquals("Main 1", second.get("address"));
+			assertFalse(records.hasNext());
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void iteratesManyRecords() throws IOException {
+		StringBuilder xml = new StringBuilder("<rows>");
+		for (int i = 0; i < 10000; i++) {
+			xml.append("<row><n>").append(i).append("</n></row>");
+		}
+		File file = testData.write("Rows.xml", xml.append("</rows>").toString());
+		XmlStream stream = new XmlStream(file);
+		try {
+			int count = 0;
+			for (FieldSet record : stream) {
+				assertEquals(String.valueOf(count++), record.get("n"));
+			}
+			assertEquals(10000, count);
+			assertEquals(10000, stream.toDataSource().size());
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void doesNotReadExternalEntities() throws IOException {
+		File secret = testData.write("secret.txt", "secret");
+		File file = testData.write("Entities.xml", "<!DOCTYPE rows [<!ENTITY x SYSTEM \"" + secret.toURI() + "\">]>"
+				+ "<rows><row><n>&x;</n></row></rows>");
+		XmlStream stream = new XmlStream(file);
+		try {
+			for (FieldSet record : stream) {
+				assertFalse("secret".equals(record.get("n")));
+			}
+		} catch (IllegalStateException e) {
+			// Rejecting the document is as good as not expanding the entity
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void malformedFileFailsIteration() throws IOException {
+		XmlStream stream = new XmlStream(testData.write("Broken.xml", "<rows><row><n>1</row></rows>"));
+		try {
+			for (FieldSet record : stream) {
+				record.size();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void adapterReadsMatchingFiles() throws IOException {
+		testData.write("Accounts.xml", "<accounts><account><name>alice</name></account></accounts>");
+		testData.write("Accounts_extra.xml", "<accounts><account><name>bob</name></account><account><name>carol</name></account></accounts>");
+		Configuration config = new Configuration();
+		config.setValue("datasource.xml.baseDir", testData.getBaseDir());
+		DataAdapter adapter = new DataAdapterFactory(config).createDataAdapter(DataAdapterFactory.DataAdapterType.XML)
+				.setDataBasePath("datasource.xml.baseDir");
+		Map<String, DataSource> data = adapter.getData("Accounts");
+		assertEquals(2, data.size());
+		assertEquals("alice", data.get("Accounts").get(0).get("name"));
+		assertEquals(2, data.get("Accounts_extra").size());
+		assertEquals(1, adapter.getData("Accounts", DataAdapter.Selection.SINGLE).size());
+	}
+}
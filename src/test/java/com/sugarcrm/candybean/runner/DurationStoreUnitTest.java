@@ -0,0 +1,163 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.Description;
+
+public class DurationStoreUnitTest {
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("durations", ".bin");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+		new File(file.getPath() + ".lock").delete();
+	}
+
+	@Test
+	public void computesRollingPercentiles() throws Exception {
+		DurationStore store = new DurationStore(file, 20);
+		for (int i = 1; i <= 100; i++) {
+			store.record("a.Test.method", i);
+		}
+		DurationStore.Statistics statistics = store.getStatistics("a.Test.method");
+		// Only the last 20 runs (81..100) are retained
+		assertEquals(20, statistics.getRuns());
+		assertEquals(100, statistics.getLast());
+		assertEquals(90, statistics.getP50());
+		assertEquals(99, statistics.getP95());
+		assertNull(store.getStatistics("a.Test.other"));
+		store.close();
+	}
+
+	@Test
+	public void reloadsRecordedDurations() throws Exception {
+		DurationStore store = new DurationStore(file, 5);
+		store.record("a.Test.first", 10);
+		store.record("a.Test.second", 200);
+		store.record("a.Test.first", 30);
+		store.close();
+
+		DurationStore reloaded = new DurationStore(file, 5);
+		assertEquals(2, reloaded.size());
+		assertEquals(2, reloaded.getStatistics("a.Test.first").getRuns());
+		assertEquals(30, reloaded.getStatistics("a.Test.first").getLast());
+		assertEquals(200, reloaded.getExpectedMillis(Description.createTestDescription("a.Test", "second")));
+		assertEquals(-1, reloaded.getExpectedMillis(Description.createTestDescription("a.Test", "third")));
+
+		// Appending after a reload keeps the existing ids
+		reloaded.record("a.Test.third", 7);
+		reloaded.record("a.Test.first", 50);
+		reloaded.close();
+		DurationStore again = new DurationStore(file, 5);
+		assertEquals(3, again.size());
+		assertEquals(50, again.getStatistics("a.Test.first").getLast());
+		assertEquals(7, again.getStatistics("a.Test.third").getLast());
+		again.close();
+	}
+
+	@Test
+	public void ignoresIncompleteTrailingRecord() throws Exception {
+		DurationStore store = new DurationStore(file, 5);
+		store.record("a.Test.method", 42);
+		store.close();
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[] { 2, 0, 0 });
+		out.close();
+
+		DurationStore reloaded = new DurationStore(file, 5);
+		assertEquals(42, reloaded.getStatistics("a.Test.method").getLast());
+		reloaded.record("a.Test.method", 43);
+		reloaded.close();
+		assertEquals(43, new DurationStore(file, 5).getStatistics("a.Test.method").getLast());
+	}
+
+	@Test
+	public void ignoresUnrecognizedFile() throws Exception {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.writeLong(0x0123456789ABCDEFL);
+		raf.close();
+
+		DurationStore store = new DurationStore(file, 5);
+		assertEquals(0, store.size());
+		store.record("a.Test.method", 1);
+		store.close();
+		assertEquals(1, new DurationStore(file, 5).getStatistics("a.Test.method").getLast());
+	}
+
+	@Test
+	public void storesSharingAFileKeepTheirKeysApart() throws Exception {
+		DurationStore first = new DurationStore(file, 5);
+		DurationStore second = new DurationStore(file, 5);
+		first.record("a.Test.first", 10);
+		second.record("a.Test.second", 20);
+		second.flush();
+		first.flush();
+		second.record("a.Test.third", 30);
+		second.record("a.Test.first", 40);
+		second.flush();
+		first.record("a.Test.first", 50);
+		first.close();
+
+		DurationStore reloaded = new DurationStore(file, 5);
+		assertEquals(3, reloaded.size());
+		assertEquals(3, reloaded.getStatistics("a.Test.first").getRuns());
+		assertEquals(50, reloaded.getStatistics("a.Test.first").getLast());
+		assertEquals(20, reloaded.getStatistics("a.Test.second").getLast());
+		assertEquals(30, reloaded.getStatistics("a.Test.third").getLast());
+		// Flushing also reads what the other store appended
+		assertEquals(30, first.getStatistics("a.Test.third").getLast());
+	}
+
+	@Test
+	public void reloadsFileRewrittenByAnotherStore() throws Exception {
+		DurationStore first = new DurationStore(file, 5);
+		first.record("a.Test.method", 10);
+		first.close();
+		DurationStore second = new DurationStore(file, 5);
+		file.delete();
+		first.record("a.Test.method", 20);
+		first.close();
+		second.record("a.Test.other", 30);
+		second.close();
+
+		DurationStore reloaded = new DurationStore(file, 5);
+		assertEquals(2, reloaded.size());
+		assertEquals(20, reloaded.getStatistics("a.Test.method").getLast());
+		assertEquals(30, reloaded.getStatistics("a.Test.other").getLast());
+	}
+}
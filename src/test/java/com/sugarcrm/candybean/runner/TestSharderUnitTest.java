@@ -0,0 +1,149 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.model.FrameworkMethod;
+
+public class TestSharderUnitTest {
+
+	public static class Sample {
+		public void a() {}
+		public void b() {}
+		public void c() {}
+		public void d() {}
+		public void e() {}
+		public void f() {}
+		public void g() {}
+		public void h() {}
+	}
+
+	private static List<FrameworkMethod> methods() throws Exception {
+		List<FrameworkMethod> methods = new ArrayList<FrameworkMethod>();
+		for (String name : new String[] { "a", "b", "c", "d", "e", "f", "g", "h" }) {
+			methods.add(new FrameworkMethod(Sample.class.getMethod(name)));
+		}
+		return methods;
+	}
+
+	private static DurationHistory history(final Map<String, Long> durations) {
+		return new DurationHistory() {
+			@Override
+			public long getExpectedMillis(Description description) {
+				Long millis = durations.get(description.getMethodName());
+				return millis == null ? -1 : millis;
+			}
+		};
+	}
+
+	@Test
+	public void shardsAreDisjointAndComplete() throws Exception {
+		Map<String, Long> durations = new HashMap<String, Long>();
+		durations.put("a", 500L);
+		durations.put("b", 100L);
+		durations.put("c", 300L);
+		List<FrameworkMethod> methods = methods();
+		Set<FrameworkMethod> seen = new HashSet<FrameworkMethod>();
+		int selected = 0;
+		for (int index = 0; index < 3; index++) {
+			List<FrameworkMethod> shard = new TestSharder(index, 3, history(durations)).select(Sample.class, methods);
+			seen.addAll(shard);
+			selected += shard.size();
+		}
+		assertEquals(methods.size(), selected);
+		assertEquals(new HashSet<FrameworkMethod>(methods), seen);
+	}
+
+	@Test
+	public void balancesByExpectedDuration() throws Exception {
+		Map<String, Long> durations = new HashMap<String, Long>();
+		long[] millis = { 800, 700, 400, 300, 300, 200, 100, 100 };
+		String[] names = { "a", "b", "c", "d", "e", "f", "g", "h" };
+		for (int i = 0; i < names.length; i++) {
+			durations.put(names[i], millis[i]);
+		}
+		long[] loads = new long[2];
+		for (int index = 0; index < 2; index++) {
+			for (FrameworkMethod method : new TestSharder(index, 2, history(durations)).select(Sample.class, methods())) {
+				loads[index] += durations.get(method.getName());
+			}
+		}
+		// 2900ms in total; a greedy split is off by at most the shortest test
+		assertEquals(2900, loads[0] + loads[1]);
+		assertTrue(Math.abs(loads[0] - loads[1]) <= 100);
+	}
+
+	@Test
+	public void selectionIsDeterministic() throws Exception {
+		List<FrameworkMethod> first = new TestSharder(1, 4, DurationHistory.NONE).select(Sample.class, methods());
+		List<FrameworkMethod> second = new TestSharder(1, 4, DurationHistory.NONE).select(Sample.class, methods());
+		assertEquals(first, second);
+	}
+
+	@Test
+	public void classesWithoutTestsOnAShardAreSkipped() {
+		int run = 0;
+		System.setProperty("shard.total", "4");
+		try {
+			for (int index = 0; index < 4; index++) {
+				System.setProperty("shard.index", String.valueOf(index));
+				Result result = new JUnitCore().run(Request.aClass(TwoTestFixture.class));
+				assertEquals(0, result.getFailureCount());
+				run += result.getRunCount();
+			}
+		} finally {
+			System.clearProperty("shard.total");
+			System.clearProperty("shard.index");
+		}
+		assertEquals(2, run);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsIndexOutsideTotal() {
+		new TestSharder(2, 2, DurationHistory.NONE);
+	}
+
+	@RunWith(VRunner.class)
+	public static class TwoTestFixture {
+		@Test
+		public void first() {
+		}
+
+		@Test
+		public void second() {
+		}
+	}
+}
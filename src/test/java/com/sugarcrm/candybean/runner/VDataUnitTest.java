@@ -0,0 +1,169 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+import com.sugarcrm.candybean.datasource.FieldSet;
+import com.sugarcrm.candybean.datasource.TestDataFolder;
+
+public class VDataUnitTest {
+
+	private static final String DATA_DIR = "testData/vdata";
+	private static final int ROWS = 25;
+
+	@ClassRule
+	public static final TestDataFolder testData = new TestDataFolder("vdata");
+
+	@BeforeClass
+	public static void createData() throws IOException {
+		assertEquals(new File(DATA_DIR), new File(testData.getBaseDir()));
+		StringBuilder csv = new StringBuilder("ID,EXPECTED\n");
+		for (int i = 0; i < ROWS; i++) {
+			csv.append(i).append(',').append(i == 7 ? "fail" : "pass").append('\n');
+		}
+		testData.write("Rows.csv", csv.toString());
+	}
+
+	@Test
+	public void eachRowIsItsOwnTest() {
+		RowsFixture.befores.set(0);
+		RowsFixture.ids.clear();
+		Result result = new JUnitCore().run(Request.aClass(RowsFixture.class));
+		assertEquals(ROWS + 1, result.getRunCount());
+		assertEquals(1, result.getFailureCount());
+		assertEquals("check[7](" + RowsFixture.class.getName() + ")", result.getFailures().get(0).getTestHeader());
+		assertEquals(ROWS + 1, RowsFixture.befores.get());
+		assertEquals(ROWS, RowsFixture.ids.size());
+	}
+
+	@Test
+	public void rowsRunOnSeveralWorkers() {
+		runInParallel("fifo");
+	}
+
+	@Test
+	public void rowsRunOnSeveralWorkersWhenWorkStealing() {
+		runInParallel(VRunner.WORK_STEALING_SCHEDULER);
+	}
+
+	private void runInParallel(String scheduler) {
+		ParallelFixture.threads.clear();
+		System.setProperty("parallel.enabled", "true");
+		System.setProperty("parallel.threads", "4");
+		System.setProperty("parallel.scheduler", scheduler);
+		try {
+			Result result = new JUnitCore().run(Request.aClass(ParallelFixture.class));
+			assertEquals(ROWS, result.getRunCount());
+			assertEquals(1, result.getFailureCount());
+		} finally {
+			System.clearProperty("parallel.enabled");
+			System.clearProperty("parallel.threads");
+			System.clearProperty("parallel.scheduler");
+		}
+		assertTrue("Rows ran on " + ParallelFixture.threads.size() + " threads", ParallelFixture.threads.size() > 1);
+	}
+
+	@Test
+	public void missingDataFailsTheMethod() {
+		Result result = new JUnitCore().run(Request.aClass(MissingDataFixture.class));
+		assertEquals(1, result.getFailureCount());
+		assertEquals("check(" + MissingDataFixture.class.getName() + ")", result.getFailures().get(0).getTestHeader());
+	}
+
+	@Test
+	public void methodsMustTakeARow() {
+		Result result = new JUnitCore().run(Request.aClass(NoRowFixture.class));
+		assertEquals(1, result.getFailureCount());
+		assertTrue(result.getFailures().get(0).getMessage().contains("single FieldSet parameter"));
+	}
+
+	@RunWith(VRunner.class)
+	public static class RowsFixture {
+		static final AtomicInteger befores = new AtomicInteger();
+		static final Set<String> ids = Collections.synchronizedSet(new HashSet<String>());
+		private FieldSet seen;
+
+		@Before
+		public void before() {
+			assertNull("Each row gets a new instance", seen);
+			befores.incrementAndGet();
+		}
+
+		@Test
+		@VData(value = "Rows", dir = DATA_DIR)
+		public void check(FieldSet row) {
+			seen = row;
+			ids.add(row.get("ID"));
+			assertEquals("pass", row.get("EXPECTED"));
+		}
+
+		@Test
+		public void plain() {
+		}
+	}
+
+	@RunWith(VRunner.class)
+	public static class ParallelFixture {
+		static final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+		@Test
+		@VData(value = "Rows", dir = DATA_DIR)
+		public void check(FieldSet row) throws InterruptedException {
+			threads.add(Thread.currentThread());
+			Thread.sleep(20);
+			assertEquals("pass", row.get("EXPECTED"));
+		}
+	}
+
+	@RunWith(VRunner.class)
+	public static class MissingDataFixture {
+		@Test
+		@VData(value = "Missing", dir = DATA_DIR)
+		public void check(FieldSet row) {
+		}
+	}
+
+	@RunWith(VRunner.class)
+	public static class NoRowFixture {
+		@Test
+		@VData(value = "Rows", dir = DATA_DIR)
+		public void check() {
+		}
+	}
+}
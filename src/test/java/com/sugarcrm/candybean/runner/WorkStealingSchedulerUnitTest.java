@@ -0,0 +1,179 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.runner;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.sugarcrm.candybean.configuration.Configuration;
+
+public class WorkStealingSchedulerUnitTest {
+
+	private static final ThreadFactory FACTORY = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			return new Thread(r);
+		}
+	};
+
+	@Test
+	public void runsEveryTaskOnce() throws Exception {
+		final AtomicInteger runs = new AtomicInteger();
+		List<WorkStealingScheduler.Task> tasks = new ArrayList<WorkStealingScheduler.Task>();
+		for (int i = 0; i < 50; i++) {
+			tasks.add(new WorkStealingScheduler.Task(i % 7, null) {
+				@Override
+				public void run() {
+					runs.incrementAndGet();
+				}
+			});
+		}
+		new WorkStealingScheduler(4, FACTORY, new Configuration()).execute(tasks);
+		assertEquals(50, runs.get());
+	}
+
+	@Test
+	public void runsLongestTasksFirst() throws Exception {
+		final List<Long> order = Collections.synchronizedList(new ArrayList<Long>());
+		List<WorkStealingScheduler.Task> tasks = new ArrayList<WorkStealingScheduler.Task>();
+		for (long weight : new long[] { 3, 10, 1, 7 }) {
+			tasks.add(new WorkStealingScheduler.Task(weight, null) {
+				@Override
+				public void run() {
+					order.add(getWeight());
+				}
+			});
+		}
+		new WorkStealingScheduler(1, FACTORY, new Configuration()).execute(tasks);
+		assertEquals(Arrays.asList(10L, 7L, 3L, 1L), order);
+	}
+
+	@Test
+	public void limitsConcurrencyPerResource() throws Exception {
+		Configuration config = new Configuration();
+		config.setValue("parallel.slots.unittest-resource", "2");
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		List<WorkStealingScheduler.Task> tasks = new ArrayList<WorkStealingScheduler.Task>();
+		for (int i = 0; i < 12; i++) {
+			tasks.add(new WorkStealingScheduler.Task(1, "unittest-resource") {
+				@Override
+				public void run() {
+					int now = running.incrementAndGet();
+					synchronized (maxRunning) {
+						maxRunning.set(Math.max(maxRunning.get(), now));
+					}
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+				}
+			});
+		}
+		new WorkStealingScheduler(6, FACTORY, config).execute(tasks);
+		assertTrue("Ran " + maxRunning.get() + " tasks at once", maxRunning.get() <= 2);
+	}
+
+	@Test
+	public void interruptedWorkerCancelsItsTasks() throws Exception {
+		Configuration config = new Configuration();
+		config.setValue("parallel.slots.unittest-interrupt", "1");
+		final List<Thread> workers = Collections.synchronizedList(new ArrayList<Thread>());
+		ThreadFactory factory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r);
+				workers.add(thread);
+				return thread;
+			}
+		};
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicReference<Thread> holder = new AtomicReference<Thread>();
+		final AtomicInteger runs = new AtomicInteger();
+		final AtomicInteger cancels = new AtomicInteger();
+		List<WorkStealingScheduler.Task> tasks = new ArrayList<WorkStealingScheduler.Task>();
+		// The longest task is dealt to one worker and holds the only slot; the others wait on it
+		tasks.add(new WorkStealingScheduler.Task(10, "unittest-interrupt") {
+			@Override
+			public void run() {
+				holder.set(Thread.currentThread());
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				runs.incrementAndGet();
+			}
+		});
+		for (int i = 0; i < 2; i++) {
+			tasks.add(new WorkStealingScheduler.Task(1, "unittest-interrupt") {
+				@Override
+				public void run() {
+					runs.incrementAndGet();
+				}
+
+				@Override
+				public void cancel() {
+					cancels.incrementAndGet();
+				}
+			});
+		}
+		final WorkStealingScheduler scheduler = new WorkStealingScheduler(2, factory, config);
+		final List<WorkStealingScheduler.Task> batch = tasks;
+		Thread caller = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					scheduler.execute(batch);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		caller.start();
+		started.await();
+		for (Thread worker : new ArrayList<Thread>(workers)) {
+			if (worker != holder.get()) {
+				worker.interrupt();
+				worker.join();
+			}
+		}
+		release.countDown();
+		caller.join();
+		assertEquals(1, runs.get());
+		assertEquals(2, cancels.get());
+	}
+}
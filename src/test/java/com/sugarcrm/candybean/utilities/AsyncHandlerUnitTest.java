@@ -0,0 +1,263 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sugarcrm.candybean.utilities.AsyncHandler.Overflow;
+
+public class AsyncHandlerUnitTest {
+
+	private Logger logger;
+	private CollectingHandler target;
+	private AsyncHandler async;
+
+	@Before
+	public void setUp() {
+		logger = Logger.getLogger(AsyncHandlerUnitTest.class.getName());
+		logger.setUseParentHandlers(false);
+		target = new CollectingHandler();
+	}
+
+	@After
+	public void tearDown() {
+		if (async != null) {
+			logger.removeHandler(async);
+			async.close();
+		}
+	}
+
+	@Test
+	public void testWritesInOrderWithDeferredFormatting() {
+		async = new AsyncHandler(16, Overflow.BLOCK, target);
+		logger.addHandler(async);
+		for (int i = 0; i < 100; i++) {
+			logger.log(Level.INFO, "Record {0} of {1}", new Object[] { i, "test" });
+		}
+		async.flush();
+		assertEquals(100, target.records.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("Record " + i + " of test", target.formatter.formatMessage(target.records.get(i)));
+		}
+		LogRecord record = target.records.get(0);
+		assertEquals(AsyncHandlerUnitTest.class.getName(), record.getSourceClassName());
+		assertEquals("testWritesInOrderWithDeferredFormatting", record.getSourceMethodName());
+		assertTrue(target.writers.size() == 1 && !target.writers.contains(Thread.currentThread().getName()));
+	}
+
+	@Test
+	public void testBlockWithManyThreads() throws InterruptedException {
+		async = new AsyncHandler(8, Overflow.BLOCK, target);
+		logger.addHandler(async);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						logger.log(Level.INFO, "Record {0}", i);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		async.flush();
+		assertEquals(4000, target.records.size());
+		assertEquals(0, async.getDroppedCount());
+	}
+
+	@Test
+	public void testDrop() throws InterruptedException {
+		target.blocked = new CountDownLatch(1);
+		async = new AsyncHandler(4, Overflow.DROP, target);
+		logger.addHandler(async);
+		for (int i = 0; i < 20; i++) {
+			logger.info("Record " + i);
+		}
+		assertTrue(async.getDroppedCount() > 0);
+		long dropped = async.getDroppedCount();
+		target.blocked.countDown();
+		async.flush();
+		// Wait for the writer to report the dropped records once it is idle
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (target.lastLevel() != Level.WARNING && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(20 - dropped, target.records.size() - 1);
+		assertEquals(Level.WARNING, target.lastLevel());
+		assertTrue(target.records.get(target.records.size() - 1).getMessage().startsWith(dropped + " log records were dropped"));
+	}
+
+	@Test
+	public void testDropBelowWarning() {
+		target.blocked = new CountDownLatch(1);
+		async = new AsyncHandler(2, Overflow.DROP_BELOW_WARNING, target);
+		logger.addHandler(async);
+		for (int i = 0; i < 10; i++) {
+			logger.info("Record " + i);
+		}
+		long dropped = async.getDroppedCount();
+		assertTrue(dropped > 0);
+		target.blocked.countDown();
+		for (int i = 0; i < 10; i++) {
+			logger.warning("Warning " + i);
+		}
+		async.flush();
+		int warnings = 0;
+		for (LogRecord record : new ArrayList<LogRecord>(target.records)) {
+			if (record.getMessage().startsWith("Warning")) {
+				warnings++;
+			}
+		}
+		assertEquals(10, warnings);
+	}
+
+	@Test
+	public void testCloseWritesAndClosesTargets() {
+		async = new AsyncHandler(16, Overflow.BLOCK, target);
+		logger.addHandler(async);
+		logger.info("Before close");
+		async.close();
+		assertEquals(1, target.records.size());
+		assertTrue(target.closed);
+		logger.info("After close");
+		assertEquals(1, target.records.size());
+	}
+
+	@Test
+	public void testCloseWhilePublishing() throws InterruptedException {
+		final AtomicInteger accepted = new AtomicInteger();
+		async = new AsyncHandler(4, Overflow.BLOCK, target) {
+			@Override
+			public boolean isLoggable(LogRecord record) {
+				// Only asked once publish() has found the handler open
+				accepted.incrementAndGet();
+				return true;
+			}
+		};
+		logger.addHandler(async);
+		final CountDownLatch started = new CountDownLatch(4);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					started.countDown();
+					for (int i = 0; i < 2000; i++) {
+						logger.log(Level.INFO, "Record {0}", i);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		started.await();
+		async.close();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		int records = 0;
+		for (LogRecord record : new ArrayList<LogRecord>(target.records)) {
+			if (record.getMessage().startsWith("Record")) {
+				records++;
+			}
+		}
+		assertEquals(accepted.get(), records + async.getDroppedCount());
+	}
+
+	@Test
+	public void testInstall() {
+		logger.addHandler(target);
+		async = AsyncHandler.install(logger, 16, Overflow.BLOCK);
+		assertEquals(1, logger.getHandlers().length);
+		assertEquals(async, logger.getHandlers()[0]);
+		logger.info("Installed");
+		async.flush();
+		assertEquals(1, target.records.size());
+	}
+
+	@Test
+	public void testGetOverflow() {
+		assertEquals(Overflow.BLOCK, AsyncHandler.getOverflow("block"));
+		assertEquals(Overflow.DROP, AsyncHandler.getOverflow(" Drop "));
+		assertEquals(Overflow.DROP_BELOW_WARNING, AsyncHandler.getOverflow("drop-below-warning"));
+	}
+
+	private static class CollectingHandler extends Handler {
+		private final List<LogRecord> records = new ArrayList<LogRecord>();
+		private final List<String> writers = new ArrayList<String>();
+		private final SimpleFormatter formatter = new SimpleFormatter();
+		private volatile CountDownLatch blocked;
+		private volatile boolean closed;
+
+		@Override
+		public void publish(LogRecord record) {
+			CountDownLatch latch = blocked;
+			if (latch != null) {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (this) {
+				records.add(record);
+				if (!writers.contains(Thread.currentThread().getName())) {
+					writers.add(Thread.currentThread().getName());
+				}
+			}
+		}
+
+		private synchronized Level lastLevel() {
+			return records.isEmpty() ? null : records.get(records.size() - 1).getLevel();
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
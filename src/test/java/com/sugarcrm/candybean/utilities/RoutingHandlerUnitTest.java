@@ -0,0 +1,172 @@
+/**
+ * Candybean is a next generation automation and testing framework suite.
+ * It is a collection of components that foster test automation, execution
+ * configuration, data abstraction, results illustration, tag-based execution,
+ * top-down and bottom-up batches, mobile variants, test translation across
+ * languages, plain-language testing, and web service testing.
+ * Copyright (C) 2013 SugarCRM, Inc. <candybean@sugarcrm.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sugarcrm.candybean.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RoutingHandlerUnitTest {
+
+	private File dir;
+	private Logger logger;
+	private RoutingHandler router;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("cbrouting", "");
+		dir.delete();
+		logger = Logger.getLogger(RoutingHandlerUnitTest.class.getName());
+		logger.setUseParentHandlers(false);
+		router = new RoutingHandler(dir, LogContext.TEST_CLASS);
+		router.setFormatter(new Formatter() {
+			@Override
+			public String format(LogRecord record) {
+				return formatMessage(record) + "\n";
+			}
+		});
+		logger.addHandler(router);
+	}
+
+	@After
+	public void tearDown() {
+		logger.removeHandler(router);
+		router.close();
+		LogContext.clear();
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testRoutesByContextOfEachThread() throws Exception {
+		List<Thread> threads = new ArrayList<Thread>();
+		for (final String test : new String[] { "FirstTest", "SecondTest", "ThirdTest" }) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					LogContext.put(LogContext.TEST_CLASS, test);
+					for (int i = 0; i < 200; i++) {
+						logger.info(test + " " + i);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		logger.info("Not routed");
+		router.merge();
+		for (String test : new String[] { "FirstTest", "SecondTest", "ThirdTest" }) {
+			List<String> lines = read(router.getLogFile(test));
+			assertEquals(200, lines.size());
+			for (int i = 0; i < 200; i++) {
+				assertEquals(test + " " + i, lines.get(i));
+			}
+		}
+		assertEquals(3, dir.list().length - 1);
+	}
+
+	@Test
+	public void testMergesAppendAfterFirst() throws IOException {
+		File log = router.getLogFile("AppendTest");
+		FileWriter writer = new FileWriter(log);
+		writer.write("From an earlier run\n");
+		writer.close();
+		LogContext.put(LogContext.TEST_CLASS, "AppendTest");
+		logger.info("first");
+		router.merge();
+		logger.info("second");
+		router.merge();
+		router.merge();
+		List<String> lines = read(log);
+		assertEquals(2, lines.size());
+		assertEquals("first", lines.get(0));
+		assertEquals("second", lines.get(1));
+	}
+
+	@Test
+	public void testCloseMerges() throws IOException {
+		LogContext.put(LogContext.TEST_CLASS, "Close Test");
+		logger.info("closing");
+		router.close();
+		assertEquals("Close_Test.log", router.getLogFile("Close Test").getName());
+		assertEquals("closing", read(router.getLogFile("Close Test")).get(0));
+		assertFalse(new File(dir, ".spool").exists());
+		logger.info("after close");
+		assertEquals(1, read(router.getLogFile("Close Test")).size());
+	}
+
+	@Test
+	public void testLogContext() throws InterruptedException {
+		assertNull(LogContext.get(LogContext.TEST_CLASS));
+		LogContext.put(LogContext.TEST_CLASS, "ContextTest");
+		Map<String, String> saved = LogContext.getAll();
+		LogContext.put(LogContext.TEST_METHOD, "testLogContext");
+		assertEquals(1, saved.size());
+		assertEquals(2, LogContext.getAll().size());
+		final AtomicReference<String> inherited = new AtomicReference<String>();
+		Thread child = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				inherited.set(LogContext.get(LogContext.TEST_METHOD));
+			}
+		});
+		child.start();
+		child.join();
+		assertEquals("testLogContext", inherited.get());
+		LogContext.put(LogContext.TEST_METHOD, null);
+		assertNull(LogContext.get(LogContext.TEST_METHOD));
+		LogContext.setAll(saved);
+		assertEquals("ContextTest", LogContext.get(LogContext.TEST_CLASS));
+		LogContext.clear();
+		assertTrue(LogContext.getAll().isEmpty());
+	}
+
+	private static List<String> read(File file) throws IOException {
+		return Files.readAllLines(file.toPath(), Charset.defaultCharset());
+	}
+}